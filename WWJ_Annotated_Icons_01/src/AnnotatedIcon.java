@@ -11,9 +11,9 @@ import java.awt.Dimension;
  * when the mouse event occurs 
  * (http://forum.worldwindcentral.com/showpost.php?p=53252&postcount=8).
  * <br/>
- * The annotation associated with the icons can have any posistion but take
- * into account it will be modified by the layer so that the annotation points
- * to the icon.
+ * The annotation associated with the icons can have any posistion, it is
+ * ignored: the layer draws the annotation text and attributes on screen so
+ * that it points to the icon, without modifying the annotation.
  * <br/>
  * Note, there is an important restriccion to work with AnnotatedIcons and it is,
  * the AnnotatedIconLayer needs to know the size of the icon to calculate the
@@ -31,6 +31,7 @@ public class AnnotatedIcon extends UserFacingIcon
     private Annotation annotation = null;   // Annotation to be shown
     private boolean showAnnotation = false;  // By default the annotation is hidden.
     private Dimension dimension = new Dimension(24,24);
+    private int annotationPriority = 0;  // Higher priority annotations are placed first.
 
     /**
      * Creates a new instance setting the icons size to the default size.
@@ -89,4 +90,25 @@ public class AnnotatedIcon extends UserFacingIcon
     {
         this.showAnnotation = showAnnotation;
     }
+
+    /**
+     * Returns the priority of the annotation when the layer declutters the
+     * annotations.
+     * @return
+     */
+    public int getAnnotationPriority()
+    {
+        return annotationPriority;
+    }
+
+    /**
+     * Sets the priority of the annotation. When annotations overlap the
+     * ones with higher priority are placed first, the others are moved or
+     * hidden.
+     * @param annotationPriority
+     */
+    public void setAnnotationPriority(int annotationPriority)
+    {
+        this.annotationPriority = annotationPriority;
+    }
 }
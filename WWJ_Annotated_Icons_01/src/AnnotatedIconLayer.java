@@ -1,21 +1,41 @@
 package gov.nasa.worldwind.layers;
 
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Matrix;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.render.AnnotatedIcon;
+import gov.nasa.worldwind.render.Annotation;
+import gov.nasa.worldwind.render.AnnotationAttributes;
 import gov.nasa.worldwind.render.AnnotationRenderer;
 import gov.nasa.worldwind.render.BasicAnnotationRenderer;
 import gov.nasa.worldwind.render.DrawContext;
-import gov.nasa.worldwind.render.GlobeAnnotation;
 import gov.nasa.worldwind.render.IconRenderer;
 import gov.nasa.worldwind.render.Pedestal;
+import gov.nasa.worldwind.render.ScreenAnnotation;
 import gov.nasa.worldwind.render.WWIcon;
+import gov.nasa.worldwind.util.LabelPlacer;
 import gov.nasa.worldwind.util.Logging;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * AnnotatedIconLayer is a special kind of layer that knows how to render
  * AnnotatedIcons.
+ * <br/>
+ * Annotations are anchored to their icons in screen space: the icon point is
+ * projected and the annotation is drawn the icon height above it. The
+ * projected anchors are kept until the view or the icon position changes.
+ * <br/>
+ * When decluttering is enabled the annotations are placed in order of
+ * priority, each one above its icon or, if it overlaps the ones placed
+ * before, at the right, at the left or higher. Annotations that can't be
+ * placed aren't rendered. The placement is kept while the view and the
+ * shown annotations don't change.
  * 
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
@@ -26,6 +46,33 @@ public class AnnotatedIconLayer extends AbstractLayer
     private IconRenderer iconRenderer = new IconRenderer();
     private AnnotationRenderer annotationRenderer = new BasicAnnotationRenderer();
     private Pedestal pedestal;
+    // Screen anchors of the annotations, and the view they were computed for.
+    private final Map<AnnotatedIcon, Anchor> anchors = new WeakHashMap<AnnotatedIcon, Anchor>();
+    private final double[] viewArray = new double[37];
+    private final double[] lastViewArray = new double[37];
+    private long viewStamp = 0;
+    // Decluttering state.
+    private boolean decluttering = true;
+    private final LabelPlacer placer = new LabelPlacer();
+    private final ArrayList<Anchor> candidates = new ArrayList<Anchor>();
+    private final ArrayList<Anchor> lastCandidates = new ArrayList<Anchor>();
+    private final ArrayList<Anchor> sorted = new ArrayList<Anchor>();
+    private long placementViewStamp = -1;
+    private java.awt.Graphics2D metricsGraphics = null;
+    // Alternative positions of a colliding annotation, in annotation widths
+    // and heights added to its draw offset: above, right, left and higher.
+    private static final double[][] PLACEMENTS =
+    {
+        {0, 0}, {0.5, 0}, {-0.5, 0}, {0, 1}
+    };
+    private static final Comparator<Anchor> PRIORITY_ORDER = new Comparator<Anchor>()
+    {
+
+        public int compare(Anchor a, Anchor b)
+        {
+            return a.priority > b.priority ? -1 : (a.priority < b.priority ? 1 : 0);
+        }
+    };
 
     /**
      * Creates a new instance.
@@ -91,19 +138,39 @@ public class AnnotatedIconLayer extends AbstractLayer
     public void setPedestal(Pedestal pedestal)
     {
         this.pedestal = pedestal;
+        // The anchors depend on the pedestal height.
+        this.viewStamp++;
+    }
+
+    /**
+     * Returns if overlapping annotations are moved or hidden.
+     * @return
+     */
+    public boolean isDecluttering()
+    {
+        return decluttering;
+    }
+
+    /**
+     * Sets if overlapping annotations are moved or hidden.
+     * @param decluttering
+     */
+    public void setDecluttering(boolean decluttering)
+    {
+        this.decluttering = decluttering;
+        this.placementViewStamp = -1;
     }
 
-    
     @Override
     protected void doPick(DrawContext dc, java.awt.Point pickPoint)
     {
         this.iconRenderer.setPedestal(this.pedestal);
         this.iconRenderer.pick(dc, this.icons, pickPoint, this);
     }
-    
+
     /**
-     * Renders the icons of the layer. For each annotation to be shown, its
-     * position is calculates so that it point to its respective icon.
+     * Renders the icons of the layer and the annotations to be shown, each
+     * one pointing to the top of its icon.
      * 
      * @param dc
      */
@@ -111,32 +178,324 @@ public class AnnotatedIconLayer extends AbstractLayer
     protected void doRender(DrawContext dc)
     {
         this.iconRenderer.setPedestal(this.pedestal);
+        if (this.updateView(dc))
+        {
+            this.viewStamp++;
+        }
 
+        this.candidates.clear();
+        boolean anchorsChanged = false;
         for (WWIcon icon : icons)
         {
             // Render the icon
             this.iconRenderer.render(dc, icon, null);
 
-            // Render its annotation.
+            // Collect its annotation.
             AnnotatedIcon aicon = (AnnotatedIcon) icon;
-            GlobeAnnotation annotation = (GlobeAnnotation) aicon.getAnnotation();
-            if (aicon.isShowAnnotation() && annotation != null)
+            Annotation annotation = aicon.getAnnotation();
+            if (!aicon.isShowAnnotation() || annotation == null)
+            {
+                continue;
+            }
+
+            Anchor anchor = this.anchors.get(aicon);
+            if (anchor == null || anchor.annotation != annotation
+                    || anchor.userAttributes != annotation.getAttributes())
+            {
+                anchor = new Anchor(annotation);
+                this.anchors.put(aicon, anchor);
+            }
+            if (anchor.viewStamp != this.viewStamp || anchor.position != aicon.getPosition())
+            {
+                this.computeAnchor(dc, aicon, anchor);
+                anchor.viewStamp = this.viewStamp;
+                anchorsChanged = true;
+            }
+
+            if (anchor.visible)
+            {
+                if (anchor.updateText() || anchor.priority != aicon.getAnnotationPriority())
+                {
+                    anchor.priority = aicon.getAnnotationPriority();
+                    anchor.width = -1;
+                    anchorsChanged = true;
+                }
+                this.candidates.add(anchor);
+            }
+        }
+
+        if (this.decluttering)
+        {
+            if (anchorsChanged || this.placementViewStamp != this.viewStamp
+                    || !this.candidates.equals(this.lastCandidates))
+            {
+                this.placeAnnotations();
+                this.placementViewStamp = this.viewStamp;
+                this.lastCandidates.clear();
+                this.lastCandidates.addAll(this.candidates);
+            }
+        }
+
+        for (int i = 0; i < this.candidates.size(); i++)
+        {
+            Anchor anchor = this.candidates.get(i);
+            if (!this.decluttering)
+            {
+                anchor.setPlacement(0);
+            }
+            else if (anchor.placement < 0)
+            {
+                continue;
+            }
+            this.annotationRenderer.render(dc, anchor.screenAnnotation, null);
+        }
+    }
+
+    /**
+     * Places the annotations greedily, in order of priority, at the first
+     * position not overlapping the annotations placed before.
+     */
+    private void placeAnnotations()
+    {
+        this.sorted.clear();
+        this.sorted.addAll(this.candidates);
+        // The sort is stable, so annotations with the same priority keep the icons order.
+        Collections.sort(this.sorted, PRIORITY_ORDER);
+
+        this.placer.clear();
+        for (int i = 0; i < this.sorted.size(); i++)
+        {
+            Anchor anchor = this.sorted.get(i);
+            if (anchor.width < 0)
+            {
+                this.measure(anchor);
+            }
+
+            int placement = -1;
+            for (int p = 0; p < PLACEMENTS.length && placement < 0; p++)
+            {
+                // The frame is centered over the offset point, in AWT coordinates.
+                int dx = (int) (PLACEMENTS[p][0] * anchor.width);
+                int dy = (int) (PLACEMENTS[p][1] * anchor.height);
+                int x = anchor.x + anchor.baseX + dx - anchor.width / 2;
+                int y = anchor.y - anchor.baseY - dy - anchor.height;
+                if (this.placer.place(x, y, anchor.width, anchor.height))
+                {
+                    placement = p;
+                }
+            }
+            anchor.setPlacement(placement);
+        }
+    }
+
+    /**
+     * Estimates the size of the frame of an annotation from its attributes
+     * and text, wrapping the text to the annotation width.
+     */
+    private void measure(Anchor anchor)
+    {
+        AnnotationAttributes attributes = anchor.annotation.getAttributes();
+        java.awt.Font font = attributes.getFont() != null ? attributes.getFont() : java.awt.Font.decode("Arial-PLAIN-12");
+        java.awt.Dimension size = attributes.getSize();
+        java.awt.Insets insets = attributes.getInsets() != null ? attributes.getInsets() : new java.awt.Insets(0, 0, 0, 0);
+
+        if (this.metricsGraphics == null)
+        {
+            this.metricsGraphics = new java.awt.image.BufferedImage(1, 1,
+                    java.awt.image.BufferedImage.TYPE_INT_ARGB).createGraphics();
+        }
+        java.awt.FontMetrics metrics = this.metricsGraphics.getFontMetrics(font);
+
+        int maxWidth = size != null && size.width > 0 ? size.width - insets.left - insets.right : Integer.MAX_VALUE;
+        String text = anchor.annotation.getText() != null ? anchor.annotation.getText() : "";
+        text = text.replaceAll("(?i)<br\\s*/?>|</p>", "\n").replaceAll("<[^>]*>", "");
+
+        int numLines = 0;
+        int textWidth = 0;
+        for (String paragraph : text.split("\n"))
+        {
+            // Wrap the words of every paragraph to the available width.
+            int lineWidth = 0;
+            numLines++;
+            for (String word : paragraph.split(" "))
+            {
+                int wordWidth = metrics.stringWidth(word + " ");
+                if (lineWidth > 0 && lineWidth + wordWidth > maxWidth)
+                {
+                    numLines++;
+                    lineWidth = 0;
+                }
+                lineWidth += wordWidth;
+                textWidth = Math.max(textWidth, Math.min(lineWidth, maxWidth));
+            }
+        }
+
+        anchor.width = size != null && size.width > 0 ? size.width : textWidth + insets.left + insets.right;
+        anchor.height = size != null && size.height > 0 ? size.height
+                : numLines * metrics.getHeight() + insets.top + insets.bottom;
+    }
+
+    /**
+     * Checks if the view, or the globe exaggeration, changed since the last
+     * frame, remembering the new one.
+     * @param dc
+     * @return true if the view changed.
+     */
+    private boolean updateView(DrawContext dc)
+    {
+        View view = dc.getView();
+        Matrix modelView = view.getModelViewMatrix();
+        Matrix projection = view.getProjectionMatrix();
+        java.awt.Rectangle viewport = view.getViewport();
+        if (modelView == null || projection == null || viewport == null)
+        {
+            return true;
+        }
+
+        modelView.toArray(this.viewArray, 0, false);
+        projection.toArray(this.viewArray, 16, false);
+        this.viewArray[32] = viewport.x;
+        this.viewArray[33] = viewport.y;
+        this.viewArray[34] = viewport.width;
+        this.viewArray[35] = viewport.height;
+        this.viewArray[36] = dc.getVerticalExaggeration();
+        if (java.util.Arrays.equals(this.viewArray, this.lastViewArray))
+        {
+            return false;
+        }
+
+        System.arraycopy(this.viewArray, 0, this.lastViewArray, 0, this.viewArray.length);
+        return true;
+    }
+
+    /**
+     * Projects the icon and places the annotation, in screen coordinates,
+     * above the icon and its pedestal.
+     */
+    private void computeAnchor(DrawContext dc, AnnotatedIcon icon, Anchor anchor)
+    {
+        View view = dc.getView();
+        Position position = icon.getPosition();
+        if (anchor.position != position || anchor.modelPoint == null)
+        {
+            anchor.modelPoint = dc.getGlobe().computePointFromPosition(position);
+            anchor.position = position;
+        }
+
+        // Hide the annotations of the icons behind the horizon.
+        Vec4 eye = view.getEyePoint();
+        if (!icon.isAlwaysOnTop() && eye != null
+                && eye.distanceTo3(anchor.modelPoint) > view.computeHorizonDistance())
+        {
+            anchor.visible = false;
+            return;
+        }
+
+        Vec4 screenPoint = view.project(anchor.modelPoint);
+        if (screenPoint == null || screenPoint.z() < 0 || screenPoint.z() > 1)
+        {
+            anchor.visible = false;
+            return;
+        }
+
+        double height = icon.getSize() != null ? icon.getSize().getHeight() : 0;
+        double offset = height;
+        if (this.pedestal != null)
+        {
+            offset += this.pedestal.getScale() * height + this.pedestal.getSpacingPixels();
+        }
+
+        // The view projects to OpenGL coordinates, the annotation uses AWT ones.
+        java.awt.Rectangle viewport = view.getViewport();
+        anchor.x = (int) Math.round(screenPoint.x());
+        anchor.y = (int) Math.round(viewport.height - screenPoint.y() - offset);
+        anchor.screenAnnotation.setScreenPoint(new java.awt.Point(anchor.x, anchor.y));
+        anchor.visible = true;
+    }
+
+    /**
+     * Screen anchor of an annotation. The annotation is rendered through a
+     * ScreenAnnotation sharing its text. The ScreenAnnotation has its own
+     * attributes, which default to the annotation ones, so moving it changes
+     * only its own draw offset and the annotation of the icon is never
+     * modified.
+     */
+    private static class Anchor
+    {
+
+        private final Annotation annotation;
+        private final AnnotationAttributes userAttributes;
+        private final ScreenAnnotation screenAnnotation;
+        // Draw offset of the annotation, the placements are relative to it.
+        private final int baseX;
+        private final int baseY;
+        private Position position = null;
+        private Vec4 modelPoint = null;
+        private boolean visible = false;
+        private long viewStamp = -1;
+        // Screen point, in AWT coordinates.
+        private int x;
+        private int y;
+        // Estimated frame size, -1 if not measured.
+        private int width = -1;
+        private int height = -1;
+        private int priority = 0;
+        // Index in PLACEMENTS, -1 if hidden, and the size it was set for.
+        private int placement = 0;
+        private int placedWidth = -1;
+        private int placedHeight = -1;
+
+        private Anchor(Annotation annotation)
+        {
+            this.annotation = annotation;
+            this.userAttributes = annotation.getAttributes();
+            java.awt.Point base = this.userAttributes != null ? this.userAttributes.getDrawOffset() : null;
+            this.baseX = base != null ? base.x : 0;
+            this.baseY = base != null ? base.y : 0;
+
+            AnnotationAttributes attributes = new AnnotationAttributes();
+            if (this.userAttributes != null)
+            {
+                attributes.setDefaults(this.userAttributes);
+            }
+            attributes.setDrawOffset(new java.awt.Point(this.baseX, this.baseY));
+            this.screenAnnotation = new ScreenAnnotation(annotation.getText(), new java.awt.Point(), attributes);
+        }
+
+        /**
+         * Copies the text of the annotation if it changed.
+         * @return true if it changed.
+         */
+        private boolean updateText()
+        {
+            if (this.screenAnnotation.getText() != this.annotation.getText())
+            {
+                this.screenAnnotation.setText(this.annotation.getText());
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Moves the annotation to one of the alternative positions.
+         * @param placement index in PLACEMENTS, or -1 to hide it.
+         */
+        private void setPlacement(int placement)
+        {
+            // The offset depends on the size too, which changes with the text.
+            if (placement == this.placement && this.width == this.placedWidth && this.height == this.placedHeight)
+            {
+                return;
+            }
+
+            this.placement = placement;
+            this.placedWidth = this.width;
+            this.placedHeight = this.height;
+            if (placement >= 0)
             {
-                // Get the screen position of the icon
-                Vec4 point = dc.getGlobe().computePointFromPosition(aicon.getPosition());
-                Vec4 screenpoint = dc.getView().project(point);
-                // Adds to the screen position the pixel size of the icon
-                
-                System.out.println("he: "+aicon.getSize().getHeight());
-                Vec4 incremented = new Vec4(screenpoint.x(), screenpoint.y() + aicon.getSize().getHeight(), screenpoint.z(), screenpoint.w());
-                // Calculate the corresponding world position of the incremente screen size.
-                Vec4 position = dc.getView().unProject(incremented);
-
-                Position posan = dc.getGlobe().computePositionFromPoint(position);
-
-                // Set the annotation position so that it point to the icon.
-                annotation.setPosition(posan);
-                this.annotationRenderer.render(dc, aicon.getAnnotation(), null);
+                this.screenAnnotation.getAttributes().setDrawOffset(new java.awt.Point(
+                        this.baseX + (int) (PLACEMENTS[placement][0] * this.width),
+                        this.baseY + (int) (PLACEMENTS[placement][1] * this.height)));
             }
         }
     }
@@ -104,6 +104,8 @@ public class AnnotatedIconsExample
                     icon.setHighlightScale(1.5);
                     icon.setToolTipText(icon.getImageSource().toString());
                     icon.setToolTipTextColor(java.awt.Color.YELLOW);
+                    // Annotations of the elevated icons win when they overlap.
+                    icon.setAnnotationPriority(alt > 0 ? 1 : 0);
 
                     GlobeAnnotation an = new GlobeAnnotation("This is the annotation", Position.fromDegrees(40, 2, 0));
                     icon.setAnnotation(an);
@@ -0,0 +1,201 @@
+package gov.nasa.worldwind.util;
+
+/**
+ * LabelPlacer places screen rectangles greedily so they don't overlap: each
+ * rectangle is placed only if it doesn't collide with the ones placed
+ * before, so the rectangles must be tried in priority order.
+ * <br/>
+ * Placed rectangles are kept in a spatial hash of square cells, so a
+ * collision test only looks at the rectangles sharing a cell with the new
+ * one. The placer reuses its storage after 'clear' and is not thread safe.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class LabelPlacer
+{
+
+    public static final int DEFAULT_CELL_SIZE = 64;
+    private static final int NUM_BUCKETS = 1024;
+    private final int cellSize;
+    // Placed rectangles: x, y, width and height.
+    private int[] rects = new int[64];
+    private int numRects = 0;
+    // Per bucket linked lists of entries.
+    private final int[] bucketHeads = new int[NUM_BUCKETS];
+    private int[] entryRects = new int[64];
+    private int[] entryNext = new int[64];
+    private int numEntries = 0;
+    // Marks the rectangles already tested by the current query.
+    private int[] rectMarks = new int[16];
+    private int mark = 0;
+
+    /**
+     * Creates a placer with cells of DEFAULT_CELL_SIZE pixels.
+     */
+    public LabelPlacer()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a placer.
+     * @param cellSize size of the cells in pixels.
+     */
+    public LabelPlacer(int cellSize)
+    {
+        if (cellSize < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cellSize = cellSize;
+        this.clear();
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Gets the number of placed rectangles.
+     * @return
+     */
+    public int size()
+    {
+        return this.numRects;
+    }
+
+    /**
+     * Removes all the placed rectangles.
+     */
+    public void clear()
+    {
+        java.util.Arrays.fill(this.bucketHeads, -1);
+        this.numRects = 0;
+        this.numEntries = 0;
+    }
+
+    /**
+     * Checks if a rectangle collides with the placed ones.
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return
+     */
+    public boolean collides(int x, int y, int width, int height)
+    {
+        if (this.rectMarks.length < this.numRects)
+        {
+            this.rectMarks = new int[Math.max(this.numRects, this.rectMarks.length * 2)];
+            this.mark = 0;
+        }
+        if (++this.mark == 0)
+        {
+            java.util.Arrays.fill(this.rectMarks, 0);
+            this.mark = 1;
+        }
+
+        int minCol = this.cell(x);
+        int maxCol = this.cell(x + width - 1);
+        int minRow = this.cell(y);
+        int maxRow = this.cell(y + height - 1);
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                for (int e = this.bucketHeads[bucket(col, row)]; e >= 0; e = this.entryNext[e])
+                {
+                    int r = this.entryRects[e];
+                    if (this.rectMarks[r] == this.mark)
+                    {
+                        continue;
+                    }
+                    this.rectMarks[r] = this.mark;
+
+                    int o = r * 4;
+                    if (x < this.rects[o] + this.rects[o + 2] && this.rects[o] < x + width
+                            && y < this.rects[o + 1] + this.rects[o + 3] && this.rects[o + 1] < y + height)
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Places a rectangle if it doesn't collide with the placed ones.
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return true if the rectangle has been placed.
+     */
+    public boolean place(int x, int y, int width, int height)
+    {
+        if (width < 0 || height < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.collides(x, y, width, height))
+        {
+            return false;
+        }
+
+        int r = this.numRects++;
+        if (this.rects.length < this.numRects * 4)
+        {
+            int[] newRects = new int[this.rects.length * 2];
+            System.arraycopy(this.rects, 0, newRects, 0, r * 4);
+            this.rects = newRects;
+        }
+        this.rects[r * 4] = x;
+        this.rects[r * 4 + 1] = y;
+        this.rects[r * 4 + 2] = width;
+        this.rects[r * 4 + 3] = height;
+
+        int minCol = this.cell(x);
+        int maxCol = this.cell(x + width - 1);
+        int minRow = this.cell(y);
+        int maxRow = this.cell(y + height - 1);
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                if (this.numEntries == this.entryRects.length)
+                {
+                    int[] newRects = new int[this.numEntries * 2];
+                    int[] newNext = new int[this.numEntries * 2];
+                    System.arraycopy(this.entryRects, 0, newRects, 0, this.numEntries);
+                    System.arraycopy(this.entryNext, 0, newNext, 0, this.numEntries);
+                    this.entryRects = newRects;
+                    this.entryNext = newNext;
+                }
+                int b = bucket(col, row);
+                this.entryRects[this.numEntries] = r;
+                this.entryNext[this.numEntries] = this.bucketHeads[b];
+                this.bucketHeads[b] = this.numEntries++;
+            }
+        }
+        return true;
+    }
+
+    private int cell(int coordinate)
+    {
+        // Floor division, so negative coordinates get their own cells.
+        return coordinate >= 0 ? coordinate / this.cellSize : -((-coordinate - 1) / this.cellSize) - 1;
+    }
+
+    private static int bucket(int col, int row)
+    {
+        return ((col * 73856093) ^ (row * 19349663)) & (NUM_BUCKETS - 1);
+    }
+}
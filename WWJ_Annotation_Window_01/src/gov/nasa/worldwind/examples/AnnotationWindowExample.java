@@ -13,6 +13,7 @@ import gov.nasa.worldwind.render.AnnotationWindow;
 import java.awt.FlowLayout;
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 
@@ -52,18 +53,35 @@ public class AnnotationWindowExample
 
             // Create Window layer
             AnnotationWindowLayer awl = new AnnotationWindowLayer(wwd);
-            AnnotationWindow tip = new AnnotationWindow(Position.fromDegrees(40, 0, 0), wwd);
+            awl.setMaxWindows(6);
+            AnnotationWindow tip = new AnnotationWindow(Position.fromDegrees(40, 0, 0));
             tip.setPanel(new thePanel());
+            tip.setPriority(1);
             awl.addWindow(tip);
 
-            tip = new AnnotationWindow(Position.fromDegrees(10, 40, 0), wwd);
+            tip = new AnnotationWindow(Position.fromDegrees(10, 40, 0));
             tip.setPanel(new thePanel());
+            tip.setPriority(1);
             awl.addWindow(tip);
 
-            tip = new AnnotationWindow(Position.fromDegrees(-30, -90, 0), wwd);
+            tip = new AnnotationWindow(Position.fromDegrees(-30, -90, 0));
             tip.setPanel(new thePanel());
+            tip.setPriority(1);
             awl.addWindow(tip);
 
+            // Lots of low priority annotations, only the nearest ones get a window.
+            for (int lat = -60; lat <= 60; lat += 30)
+            {
+                for (int lon = -180; lon < 180; lon += 30)
+                {
+                    tip = new AnnotationWindow(Position.fromDegrees(lat, lon, 0));
+                    JPanel panel = new JPanel();
+                    panel.add(new JLabel(lat + ", " + lon));
+                    tip.setPanel(panel);
+                    awl.addWindow(tip);
+                }
+            }
+
             mainlayers.add(awl);
 
             model.setLayers(mainlayers);
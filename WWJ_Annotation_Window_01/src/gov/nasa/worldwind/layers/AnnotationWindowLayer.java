@@ -7,22 +7,25 @@ import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Logging;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.event.HierarchyBoundsListener;
+import java.awt.event.HierarchyEvent;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 
 /**
  * AnnotationWindowLayer is a layer container for AnnotationWindow objects. 
  * All AnnotationWindow contained in the AnnotationWindowLayer are rendered 
- * through the AnnotationWindowRenderer.
+ * through the AnnotationWindowRenderer, which shows them in a bounded pool
+ * of windows.
  * 
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  * @see AnnotationWindow
  */
-public class AnnotationWindowLayer extends AbstractLayer implements ComponentListener
+public class AnnotationWindowLayer extends AbstractLayer implements ComponentListener, HierarchyBoundsListener
 {
 
     private final java.util.Collection<AnnotationWindow> windows = new ConcurrentLinkedQueue<AnnotationWindow>();
-    private AnnotationWindowRenderer windowRenderer = new AnnotationWindowRenderer();
+    private AnnotationWindowRenderer windowRenderer = null;
     private WorldWindowGLCanvas wwd = null;
 
     /**
@@ -32,7 +35,9 @@ public class AnnotationWindowLayer extends AbstractLayer implements ComponentLis
     public AnnotationWindowLayer(WorldWindowGLCanvas wwd)
     {
         this.wwd = wwd;
+        this.windowRenderer = new AnnotationWindowRenderer(wwd);
         this.wwd.addComponentListener(this);
+        this.wwd.addHierarchyBoundsListener(this);
     }
 
     /**
@@ -64,6 +69,7 @@ public class AnnotationWindowLayer extends AbstractLayer implements ComponentLis
             throw new IllegalArgumentException(msg);
         }
 
+        // Its window, if any, is recycled in the next frame.
         this.windows.remove(window);
     }
 
@@ -76,6 +82,51 @@ public class AnnotationWindowLayer extends AbstractLayer implements ComponentLis
         return this.windows;
     }
 
+    /**
+     * Sets the maximum number of windows, that is, of annotations shown at
+     * the same time. The visible annotations with the highest priority are
+     * shown.
+     * @param maxWindows
+     */
+    public void setMaxWindows(int maxWindows)
+    {
+        this.windowRenderer.getWindowPool().setMaxWindows(maxWindows);
+    }
+
+    public int getMaxWindows()
+    {
+        return this.windowRenderer.getWindowPool().getMaxWindows();
+    }
+
+    /**
+     * Sets the distance in pixels a window must move to be moved.
+     * @param threshold
+     */
+    public void setMoveThreshold(int threshold)
+    {
+        this.windowRenderer.getComponentMover().setThreshold(threshold);
+    }
+
+    public int getMoveThreshold()
+    {
+        return this.windowRenderer.getComponentMover().getThreshold();
+    }
+
+    /**
+     * Enables or disables the layer. The windows are hidden when the layer is
+     * disabled, because it isn't rendered anymore.
+     * @param enabled
+     */
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        super.setEnabled(enabled);
+        if (!enabled)
+        {
+            this.windowRenderer.getComponentMover().hideAll();
+        }
+    }
+
     @Override
     protected void doPick(DrawContext dc, java.awt.Point pickPoint)
     {
@@ -93,23 +144,43 @@ public class AnnotationWindowLayer extends AbstractLayer implements ComponentLis
         this.windowRenderer.render(dc, this.windows);
     }
 
+    /**
+     * Places all the windows again in the next frame, used when the canvas
+     * moves on the screen.
+     */
+    private void relocateWindows()
+    {
+        this.windowRenderer.getComponentMover().invalidate();
+        this.wwd.redraw();
+    }
+
     public void componentResized(ComponentEvent e)
     {
-        System.out.println("componentResized");
+        this.relocateWindows();
     }
 
     public void componentMoved(ComponentEvent e)
     {
-        System.out.println("componentMoved");
+        this.relocateWindows();
     }
 
     public void componentShown(ComponentEvent e)
     {
-        System.out.println("componentShown");
+        this.relocateWindows();
     }
 
     public void componentHidden(ComponentEvent e)
     {
-        System.out.println("componentHidden");
+        this.windowRenderer.getComponentMover().hideAll();
+    }
+
+    public void ancestorMoved(HierarchyEvent e)
+    {
+        this.relocateWindows();
+    }
+
+    public void ancestorResized(HierarchyEvent e)
+    {
+        this.relocateWindows();
     }
 }
@@ -1,41 +1,33 @@
 package gov.nasa.worldwind.render;
 
-import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
 import gov.nasa.worldwind.geom.Position;
-import gov.nasa.worldwind.geom.Vec4;
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Point;
-import javax.media.opengl.GL;
 import javax.swing.JPanel;
-import javax.swing.JWindow;
-import javax.swing.border.LineBorder;
 
 /**
+ * AnnotationWindow is an annotation shown in a window over the
+ * WorldWindowGLCanvas. It only holds the annotation data: the windows are
+ * kept in a small pool by the AnnotationWindowRenderer and bound to the
+ * visible annotations with the highest priority, so lots of annotations can
+ * be defined without creating a native window for each one.
  *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
+ * @see AnnotationWindowPool
  */
-public class AnnotationWindow extends JWindow
+public class AnnotationWindow
 {
 
     private boolean enable = true;
     private JPanel panel = null;
-    private WorldWindowGLCanvas wwd = null;
     private Point point = new Point(0, 0);
     private Position position = Position.fromDegrees(0, 0, 0);
     private Color color = Color.LIGHT_GRAY;
+    private int priority = 0;
 
-    public AnnotationWindow(Position position, WorldWindowGLCanvas wwd)
+    public AnnotationWindow(Position position)
     {
         this.position = position;
-        this.wwd = wwd;
-
-        // Initially the JWindow is hidden.
-        this.setVisible(false);
-
-        // Set window border.
-        JPanel content = (JPanel) this.getContentPane();
-        content.setBorder(new LineBorder(this.color, 2));
     }
 
     public JPanel getPanel()
@@ -43,6 +35,10 @@ public class AnnotationWindow extends JWindow
         return panel;
     }
 
+    /**
+     * Sets the panel shown in the window of the annotation.
+     * @param panel
+     */
     public void setPanel(JPanel panel)
     {
         if (panel == null)
@@ -50,9 +46,6 @@ public class AnnotationWindow extends JWindow
             return;
         }
         this.panel = panel;
-
-        this.getContentPane().add(panel);
-        this.pack();
     }
 
     public Position getPosition()
@@ -85,52 +78,28 @@ public class AnnotationWindow extends JWindow
         this.color = color;
     }
 
-    public Point getPoint()
+    public int getPriority()
     {
-        return this.point;
+        return priority;
     }
 
-    public void render(DrawContext dc)
+    /**
+     * Sets the priority of the annotation. When there are more visible
+     * annotations than windows, the ones with higher priority are shown.
+     * @param priority
+     */
+    public void setPriority(int priority)
     {
+        this.priority = priority;
+    }
 
-        Dimension size = this.getSize();
-        Dimension base = wwd.getSize();
-        Point loc = wwd.getLocationOnScreen();
-
-        // Get position and check if it is inside the frustum
-        Vec4 cartpoint = dc.getGlobe().computePointFromPosition(this.position);
-        if (dc.getView().getFrustumInModelCoordinates().contains(cartpoint))
-        {
-            this.setVisible(true);
-        }
-        else
-        {
-            this.setVisible(false);
-            return;
-        }
-
-        // Translate position to screen point
-        Vec4 scrpoint = dc.getView().project(cartpoint);
-        this.point.x = loc.x + (int) scrpoint.x;
-        this.point.y = loc.y + base.height - size.height - (int) scrpoint.y - 20;
-
-        // Set the window location.
-        this.setLocation(point);
-
-        // Draw triangle
-        GL gl = dc.getGL();
-
-        float[] c = this.color.getRGBComponents(null);
-        gl.glColor3f(c[0], c[1], c[2]);
-
-        gl.glLineWidth(2);
-
-        gl.glBegin(GL.GL_TRIANGLES);
-
-        gl.glVertex2d(scrpoint.x, scrpoint.y);
-        gl.glVertex2d(scrpoint.x + 20, scrpoint.y + 20);
-        gl.glVertex2d(scrpoint.x, scrpoint.y + 20);
-
-        gl.glEnd();
+    /**
+     * Returns the bottom left corner of the window, in coordinates of the
+     * WorldWindowGLCanvas, computed in the last frame.
+     * @return
+     */
+    public Point getPoint()
+    {
+        return this.point;
     }
 }
@@ -0,0 +1,318 @@
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.util.ComponentMover;
+import gov.nasa.worldwind.util.Logging;
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import javax.swing.JPanel;
+import javax.swing.JWindow;
+import javax.swing.border.LineBorder;
+
+/**
+ * AnnotationWindowPool keeps a bounded set of JWindows and binds them to the
+ * annotations being shown, so the number of native windows doesn't depend on
+ * the number of annotations.
+ * <br/>
+ * Every frame the renderer gives the visible annotations, in priority order,
+ * to 'bind': annotations that are still shown keep their window, windows of
+ * annotations not shown anymore are recycled, and the annotations beyond the
+ * size of the pool get no window. Windows are created in the event dispatch
+ * thread, up to the size of the pool, and handed to the rendering thread,
+ * which only binds existing windows. Window contents are changed through the
+ * ComponentMover, in the event dispatch thread, before the windows are
+ * placed. The pool is used only from the rendering thread, except for
+ * 'setMaxWindows'.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class AnnotationWindowPool
+{
+
+    public static final int DEFAULT_MAX_WINDOWS = 8;
+    private final ComponentMover mover;
+    private volatile int maxWindows = DEFAULT_MAX_WINDOWS;
+    private final ArrayList<PooledWindow> windows = new ArrayList<PooledWindow>();
+    // Windows created in the event dispatch thread and not taken yet. It is
+    // also the lock of 'numWindows' and 'creating'.
+    private final ArrayList<PooledWindow> created = new ArrayList<PooledWindow>();
+    private int numWindows = 0;
+    private boolean creating = false;
+    private final IdentityHashMap<AnnotationWindow, PooledWindow> bound =
+            new IdentityHashMap<AnnotationWindow, PooledWindow>();
+    private final IdentityHashMap<AnnotationWindow, Boolean> shown = new IdentityHashMap<AnnotationWindow, Boolean>();
+
+    /**
+     * Creates a new pool.
+     * @param mover the ComponentMover placing the windows.
+     */
+    public AnnotationWindowPool(ComponentMover mover)
+    {
+        if (mover == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.mover = mover;
+        this.createWindows();
+    }
+
+    public int getMaxWindows()
+    {
+        return maxWindows;
+    }
+
+    /**
+     * Sets the maximum number of windows, that is, of annotations shown at
+     * the same time.
+     * @param maxWindows
+     */
+    public void setMaxWindows(int maxWindows)
+    {
+        if (maxWindows < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxWindows = maxWindows;
+        this.createWindows();
+    }
+
+    /**
+     * Gets the number of windows created by the pool.
+     * @return
+     */
+    public int size()
+    {
+        return this.windows.size();
+    }
+
+    /**
+     * Binds the windows to the first annotations of a list.
+     * @param annotations the visible annotations, in priority order.
+     * @return the number of annotations bound to a window.
+     */
+    public int bind(List<AnnotationWindow> annotations)
+    {
+        synchronized (this.created)
+        {
+            this.windows.addAll(this.created);
+            this.created.clear();
+        }
+
+        // Annotations are bound while there are windows; the rest wait until
+        // the event dispatch thread creates them.
+        int max = this.maxWindows;
+        int count = Math.min(Math.min(max, annotations.size()), this.windows.size());
+
+        this.shown.clear();
+        for (int i = 0; i < count; i++)
+        {
+            this.shown.put(annotations.get(i), Boolean.TRUE);
+        }
+
+        // Recycle the windows of the annotations not shown anymore.
+        for (PooledWindow window : this.windows)
+        {
+            if (window.annotation != null && !this.shown.containsKey(window.annotation))
+            {
+                this.bound.remove(window.annotation);
+                window.annotation = null;
+            }
+        }
+
+        // Dispose the free windows beyond the size of the pool.
+        for (int i = this.windows.size() - 1; i >= 0 && this.windows.size() > max; i--)
+        {
+            final PooledWindow window = this.windows.get(i);
+            if (window.annotation == null)
+            {
+                this.windows.remove(i);
+                synchronized (this.created)
+                {
+                    this.numWindows--;
+                }
+                this.mover.remove(window);
+                this.mover.invokeLater(new Runnable()
+                {
+
+                    public void run()
+                    {
+                        window.dispose();
+                    }
+                });
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            AnnotationWindow annotation = annotations.get(i);
+            PooledWindow window = this.bound.get(annotation);
+            if (window == null)
+            {
+                window = this.takeFreeWindow(annotation);
+                if (window == null)
+                {
+                    return i;
+                }
+                window.annotation = annotation;
+                this.bound.put(annotation, window);
+            }
+            window.update(annotation);
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the window bound to an annotation in the last 'bind'.
+     * @param annotation
+     * @return the window, or null if the annotation has no window.
+     */
+    public JWindow getWindow(AnnotationWindow annotation)
+    {
+        return this.bound.get(annotation);
+    }
+
+    private PooledWindow takeFreeWindow(AnnotationWindow annotation)
+    {
+        // Prefer the window that already shows the annotation.
+        PooledWindow free = null;
+        for (PooledWindow window : this.windows)
+        {
+            if (window.annotation == null)
+            {
+                if (window.contentAnnotation == annotation)
+                {
+                    return window;
+                }
+                if (free == null)
+                {
+                    free = window;
+                }
+            }
+        }
+
+        return free;
+    }
+
+    /**
+     * Creates the missing windows, up to the size of the pool, in the event
+     * dispatch thread. The rendering thread takes them in the next 'bind'.
+     */
+    private void createWindows()
+    {
+        synchronized (this.created)
+        {
+            if (this.creating || this.numWindows >= this.maxWindows)
+            {
+                return;
+            }
+            this.creating = true;
+        }
+
+        Runnable task = new Runnable()
+        {
+
+            public void run()
+            {
+                while (true)
+                {
+                    synchronized (created)
+                    {
+                        if (numWindows >= maxWindows)
+                        {
+                            creating = false;
+                            return;
+                        }
+                        numWindows++;
+                    }
+
+                    PooledWindow window = new PooledWindow();
+                    synchronized (created)
+                    {
+                        created.add(window);
+                    }
+                }
+            }
+        };
+
+        if (EventQueue.isDispatchThread())
+        {
+            task.run();
+        }
+        else
+        {
+            EventQueue.invokeLater(task);
+        }
+    }
+
+    private class PooledWindow extends JWindow
+    {
+
+        // Annotation bound to the window.
+        AnnotationWindow annotation = null;
+        // Contents of the window, set in the event dispatch thread.
+        AnnotationWindow contentAnnotation = null;
+        JPanel contentPanel = null;
+        Color contentColor = null;
+
+        /**
+         * Changes the contents of the window if the annotation, its panel or
+         * its color changed.
+         */
+        void update(AnnotationWindow annotation)
+        {
+            final JPanel panel = annotation.getPanel();
+            final Color color = annotation.getColor();
+            if (annotation == this.contentAnnotation && panel == this.contentPanel
+                    && (color == null ? this.contentColor == null : color.equals(this.contentColor)))
+            {
+                return;
+            }
+
+            // A panel is in one window at a time, so the window showing it loses it.
+            for (PooledWindow window : AnnotationWindowPool.this.windows)
+            {
+                if (window != this && panel != null && window.contentPanel == panel)
+                {
+                    window.contentAnnotation = null;
+                    window.contentPanel = null;
+                }
+            }
+
+            this.contentAnnotation = annotation;
+            this.contentPanel = panel;
+            this.contentColor = color;
+            AnnotationWindowPool.this.mover.invokeLater(new Runnable()
+            {
+
+                public void run()
+                {
+                    setContent(panel, color);
+                }
+            });
+
+            // The size changes, so it must be placed again.
+            AnnotationWindowPool.this.mover.invalidate(this);
+        }
+
+        private void setContent(JPanel panel, Color color)
+        {
+            JPanel content = (JPanel) this.getContentPane();
+            content.removeAll();
+            content.setBorder(new LineBorder(color != null ? color : Color.LIGHT_GRAY, 2));
+            if (panel != null)
+            {
+                content.add(panel);
+            }
+            this.pack();
+        }
+    }
+}
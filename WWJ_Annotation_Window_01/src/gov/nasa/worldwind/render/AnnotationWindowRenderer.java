@@ -6,24 +6,100 @@ import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.PickSupport;
+import gov.nasa.worldwind.util.ComponentMover;
 import gov.nasa.worldwind.util.Logging;
 
+import java.awt.Component;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import javax.media.opengl.GL;
 import java.util.logging.Level;
 
 /**
- * 
+ * AnnotationWindowRenderer renders AnnotationWindow objects. The windows are
+ * never moved or shown from the rendering thread: each frame their locations
+ * are collected in a ComponentMover and published as one batch, once all the
+ * windows have been rendered.
+ * <br/>
+ * Only the visible annotations with the highest priority, as many as windows
+ * has the AnnotationWindowPool, are shown. Between annotations with the same
+ * priority the nearest ones are preferred.
+ *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
 public class AnnotationWindowRenderer
 {
 
     private PickSupport pickSupport = new PickSupport();
+    private final ComponentMover mover;
+    private final AnnotationWindowPool pool;
+    private final ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+    private final ArrayList<AnnotationWindow> visible = new ArrayList<AnnotationWindow>();
+    // Higher priority first, then nearer first.
+    private static final Comparator<Candidate> PRIORITY_ORDER = new Comparator<Candidate>()
+    {
+
+        public int compare(Candidate a, Candidate b)
+        {
+            int pa = a.window.getPriority();
+            int pb = b.window.getPriority();
+            if (pa != pb)
+            {
+                return pa > pb ? -1 : 1;
+            }
+            return Double.compare(a.eyeDistance, b.eyeDistance);
+        }
+    };
+    // Rendered after all the windows, publishes the locations of the frame.
+    private final OrderedRenderable flusher = new OrderedRenderable()
+    {
+
+        public double getDistanceFromEye()
+        {
+            return 0;
+        }
+
+        public void render(DrawContext dc)
+        {
+            mover.flush();
+        }
 
-    public AnnotationWindowRenderer()
+        public void pick(DrawContext dc, java.awt.Point pickPoint)
+        {
+            mover.flush();
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     * @param wwd the canvas the windows are placed on.
+     */
+    public AnnotationWindowRenderer(Component wwd)
     {
+        this.mover = new ComponentMover(wwd);
+        this.pool = new AnnotationWindowPool(this.mover);
+    }
+
+    /**
+     * Returns the ComponentMover that places the windows.
+     * @return
+     */
+    public ComponentMover getComponentMover()
+    {
+        return mover;
+    }
+
+    /**
+     * Returns the pool of windows bound to the annotations.
+     * @return
+     */
+    public AnnotationWindowPool getWindowPool()
+    {
+        return pool;
     }
 
     private static boolean isWindowValid(AnnotationWindow window, boolean checkPosition)
@@ -49,7 +125,7 @@ public class AnnotationWindowRenderer
             return;
         }
 
-        this.drawOne(dc, window, windowPoint);
+        this.drawMany(dc, Collections.singletonList(window));
     }
 
     public void render(DrawContext dc, Iterable<AnnotationWindow> windows)
@@ -64,7 +140,7 @@ public class AnnotationWindowRenderer
             return;
         }
 
-        this.drawOne(dc, window, windowPoint);
+        this.drawMany(dc, Collections.singletonList(window));
     }
 
     private void drawMany(DrawContext dc, Iterable<AnnotationWindow> windows)
@@ -92,57 +168,87 @@ public class AnnotationWindowRenderer
 
         if (!iterator.hasNext())
         {
+            // Hide the windows shown in the previous frame.
+            this.mover.flush();
             return;
         }
 
+        // Collect the annotations inside the frustum.
+        this.candidates.clear();
         while (iterator.hasNext())
         {
             AnnotationWindow window = iterator.next();
-            if (!isWindowValid(window, true))
+            if (!window.isEnable() || !isWindowValid(window, true))
             {
                 continue;
             }
 
-            Point point = window.getPoint();
-            dc.addOrderedRenderable(new OrderedWindow(window, point, 1));
+            Vec4 cartpoint = dc.getGlobe().computePointFromPosition(window.getPosition());
+            if (!dc.getView().getFrustumInModelCoordinates().contains(cartpoint))
+            {
+                continue;
+            }
+
+            Candidate candidate = new Candidate();
+            candidate.window = window;
+            candidate.screenPoint = dc.getView().project(cartpoint);
+            candidate.eyeDistance = dc.getView().getEyePoint().distanceTo3(cartpoint);
+            this.candidates.add(candidate);
         }
-    }
 
-    private void drawOne(DrawContext dc, AnnotationWindow window, Vec4 windowPoint)
-    {
-        if (dc == null)
+        // Bind the windows to the ones with the highest priority.
+        Collections.sort(this.candidates, PRIORITY_ORDER);
+        this.visible.clear();
+        for (Candidate candidate : this.candidates)
         {
-            String msg = Logging.getMessage("nullValue.DrawContextIsNull");
-            Logging.logger().severe(msg);
-            throw new IllegalArgumentException(msg);
+            this.visible.add(candidate.window);
         }
+        int count = this.pool.bind(this.visible);
 
-        if (dc.getVisibleSector() == null)
+        Rectangle viewport = dc.getView().getViewport();
+        for (int i = 0; i < count; i++)
         {
-            return;
+            Candidate candidate = this.candidates.get(i);
+            AnnotationWindow window = candidate.window;
+            Point point = window.getPoint();
+            point.x = (int) candidate.screenPoint.x;
+            point.y = viewport.height - (int) candidate.screenPoint.y - 20;
+
+            // Set the window location.
+            this.mover.setTarget(this.pool.getWindow(window), point.x, point.y);
+
+            dc.addOrderedRenderable(new OrderedWindow(window, candidate.screenPoint, 1));
         }
+        this.candidates.clear();
+        this.visible.clear();
+        dc.addOrderedRenderable(this.flusher);
+    }
 
-        Point point = window.getPoint();
-        dc.addOrderedRenderable(new OrderedWindow(window, point, 1));
+    private static class Candidate
+    {
+
+        AnnotationWindow window;
+        Vec4 screenPoint;
+        double eyeDistance;
     }
 
     private class OrderedWindow implements OrderedRenderable, Locatable
     {
 
         AnnotationWindow window;
-        Point point;
+        Vec4 point;
         double eyeDistance;
         java.awt.Point pickPoint;
         Layer layer;
 
-        OrderedWindow(AnnotationWindow window, Point point, double eyeDistance)
+        OrderedWindow(AnnotationWindow window, Vec4 point, double eyeDistance)
         {
             this.window = window;
             this.point = point;
             this.eyeDistance = eyeDistance;
         }
 
-        OrderedWindow(AnnotationWindow window, Point point, java.awt.Point pickPoint, Layer layer, double eyeDistance)
+        OrderedWindow(AnnotationWindow window, Vec4 point, java.awt.Point pickPoint, Layer layer, double eyeDistance)
         {
             this.window = window;
             this.point = point;
@@ -288,6 +394,7 @@ public class AnnotationWindowRenderer
 
         AnnotationWindow window = uWindow.window;
         final Point screenPoint = window.getPoint();
+        Vec4 scrpoint = uWindow.point;
       
         javax.media.opengl.GL gl = dc.getGL();
         if (dc.isPickingMode())
@@ -297,8 +404,22 @@ public class AnnotationWindowRenderer
             this.pickSupport.addPickableObject(colorCode, window, uWindow.getPosition(), false);
             gl.glColor3ub((byte) color.getRed(), (byte) color.getGreen(), (byte) color.getBlue());
         }
+        else
+        {
+            float[] c = window.getColor().getRGBComponents(null);
+            gl.glColor3f(c[0], c[1], c[2]);
+        }
+
+        // Draw the triangle pointing the position from the window.
+        gl.glLineWidth(2);
+
+        gl.glBegin(GL.GL_TRIANGLES);
+
+        gl.glVertex2d(scrpoint.x, scrpoint.y);
+        gl.glVertex2d(scrpoint.x + 20, scrpoint.y + 20);
+        gl.glVertex2d(scrpoint.x, scrpoint.y + 20);
 
-        window.render(dc);
+        gl.glEnd();
 
         return screenPoint;
     }
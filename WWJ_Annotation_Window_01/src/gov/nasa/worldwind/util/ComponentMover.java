@@ -0,0 +1,298 @@
+package gov.nasa.worldwind.util;
+
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Point;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.SwingUtilities;
+
+/**
+ * ComponentMover moves and shows Swing components from the rendering thread
+ * without touching them outside the event dispatch thread.
+ * <br/>
+ * During a frame the renderer sets where every component must be, in
+ * coordinates of a reference component (usually the WorldWindowGLCanvas),
+ * placing the bottom left corner of the component at the given point.
+ * 'flush' publishes the changes of the frame as one batch that is applied
+ * with a single EventQueue.invokeLater: only the components whose
+ * visibility changed, or that moved more than the threshold, are touched.
+ * Components not set during a frame are hidden.
+ * <br/>
+ * Windows are placed in screen coordinates and the rest of components in
+ * coordinates of their parent, converted in the event dispatch thread.
+ * Tasks given to 'invokeLater' run in the same batch, before the components
+ * are moved, so they can change the contents of a component being placed.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class ComponentMover
+{
+
+    public static final int DEFAULT_THRESHOLD = 1;
+
+    private static class Target
+    {
+
+        int x;
+        int y;
+        boolean visible;
+        boolean touched;
+        // False when the component must be placed again.
+        boolean valid;
+    }
+    private final Component reference;
+    private int threshold = DEFAULT_THRESHOLD;
+    // Rendering thread state: the last published target of every component.
+    private final HashMap<Component, Target> published = new HashMap<Component, Target>();
+    // Changes waiting to be applied in the event dispatch thread.
+    private HashMap<Component, Target> queued = new HashMap<Component, Target>();
+    private ArrayList<Runnable> queuedTasks = new ArrayList<Runnable>();
+    private boolean applyScheduled = false;
+    private final Runnable applyTask = new Runnable()
+    {
+
+        public void run()
+        {
+            apply();
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     * @param reference component whose coordinates are used by 'setTarget'.
+     */
+    public ComponentMover(Component reference)
+    {
+        if (reference == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.reference = reference;
+    }
+
+    public int getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Sets the distance in pixels a component must move to be moved.
+     * @param threshold
+     */
+    public void setThreshold(int threshold)
+    {
+        if (threshold < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets where a component must be shown in this frame.
+     * @param component
+     * @param x left of the component, in reference coordinates.
+     * @param y bottom of the component, in reference coordinates.
+     */
+    public synchronized void setTarget(Component component, int x, int y)
+    {
+        Target target = this.published.get(component);
+        if (target == null)
+        {
+            target = new Target();
+            target.visible = false;
+            this.published.put(component, target);
+        }
+
+        target.touched = true;
+        if (target.valid && target.visible && Math.abs(target.x - x) <= this.threshold && Math.abs(target.y - y) <= this.threshold)
+        {
+            return;
+        }
+
+        target.x = x;
+        target.y = y;
+        target.visible = true;
+        this.queue(component, target);
+    }
+
+    /**
+     * Hides a component in this frame.
+     * @param component
+     */
+    public synchronized void hide(Component component)
+    {
+        Target target = this.published.get(component);
+        if (target == null)
+        {
+            return;
+        }
+
+        target.touched = true;
+        if (!target.valid || target.visible)
+        {
+            target.visible = false;
+            this.queue(component, target);
+        }
+    }
+
+    /**
+     * Runs a task in the event dispatch thread with the next batch, before
+     * the components are moved.
+     * @param task
+     */
+    public synchronized void invokeLater(Runnable task)
+    {
+        if (task == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.queuedTasks.add(task);
+    }
+
+    /**
+     * Hides all the components, for example when the layer is disabled.
+     */
+    public synchronized void hideAll()
+    {
+        for (Map.Entry<Component, Target> entry : this.published.entrySet())
+        {
+            if (entry.getValue().visible)
+            {
+                entry.getValue().visible = false;
+                this.queue(entry.getKey(), entry.getValue());
+            }
+        }
+        this.flush();
+    }
+
+    /**
+     * Forces all the components to be placed again in the next frame. Must be
+     * called when the reference component moves on the screen.
+     */
+    public synchronized void invalidate()
+    {
+        for (Target target : this.published.values())
+        {
+            target.valid = false;
+        }
+    }
+
+    /**
+     * Forces a component to be placed again in the next frame, for example
+     * when its size changes.
+     * @param component
+     */
+    public synchronized void invalidate(Component component)
+    {
+        Target target = this.published.get(component);
+        if (target != null)
+        {
+            target.valid = false;
+        }
+    }
+
+    /**
+     * Hides the components not set in this frame and publishes the changes.
+     */
+    public synchronized void flush()
+    {
+        for (Map.Entry<Component, Target> entry : this.published.entrySet())
+        {
+            Target target = entry.getValue();
+            if (!target.touched && target.visible)
+            {
+                target.visible = false;
+                this.queue(entry.getKey(), target);
+            }
+            target.touched = false;
+        }
+
+        if ((!this.queued.isEmpty() || !this.queuedTasks.isEmpty()) && !this.applyScheduled)
+        {
+            this.applyScheduled = true;
+            EventQueue.invokeLater(this.applyTask);
+        }
+    }
+
+    /**
+     * Removes a component, hiding it.
+     * @param component
+     */
+    public synchronized void remove(Component component)
+    {
+        Target target = this.published.remove(component);
+        if (target != null && target.visible)
+        {
+            target.visible = false;
+            this.queue(component, target);
+        }
+    }
+
+    private void queue(Component component, Target target)
+    {
+        target.valid = true;
+        Target copy = new Target();
+        copy.x = target.x;
+        copy.y = target.y;
+        copy.visible = target.visible;
+        this.queued.put(component, copy);
+    }
+
+    /**
+     * Applies the queued changes, in the event dispatch thread.
+     */
+    private void apply()
+    {
+        HashMap<Component, Target> changes;
+        ArrayList<Runnable> tasks;
+        synchronized (this)
+        {
+            changes = this.queued;
+            tasks = this.queuedTasks;
+            this.queued = new HashMap<Component, Target>();
+            this.queuedTasks = new ArrayList<Runnable>();
+            this.applyScheduled = false;
+        }
+
+        for (Runnable task : tasks)
+        {
+            task.run();
+        }
+
+        for (Map.Entry<Component, Target> entry : changes.entrySet())
+        {
+            Component component = entry.getKey();
+            Target target = entry.getValue();
+            if (!target.visible)
+            {
+                component.setVisible(false);
+                continue;
+            }
+
+            Point point = new Point(target.x, target.y - component.getHeight());
+            if (component instanceof Window)
+            {
+                SwingUtilities.convertPointToScreen(point, this.reference);
+            }
+            else if (component.getParent() != null)
+            {
+                point = SwingUtilities.convertPoint(this.reference, point, component.getParent());
+            }
+            component.setLocation(point);
+            component.setVisible(true);
+        }
+    }
+}
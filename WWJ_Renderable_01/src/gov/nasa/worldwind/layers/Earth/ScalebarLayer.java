@@ -6,7 +6,6 @@ All Rights Reserved.
  */
 package gov.nasa.worldwind.layers.Earth;
 
-import com.sun.opengl.util.j2d.TextRenderer;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.layers.RenderableLayer;
 import gov.nasa.worldwind.render.*;
@@ -15,7 +14,6 @@ import gov.nasa.worldwind.util.Logging;
 
 import javax.media.opengl.GL;
 import java.awt.*;
-import java.awt.geom.*;
 
 /**
  * Renders a scalebar graphic in a screen corner
@@ -48,7 +46,11 @@ public class ScalebarLayer extends RenderableLayer
     private Font defaultFont = Font.decode("Arial-12-PLAIN");
     private double toViewportScale = 0.2;
     private Vec4 locationCenter = null;
-    private TextRenderer textRenderer = null;
+    // The label is rasterized once and only formatted when the division changes.
+    private final LabelCache labelCache = new LabelCache(8);
+    private double labelDivSize = -1;
+    private String labelUnit = null;
+    private String label = null;
 
     // Draw it as ordered with an eye distance of 0 so that it shows up in front of most other things.
     // TODO: Add general support for this common pattern.
@@ -371,7 +373,7 @@ public class ScalebarLayer extends RenderableLayer
 
                 // Rounded division size
                 int pot = (int) Math.floor(Math.log10(scaleSize));
-                int digit = Integer.parseInt(scaleSize.toString().substring(0, 1));
+                int digit = (int) Math.floor(scaleSize / Math.pow(10, pot) + 1e-9);
                 double divSize = digit * Math.pow(10, pot);
                 if (digit >= 5)
                 {
@@ -397,11 +399,16 @@ public class ScalebarLayer extends RenderableLayer
                 this.drawScale(dc, divWidth, height);
 
                 // Draw label
-                String label = String.format("%.0f ", divSize) + unitLabel;
+                if (divSize != this.labelDivSize || !unitLabel.equals(this.labelUnit))
+                {
+                    this.label = String.format("%.0f ", divSize) + unitLabel;
+                    this.labelDivSize = divSize;
+                    this.labelUnit = unitLabel;
+                }
                 gl.glLoadIdentity();
                 gl.glDisable(GL.GL_CULL_FACE);
-                drawLabel(label,
-                        locationSW.add3(new Vec4(divWidth * scale / 2 + (width - divWidth) / 2, height * scale, 0)));
+                drawLabel(dc, this.label,
+                        locationSW.x() + divWidth * scale / 2 + (width - divWidth) / 2, locationSW.y() + height * scale);
 
             }
         }
@@ -441,39 +448,26 @@ public class ScalebarLayer extends RenderableLayer
     }
 
     // Draw the scale label
-    private void drawLabel(String text, Vec4 screenPoint)
+    private void drawLabel(DrawContext dc, String text, double x, double y)
     {
-        if (this.textRenderer == null)
-        {
-            this.textRenderer = new TextRenderer(this.defaultFont, true, true);
-        }
-
-        Rectangle2D nameBound = this.textRenderer.getBounds(text);
-        int x = (int) (screenPoint.x() - nameBound.getWidth() / 2d);
-        int y = (int) screenPoint.y();
-
-        this.textRenderer.begin3DRendering();
-
-        this.textRenderer.setColor(this.getBackgroundColor(this.color));
-        this.textRenderer.draw(text, x + 1, y - 1);
-        this.textRenderer.setColor(this.color);
-        this.textRenderer.draw(text, x, y);
-
-        this.textRenderer.end3DRendering();
-
+        LabelCache.Label label = this.labelCache.getLabel(text, this.defaultFont, this.color,
+                this.getBackgroundColor(this.color));
+        this.labelCache.draw(dc, label, x - label.getWidth() / 2d, y, this.getOpacity());
     }
     private final float[] compArray = new float[4];
+    private static final Color DARK_BACKGROUND = new Color(0, 0, 0, 0.7f);
+    private static final Color LIGHT_BACKGROUND = new Color(1, 1, 1, 0.7f);
     // Compute background color for best contrast
     private Color getBackgroundColor(Color color)
     {
         Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), compArray);
         if (compArray[2] > 0.5)
         {
-            return new Color(0, 0, 0, 0.7f);
+            return DARK_BACKGROUND;
         }
         else
         {
-            return new Color(1, 1, 1, 0.7f);
+            return LIGHT_BACKGROUND;
         }
     }
 
@@ -562,11 +556,7 @@ public class ScalebarLayer extends RenderableLayer
 
     public void dispose()
     {
-        if (this.textRenderer != null)
-        {
-            this.textRenderer.dispose();
-            this.textRenderer = null;
-        }
+        this.labelCache.dispose();
     }
 
     @Override
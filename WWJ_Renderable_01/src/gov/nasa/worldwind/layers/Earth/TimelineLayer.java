@@ -1,13 +1,13 @@
 package gov.nasa.worldwind.layers.Earth;
 
-import com.sun.opengl.util.j2d.TextRenderer;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.layers.RenderableLayer;
 import gov.nasa.worldwind.render.*;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.Temporality;
 import javax.media.opengl.GL;
 import java.awt.*;
-import java.awt.geom.*;
+import java.util.Date;
 
 /**
  * Renders a timeline bar graphic in the screen.
@@ -28,7 +28,16 @@ public class TimelineLayer extends RenderableLayer
     private int borderWidth = 20;
     private String position = NORTH;
     private Font defaultFont = Font.decode("Arial-12-PLAIN");
-    private TextRenderer textRenderer = null;
+    // Labels are rasterized once and their text only formatted when it changes.
+    private final LabelCache labelCache = new LabelCache();
+    private boolean labelsValid = false;
+    private long labelViewStart;
+    private long labelViewEnd;
+    private long labelCursorStart;
+    private long labelCursorEnd;
+    private String startLabel;
+    private String endLabel;
+    private String cursorLabel;
     // Draw it as ordered with an eye distance of 0 so that it shows up in front of most other things.
     private OrderedIcon orderedImage = new OrderedIcon();
 
@@ -279,19 +288,12 @@ public class TimelineLayer extends RenderableLayer
             gl.glDisable(GL.GL_CULL_FACE);
 
             // Draw view temporality
-            String start = dc.getView().getTemporality().getInitialTimeStamp().getTime().toString();
-            String end = dc.getView().getTemporality().getFinalTimeStamp().getTime().toString();
-            Vec4 startpos = new Vec4(locationSW.x(), locationSW.y() + height, locationSW.z());
-            drawLabel(start, startpos);
-            Vec4 endpos = new Vec4(locationSW.x() + width, locationSW.y() + height, locationSW.z());
-            drawLabel(end, endpos);
+            this.updateLabels(dc.getView().getTemporality(), dc.getView().getTemporalityCursor());
+            drawLabel(dc, this.startLabel, locationSW.x(), locationSW.y() + height);
+            drawLabel(dc, this.endLabel, locationSW.x() + width, locationSW.y() + height);
 
             // Draw cursor label
-            String cstart = dc.getView().getTemporalityCursor().getInitialTimeStamp().getTime().toString();
-            String cend = dc.getView().getTemporalityCursor().getFinalTimeStamp().getTime().toString();
-            String cursorstring = cstart + " - " + cend;
-            Vec4 cpos = new Vec4(locationSW.x() + width / 2, locationSW.y(), locationSW.z());
-            drawCursorLabel(cursorstring, cpos);
+            drawCursorLabel(dc, this.cursorLabel, locationSW.x() + width / 2, locationSW.y());
         }
         finally
         {
@@ -351,48 +353,48 @@ public class TimelineLayer extends RenderableLayer
         gl.glEnd();
     }
 
-    private void drawLabel(String text, Vec4 screenPoint)
+    private void updateLabels(Temporality view, Temporality cursor)
     {
-        if (this.textRenderer == null)
+        long viewStart = view.getInitialTimeStamp().getTimeInMillis();
+        long viewEnd = view.getFinalTimeStamp().getTimeInMillis();
+        long cursorStart = cursor.getInitialTimeStamp().getTimeInMillis();
+        long cursorEnd = cursor.getFinalTimeStamp().getTimeInMillis();
+        if (this.labelsValid && viewStart == this.labelViewStart && viewEnd == this.labelViewEnd
+                && cursorStart == this.labelCursorStart && cursorEnd == this.labelCursorEnd)
         {
-            this.textRenderer = new TextRenderer(this.defaultFont, true, true);
+            return;
         }
 
-        Rectangle2D nameBound = this.textRenderer.getBounds(text);
-        int x = (int) (screenPoint.x() - nameBound.getWidth() / 2d);
-        int y = (int) screenPoint.y();
-
-        this.textRenderer.begin3DRendering();
-
-        this.textRenderer.setColor(this.getBackgroundColor(this.color));
-        this.textRenderer.draw(text, x + 1, y - 1);
-        this.textRenderer.setColor(this.color);
-        this.textRenderer.draw(text, x, y);
-
-        this.textRenderer.end3DRendering();
-    }
-
-    private void drawCursorLabel(String text, Vec4 screenPoint)
-    {
-        if (this.textRenderer == null)
+        if (!this.labelsValid || viewStart != this.labelViewStart || viewEnd != this.labelViewEnd)
         {
-            this.textRenderer = new TextRenderer(this.defaultFont, true, true);
+            this.startLabel = new Date(viewStart).toString();
+            this.endLabel = new Date(viewEnd).toString();
         }
+        this.cursorLabel = new Date(cursorStart) + " - " + new Date(cursorEnd);
 
-        Rectangle2D nameBound = this.textRenderer.getBounds(text);
-        int x = (int) (screenPoint.x() - nameBound.getWidth() / 2d);
-        int y = (int) (screenPoint.y() - nameBound.getHeight());
-
-        this.textRenderer.begin3DRendering();
+        this.labelsValid = true;
+        this.labelViewStart = viewStart;
+        this.labelViewEnd = viewEnd;
+        this.labelCursorStart = cursorStart;
+        this.labelCursorEnd = cursorEnd;
+    }
 
-        this.textRenderer.setColor(this.getBackgroundColor(this.color));
-        this.textRenderer.draw(text, x + 1, y - 1);
-        this.textRenderer.setColor(this.color);
-        this.textRenderer.draw(text, x, y);
+    private void drawLabel(DrawContext dc, String text, double x, double y)
+    {
+        LabelCache.Label label = this.labelCache.getLabel(text, this.defaultFont, this.color,
+                this.getBackgroundColor(this.color));
+        this.labelCache.draw(dc, label, x - label.getWidth() / 2d, y, this.getOpacity());
+    }
 
-        this.textRenderer.end3DRendering();
+    private void drawCursorLabel(DrawContext dc, String text, double x, double y)
+    {
+        LabelCache.Label label = this.labelCache.getLabel(text, this.defaultFont, this.color,
+                this.getBackgroundColor(this.color));
+        this.labelCache.draw(dc, label, x - label.getWidth() / 2d, y - label.getHeight(), this.getOpacity());
     }
     private final float[] compArray = new float[4];
+    private static final Color DARK_BACKGROUND = new Color(0, 0, 0, 0.7f);
+    private static final Color LIGHT_BACKGROUND = new Color(1, 1, 1, 0.7f);
 
     // Compute background color for best contrast
     private Color getBackgroundColor(Color color)
@@ -400,11 +402,11 @@ public class TimelineLayer extends RenderableLayer
         Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), compArray);
         if (compArray[2] > 0.5)
         {
-            return new Color(0, 0, 0, 0.7f);
+            return DARK_BACKGROUND;
         }
         else
         {
-            return new Color(1, 1, 1, 0.7f);
+            return LIGHT_BACKGROUND;
         }
     }
 
@@ -429,11 +431,7 @@ public class TimelineLayer extends RenderableLayer
 
     public void dispose()
     {
-        if (this.textRenderer != null)
-        {
-            this.textRenderer.dispose();
-            this.textRenderer = null;
-        }
+        this.labelCache.dispose();
     }
 
     @Override
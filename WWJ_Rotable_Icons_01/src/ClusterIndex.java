@@ -0,0 +1,437 @@
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.Sector;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * ClusterIndex groups located objects in clusters for a set of zoom levels,
+ * so a layer can render one marker per cluster instead of every object.
+ * <br/>
+ * Each level divides the globe in a grid of cells half the size of the cells
+ * of the previous level, and every non-empty cell is a cluster with the
+ * objects inside it. The clusters of all the levels are kept up to date when
+ * objects are added, moved or removed, updating only the cells that change,
+ * so asking for the clusters of a level costs as much as the number of
+ * clusters returned.
+ * <br/>
+ * The index is thread safe.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class ClusterIndex<T>
+{
+
+    /**
+     * A group of objects inside a cell of a level.
+     */
+    public class Cluster
+    {
+
+        private final int level;
+        private final int row;
+        private final int col;
+        private final ArrayList<Member> members = new ArrayList<Member>();
+        private double sumLat = 0;
+        private double sumLon = 0;
+
+        private Cluster(int level, int row, int col)
+        {
+            this.level = level;
+            this.row = row;
+            this.col = col;
+        }
+
+        public int getLevel()
+        {
+            return level;
+        }
+
+        /**
+         * Gets the number of objects in the cluster.
+         * @return
+         */
+        public int getCount()
+        {
+            synchronized (ClusterIndex.this)
+            {
+                return members.size();
+            }
+        }
+
+        /**
+         * Gets the mean latitude of the objects in the cluster.
+         * @return latitude in degrees.
+         */
+        public double getLatitude()
+        {
+            synchronized (ClusterIndex.this)
+            {
+                return members.isEmpty() ? 0 : sumLat / members.size();
+            }
+        }
+
+        /**
+         * Gets the mean longitude of the objects in the cluster.
+         * @return longitude in degrees.
+         */
+        public double getLongitude()
+        {
+            synchronized (ClusterIndex.this)
+            {
+                return members.isEmpty() ? 0 : sumLon / members.size();
+            }
+        }
+
+        /**
+         * Gets the cell covered by the cluster.
+         * @return
+         */
+        public Sector getSector()
+        {
+            double size = cellSizes[level];
+            return Sector.fromDegrees(-90 + row * size, Math.min(90, -90 + (row + 1) * size),
+                    -180 + col * size, Math.min(180, -180 + (col + 1) * size));
+        }
+
+        /**
+         * Adds to 'result' the objects in the cluster.
+         * @param result
+         * @return the 'result' collection.
+         */
+        public Collection<T> getMembers(Collection<T> result)
+        {
+            synchronized (ClusterIndex.this)
+            {
+                for (int i = 0; i < members.size(); i++)
+                {
+                    result.add(members.get(i).value);
+                }
+                return result;
+            }
+        }
+    }
+
+    private class Member
+    {
+
+        final T value;
+        double lat;
+        double lon;
+        // Cluster of every level and position of the member in it.
+        final ArrayList<Cluster> clusters;
+        final int[] slots;
+
+        Member(T value, int numLevels)
+        {
+            this.value = value;
+            this.clusters = new ArrayList<Cluster>(numLevels);
+            this.slots = new int[numLevels];
+        }
+    }
+    public static final double DEFAULT_TOP_CELL_SIZE = 45;
+    public static final int DEFAULT_NUM_LEVELS = 14;
+    private final double[] cellSizes;
+    private final int[] numRows;
+    private final int[] numCols;
+    private final ArrayList<HashMap<Long, Cluster>> levels;
+    private final IdentityHashMap<T, Member> members = new IdentityHashMap<T, Member>();
+
+    /**
+     * Creates a new index with the default levels.
+     */
+    public ClusterIndex()
+    {
+        this(DEFAULT_TOP_CELL_SIZE, DEFAULT_NUM_LEVELS);
+    }
+
+    /**
+     * Creates a new index.
+     * @param topCellSize size of the cells of the first level, in degrees.
+     * @param numLevels number of levels.
+     */
+    public ClusterIndex(double topCellSize, int numLevels)
+    {
+        if (topCellSize <= 0 || topCellSize > 180 || numLevels < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cellSizes = new double[numLevels];
+        this.numRows = new int[numLevels];
+        this.numCols = new int[numLevels];
+        this.levels = new ArrayList<HashMap<Long, Cluster>>(numLevels);
+        for (int level = 0; level < numLevels; level++)
+        {
+            this.cellSizes[level] = topCellSize / (1 << level);
+            this.numRows[level] = (int) Math.ceil(180 / this.cellSizes[level]);
+            this.numCols[level] = (int) Math.ceil(360 / this.cellSizes[level]);
+            this.levels.add(new HashMap<Long, Cluster>());
+        }
+    }
+
+    public int getNumLevels()
+    {
+        return cellSizes.length;
+    }
+
+    /**
+     * Gets the size of the cells of a level.
+     * @param level
+     * @return size in degrees.
+     */
+    public double getCellSize(int level)
+    {
+        return cellSizes[level];
+    }
+
+    /**
+     * Returns the finest level whose cells are at least of the given size.
+     * @param size cluster size in degrees.
+     * @return the level, or -1 if the size is less than half the cells of
+     * the finest level, meaning the objects don't need to be clustered.
+     */
+    public int getLevel(double size)
+    {
+        for (int level = cellSizes.length - 1; level >= 0; level--)
+        {
+            if (cellSizes[level] >= size)
+            {
+                return level == cellSizes.length - 1 && cellSizes[level] > size * 2 ? -1 : level;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds an object, or moves it if it's already contained.
+     * @param value the object.
+     * @param lat latitude in degrees.
+     * @param lon longitude in degrees.
+     */
+    public synchronized void add(T value, double lat, double lon)
+    {
+        if (value == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Member member = members.get(value);
+        if (member == null)
+        {
+            member = new Member(value, cellSizes.length);
+            member.lat = lat;
+            member.lon = lon;
+            for (int level = 0; level < cellSizes.length; level++)
+            {
+                member.clusters.add(null);
+                this.addToCluster(member, level);
+            }
+            members.put(value, member);
+            return;
+        }
+
+        double oldLat = member.lat;
+        double oldLon = member.lon;
+        for (int level = 0; level < cellSizes.length; level++)
+        {
+            Cluster cluster = member.clusters.get(level);
+            if (cluster.row == this.row(level, lat) && cluster.col == this.col(level, lon))
+            {
+                // Still in the same cell, only its mean position changes.
+                cluster.sumLat += lat - oldLat;
+                cluster.sumLon += lon - oldLon;
+            } else
+            {
+                member.lat = oldLat;
+                member.lon = oldLon;
+                this.removeFromCluster(member, level);
+                member.lat = lat;
+                member.lon = lon;
+                this.addToCluster(member, level);
+            }
+        }
+        member.lat = lat;
+        member.lon = lon;
+    }
+
+    /**
+     * Removes an object.
+     * @param value
+     * @return true if the object was contained.
+     */
+    public synchronized boolean remove(T value)
+    {
+        Member member = members.remove(value);
+        if (member == null)
+        {
+            return false;
+        }
+
+        for (int level = 0; level < cellSizes.length; level++)
+        {
+            this.removeFromCluster(member, level);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all the objects.
+     */
+    public synchronized void clear()
+    {
+        members.clear();
+        for (int level = 0; level < levels.size(); level++)
+        {
+            levels.get(level).clear();
+        }
+    }
+
+    public synchronized boolean contains(T value)
+    {
+        return members.containsKey(value);
+    }
+
+    public synchronized int size()
+    {
+        return members.size();
+    }
+
+    /**
+     * Adds to 'result' all the objects.
+     * @param result
+     * @return the 'result' collection.
+     */
+    public synchronized Collection<T> getAll(Collection<T> result)
+    {
+        result.addAll(members.keySet());
+        return result;
+    }
+
+    /**
+     * Adds to 'result' the clusters of a level whose cell intersects with
+     * the given sector.
+     * @param level
+     * @param sector the sector, or null to get all the clusters of the level.
+     * @param result
+     * @return the 'result' collection.
+     */
+    public synchronized Collection<Cluster> getClusters(int level, Sector sector, Collection<Cluster> result)
+    {
+        if (level < 0 || level >= cellSizes.length)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        HashMap<Long, Cluster> clusters = levels.get(level);
+        if (sector == null)
+        {
+            result.addAll(clusters.values());
+            return result;
+        }
+
+        int minRow = this.row(level, sector.getMinLatitude().degrees);
+        int maxRow = this.row(level, sector.getMaxLatitude().degrees);
+        int minCol = this.col(level, sector.getMinLongitude().degrees);
+        int maxCol = this.col(level, sector.getMaxLongitude().degrees);
+        long numCells = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+
+        // Visit the cells of the sector or the clusters, whatever is less.
+        if (numCells > clusters.size())
+        {
+            for (Cluster cluster : clusters.values())
+            {
+                if (cluster.row >= minRow && cluster.row <= maxRow && cluster.col >= minCol && cluster.col <= maxCol)
+                {
+                    result.add(cluster);
+                }
+            }
+            return result;
+        }
+
+        for (int r = minRow; r <= maxRow; r++)
+        {
+            for (int c = minCol; c <= maxCol; c++)
+            {
+                Cluster cluster = clusters.get(key(r, c));
+                if (cluster != null)
+                {
+                    result.add(cluster);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addToCluster(Member member, int level)
+    {
+        int r = this.row(level, member.lat);
+        int c = this.col(level, member.lon);
+        HashMap<Long, Cluster> clusters = levels.get(level);
+        Long key = key(r, c);
+        Cluster cluster = clusters.get(key);
+        if (cluster == null)
+        {
+            cluster = new Cluster(level, r, c);
+            clusters.put(key, cluster);
+        }
+
+        member.clusters.set(level, cluster);
+        member.slots[level] = cluster.members.size();
+        cluster.members.add(member);
+        cluster.sumLat += member.lat;
+        cluster.sumLon += member.lon;
+    }
+
+    private void removeFromCluster(Member member, int level)
+    {
+        Cluster cluster = member.clusters.get(level);
+        int slot = member.slots[level];
+
+        // Move the last member to the removed slot.
+        int last = cluster.members.size() - 1;
+        Member moved = cluster.members.remove(last);
+        if (slot != last)
+        {
+            cluster.members.set(slot, moved);
+            moved.slots[level] = slot;
+        }
+
+        if (cluster.members.isEmpty())
+        {
+            levels.get(level).remove(key(cluster.row, cluster.col));
+            cluster.sumLat = 0;
+            cluster.sumLon = 0;
+        } else
+        {
+            cluster.sumLat -= member.lat;
+            cluster.sumLon -= member.lon;
+        }
+        member.clusters.set(level, null);
+    }
+
+    private int row(int level, double lat)
+    {
+        int r = (int) Math.floor((lat + 90) / cellSizes[level]);
+        return r < 0 ? 0 : (r >= numRows[level] ? numRows[level] - 1 : r);
+    }
+
+    private int col(int level, double lon)
+    {
+        int c = (int) Math.floor((lon + 180) / cellSizes[level]);
+        return c < 0 ? 0 : (c >= numCols[level] ? numCols[level] - 1 : c);
+    }
+
+    private static Long key(int row, int col)
+    {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
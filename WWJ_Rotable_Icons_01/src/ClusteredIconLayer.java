@@ -0,0 +1,455 @@
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.IconRenderer;
+import gov.nasa.worldwind.render.Pedestal;
+import gov.nasa.worldwind.render.UserFacingIcon;
+import gov.nasa.worldwind.render.WWIcon;
+import gov.nasa.worldwind.util.ClusterIndex;
+import gov.nasa.worldwind.util.Logging;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * ClusteredIconLayer renders its icons grouped in clusters. The icons closer
+ * on screen than the cluster radius are drawn as a single marker icon with
+ * the number of icons as tooltip, so render cost depends on the clusters on
+ * screen instead of the number of icons.
+ * <br/>
+ * The clusters are kept by a ClusterIndex for all the zoom levels. Every
+ * frame the layer chooses the level that matches the cluster radius at the
+ * current eye altitude and only visits the clusters inside the visible
+ * sector. When the view is close enough the icons aren't clustered.
+ * <br/>
+ * Icons must be moved with 'moveIcon' (or 'updateIcon' after changing their
+ * position) so their clusters are updated. Picking a cluster returns its
+ * ClusterIcon, which can be expanded with 'expandCluster' to show the icons
+ * it contains.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class ClusteredIconLayer extends AbstractLayer
+{
+
+    /**
+     * Marker icon rendered for a cluster.
+     */
+    public static class ClusterIcon extends UserFacingIcon
+    {
+
+        private final ClusterIndex<WWIcon>.Cluster cluster;
+        private int count = -1;
+        private double lat;
+        private double lon;
+
+        private ClusterIcon(String imageSource, ClusterIndex<WWIcon>.Cluster cluster)
+        {
+            super(imageSource, new Position(Angle.fromDegrees(cluster.getLatitude()),
+                    Angle.fromDegrees(cluster.getLongitude()), 0));
+            this.cluster = cluster;
+            this.setShowToolTip(true);
+        }
+
+        /**
+         * Gets the cluster represented by the icon.
+         * @return
+         */
+        public ClusterIndex<WWIcon>.Cluster getCluster()
+        {
+            return cluster;
+        }
+
+        /**
+         * Gets the icons in the cluster.
+         * @return
+         */
+        public Collection<WWIcon> getIcons()
+        {
+            return cluster.getMembers(new ArrayList<WWIcon>());
+        }
+
+        private void update()
+        {
+            int c = cluster.getCount();
+            if (c != this.count)
+            {
+                this.count = c;
+                this.setToolTipText(String.valueOf(c));
+            }
+
+            double la = cluster.getLatitude();
+            double lo = cluster.getLongitude();
+            if (la != this.lat || lo != this.lon)
+            {
+                this.lat = la;
+                this.lon = lo;
+                this.setPosition(new Position(Angle.fromDegrees(la), Angle.fromDegrees(lo), 0));
+            }
+        }
+    }
+    public static final int DEFAULT_CLUSTER_RADIUS = 48;
+    public static final int DEFAULT_MIN_CLUSTER_SIZE = 2;
+    private final ClusterIndex<WWIcon> index;
+    private final IconRenderer iconRenderer = new IconRenderer();
+    private final ArrayList<WWIcon> visibleIcons = new ArrayList<WWIcon>();
+    private final ArrayList<ClusterIndex<WWIcon>.Cluster> visibleClusters = new ArrayList<ClusterIndex<WWIcon>.Cluster>();
+    private final IdentityHashMap<ClusterIndex<WWIcon>.Cluster, Object> expanded =
+            new IdentityHashMap<ClusterIndex<WWIcon>.Cluster, Object>();
+    private IdentityHashMap<ClusterIndex<WWIcon>.Cluster, ClusterIcon> markers =
+            new IdentityHashMap<ClusterIndex<WWIcon>.Cluster, ClusterIcon>();
+    private IdentityHashMap<ClusterIndex<WWIcon>.Cluster, ClusterIcon> oldMarkers =
+            new IdentityHashMap<ClusterIndex<WWIcon>.Cluster, ClusterIcon>();
+    private String clusterImageSource;
+    private int clusterRadius = DEFAULT_CLUSTER_RADIUS;
+    private int minClusterSize = DEFAULT_MIN_CLUSTER_SIZE;
+    private int currentLevel = -1;
+
+    /**
+     * Creates a new layer with the default cluster levels.
+     * @param clusterImageSource path of the image used for cluster markers.
+     */
+    public ClusteredIconLayer(String clusterImageSource)
+    {
+        this(clusterImageSource, new ClusterIndex<WWIcon>());
+    }
+
+    /**
+     * Creates a new layer.
+     * @param clusterImageSource path of the image used for cluster markers.
+     * @param index the index used to cluster the icons, must be empty.
+     */
+    public ClusteredIconLayer(String clusterImageSource, ClusterIndex<WWIcon> index)
+    {
+        if (clusterImageSource == null || index == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.clusterImageSource = clusterImageSource;
+        this.index = index;
+        this.setName("Clustered Icons");
+    }
+
+    /**
+     * Adds an icon to the layer.
+     * @param icon
+     */
+    public void addIcon(WWIcon icon)
+    {
+        if (icon == null || icon.getPosition() == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.index.add(icon, icon.getPosition().getLatitude().degrees, icon.getPosition().getLongitude().degrees);
+    }
+
+    /**
+     * Removes an icon from the layer.
+     * @param icon
+     */
+    public void removeIcon(WWIcon icon)
+    {
+        if (icon == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.index.remove(icon);
+    }
+
+    /**
+     * Removes all the icons.
+     */
+    public synchronized void removeAllIcons()
+    {
+        this.index.clear();
+        this.expanded.clear();
+    }
+
+    /**
+     * Sets the position of an icon of the layer and updates its clusters.
+     * @param icon
+     * @param position
+     */
+    public void moveIcon(WWIcon icon, Position position)
+    {
+        if (icon == null || position == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        icon.setPosition(position);
+        this.updateIcon(icon);
+    }
+
+    /**
+     * Updates the clusters of an icon whose position has changed.
+     * @param icon
+     */
+    public void updateIcon(WWIcon icon)
+    {
+        if (icon == null || icon.getPosition() == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.index.contains(icon))
+        {
+            this.addIcon(icon);
+        }
+    }
+
+    /**
+     * Returns a collection with the icons of the layer.
+     * @return
+     */
+    public Collection<WWIcon> getIcons()
+    {
+        return this.index.getAll(new ArrayList<WWIcon>());
+    }
+
+    public ClusterIndex<WWIcon> getClusterIndex()
+    {
+        return index;
+    }
+
+    public Pedestal getPedestal()
+    {
+        return this.iconRenderer.getPedestal();
+    }
+
+    public void setPedestal(Pedestal pedestal)
+    {
+        this.iconRenderer.setPedestal(pedestal);
+    }
+
+    public boolean isBatchRendering()
+    {
+        return this.iconRenderer.isBatchRendering();
+    }
+
+    /**
+     * Sets if the icons and clusters are drawn in batches, grouped by
+     * texture, instead of one by one.
+     * @param batchRendering
+     * @see IconRenderer#setBatchRendering(boolean)
+     */
+    public void setBatchRendering(boolean batchRendering)
+    {
+        this.iconRenderer.setBatchRendering(batchRendering);
+    }
+
+    public String getClusterImageSource()
+    {
+        return clusterImageSource;
+    }
+
+    /**
+     * Sets the image used for cluster markers. Existing markers keep their
+     * image.
+     * @param clusterImageSource
+     */
+    public void setClusterImageSource(String clusterImageSource)
+    {
+        if (clusterImageSource == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.clusterImageSource = clusterImageSource;
+    }
+
+    /**
+     * Gets the screen distance below which icons are clustered.
+     * @return radius in pixels.
+     */
+    public int getClusterRadius()
+    {
+        return clusterRadius;
+    }
+
+    /**
+     * Sets the screen distance below which icons are clustered.
+     * @param clusterRadius radius in pixels.
+     */
+    public void setClusterRadius(int clusterRadius)
+    {
+        if (clusterRadius <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.clusterRadius = clusterRadius;
+    }
+
+    /**
+     * Gets the minimum number of icons rendered as a cluster marker.
+     * @return
+     */
+    public int getMinClusterSize()
+    {
+        return minClusterSize;
+    }
+
+    /**
+     * Sets the minimum number of icons rendered as a cluster marker, smaller
+     * clusters render their icons.
+     * @param minClusterSize
+     */
+    public void setMinClusterSize(int minClusterSize)
+    {
+        if (minClusterSize < 2)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.minClusterSize = minClusterSize;
+    }
+
+    /**
+     * Shows the icons of a cluster instead of its marker.
+     * @param clusterIcon the picked cluster marker.
+     */
+    public synchronized void expandCluster(ClusterIcon clusterIcon)
+    {
+        if (clusterIcon == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.expanded.put(clusterIcon.getCluster(), clusterIcon);
+    }
+
+    /**
+     * Shows again the markers of all the expanded clusters.
+     */
+    public synchronized void collapseClusters()
+    {
+        this.expanded.clear();
+    }
+
+    @Override
+    protected synchronized void doPick(DrawContext dc, java.awt.Point pickPoint)
+    {
+        this.update(dc);
+        this.iconRenderer.pick(dc, this.visibleIcons, pickPoint, this);
+    }
+
+    @Override
+    protected synchronized void doRender(DrawContext dc)
+    {
+        this.update(dc);
+        this.iconRenderer.render(dc, this.visibleIcons);
+    }
+
+    private void update(DrawContext dc)
+    {
+        this.visibleIcons.clear();
+        this.visibleClusters.clear();
+
+        int level = this.computeLevel(dc);
+        if (level != this.currentLevel)
+        {
+            // Expanded clusters only make sense at the level they were picked.
+            this.currentLevel = level;
+            this.expanded.clear();
+        }
+
+        if (level < 0)
+        {
+            // Close to the ground, render the icons of the visible cells of the finest level.
+            this.index.getClusters(this.index.getNumLevels() - 1, dc.getVisibleSector(), this.visibleClusters);
+            for (int i = 0; i < this.visibleClusters.size(); i++)
+            {
+                this.visibleClusters.get(i).getMembers(this.visibleIcons);
+            }
+            this.markers.clear();
+            return;
+        }
+
+        this.index.getClusters(level, dc.getVisibleSector(), this.visibleClusters);
+
+        // Reuse the markers of the clusters still visible.
+        IdentityHashMap<ClusterIndex<WWIcon>.Cluster, ClusterIcon> tmp = this.oldMarkers;
+        this.oldMarkers = this.markers;
+        this.markers = tmp;
+        this.markers.clear();
+
+        for (int i = 0; i < this.visibleClusters.size(); i++)
+        {
+            ClusterIndex<WWIcon>.Cluster cluster = this.visibleClusters.get(i);
+            if (cluster.getCount() < this.minClusterSize || this.expanded.containsKey(cluster))
+            {
+                cluster.getMembers(this.visibleIcons);
+                continue;
+            }
+
+            ClusterIcon marker = this.oldMarkers.get(cluster);
+            if (marker == null)
+            {
+                marker = new ClusterIcon(this.clusterImageSource, cluster);
+            }
+            marker.update();
+            this.markers.put(cluster, marker);
+            this.visibleIcons.add(marker);
+        }
+        this.oldMarkers.clear();
+
+        // Forget the expanded clusters that have been emptied.
+        Iterator<ClusterIndex<WWIcon>.Cluster> iterator = this.expanded.keySet().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().getCount() == 0)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the cluster level for the current view, or -1 if the icons
+     * mustn't be clustered.
+     */
+    private int computeLevel(DrawContext dc)
+    {
+        Position eyePos = dc.getView().getEyePosition();
+        if (eyePos == null)
+        {
+            return 0;
+        }
+
+        // Size in degrees of the cluster radius at the ground below the eye.
+        double pixelSize = dc.getView().computePixelSizeAtDistance(Math.max(eyePos.getElevation(), 1));
+        double size = Math.toDegrees(this.clusterRadius * pixelSize / dc.getGlobe().getRadius());
+        return this.index.getLevel(size);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getName();
+    }
+}
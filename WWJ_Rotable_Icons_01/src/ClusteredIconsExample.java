@@ -0,0 +1,112 @@
+package gov.nasa.worldwind.examples;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import gov.nasa.worldwind.event.SelectEvent;
+import gov.nasa.worldwind.event.SelectListener;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.layers.*;
+import gov.nasa.worldwind.layers.Earth.*;
+
+import gov.nasa.worldwind.render.IconTextureLoader;
+import gov.nasa.worldwind.render.RotableUserFacingIcon;
+import javax.swing.*;
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Shows a few thousand icons around a port rendered by a ClusteredIconLayer.
+ * Clicking a cluster marker shows its icons.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class ClusteredIconsExample
+{
+
+    private static final String ICON_PATH = "images/32x32-icon-nasa.png";
+
+    private static class AppFrame extends JFrame
+    {
+
+        public AppFrame()
+        {
+            final WorldWindowGLCanvas wwd = new WorldWindowGLCanvas();
+
+            JPanel mainPanel = new JPanel();
+            mainPanel.setLayout(new BorderLayout());
+            wwd.setPreferredSize(new Dimension(500, 400));
+            mainPanel.add(wwd, BorderLayout.CENTER);
+
+            StatusBar statusBar = new StatusBar();
+            statusBar.setEventSource(wwd);
+            mainPanel.add(statusBar, BorderLayout.PAGE_END);
+            this.getContentPane().add(mainPanel, BorderLayout.CENTER);
+
+            LayerList layerList = new LayerList();
+            layerList.add(new BMNGOneImage());
+
+            final ClusteredIconLayer iconLayer = buildIconLayer();
+            layerList.add(iconLayer);
+
+            // Expand the clicked clusters.
+            wwd.addSelectListener(new SelectListener()
+            {
+
+                public void selected(SelectEvent event)
+                {
+                    if (event.getEventAction().equals(SelectEvent.LEFT_CLICK)
+                            && event.getTopObject() instanceof ClusteredIconLayer.ClusterIcon)
+                    {
+                        iconLayer.expandCluster((ClusteredIconLayer.ClusterIcon) event.getTopObject());
+                        wwd.redraw();
+                    }
+                }
+            });
+
+            // Redraw when the icon images have been decoded.
+            IconTextureLoader.getDefault().addListener(new Runnable()
+            {
+
+                public void run()
+                {
+                    wwd.redraw();
+                }
+            });
+
+            Model m = new BasicModel();
+            m.setLayers(layerList);
+            wwd.setModel(m);
+
+            JPanel westContainer = new LayerPanel(wwd);
+            this.getContentPane().add(westContainer, BorderLayout.WEST);
+            this.pack();
+        }
+
+        private ClusteredIconLayer buildIconLayer()
+        {
+            ClusteredIconLayer layer = new ClusteredIconLayer(ICON_PATH);
+
+            // Scatter vessels around Rotterdam.
+            Random random = new Random(0);
+            for (int i = 0; i < 5000; i++)
+            {
+                double lat = 51.95 + random.nextGaussian() * 0.3;
+                double lon = 4.10 + random.nextGaussian() * 0.6;
+                RotableUserFacingIcon icon = new RotableUserFacingIcon(ICON_PATH,
+                        new Position(Angle.fromDegrees(lat), Angle.fromDegrees(lon), 0));
+                icon.setHeading(Angle.fromDegrees(random.nextDouble() * 360));
+                layer.addIcon(icon);
+            }
+
+            return layer;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        AppFrame appFrame = new AppFrame();
+        appFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        appFrame.setVisible(true);
+    }
+}
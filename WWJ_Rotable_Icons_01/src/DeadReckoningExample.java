@@ -0,0 +1,136 @@
+package gov.nasa.worldwind.examples;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.layers.*;
+import gov.nasa.worldwind.layers.Earth.*;
+
+import gov.nasa.worldwind.render.IconTextureLoader;
+import gov.nasa.worldwind.render.RotableUserFacingIcon;
+import gov.nasa.worldwind.util.FrameScheduler;
+import javax.swing.*;
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Shows icons turning in circles whose position is only known once per
+ * second. The icons are moved by dead reckoning between fixes.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class DeadReckoningExample
+{
+
+    private static final int NUM_ICONS = 200;
+
+    private static class AppFrame extends JFrame
+    {
+
+        private final RotableUserFacingIcon[] icons = new RotableUserFacingIcon[NUM_ICONS];
+        // Simulated real state of every icon.
+        private final double[] lats = new double[NUM_ICONS];
+        private final double[] lons = new double[NUM_ICONS];
+        private final double[] courses = new double[NUM_ICONS];
+        private final double[] speeds = new double[NUM_ICONS];
+        private final double[] turnRates = new double[NUM_ICONS];
+
+        public AppFrame()
+        {
+            final WorldWindowGLCanvas wwd = new WorldWindowGLCanvas();
+
+            JPanel mainPanel = new JPanel();
+            mainPanel.setLayout(new BorderLayout());
+            wwd.setPreferredSize(new Dimension(500, 400));
+            mainPanel.add(wwd, BorderLayout.CENTER);
+
+            StatusBar statusBar = new StatusBar();
+            statusBar.setEventSource(wwd);
+            mainPanel.add(statusBar, BorderLayout.PAGE_END);
+            this.getContentPane().add(mainPanel, BorderLayout.CENTER);
+
+            LayerList layerList = new LayerList();
+            layerList.add(new BMNGOneImage());
+            layerList.add(buildIconLayer());
+
+            FrameScheduler scheduler = new FrameScheduler(wwd);
+            // Telemetry arrives once per second.
+            scheduler.addAnimation(new FrameScheduler.Animation()
+            {
+
+                private long lastTime = System.currentTimeMillis();
+
+                public boolean step(long time)
+                {
+                    sendFixes((time - lastTime) / 1000d, time);
+                    lastTime = time;
+                    return true;
+                }
+            }, 1000);
+            // Redraw every frame so the icons move between fixes.
+            scheduler.addAnimation(new FrameScheduler.Animation()
+            {
+
+                public boolean step(long time)
+                {
+                    return true;
+                }
+            }, FrameScheduler.DEFAULT_FRAME_INTERVAL);
+            IconTextureLoader.getDefault().setFrameScheduler(scheduler);
+            scheduler.start();
+
+            Model m = new BasicModel();
+            m.setLayers(layerList);
+            wwd.setModel(m);
+
+            JPanel westContainer = new LayerPanel(wwd);
+            this.getContentPane().add(westContainer, BorderLayout.WEST);
+            this.pack();
+        }
+
+        private IconLayer buildIconLayer()
+        {
+            IconLayer layer = new IconLayer();
+
+            Random random = new Random(0);
+            for (int i = 0; i < NUM_ICONS; i++)
+            {
+                lats[i] = 40 + random.nextDouble() * 4;
+                lons[i] = -2 + random.nextDouble() * 6;
+                courses[i] = random.nextDouble() * 360;
+                speeds[i] = 2000 + random.nextDouble() * 3000;
+                turnRates[i] = random.nextGaussian() * 5;
+
+                icons[i] = new RotableUserFacingIcon("images/32x32-icon-nasa.png",
+                        new Position(Angle.fromDegrees(lats[i]), Angle.fromDegrees(lons[i]), 0));
+                layer.addIcon(icons[i]);
+            }
+            sendFixes(0, System.currentTimeMillis());
+
+            return layer;
+        }
+
+        private void sendFixes(double dt, long time)
+        {
+            for (int i = 0; i < NUM_ICONS; i++)
+            {
+                double course = Math.toRadians(courses[i]);
+                lats[i] += Math.toDegrees(speeds[i] * Math.cos(course) * dt / 6378137);
+                lons[i] += Math.toDegrees(speeds[i] * Math.sin(course) * dt / (6378137 * Math.cos(Math.toRadians(lats[i]))));
+                courses[i] = (courses[i] + turnRates[i] * dt) % 360;
+
+                // Icon headings turn counter-clockwise, courses clockwise.
+                icons[i].setFix(new Position(Angle.fromDegrees(lats[i]), Angle.fromDegrees(lons[i]), 0),
+                        Angle.fromDegrees(-courses[i]), speeds[i], Angle.fromDegrees(courses[i]), -turnRates[i], time);
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        AppFrame appFrame = new AppFrame();
+        appFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        appFrame.setVisible(true);
+    }
+}
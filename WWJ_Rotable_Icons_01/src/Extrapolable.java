@@ -0,0 +1,18 @@
+package gov.nasa.worldwind.render;
+
+/**
+ * Extrapolable interface defines the common functionallities for those
+ * objects whose state can be estimated at a given time from their last known
+ * state, for example by dead reckoning.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public interface Extrapolable
+{
+
+    /**
+     * Updates the object to its estimated state at the given time.
+     * @param time time in milliseconds.
+     */
+    public void extrapolate(long time);
+}
@@ -0,0 +1,334 @@
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import java.util.ArrayList;
+
+/**
+ * FrameScheduler centralizes the redraw requests of a WorldWindowGLCanvas.
+ * Instead of starting threads that call 'redrawNow' at regular intervals,
+ * layers and renderables mark the scheduler as dirty and the scheduler
+ * merges all those signals into at most one redraw per frame interval.
+ * <br/>
+ * The scheduler can also run timed animations. Each animation is stepped
+ * at its own period and every step marks the scheduler as dirty. When there
+ * is nothing dirty and no animation is running the scheduler thread sleeps,
+ * so an idle globe isn't redrawn at all.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class FrameScheduler
+{
+
+    /**
+     * Default frame interval, in milliseconds (aprox. 60 frames per second).
+     */
+    public static final long DEFAULT_FRAME_INTERVAL = 16;
+
+    /**
+     * Animation is a task stepped periodically by the scheduler.
+     */
+    public interface Animation
+    {
+
+        /**
+         * Steps the animation.
+         * @param time current time in milliseconds.
+         * @return true if the animation must continue running, false to
+         * remove it from the scheduler.
+         */
+        public boolean step(long time);
+    }
+
+    private class ScheduledAnimation
+    {
+
+        Animation animation;
+        long period;
+        long nextTime;
+
+        ScheduledAnimation(Animation animation, long period, long nextTime)
+        {
+            this.animation = animation;
+            this.period = period;
+            this.nextTime = nextTime;
+        }
+    }
+    private final Object lock = new Object();
+    private final ArrayList<ScheduledAnimation> animations = new ArrayList<ScheduledAnimation>();
+    private WorldWindowGLCanvas wwd = null;
+    private long frameInterval = DEFAULT_FRAME_INTERVAL;
+    private long lastFrameTime = 0;
+    private boolean dirty = false;
+    private Thread thread = null;
+
+    /**
+     * Creates a new instance for the specified canvas.
+     * @param wwd
+     */
+    public FrameScheduler(WorldWindowGLCanvas wwd)
+    {
+        if (wwd == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.wwd = wwd;
+    }
+
+    /**
+     * Gets the minimum time between two redraws.
+     * @return frame interval in milliseconds.
+     */
+    public long getFrameInterval()
+    {
+        return frameInterval;
+    }
+
+    /**
+     * Sets the minimum time between two redraws, usually the vsync interval
+     * of the display.
+     * @param frameInterval frame interval in milliseconds.
+     */
+    public void setFrameInterval(long frameInterval)
+    {
+        if (frameInterval <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (lock)
+        {
+            this.frameInterval = frameInterval;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Marks the scene as dirty. The canvas will be redrawn on the next frame
+     * interval, no matters how many times this method is called before.
+     */
+    public void markDirty()
+    {
+        synchronized (lock)
+        {
+            if (!dirty)
+            {
+                dirty = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Marks a scheduler as dirty, if there is one. Objects that notify their
+     * changes through an optional scheduler call this instead of checking it.
+     * @param scheduler the scheduler, or null.
+     */
+    public static void markDirty(FrameScheduler scheduler)
+    {
+        if (scheduler != null)
+        {
+            scheduler.markDirty();
+        }
+    }
+
+    /**
+     * Adds an animation stepped every 'period' milliseconds.
+     * @param animation
+     * @param period step period in milliseconds.
+     */
+    public void addAnimation(Animation animation, long period)
+    {
+        if (animation == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (lock)
+        {
+            animations.add(new ScheduledAnimation(animation, Math.max(period, 1), System.currentTimeMillis() + period));
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Removes the specified animation.
+     * @param animation
+     */
+    public void removeAnimation(Animation animation)
+    {
+        synchronized (lock)
+        {
+            for (int i = animations.size() - 1; i >= 0; i--)
+            {
+                if (animations.get(i).animation == animation)
+                {
+                    animations.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the scheduler is running.
+     * @return
+     */
+    public boolean isRunning()
+    {
+        synchronized (lock)
+        {
+            return thread != null;
+        }
+    }
+
+    /**
+     * Starts the scheduler thread.
+     */
+    public void start()
+    {
+        synchronized (lock)
+        {
+            if (thread != null)
+            {
+                return;
+            }
+
+            thread = new Thread(new Runnable()
+            {
+
+                public void run()
+                {
+                    FrameScheduler.this.run();
+                }
+            }, "FrameScheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the scheduler thread. Pending dirty signals are discarded.
+     */
+    public void stop()
+    {
+        synchronized (lock)
+        {
+            if (thread == null)
+            {
+                return;
+            }
+
+            thread.interrupt();
+            thread = null;
+            dirty = false;
+        }
+    }
+
+    private void run()
+    {
+        Thread current = Thread.currentThread();
+        ArrayList<ScheduledAnimation> due = new ArrayList<ScheduledAnimation>();
+
+        try
+        {
+            while (true)
+            {
+                synchronized (lock)
+                {
+                    if (thread != current)
+                    {
+                        return;
+                    }
+
+                    // Sleep until there is something dirty or an animation is due.
+                    long now = System.currentTimeMillis();
+                    long wakeTime = Long.MAX_VALUE;
+                    if (dirty)
+                    {
+                        wakeTime = lastFrameTime + frameInterval;
+                    }
+                    for (int i = 0; i < animations.size(); i++)
+                    {
+                        wakeTime = Math.min(wakeTime, animations.get(i).nextTime);
+                    }
+
+                    if (wakeTime == Long.MAX_VALUE)
+                    {
+                        lock.wait();
+                        continue;
+                    }
+                    if (wakeTime > now)
+                    {
+                        lock.wait(wakeTime - now);
+                        continue;
+                    }
+
+                    // Collect the animations to be stepped.
+                    due.clear();
+                    for (int i = 0; i < animations.size(); i++)
+                    {
+                        ScheduledAnimation sa = animations.get(i);
+                        if (sa.nextTime <= now)
+                        {
+                            due.add(sa);
+                            // Skip missed steps instead of accumulating them.
+                            sa.nextTime = Math.max(sa.nextTime + sa.period, now + 1);
+                        }
+                    }
+                }
+
+                // Step animations outside the lock, they can mark dirty or add animations.
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < due.size(); i++)
+                {
+                    ScheduledAnimation sa = due.get(i);
+                    boolean keep = true;
+                    try
+                    {
+                        keep = sa.animation.step(now);
+                    } catch (Exception e)
+                    {
+                        Logging.logger().log(java.util.logging.Level.SEVERE, e.getMessage(), e);
+                        keep = false;
+                    }
+
+                    synchronized (lock)
+                    {
+                        dirty = true;
+                        if (!keep)
+                        {
+                            animations.remove(sa);
+                        }
+                    }
+                }
+
+                // Redraw only once per frame interval.
+                boolean redraw = false;
+                synchronized (lock)
+                {
+                    now = System.currentTimeMillis();
+                    if (dirty && now >= lastFrameTime + frameInterval)
+                    {
+                        dirty = false;
+                        lastFrameTime = now;
+                        redraw = true;
+                    }
+                }
+
+                if (redraw)
+                {
+                    wwd.redrawNow();
+                }
+            }
+        } catch (InterruptedException ex)
+        {
+            // Scheduler stopped.
+        }
+    }
+}
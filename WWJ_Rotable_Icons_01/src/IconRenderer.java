@@ -6,19 +6,25 @@ All Rights Reserved.
  */
 package gov.nasa.worldwind.render;
 
+import com.sun.opengl.util.BufferUtil;
 import com.sun.opengl.util.j2d.TextRenderer;
 import com.sun.opengl.util.texture.*;
 import gov.nasa.worldwind.Locatable;
+import gov.nasa.worldwind.View;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.globes.SectorGeometryList;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.PickSupport;
+import gov.nasa.worldwind.pick.PickedObject;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.ScreenPickGrid;
 
 import javax.media.opengl.GL;
 import java.awt.*;
-import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.*;
 import java.util.logging.Level;
 
@@ -33,6 +39,101 @@ public class IconRenderer
     private PickSupport pickSupport = new PickSupport();
     private HashMap<Font, ToolTipRenderer> toolTipRenderers = new HashMap<Font, ToolTipRenderer>();
 
+    // Depth modes of the batched icons, in drawing order.
+    private static final int DEPTH_LESS = 0;
+    private static final int DEPTH_EQUAL = 1;
+    private static final int DEPTH_ALWAYS = 2;
+    private static final int NUM_DEPTH_MODES = 3;
+    // Floats per batched vertex: x, y, z, s, t.
+    private static final int VERTEX_SIZE = 5;
+    private static final int STRIDE = VERTEX_SIZE * BufferUtil.SIZEOF_FLOAT;
+    private boolean batchRendering = false;
+    private IconTextureLoader textureLoader = IconTextureLoader.getDefault();
+    // Scratch state of the batched mode, reused between frames.
+    private final ArrayList<OrderedIcon> batch = new ArrayList<OrderedIcon>();
+    private final ArrayList<Texture> batchTextures = new ArrayList<Texture>();
+    private final IdentityHashMap<Texture, Integer> batchTextureIndex = new IdentityHashMap<Texture, Integer>();
+    private double[] batchX = new double[0];
+    private double[] batchY = new double[0];
+    private double[] batchZ = new double[0];
+    private double[] batchWidth = new double[0];
+    private double[] batchHeight = new double[0];
+    private int[] batchKeys = new int[0];
+    private int[] batchOrder = new int[0];
+    private int[] batchCounts = new int[0];
+    private FloatBuffer batchVertices = null;
+    // Ordered renderables released after being drawn, reused in the next frames.
+    private final ArrayList<OrderedIcon> iconPool = new ArrayList<OrderedIcon>();
+    private final ArrayList<OrderedText> textPool = new ArrayList<OrderedText>();
+    // Model-view-projection matrix (column major), viewport and eye point of
+    // the current frame, used to project the icons without allocating.
+    private final double[] matrixArray = new double[32];
+    private final double[] mvp = new double[16];
+    private final int[] viewportArray = new int[4];
+    private double viewportX;
+    private double viewportY;
+    private double viewportWidth;
+    private double viewportHeight;
+    private double eyeX;
+    private double eyeY;
+    private double eyeZ;
+    // Screen quads of the drawn icons. The grid of the last drawn frame is
+    // published, the other one is filled while the icons are drawn.
+    private boolean gridPicking = false;
+    private final Object gridLock = new Object();
+    private ScreenPickGrid<WWIcon> pickGrid = new ScreenPickGrid<WWIcon>();
+    private ScreenPickGrid<WWIcon> buildingGrid = new ScreenPickGrid<WWIcon>();
+    private double[] pickGridMvp = new double[16];
+    private double[] buildingGridMvp = new double[16];
+    // The grid being built belongs to a frame, identified by its geometry,
+    // and is published even if no icon was drawn in it.
+    private boolean buildingGridBegun = false;
+    private SectorGeometryList buildingGridGeometry = null;
+    private final double[] cornerX = new double[4];
+    private final double[] cornerY = new double[4];
+    // Level of detail: far icons are drawn as points.
+    private double pointDistance = Double.MAX_VALUE;
+    private double pointPixelSize = Double.MAX_VALUE;
+    private double pointSize = 4;
+    private Color pointColor = Color.WHITE;
+    private final ArrayList<OrderedPoints> pointsPool = new ArrayList<OrderedPoints>();
+    private final OrderedIcon pointScratch = new OrderedIcon();
+    // Time the Extrapolable icons are placed at, taken once per frame. The
+    // terrain is tessellated once per frame and shared by picking and
+    // rendering, so its geometry list identifies the frame.
+    private SectorGeometryList frameGeometry = null;
+    private long frameTime;
+    private long frameNumber = 0;
+    // Model points of the PrimitiveIcons, reused while they don't move.
+    // Points on the terrain are reused while the eye and the vertical
+    // exaggeration don't change, and refreshed every interval so they
+    // follow the elevations being loaded.
+    private static final long SURFACE_POINT_REFRESH_INTERVAL = 1000;
+    private final IdentityHashMap<WWIcon, IconPoint> iconPoints = new IdentityHashMap<WWIcon, IconPoint>();
+    private int iconPointsUsed = 0;
+    private long terrainStamp = 0;
+    private long terrainTime;
+    private double terrainEyeX = Double.NaN;
+    private double terrainEyeY = Double.NaN;
+    private double terrainEyeZ = Double.NaN;
+    private double terrainExaggeration = Double.NaN;
+
+    private static class IconPoint
+    {
+
+        double lat;
+        double lon;
+        double elevation;
+        double x;
+        double y;
+        double z;
+        boolean computed = false;
+        // Stamp of the terrain the point lies on, or -1 if it isn't on the terrain.
+        long terrainStamp;
+        Globe globe;
+        long frameNumber;
+    }
+
     public IconRenderer()
     {
     }
@@ -47,6 +148,232 @@ public class IconRenderer
         this.pedestal = pedestal;
     }
 
+    public IconTextureLoader getTextureLoader()
+    {
+        return textureLoader;
+    }
+
+    /**
+     * Sets the loader that decodes the icon images. By default all the
+     * renderers share the default loader.
+     * @param textureLoader
+     */
+    public void setTextureLoader(IconTextureLoader textureLoader)
+    {
+        if (textureLoader == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.textureLoader = textureLoader;
+    }
+
+    /**
+     * Checks if the icons are rendered in batches.
+     * @return
+     */
+    public boolean isBatchRendering()
+    {
+        return batchRendering;
+    }
+
+    /**
+     * Sets if the icons are rendered in batches. In batched mode the
+     * consecutive icons of the ordered renderables queue are grouped by
+     * depth mode and texture, their screen quads (with the heading rotation
+     * and the highlight scale applied) are computed in a single vertex array
+     * and every group is drawn with one call, instead of loading a matrix
+     * and drawing a quad for each icon.
+     * <br/>
+     * Icons of different groups are no longer drawn strictly back-to-front,
+     * so overlapping translucent icons with different images can blend in
+     * another order. Picking always draws the icons one by one.
+     * @param batchRendering
+     */
+    public void setBatchRendering(boolean batchRendering)
+    {
+        this.batchRendering = batchRendering;
+    }
+
+    /**
+     * Checks if the icons are picked from the screen quads of the last frame.
+     * @return
+     */
+    public boolean isGridPicking()
+    {
+        return gridPicking;
+    }
+
+    /**
+     * Sets if the icons are picked from the screen quads of the last frame.
+     * When enabled, every rendered icon stores its screen quad, with the
+     * heading rotation and the highlight scale applied, in a grid of screen
+     * cells, and picking looks up the grid instead of drawing the icons again
+     * in pick colors. The grid is only used while the view is the same as in
+     * the last rendered frame, otherwise the icons are picked drawing them.
+     * <br/>
+     * The grid doesn't know about the terrain, so icons hidden behind a
+     * mountain can be picked.
+     * @param gridPicking
+     */
+    public void setGridPicking(boolean gridPicking)
+    {
+        this.gridPicking = gridPicking;
+        if (!gridPicking)
+        {
+            synchronized (this.gridLock)
+            {
+                this.pickGrid.clear(0, 0);
+                this.buildingGrid.clear(0, 0);
+                this.buildingGridBegun = false;
+                this.buildingGridGeometry = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the top icon at a point of the last rendered frame. Only works
+     * with grid picking enabled. Can be called from any thread.
+     * @param point point in AWT coordinates, origin at the top left.
+     * @return the icon, or null if there is none.
+     */
+    public WWIcon getIconAt(java.awt.Point point)
+    {
+        if (point == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        synchronized (this.gridLock)
+        {
+            return this.pickGrid.pick(point.x, this.pickGrid.getHeight() - point.y - 1);
+        }
+    }
+
+    /**
+     * Gets the icons of the last rendered frame intersecting a rectangle,
+     * top first. Only works with grid picking enabled. Can be called from any
+     * thread.
+     * @param rectangle rectangle in AWT coordinates, origin at the top left.
+     * @return the icons.
+     */
+    public java.util.List<WWIcon> getIconsInside(Rectangle rectangle)
+    {
+        if (rectangle == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ArrayList<WWIcon> icons = new ArrayList<WWIcon>();
+        synchronized (this.gridLock)
+        {
+            int height = this.pickGrid.getHeight();
+            this.pickGrid.select(rectangle.x, height - rectangle.y - rectangle.height,
+                    rectangle.x + rectangle.width - 1, height - rectangle.y - 1, icons);
+        }
+        return icons;
+    }
+
+    /**
+     * Gets the eye distance beyond which the icons are drawn as points.
+     * @return distance in meters.
+     */
+    public double getPointDistance()
+    {
+        return pointDistance;
+    }
+
+    /**
+     * Sets the eye distance beyond which the icons are drawn as points.
+     * Points are drawn all together with one call, without texture, pedestal
+     * nor tooltip. Highlighted and always on top icons are never drawn as
+     * points.
+     * @param pointDistance distance in meters, Double.MAX_VALUE to disable it.
+     */
+    public void setPointDistance(double pointDistance)
+    {
+        if (pointDistance < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.pointDistance = pointDistance;
+    }
+
+    /**
+     * Gets the size of a screen pixel, at the icon distance, beyond which the
+     * icons are drawn as points.
+     * @return pixel size in meters.
+     */
+    public double getPointPixelSize()
+    {
+        return pointPixelSize;
+    }
+
+    /**
+     * Sets the size of a screen pixel, at the icon distance, beyond which the
+     * icons are drawn as points. With a pixel size of 1000 meters, icons are
+     * drawn as points when a 32 pixels icon covers more than 32 kilometers.
+     * @param pointPixelSize pixel size in meters, Double.MAX_VALUE to disable it.
+     */
+    public void setPointPixelSize(double pointPixelSize)
+    {
+        if (pointPixelSize < 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.pointPixelSize = pointPixelSize;
+    }
+
+    public double getPointSize()
+    {
+        return pointSize;
+    }
+
+    /**
+     * Sets the diameter of the points.
+     * @param pointSize diameter in pixels.
+     */
+    public void setPointSize(double pointSize)
+    {
+        if (pointSize <= 0)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.pointSize = pointSize;
+    }
+
+    public Color getPointColor()
+    {
+        return pointColor;
+    }
+
+    public void setPointColor(Color pointColor)
+    {
+        if (pointColor == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.pointColor = pointColor;
+    }
+
     private static boolean isIconValid(WWIcon icon, boolean checkPosition)
     {
         if (icon == null || icon.getImageSource() == null)
@@ -55,7 +382,7 @@ public class IconRenderer
         }
 
         //noinspection RedundantIfStatement
-        if (checkPosition && icon.getPosition() == null)
+        if (checkPosition && !(icon instanceof PrimitiveIcon) && icon.getPosition() == null)
         {
             return false;
         }
@@ -65,6 +392,11 @@ public class IconRenderer
 
     public void pick(DrawContext dc, Iterable<WWIcon> icons, java.awt.Point pickPoint, Layer layer)
     {
+        if (this.gridPicking && this.pickFromGrid(dc, null, pickPoint, layer))
+        {
+            return;
+        }
+
         this.drawMany(dc, icons);
     }
 
@@ -75,11 +407,21 @@ public class IconRenderer
             return;
         }
 
+        if (this.gridPicking && this.pickFromGrid(dc, icon, pickPoint, layer))
+        {
+            return;
+        }
+
         this.drawOne(dc, icon, iconPoint);
     }
 
     public void render(DrawContext dc, Iterable<WWIcon> icons)
     {
+        if (this.gridPicking)
+        {
+            this.beginPickGrid(dc);
+        }
+
         this.drawMany(dc, icons);
     }
 
@@ -90,9 +432,170 @@ public class IconRenderer
             return;
         }
 
+        if (this.gridPicking)
+        {
+            this.beginPickGrid(dc);
+        }
+
         this.drawOne(dc, icon, iconPoint);
     }
 
+    /**
+     * Publishes the grid of the last drawn frame, if any, and prepares the
+     * other grid to store the icons of this frame. Later calls in the same
+     * frame keep adding icons to it.
+     * @param dc
+     */
+    private void beginPickGrid(DrawContext dc)
+    {
+        if (dc == null || !this.beginProjection(dc))
+        {
+            return;
+        }
+
+        SectorGeometryList geometry = dc.getSurfaceGeometry();
+        synchronized (this.gridLock)
+        {
+            if (this.buildingGridBegun && geometry == this.buildingGridGeometry)
+            {
+                return;
+            }
+
+            this.publishPickGrid();
+            this.buildingGrid.clear((int) this.viewportWidth, (int) this.viewportHeight);
+            this.buildingGridGeometry = geometry;
+            this.buildingGridBegun = true;
+        }
+        System.arraycopy(this.mvp, 0, this.buildingGridMvp, 0, 16);
+    }
+
+    // Must be called holding the grid lock. A frame that drew no icons
+    // publishes an empty grid, so the icons of older frames aren't picked.
+    private void publishPickGrid()
+    {
+        if (!this.buildingGridBegun)
+        {
+            return;
+        }
+
+        ScreenPickGrid<WWIcon> grid = this.pickGrid;
+        this.pickGrid = this.buildingGrid;
+        this.buildingGrid = grid;
+        double[] gridMvp = this.pickGridMvp;
+        this.pickGridMvp = this.buildingGridMvp;
+        this.buildingGridMvp = gridMvp;
+        this.buildingGridBegun = false;
+    }
+
+    /**
+     * Picks the top icon at the pick point from the grid of the last frame.
+     * @param candidate if not null, the top icon is only picked if it's this one.
+     * @return false if the view changed since that frame, so the icons must
+     * be picked drawing them.
+     */
+    private boolean pickFromGrid(DrawContext dc, WWIcon candidate, java.awt.Point pickPoint, Layer layer)
+    {
+        if (dc == null || !this.beginProjection(dc))
+        {
+            return false;
+        }
+
+        WWIcon icon;
+        synchronized (this.gridLock)
+        {
+            this.publishPickGrid();
+            if (!Arrays.equals(this.mvp, this.pickGridMvp)
+                    || this.pickGrid.getWidth() != (int) this.viewportWidth
+                    || this.pickGrid.getHeight() != (int) this.viewportHeight)
+            {
+                return false;
+            }
+
+            if (pickPoint == null)
+            {
+                return true;
+            }
+            icon = this.pickGrid.pick(pickPoint.x, this.viewportHeight - pickPoint.y - 1);
+        }
+
+        if (icon != null && (candidate == null || candidate == icon))
+        {
+            java.awt.Color color = dc.getUniquePickColor();
+            PickedObject po = new PickedObject(color.getRGB(), icon, icon.getPosition(), false);
+            if (layer != null)
+            {
+                po.setParentLayer(layer);
+            }
+            dc.addPickedObject(po);
+            this.drawPickMarker(dc, pickPoint, color);
+        }
+        return true;
+    }
+
+    /**
+     * Draws the pixel under the pick point in the pick color of an icon
+     * picked from the grid, so the scene controller finds it on top unless
+     * something drawn later covers it.
+     */
+    private void drawPickMarker(DrawContext dc, java.awt.Point pickPoint, java.awt.Color color)
+    {
+        GL gl = dc.getGL();
+        gl.glPushAttrib(GL.GL_TRANSFORM_BIT | GL.GL_CURRENT_BIT | GL.GL_POINT_BIT | GL.GL_ENABLE_BIT);
+        gl.glMatrixMode(GL.GL_PROJECTION);
+        gl.glPushMatrix();
+        gl.glMatrixMode(GL.GL_MODELVIEW);
+        gl.glPushMatrix();
+        try
+        {
+            gl.glMatrixMode(GL.GL_PROJECTION);
+            gl.glLoadIdentity();
+            gl.glOrtho(0d, this.viewportWidth, 0d, this.viewportHeight, -1d, 1d);
+            gl.glMatrixMode(GL.GL_MODELVIEW);
+            gl.glLoadIdentity();
+
+            gl.glDisable(GL.GL_TEXTURE_2D);
+            gl.glDisable(GL.GL_DEPTH_TEST);
+            gl.glDisable(GL.GL_BLEND);
+            gl.glPointSize(1f);
+            gl.glColor3ub((byte) color.getRed(), (byte) color.getGreen(), (byte) color.getBlue());
+            gl.glBegin(GL.GL_POINTS);
+            gl.glVertex2d(pickPoint.x + 0.5, this.viewportHeight - pickPoint.y - 0.5);
+            gl.glEnd();
+        }
+        finally
+        {
+            gl.glMatrixMode(GL.GL_PROJECTION);
+            gl.glPopMatrix();
+            gl.glMatrixMode(GL.GL_MODELVIEW);
+            gl.glPopMatrix();
+            gl.glPopAttrib();
+        }
+    }
+
+    /**
+     * Stores the screen quads of a drawn icon, and of its pedestal, in the
+     * grid being built.
+     */
+    private void addToPickGrid(WWIcon icon, double screenX, double screenY, double width, double height,
+            double pedestalScale, double pedestalSpacing, boolean hasPedestal)
+    {
+        double[] xs = this.cornerX;
+        double[] ys = this.cornerY;
+        this.computeIconCorners(icon, screenX, screenY, width, height, pedestalScale, pedestalSpacing, xs, ys);
+        this.buildingGrid.add(icon, xs, ys);
+
+        if (hasPedestal)
+        {
+            double pedestalWidth = width * pedestalScale;
+            double pedestalHeight = height * pedestalScale;
+            xs[0] = xs[3] = screenX - pedestalWidth / 2;
+            xs[1] = xs[2] = screenX + pedestalWidth / 2;
+            ys[0] = ys[1] = screenY;
+            ys[2] = ys[3] = screenY + pedestalHeight;
+            this.buildingGrid.add(icon, xs, ys);
+        }
+    }
+
     private void drawMany(DrawContext dc, Iterable<WWIcon> icons)
     {
         if (dc == null)
@@ -128,6 +631,24 @@ public class IconRenderer
             return;
         }
 
+        if (!this.beginProjection(dc))
+        {
+            return;
+        }
+
+        Sector visibleSector = dc.getVisibleSector();
+        double minLat = visibleSector.getMinLatitude().degrees;
+        double maxLat = visibleSector.getMaxLatitude().degrees;
+        double minLon = visibleSector.getMinLongitude().degrees;
+        double maxLon = visibleSector.getMaxLongitude().degrees;
+        double maxElevation = dc.getGlobe().getMaxElevation();
+        double globeRadius = dc.getGlobe().getRadius();
+        double horizon = dc.getView().computeHorizonDistance();
+        long time = this.getFrameTime(dc);
+        this.updateTerrainStamp(dc, time);
+        boolean checkPoints = this.pointDistance != Double.MAX_VALUE || this.pointPixelSize != Double.MAX_VALUE;
+        OrderedPoints points = null;
+
         while (iterator.hasNext())
         {
             WWIcon icon = iterator.next();
@@ -141,30 +662,293 @@ public class IconRenderer
                 continue;
             }
 
+            if (icon instanceof Extrapolable)
+            {
+                ((Extrapolable) icon).extrapolate(time);
+            }
+
+            // Read the location without creating objects when the icon allows it.
+            PrimitiveIcon primitiveIcon = icon instanceof PrimitiveIcon ? (PrimitiveIcon) icon : null;
+            Position pos = null;
+            double lat;
+            double lon;
+            double iconElevation;
+            if (primitiveIcon != null)
+            {
+                lat = primitiveIcon.getLatitudeDegrees();
+                lon = primitiveIcon.getLongitudeDegrees();
+                iconElevation = primitiveIcon.getElevation();
+            }
+            else
+            {
+                pos = icon.getPosition();
+                lat = pos.getLatitude().degrees;
+                lon = pos.getLongitude().degrees;
+                iconElevation = pos.getElevation();
+            }
+
+            // Near the surface the icon can't be seen outside the visible sector, don't
+            // search the terrain for it.
+            boolean nearSurface = iconElevation < maxElevation;
+            if (nearSurface && (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon))
+            {
+                continue;
+            }
+
             // Determine Cartesian position from the surface geometry if the icon is near the surface,
             // otherwise draw it from the globe.
-            Position pos = icon.getPosition();
-            Vec4 iconPoint = null;
-            if (pos.getElevation() < dc.getGlobe().getMaxElevation())
+            double iconX;
+            double iconY;
+            double iconZ;
+            if (primitiveIcon != null)
             {
-                iconPoint = dc.getSurfaceGeometry().getSurfacePoint(icon.getPosition());
+                IconPoint p = this.getIconPoint(dc, icon, lat, lon, iconElevation, nearSurface);
+                iconX = p.x;
+                iconY = p.y;
+                iconZ = p.z;
             }
-            if (iconPoint == null)
+            else
+            {
+                Vec4 iconPoint = null;
+                if (nearSurface)
+                {
+                    iconPoint = dc.getSurfaceGeometry().getSurfacePoint(pos);
+                }
+                if (iconPoint == null)
+                {
+                    iconPoint = dc.getGlobe().computePointFromPosition(pos);
+                }
+                iconX = iconPoint.x;
+                iconY = iconPoint.y;
+                iconZ = iconPoint.z;
+            }
+
+            // Discard the icons beyond the horizon, the eye's horizon plus the icon's one.
+            if (!icon.isAlwaysOnTop())
             {
-                iconPoint = dc.getGlobe().computePointFromPosition(icon.getPosition());
+                double dx = iconX - this.eyeX;
+                double dy = iconY - this.eyeY;
+                double dz = iconZ - this.eyeZ;
+                double elevation = Math.max(iconElevation, 0);
+                double limit = horizon + Math.sqrt(elevation * (2 * globeRadius + elevation));
+                double distance2 = dx * dx + dy * dy + dz * dz;
+                if (distance2 > limit * limit)
+                {
+                    continue;
+                }
+
+                if (checkPoints && !icon.isHighlighted() && this.isPoint(dc, Math.sqrt(distance2)))
+                {
+                    if (points == null)
+                    {
+                        points = this.obtainOrderedPoints(dc);
+                    }
+                    this.addPoint(points, icon, iconX, iconY, iconZ, Math.sqrt(distance2));
+                    continue;
+                }
             }
 
-            // The icons aren't drawn here, but added to the ordered queue to be drawn back-to-front.
-            double eyeDistance = icon.isAlwaysOnTop() ? 0 : dc.getView().getEyePoint().distanceTo3(iconPoint);
-            dc.addOrderedRenderable(new OrderedIcon(icon, iconPoint, eyeDistance));
+            this.addOrderedIcon(dc, icon, iconX, iconY, iconZ);
+        }
 
-            if (icon.isShowToolTip())
+        if (points != null)
+        {
+            if (points.icons.isEmpty())
+            {
+                this.releaseOrderedPoints(points);
+            }
+            else
             {
-                this.addToolTip(dc, icon, iconPoint);
+                dc.addOrderedRenderable(points);
             }
         }
     }
 
+    /**
+     * Returns the time of the current frame, the same for all the icons
+     * picked and rendered in it.
+     */
+    private long getFrameTime(DrawContext dc)
+    {
+        SectorGeometryList geometry = dc.getSurfaceGeometry();
+        if (geometry != this.frameGeometry)
+        {
+            this.frameGeometry = geometry;
+            this.frameTime = System.currentTimeMillis();
+            this.frameNumber++;
+            this.pruneIconPoints();
+        }
+        return this.frameTime;
+    }
+
+    /**
+     * Changes the terrain stamp, so the points on the terrain are computed
+     * again, when the eye or the vertical exaggeration change or the refresh
+     * interval elapses.
+     */
+    private void updateTerrainStamp(DrawContext dc, long time)
+    {
+        double exaggeration = dc.getVerticalExaggeration();
+        if (this.eyeX != this.terrainEyeX || this.eyeY != this.terrainEyeY || this.eyeZ != this.terrainEyeZ
+                || exaggeration != this.terrainExaggeration
+                || time - this.terrainTime >= SURFACE_POINT_REFRESH_INTERVAL)
+        {
+            this.terrainStamp++;
+            this.terrainTime = time;
+            this.terrainEyeX = this.eyeX;
+            this.terrainEyeY = this.eyeY;
+            this.terrainEyeZ = this.eyeZ;
+            this.terrainExaggeration = exaggeration;
+        }
+    }
+
+    /**
+     * Gets the model point of a PrimitiveIcon, computing it only if the icon
+     * moved or, for points on the terrain, the terrain stamp changed. Points
+     * off the terrain are computed from the ellipsoid, as the globe does,
+     * without creating objects.
+     */
+    private IconPoint getIconPoint(DrawContext dc, WWIcon icon, double lat, double lon, double elevation,
+            boolean nearSurface)
+    {
+        IconPoint p = this.iconPoints.get(icon);
+        if (p == null)
+        {
+            p = new IconPoint();
+            this.iconPoints.put(icon, p);
+        }
+        if (p.frameNumber != this.frameNumber)
+        {
+            p.frameNumber = this.frameNumber;
+            this.iconPointsUsed++;
+        }
+
+        Globe globe = dc.getGlobe();
+        if (p.computed && p.lat == lat && p.lon == lon && p.elevation == elevation && p.globe == globe
+                && p.terrainStamp == (nearSurface ? this.terrainStamp : -1))
+        {
+            return p;
+        }
+
+        p.lat = lat;
+        p.lon = lon;
+        p.elevation = elevation;
+        p.globe = globe;
+        p.computed = true;
+        p.terrainStamp = nearSurface ? this.terrainStamp : -1;
+
+        if (nearSurface)
+        {
+            Vec4 surfacePoint = dc.getSurfaceGeometry().getSurfacePoint(Angle.fromDegrees(lat),
+                    Angle.fromDegrees(lon), elevation);
+            if (surfacePoint != null)
+            {
+                p.x = surfacePoint.x;
+                p.y = surfacePoint.y;
+                p.z = surfacePoint.z;
+                return p;
+            }
+        }
+
+        double latRadians = Math.toRadians(lat);
+        double lonRadians = Math.toRadians(lon);
+        double cosLat = Math.cos(latRadians);
+        double sinLat = Math.sin(latRadians);
+        double eccentricity = globe.getEccentricitySquared();
+        double rpm = globe.getEquatorialRadius() / Math.sqrt(1.0 - eccentricity * sinLat * sinLat);
+        p.x = (rpm + elevation) * cosLat * Math.sin(lonRadians);
+        p.y = (rpm * (1.0 - eccentricity) + elevation) * sinLat;
+        p.z = (rpm + elevation) * cosLat * Math.cos(lonRadians);
+        return p;
+    }
+
+    /**
+     * Forgets the points of the icons not drawn in the last frame, when they
+     * are more than the ones drawn.
+     */
+    private void pruneIconPoints()
+    {
+        int used = this.iconPointsUsed;
+        this.iconPointsUsed = 0;
+        if (this.iconPoints.size() <= 2 * used + 64)
+        {
+            return;
+        }
+
+        long lastFrame = this.frameNumber - 1;
+        Iterator<IconPoint> iterator = this.iconPoints.values().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().frameNumber < lastFrame)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks if an icon at the given eye distance must be drawn as a point.
+     */
+    private boolean isPoint(DrawContext dc, double distance)
+    {
+        if (distance > this.pointDistance)
+        {
+            return true;
+        }
+
+        return this.pointPixelSize != Double.MAX_VALUE
+                && dc.getView().computePixelSizeAtDistance(distance) > this.pointPixelSize;
+    }
+
+    private OrderedPoints obtainOrderedPoints(DrawContext dc)
+    {
+        OrderedPoints points = this.pointsPool.isEmpty() ? new OrderedPoints()
+                : this.pointsPool.remove(this.pointsPool.size() - 1);
+        points.pooled = false;
+        points.eyeDistance = 0;
+
+        // Points are depth tested like the icons: against the terrain only near the surface.
+        Position eyePos = dc.getView().getEyePosition();
+        points.nearSurface = eyePos != null
+                && eyePos.getElevation() < (dc.getGlobe().getMaxElevation() * dc.getVerticalExaggeration());
+        return points;
+    }
+
+    private void releaseOrderedPoints(OrderedPoints points)
+    {
+        if (!points.pooled)
+        {
+            points.pooled = true;
+            points.icons.clear();
+            this.pointsPool.add(points);
+        }
+    }
+
+    private void addPoint(OrderedPoints points, WWIcon icon, double x, double y, double z, double eyeDistance)
+    {
+        OrderedIcon scratch = this.pointScratch;
+        if (!this.project(x, y, z, scratch))
+        {
+            return;
+        }
+
+        double depth = scratch.screenZ;
+        if (points.nearSurface)
+        {
+            depth = depth - (8d * 0.00048875809d);
+            depth = depth < 0d ? 0d : (depth > 1d ? 1d : depth);
+        }
+
+        int n = points.icons.size();
+        points.ensureCapacity(n + 1);
+        points.icons.add(icon);
+        points.vertices.put(n * 3, (float) scratch.screenX);
+        points.vertices.put(n * 3 + 1, (float) scratch.screenY);
+        points.vertices.put(n * 3 + 2, (float) depth);
+        // The points are drawn before the nearer icons.
+        points.eyeDistance = Math.max(points.eyeDistance, eyeDistance);
+    }
+
     private void drawOne(DrawContext dc, WWIcon icon, Vec4 iconPoint)
     {
         if (dc == null)
@@ -191,6 +975,11 @@ public class IconRenderer
             return;
         }
 
+        if (icon instanceof Extrapolable)
+        {
+            ((Extrapolable) icon).extrapolate(this.getFrameTime(dc));
+        }
+
         if (iconPoint == null)
         {
             Angle lat = icon.getPosition().getLatitude();
@@ -220,94 +1009,372 @@ public class IconRenderer
             return;
         }
 
-        // The icon isn't drawn here, but added to the ordered queue to be drawn back-to-front.
-        dc.addOrderedRenderable(new OrderedIcon(icon, iconPoint, eyeDistance));
-
-        if (icon.isShowToolTip())
+        if (!this.beginProjection(dc))
+        {
+            return;
+        }
+
+        this.addOrderedIcon(dc, icon, iconPoint.x, iconPoint.y, iconPoint.z);
+    }
+
+    private void addOrderedIcon(DrawContext dc, WWIcon icon, double x, double y, double z)
+    {
+        OrderedIcon uIcon = this.obtainOrderedIcon();
+        if (!this.project(x, y, z, uIcon))
+        {
+            this.releaseOrderedIcon(uIcon);
+            return;
+        }
+
+        // The icons aren't drawn here, but added to the ordered queue to be drawn back-to-front.
+        uIcon.icon = icon;
+        if (icon.isAlwaysOnTop())
+        {
+            uIcon.eyeDistance = 0;
+        }
+        else
+        {
+            double dx = x - this.eyeX;
+            double dy = y - this.eyeY;
+            double dz = z - this.eyeZ;
+            uIcon.eyeDistance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        dc.addOrderedRenderable(uIcon);
+
+        if (icon.isShowToolTip())
+        {
+            this.addToolTip(dc, icon, uIcon);
+        }
+    }
+
+    private void addToolTip(DrawContext dc, WWIcon icon, OrderedIcon uIcon)
+    {
+        if (icon.getToolTipFont() == null && icon.getToolTipText() == null)
+        {
+            return;
+        }
+
+        OrderedText tip = this.textPool.isEmpty() ? new OrderedText() : this.textPool.remove(this.textPool.size() - 1);
+        tip.text = icon.getToolTipText();
+        tip.font = icon.getToolTipFont();
+        tip.color = icon.getToolTipTextColor();
+        tip.x = uIcon.screenX;
+        tip.y = uIcon.screenY;
+        tip.eyeDistance = 0d;
+        tip.pooled = false;
+        dc.addOrderedRenderable(tip);
+    }
+
+    private OrderedIcon obtainOrderedIcon()
+    {
+        OrderedIcon uIcon = this.iconPool.isEmpty() ? new OrderedIcon() : this.iconPool.remove(this.iconPool.size() - 1);
+        uIcon.pooled = false;
+        return uIcon;
+    }
+
+    private void releaseOrderedIcon(OrderedIcon uIcon)
+    {
+        if (!uIcon.pooled)
+        {
+            uIcon.pooled = true;
+            uIcon.icon = null;
+            this.iconPool.add(uIcon);
+        }
+    }
+
+    private void releaseOrderedText(OrderedText tip)
+    {
+        if (!tip.pooled)
+        {
+            tip.pooled = true;
+            tip.text = null;
+            tip.font = null;
+            tip.color = null;
+            this.textPool.add(tip);
+        }
+    }
+
+    /**
+     * Stores the model-view-projection matrix, the viewport and the eye point
+     * of the current view so the icons are projected without allocating.
+     * @param dc
+     * @return false if the view isn't ready.
+     */
+    private boolean beginProjection(DrawContext dc)
+    {
+        View view = dc.getView();
+        Matrix modelView = view.getModelViewMatrix();
+        Matrix projection = view.getProjectionMatrix();
+        Rectangle viewport = view.getViewport();
+        Vec4 eye = view.getEyePoint();
+        if (modelView == null || projection == null || viewport == null || eye == null)
+        {
+            return false;
+        }
+
+        modelView.toArray(this.matrixArray, 0, false);
+        projection.toArray(this.matrixArray, 16, false);
+        for (int col = 0; col < 4; col++)
+        {
+            for (int row = 0; row < 4; row++)
+            {
+                double sum = 0;
+                for (int k = 0; k < 4; k++)
+                {
+                    sum += this.matrixArray[16 + k * 4 + row] * this.matrixArray[col * 4 + k];
+                }
+                this.mvp[col * 4 + row] = sum;
+            }
+        }
+
+        this.viewportX = viewport.x;
+        this.viewportY = viewport.y;
+        this.viewportWidth = viewport.width;
+        this.viewportHeight = viewport.height;
+        this.eyeX = eye.x;
+        this.eyeY = eye.y;
+        this.eyeZ = eye.z;
+        return true;
+    }
+
+    /**
+     * Projects a model point to window coordinates, as gluProject does,
+     * storing the result in the ordered icon.
+     * @return false if the point can't be projected.
+     */
+    private boolean project(double x, double y, double z, OrderedIcon uIcon)
+    {
+        double[] m = this.mvp;
+        double w = m[3] * x + m[7] * y + m[11] * z + m[15];
+        if (w == 0d)
+        {
+            return false;
+        }
+
+        double px = (m[0] * x + m[4] * y + m[8] * z + m[12]) / w;
+        double py = (m[1] * x + m[5] * y + m[9] * z + m[13]) / w;
+        double pz = (m[2] * x + m[6] * y + m[10] * z + m[14]) / w;
+        uIcon.screenX = this.viewportX + (1d + px) * this.viewportWidth / 2d;
+        uIcon.screenY = this.viewportY + (1d + py) * this.viewportHeight / 2d;
+        uIcon.screenZ = (1d + pz) / 2d;
+        return true;
+    }
+
+    private class OrderedText implements OrderedRenderable
+    {
+
+        Font font;
+        String text;
+        double x;
+        double y;
+        double eyeDistance;
+        java.awt.Color color;
+        boolean pooled;
+
+        public double getDistanceFromEye()
+        {
+            return this.eyeDistance;
+        }
+
+        public void render(DrawContext dc)
+        {
+            ToolTipRenderer tr = IconRenderer.this.toolTipRenderers.get(this.font);
+            if (tr == null)
+            {
+                if (this.font != null)
+                {
+                    tr = new ToolTipRenderer(new TextRenderer(this.font, true, true));
+                }
+                else
+                {
+                    tr = new ToolTipRenderer();
+                }
+                IconRenderer.this.toolTipRenderers.put(this.font, tr);
+            }
+
+            Rectangle vp = dc.getView().getViewport();
+            tr.setForeground(this.color);
+            tr.setUseSystemLookAndFeel(this.color == null);
+            tr.beginRendering(vp.width, vp.height, true);
+            tr.draw(this.text, (int) this.x, (int) this.y);
+            tr.endRendering();
+            IconRenderer.this.releaseOrderedText(this);
+        }
+
+        public void pick(DrawContext dc, java.awt.Point pickPoint)
+        {
+            IconRenderer.this.releaseOrderedText(this);
+        }
+    }
+
+    /**
+     * The icons of a drawMany call drawn as points.
+     */
+    private class OrderedPoints implements OrderedRenderable
+    {
+
+        final ArrayList<WWIcon> icons = new ArrayList<WWIcon>();
+        // Window x, y and depth of every point.
+        FloatBuffer vertices = BufferUtil.newFloatBuffer(64 * 3);
+        ByteBuffer pickColors = null;
+        double eyeDistance;
+        boolean nearSurface;
+        boolean pooled;
+
+        void ensureCapacity(int numPoints)
+        {
+            if (this.vertices.capacity() < numPoints * 3)
+            {
+                FloatBuffer newVertices = BufferUtil.newFloatBuffer(Math.max(numPoints * 3, this.vertices.capacity() * 2));
+                this.vertices.position(0);
+                newVertices.put(this.vertices);
+                this.vertices = newVertices;
+            }
+        }
+
+        public double getDistanceFromEye()
+        {
+            return this.eyeDistance;
+        }
+
+        public void render(DrawContext dc)
+        {
+            try
+            {
+                IconRenderer.this.drawPoints(dc, this, null);
+            }
+            catch (Exception e)
+            {
+                Logging.logger().log(Level.SEVERE, "generic.ExceptionWhileRenderingIcon", e);
+            }
+            finally
+            {
+                IconRenderer.this.releaseOrderedPoints(this);
+            }
+        }
+
+        public void pick(DrawContext dc, java.awt.Point pickPoint)
         {
-            this.addToolTip(dc, icon, iconPoint);
+            IconRenderer.this.pickSupport.clearPickList();
+            try
+            {
+                IconRenderer.this.drawPoints(dc, this, pickPoint);
+            }
+            catch (Exception e)
+            {
+                Logging.logger().log(Level.SEVERE, "generic.ExceptionWhilePickingIcon", e);
+            }
+            finally
+            {
+                IconRenderer.this.pickSupport.clearPickList();
+                IconRenderer.this.releaseOrderedPoints(this);
+            }
         }
     }
 
-    private void addToolTip(DrawContext dc, WWIcon icon, Vec4 iconPoint)
+    /**
+     * Draws the points with one call, in the point color or, when picking,
+     * each one in its pick color.
+     */
+    private void drawPoints(DrawContext dc, OrderedPoints points, java.awt.Point pickPoint)
     {
-        if (icon.getToolTipFont() == null && icon.getToolTipText() == null)
-        {
-            return;
-        }
-
-        final Vec4 screenPoint = dc.getView().project(iconPoint);
-        if (screenPoint == null)
+        int numPoints = points.icons.size();
+        boolean picking = dc.isPickingMode();
+        if (picking)
         {
-            return;
+            if (points.pickColors == null || points.pickColors.capacity() < numPoints * 3)
+            {
+                points.pickColors = BufferUtil.newByteBuffer(Math.max(numPoints, points.vertices.capacity() / 3) * 3);
+            }
+            for (int i = 0; i < numPoints; i++)
+            {
+                WWIcon icon = points.icons.get(i);
+                java.awt.Color color = dc.getUniquePickColor();
+                this.pickSupport.addPickableObject(color.getRGB(), icon, icon.getPosition(), false);
+                points.pickColors.put(i * 3, (byte) color.getRed());
+                points.pickColors.put(i * 3 + 1, (byte) color.getGreen());
+                points.pickColors.put(i * 3 + 2, (byte) color.getBlue());
+            }
         }
-
-        OrderedText tip = new OrderedText(icon.getToolTipText(), icon.getToolTipFont(), screenPoint,
-                icon.getToolTipTextColor(), 0d);
-        dc.addOrderedRenderable(tip);
-    }
-
-    private class OrderedText implements OrderedRenderable
-    {
-
-        Font font;
-        String text;
-        Vec4 point;
-        double eyeDistance;
-        java.awt.Point pickPoint;
-        Layer layer;
-        java.awt.Color color;
-
-        OrderedText(String text, Font font, Vec4 point, java.awt.Color color, double eyeDistance)
+        else if (this.gridPicking)
         {
-            this.text = text;
-            this.font = font;
-            this.point = point;
-            this.eyeDistance = eyeDistance;
-            this.color = color;
+            // Pick the points from the grid as squares.
+            double half = Math.max(this.pointSize, 4d) / 2d;
+            for (int i = 0; i < numPoints; i++)
+            {
+                double x = points.vertices.get(i * 3);
+                double y = points.vertices.get(i * 3 + 1);
+                this.cornerX[0] = this.cornerX[3] = x - half;
+                this.cornerX[1] = this.cornerX[2] = x + half;
+                this.cornerY[0] = this.cornerY[1] = y - half;
+                this.cornerY[2] = this.cornerY[3] = y + half;
+                this.buildingGrid.add(points.icons.get(i), this.cornerX, this.cornerY);
+            }
         }
 
-        OrderedText(String text, Font font, Vec4 point, java.awt.Point pickPoint, Layer layer, double eyeDistance)
+        GL gl = dc.getGL();
+        gl.glPushAttrib(GL.GL_DEPTH_BUFFER_BIT | GL.GL_TRANSFORM_BIT | GL.GL_CURRENT_BIT | GL.GL_COLOR_BUFFER_BIT
+                | GL.GL_POINT_BIT | GL.GL_ENABLE_BIT);
+        gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+        gl.glMatrixMode(GL.GL_PROJECTION);
+        gl.glPushMatrix();
+        gl.glMatrixMode(GL.GL_MODELVIEW);
+        gl.glPushMatrix();
+        try
         {
-            this.text = text;
-            this.font = font;
-            this.point = point;
-            this.eyeDistance = eyeDistance;
-            this.pickPoint = pickPoint;
-            this.layer = layer;
-        }
+            Rectangle vp = dc.getView().getViewport();
+            gl.glMatrixMode(GL.GL_PROJECTION);
+            gl.glLoadIdentity();
+            // Map z to the window depth, from 0 at the near plane to 1 at the far one.
+            gl.glOrtho(0d, vp.width, 0d, vp.height, 0d, -1d);
+            gl.glMatrixMode(GL.GL_MODELVIEW);
+            gl.glLoadIdentity();
 
-        public double getDistanceFromEye()
-        {
-            return this.eyeDistance;
-        }
+            gl.glDisable(GL.GL_TEXTURE_2D);
+            gl.glEnable(GL.GL_DEPTH_TEST);
+            gl.glDepthMask(false);
+            gl.glDepthFunc(points.nearSurface ? GL.GL_LESS : GL.GL_ALWAYS);
+            gl.glPointSize((float) this.pointSize);
 
-        public void render(DrawContext dc)
-        {
-            ToolTipRenderer tr = IconRenderer.this.toolTipRenderers.get(this.font);
-            if (tr == null)
+            gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, points.vertices.position(0));
+            if (picking)
             {
-                if (this.font != null)
-                {
-                    tr = new ToolTipRenderer(new TextRenderer(this.font, true, true));
-                }
-                else
-                {
-                    tr = new ToolTipRenderer();
-                }
-                IconRenderer.this.toolTipRenderers.put(this.font, tr);
+                // Round points would blend the pick colors.
+                this.pickSupport.beginPicking(dc);
+                gl.glDisable(GL.GL_POINT_SMOOTH);
+                gl.glEnableClientState(GL.GL_COLOR_ARRAY);
+                gl.glColorPointer(3, GL.GL_UNSIGNED_BYTE, 0, points.pickColors.position(0));
+            }
+            else
+            {
+                gl.glEnable(GL.GL_POINT_SMOOTH);
+                gl.glHint(GL.GL_POINT_SMOOTH_HINT, GL.GL_NICEST);
+                gl.glEnable(GL.GL_BLEND);
+                gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+                gl.glColor4ub((byte) this.pointColor.getRed(), (byte) this.pointColor.getGreen(),
+                        (byte) this.pointColor.getBlue(), (byte) this.pointColor.getAlpha());
             }
 
-            Rectangle vp = dc.getView().getViewport();
-            tr.setForeground(this.color);
-            tr.setUseSystemLookAndFeel(this.color == null);
-            tr.beginRendering(vp.width, vp.height, true);
-            tr.draw(this.text, (int) point.x, (int) point.y);
-            tr.endRendering();
+            gl.glDrawArrays(GL.GL_POINTS, 0, numPoints);
+            if (picking)
+            {
+                this.pickSupport.endPicking(dc);
+            }
+        }
+        finally
+        {
+            gl.glMatrixMode(GL.GL_MODELVIEW);
+            gl.glPopMatrix();
+            gl.glMatrixMode(GL.GL_PROJECTION);
+            gl.glPopMatrix();
+            gl.glPopClientAttrib();
+            gl.glPopAttrib();
         }
 
-        public void pick(DrawContext dc, java.awt.Point pickPoint)
+        if (picking)
         {
+            this.pickSupport.resolvePick(dc, pickPoint, null);
         }
     }
 
@@ -315,25 +1382,17 @@ public class IconRenderer
     {
 
         WWIcon icon;
-        Vec4 point;
+        // Window coordinates of the icon point.
+        double screenX;
+        double screenY;
+        double screenZ;
         double eyeDistance;
-        java.awt.Point pickPoint;
         Layer layer;
+        boolean pooled;
 
-        OrderedIcon(WWIcon icon, Vec4 point, double eyeDistance)
-        {
-            this.icon = icon;
-            this.point = point;
-            this.eyeDistance = eyeDistance;
-        }
-
-        OrderedIcon(WWIcon icon, Vec4 point, java.awt.Point pickPoint, Layer layer, double eyeDistance)
+        void release()
         {
-            this.icon = icon;
-            this.point = point;
-            this.eyeDistance = eyeDistance;
-            this.pickPoint = pickPoint;
-            this.layer = layer;
+            IconRenderer.this.releaseOrderedIcon(this);
         }
 
         public double getDistanceFromEye()
@@ -352,12 +1411,20 @@ public class IconRenderer
 
             try
             {
+                if (IconRenderer.this.batchRendering)
+                {
+                    IconRenderer.this.drawBatch(dc, this);
+                    return;
+                }
+
                 IconRenderer.this.drawIcon(dc, this);
+                this.release();
                 // Draw as many as we can in a batch to save ogl state switching.
                 while (dc.getOrderedRenderables().peek() instanceof OrderedIcon)
                 {
                     OrderedIcon oi = (OrderedIcon) dc.getOrderedRenderables().poll();
                     IconRenderer.this.drawIcon(dc, oi);
+                    oi.release();
                 }
             }
             catch (WWRuntimeException e)
@@ -400,6 +1467,7 @@ public class IconRenderer
                 IconRenderer.this.endDrawIcons(dc);
                 IconRenderer.this.pickSupport.resolvePick(dc, pickPoint, layer);
                 IconRenderer.this.pickSupport.clearPickList(); // to ensure entries can be garbage collected
+                this.release();
             }
         }
     }
@@ -428,7 +1496,7 @@ public class IconRenderer
         gl.glAlphaFunc(GL.GL_GREATER, 0.001f);
 
         // Load a parallel projection with dimensions (viewportWidth, viewportHeight)
-        int[] viewport = new int[4];
+        int[] viewport = this.viewportArray;
         gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
         gl.glMatrixMode(GL.GL_PROJECTION);
         gl.glPushMatrix();
@@ -479,27 +1547,14 @@ public class IconRenderer
         gl.glPopAttrib();
     }
 
-    private Vec4 drawIcon(DrawContext dc, OrderedIcon uIcon)
+    private void drawIcon(DrawContext dc, OrderedIcon uIcon)
     {
-        if (uIcon.point == null)
-        {
-            String msg = Logging.getMessage("nullValue.PointIsNull");
-            Logging.logger().severe(msg);
-            return null;
-        }
-
         WWIcon icon = uIcon.icon;
 
-        final Vec4 screenPoint = dc.getView().project(uIcon.point);
-        if (screenPoint == null)
-        {
-            return null;
-        }
-
-        Texture iconTexture = dc.getTextureCache().get(icon.getImageSource());
+        Texture iconTexture = this.getIconTexture(dc, icon);
         if (iconTexture == null)
         {
-            iconTexture = this.initializeTexture(dc, icon);
+            return;
         }
 
         double pedestalScale;
@@ -510,11 +1565,7 @@ public class IconRenderer
             pedestalScale = this.pedestal.getScale();
             pedestalSpacing = pedestal.getSpacingPixels();
 
-            pedestalTexture = dc.getTextureCache().get(pedestal.getPath());
-            if (pedestalTexture == null)
-            {
-                pedestalTexture = this.initializeTexture(dc, pedestal);
-            }
+            pedestalTexture = this.textureLoader.getTexture(dc, pedestal.getImageSource());
         }
         else
         {
@@ -524,7 +1575,7 @@ public class IconRenderer
 
         javax.media.opengl.GL gl = dc.getGL();
 
-        this.setDepthFunc(dc, uIcon, screenPoint);
+        this.setDepthFunc(dc, uIcon);
 
         gl.glMatrixMode(GL.GL_MODELVIEW);
         gl.glLoadIdentity();
@@ -533,14 +1584,21 @@ public class IconRenderer
         double width = size != null ? size.getWidth() : iconTexture.getWidth();
         double height = size != null ? size.getHeight() : iconTexture.getHeight();
 
-        gl.glTranslated(screenPoint.x - width / 2, screenPoint.y + (pedestalScale * height) + pedestalSpacing, 0d);
+        if (this.gridPicking && !dc.isPickingMode())
+        {
+            this.addToPickGrid(icon, uIcon.screenX, uIcon.screenY, width, height, pedestalScale, pedestalSpacing,
+                    pedestalTexture != null);
+        }
+
+        gl.glTranslated(uIcon.screenX - width / 2, uIcon.screenY + (pedestalScale * height) + pedestalSpacing, 0d);
  
         ///////////////////////////////////////////////
         // This code is responsible to rotate the icon.
         if (icon instanceof Rotable)
         {
-            Angle heading = ((Rotable) icon).getHeading();
-            gl.glRotated(heading.getDegrees(), 0d, 0d, 1d);
+            double heading = icon instanceof PrimitiveIcon ? ((PrimitiveIcon) icon).getHeadingDegrees()
+                    : ((Rotable) icon).getHeading().getDegrees();
+            gl.glRotated(heading, 0d, 0d, 1d);
             gl.glTranslated(-width / 2, -height / 2, 0d);
         }        
         ///////////////////////////////////////////////
@@ -570,18 +1628,356 @@ public class IconRenderer
         if (pedestalTexture != null)
         {
             gl.glLoadIdentity();
-            gl.glTranslated(screenPoint.x - (pedestalScale * (width / 2)), screenPoint.y, 0d);
+            gl.glTranslated(uIcon.screenX - (pedestalScale * (width / 2)), uIcon.screenY, 0d);
             gl.glScaled(width * pedestalScale, height * pedestalScale, 1d);
 
             pedestalTexture.bind();
             texCoords = pedestalTexture.getImageTexCoords();
             dc.drawUnitQuad(texCoords);
         }
+    }
+
+    private void drawBatch(DrawContext dc, OrderedIcon first)
+    {
+        // Collect the consecutive icons of the ordered queue, they are sorted back-to-front.
+        this.batch.clear();
+        this.batch.add(first);
+        while (dc.getOrderedRenderables().peek() instanceof OrderedIcon)
+        {
+            this.batch.add((OrderedIcon) dc.getOrderedRenderables().poll());
+        }
+
+        try
+        {
+            this.drawBatchQuads(dc);
+        }
+        finally
+        {
+            for (int i = 0; i < this.batch.size(); i++)
+            {
+                this.batch.get(i).release();
+            }
+            this.batch.clear();
+        }
+    }
+
+    private void drawBatchQuads(DrawContext dc)
+    {
+        int numIcons = this.batch.size();
+        Texture pedestalTexture = null;
+        double pedestalScale = 0d;
+        double pedestalSpacing = 0d;
+        if (this.pedestal != null)
+        {
+            pedestalScale = this.pedestal.getScale();
+            pedestalSpacing = this.pedestal.getSpacingPixels();
+            pedestalTexture = this.textureLoader.getTexture(dc, this.pedestal.getImageSource());
+        }
+
+        // Every icon has a quad and, with a pedestal, a second quad at 'numIcons + i'.
+        int numQuads = pedestalTexture != null ? numIcons * 2 : numIcons;
+        this.ensureBatchCapacity(numIcons, numQuads);
+        this.batchTextures.clear();
+        this.batchTextureIndex.clear();
+
+        // The depth test only depends on the eye altitude for all the icons.
+        Position eyePos = dc.getView().getEyePosition();
+        boolean nearSurface = eyePos != null
+                && eyePos.getElevation() < (dc.getGlobe().getMaxElevation() * dc.getVerticalExaggeration());
+
+        int pedestalIndex = pedestalTexture != null ? this.textureIndex(pedestalTexture) : -1;
+        for (int i = 0; i < numIcons; i++)
+        {
+            OrderedIcon uIcon = this.batch.get(i);
+            WWIcon icon = uIcon.icon;
+            this.batchKeys[i] = -1;
+            if (pedestalTexture != null)
+            {
+                this.batchKeys[numIcons + i] = -1;
+            }
+
+            Texture iconTexture = this.getIconTexture(dc, icon);
+            if (iconTexture == null)
+            {
+                continue;
+            }
+
+            int depthMode;
+            double depth = 0d;
+            if (icon.isAlwaysOnTop() || eyePos == null)
+            {
+                depthMode = DEPTH_ALWAYS;
+            }
+            else if (nearSurface)
+            {
+                depthMode = DEPTH_LESS;
+                depth = uIcon.screenZ - (8d * 0.00048875809d);
+                depth = depth < 0d ? 0d : (depth > 1d ? 1d : depth);
+            }
+            else if (uIcon.screenZ >= 1d)
+            {
+                depthMode = DEPTH_EQUAL;
+                depth = 1d;
+            }
+            else
+            {
+                depthMode = DEPTH_ALWAYS;
+            }
+
+            Dimension size = icon.getSize();
+            this.batchX[i] = uIcon.screenX;
+            this.batchY[i] = uIcon.screenY;
+            this.batchZ[i] = depth;
+            this.batchWidth[i] = size != null ? size.getWidth() : iconTexture.getWidth();
+            this.batchHeight[i] = size != null ? size.getHeight() : iconTexture.getHeight();
+            this.batchKeys[i] = depthMode;
+            this.batchOrder[i] = this.textureIndex(iconTexture);
+            if (pedestalTexture != null)
+            {
+                this.batchKeys[numIcons + i] = depthMode;
+                this.batchOrder[numIcons + i] = pedestalIndex;
+            }
+
+            if (this.gridPicking && !dc.isPickingMode())
+            {
+                this.addToPickGrid(icon, uIcon.screenX, uIcon.screenY, this.batchWidth[i], this.batchHeight[i],
+                        pedestalScale, pedestalSpacing, pedestalTexture != null);
+            }
+        }
+
+        // Sort the quads by (depth mode, texture) with a counting sort, which
+        // is stable and keeps the back-to-front order inside every group.
+        int numTextures = this.batchTextures.size();
+        int numKeys = NUM_DEPTH_MODES * numTextures;
+        if (this.batchCounts.length < numKeys + 1)
+        {
+            this.batchCounts = new int[numKeys + 1];
+        }
+        Arrays.fill(this.batchCounts, 0, numKeys + 1, 0);
+        for (int q = 0; q < numQuads; q++)
+        {
+            if (this.batchKeys[q] >= 0)
+            {
+                this.batchKeys[q] = this.batchKeys[q] * numTextures + this.batchOrder[q];
+                this.batchCounts[this.batchKeys[q] + 1]++;
+            }
+        }
+        for (int k = 0; k < numKeys; k++)
+        {
+            this.batchCounts[k + 1] += this.batchCounts[k];
+        }
+        int numVisible = this.batchCounts[numKeys];
+        for (int q = 0; q < numQuads; q++)
+        {
+            if (this.batchKeys[q] >= 0)
+            {
+                this.batchOrder[this.batchCounts[this.batchKeys[q]]++] = q;
+            }
+        }
+
+        if (numVisible == 0)
+        {
+            return;
+        }
+
+        // Write the screen quads of all the groups in the vertex array.
+        FloatBuffer vertices = this.batchVertices;
+        vertices.clear();
+        for (int n = 0; n < numVisible; n++)
+        {
+            int q = this.batchOrder[n];
+            if (q < numIcons)
+            {
+                Texture texture = this.batchTextures.get(this.batchKeys[q] % numTextures);
+                this.putIconQuad(vertices, this.batch.get(q).icon, q, texture, pedestalScale, pedestalSpacing);
+            }
+            else
+            {
+                this.putPedestalQuad(vertices, q - numIcons, pedestalScale, pedestalTexture);
+            }
+        }
+        vertices.flip();
+
+        GL gl = dc.getGL();
+        Rectangle vp = dc.getView().getViewport();
+        gl.glMatrixMode(GL.GL_PROJECTION);
+        gl.glLoadIdentity();
+        // Map z to the window depth, from 0 at the near plane to 1 at the far one.
+        gl.glOrtho(0d, vp.width, 0d, vp.height, 0d, -1d);
+        gl.glMatrixMode(GL.GL_MODELVIEW);
+        gl.glLoadIdentity();
+
+        gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+        try
+        {
+            gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+            gl.glEnableClientState(GL.GL_TEXTURE_COORD_ARRAY);
+            gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, vertices.position(0));
+            gl.glTexCoordPointer(2, GL.GL_FLOAT, STRIDE, vertices.position(3));
+            vertices.position(0);
+
+            // After the sort every count points to the end of its group.
+            int start = 0;
+            for (int key = 0; key < numKeys; key++)
+            {
+                int end = this.batchCounts[key];
+                if (end <= start)
+                {
+                    continue;
+                }
+
+                int depthMode = key / numTextures;
+                if (depthMode == DEPTH_LESS)
+                {
+                    gl.glDepthFunc(GL.GL_LESS);
+                    gl.glDepthRange(0d, 1d);
+                }
+                else if (depthMode == DEPTH_EQUAL)
+                {
+                    gl.glDepthFunc(GL.GL_EQUAL);
+                    gl.glDepthRange(1d, 1d);
+                }
+                else
+                {
+                    gl.glDepthFunc(GL.GL_ALWAYS);
+                    gl.glDepthRange(0d, 1d);
+                }
+
+                this.batchTextures.get(key % numTextures).bind();
+                gl.glDrawArrays(GL.GL_QUADS, start * 4, (end - start) * 4);
+                start = end;
+            }
+        }
+        finally
+        {
+            gl.glPopClientAttrib();
+        }
+    }
+
+    private void putIconQuad(FloatBuffer vertices, WWIcon icon, int i, Texture texture, double pedestalScale,
+            double pedestalSpacing)
+    {
+        double[] xs = this.cornerX;
+        double[] ys = this.cornerY;
+        this.computeIconCorners(icon, this.batchX[i], this.batchY[i], this.batchWidth[i], this.batchHeight[i],
+                pedestalScale, pedestalSpacing, xs, ys);
+        float z = (float) this.batchZ[i];
+
+        TextureCoords texCoords = texture.getImageTexCoords();
+        for (int corner = 0; corner < 4; corner++)
+        {
+            vertices.put((float) xs[corner]).put((float) ys[corner]).put(z);
+            vertices.put(corner == 0 || corner == 3 ? texCoords.left() : texCoords.right());
+            vertices.put(corner < 2 ? texCoords.bottom() : texCoords.top());
+        }
+    }
+
+    /**
+     * Computes the window coordinates of the corners of an icon, applying
+     * the same transforms drawIcon applies with the modelview matrix. The
+     * corners go counterclockwise from the bottom left one of the image.
+     */
+    private void computeIconCorners(WWIcon icon, double screenX, double screenY, double width, double height,
+            double pedestalScale, double pedestalSpacing, double[] xs, double[] ys)
+    {
+        double originX = screenX - width / 2;
+        double originY = screenY + (pedestalScale * height) + pedestalSpacing;
+
+        double scale = icon.isHighlighted() ? icon.getHighlightScale() : 1d;
+        double heightDelta = this.pedestal != null ? 0 : height / 2;
+        boolean rotable = icon instanceof Rotable;
+        double cos = 1d;
+        double sin = 0d;
+        if (rotable)
+        {
+            double radians = icon instanceof PrimitiveIcon ? Math.toRadians(((PrimitiveIcon) icon).getHeadingDegrees())
+                    : ((Rotable) icon).getHeading().radians;
+            cos = Math.cos(radians);
+            sin = Math.sin(radians);
+        }
+
+        for (int corner = 0; corner < 4; corner++)
+        {
+            int u = (corner == 1 || corner == 2) ? 1 : 0;
+            int v = corner >= 2 ? 1 : 0;
+            double x = u * width;
+            double y = v * height;
+            if (scale != 1d)
+            {
+                x = width / 2 + scale * (x - width / 2);
+                y = heightDelta + scale * (y - heightDelta);
+            }
+            if (rotable)
+            {
+                double dx = x - width / 2;
+                double dy = y - height / 2;
+                x = cos * dx - sin * dy;
+                y = sin * dx + cos * dy;
+            }
+            xs[corner] = originX + x;
+            ys[corner] = originY + y;
+        }
+    }
+
+    private void putPedestalQuad(FloatBuffer vertices, int i, double pedestalScale, Texture pedestalTexture)
+    {
+        double width = this.batchWidth[i] * pedestalScale;
+        double height = this.batchHeight[i] * pedestalScale;
+        double originX = this.batchX[i] - width / 2;
+        double originY = this.batchY[i];
+        float z = (float) this.batchZ[i];
+
+        TextureCoords texCoords = pedestalTexture.getImageTexCoords();
+        for (int corner = 0; corner < 4; corner++)
+        {
+            int u = (corner == 1 || corner == 2) ? 1 : 0;
+            int v = corner >= 2 ? 1 : 0;
+            vertices.put((float) (originX + u * width)).put((float) (originY + v * height)).put(z);
+            vertices.put(u == 0 ? texCoords.left() : texCoords.right());
+            vertices.put(v == 0 ? texCoords.bottom() : texCoords.top());
+        }
+    }
+
+    private int textureIndex(Texture texture)
+    {
+        Integer index = this.batchTextureIndex.get(texture);
+        if (index == null)
+        {
+            index = this.batchTextures.size();
+            this.batchTextures.add(texture);
+            this.batchTextureIndex.put(texture, index);
+        }
+        return index;
+    }
+
+    private void ensureBatchCapacity(int numIcons, int numQuads)
+    {
+        if (this.batchX.length < numIcons)
+        {
+            int capacity = Math.max(numIcons, this.batchX.length * 2);
+            this.batchX = new double[capacity];
+            this.batchY = new double[capacity];
+            this.batchZ = new double[capacity];
+            this.batchWidth = new double[capacity];
+            this.batchHeight = new double[capacity];
+        }
+
+        if (this.batchKeys.length < numQuads)
+        {
+            int capacity = Math.max(numQuads, this.batchKeys.length * 2);
+            this.batchKeys = new int[capacity];
+            this.batchOrder = new int[capacity];
+        }
 
-        return screenPoint;
+        if (this.batchVertices == null || this.batchVertices.capacity() < numQuads * 4 * VERTEX_SIZE)
+        {
+            int capacity = Math.max(numQuads, this.batchVertices != null
+                    ? 2 * this.batchVertices.capacity() / (4 * VERTEX_SIZE) : 0);
+            this.batchVertices = BufferUtil.newFloatBuffer(capacity * 4 * VERTEX_SIZE);
+        }
     }
 
-    private void setDepthFunc(DrawContext dc, OrderedIcon uIcon, Vec4 screenPoint)
+    private void setDepthFunc(DrawContext dc, OrderedIcon uIcon)
     {
         GL gl = dc.getGL();
 
@@ -601,12 +1997,12 @@ public class IconRenderer
         double altitude = eyePos.getElevation();
         if (altitude < (dc.getGlobe().getMaxElevation() * dc.getVerticalExaggeration()))
         {
-            double depth = screenPoint.z - (8d * 0.00048875809d);
+            double depth = uIcon.screenZ - (8d * 0.00048875809d);
             depth = depth < 0d ? 0d : (depth > 1d ? 1d : depth);
             gl.glDepthFunc(GL.GL_LESS);
             gl.glDepthRange(depth, depth);
         }
-        else if (screenPoint.z >= 1d)
+        else if (uIcon.screenZ >= 1d)
         {
             gl.glDepthFunc(GL.GL_EQUAL);
             gl.glDepthRange(1d, 1d);
@@ -617,60 +2013,18 @@ public class IconRenderer
         }
     }
 
-    private Texture initializeTexture(DrawContext dc, WWIcon icon)
+    /**
+     * Returns the texture of an icon, the placeholder while it's being
+     * decoded, or null if its image can't be read.
+     */
+    private Texture getIconTexture(DrawContext dc, WWIcon icon)
     {
-        try
-        {
-            Texture iconTexture = null;
-
-            if (icon.getImageSource() instanceof String)
-            {
-                String path = (String) icon.getImageSource();
-                java.io.InputStream iconStream = this.getClass().getResourceAsStream("/" + path);
-                if (iconStream == null)
-                {
-                    java.io.File iconFile = new java.io.File(path);
-                    if (iconFile.exists())
-                    {
-                        iconStream = new java.io.FileInputStream(iconFile);
-                    }
-                }
-                iconTexture = TextureIO.newTexture(iconStream, true, null);
-            }
-            else if (icon.getImageSource() instanceof BufferedImage)
-            {
-                iconTexture = TextureIO.newTexture((BufferedImage) icon.getImageSource(), true);
-            }
-            else
-            {
-            // TODO: Log case of unknown image-source type.
-            }
-
-            if (iconTexture == null)
-            {
-                // TODO: Log case.
-                return null;
-            }
-
-            // Icons with the same path are assumed to be identical textures, so key the texture id off the path.
-            dc.getTextureCache().put(icon.getImageSource(), iconTexture);
-            iconTexture.bind();
-
-            GL gl = dc.getGL();
-            gl.glTexEnvf(GL.GL_TEXTURE_ENV, GL.GL_TEXTURE_ENV_MODE, GL.GL_MODULATE);
-            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR_MIPMAP_LINEAR);
-            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
-            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
-            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
-
-            return iconTexture;
-        }
-        catch (java.io.IOException e)
+        Texture texture = this.textureLoader.getTexture(dc, icon.getImageSource());
+        if (texture == null && !this.textureLoader.isFailed(icon.getImageSource()))
         {
-            String msg = Logging.getMessage("generic.IOExceptionDuringTextureInitialization");
-            Logging.logger().log(Level.SEVERE, msg, e);
-            throw new WWRuntimeException(msg, e);
+            texture = this.textureLoader.getPlaceholder(dc);
         }
+        return texture;
     }
 
     @Override
@@ -0,0 +1,437 @@
+package gov.nasa.worldwind.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * IconStore keeps the state of many icons (position, heading and flags) in
+ * primitive arrays, so it can be updated by ingest threads and read by the
+ * rendering thread without sharing icon objects between them.
+ * <br/>
+ * Writers modify a private copy of the arrays and make the changes visible
+ * with 'publish', which copies them to a snapshot and publishes it with an
+ * atomic reference. Readers 'acquire' the last published snapshot, which
+ * never changes while acquired, and 'release' it when done. Readers never
+ * wait for writers; writers only wait for other writers.
+ * <br/>
+ * Every icon has a stamp with the number of the last change, so readers can
+ * update only what changed since the last snapshot they read.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class IconStore
+{
+
+    /**
+     * The icon must be rendered.
+     */
+    public static final int VISIBLE = 1;
+    /**
+     * The icon is highlighted.
+     */
+    public static final int HIGHLIGHTED = 2;
+
+    /**
+     * An immutable view of the icons at the time it was published.
+     */
+    public static final class Snapshot
+    {
+
+        private final AtomicInteger readers = new AtomicInteger();
+        private int size = 0;
+        private long version = 0;
+        private long lastStamp = 0;
+        private double[] lats = new double[0];
+        private double[] lons = new double[0];
+        private double[] alts = new double[0];
+        private double[] headings = new double[0];
+        private int[] flags = new int[0];
+        private long[] stamps = new long[0];
+
+        private Snapshot()
+        {
+        }
+
+        /**
+         * Gets the number of icons.
+         * @return
+         */
+        public int getSize()
+        {
+            return size;
+        }
+
+        /**
+         * Gets the number of times the store was published until this
+         * snapshot.
+         * @return
+         */
+        public long getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * Gets the stamp of the last change included in the snapshot.
+         * @return
+         */
+        public long getLastStamp()
+        {
+            return lastStamp;
+        }
+
+        public double getLatitude(int index)
+        {
+            return lats[index];
+        }
+
+        public double getLongitude(int index)
+        {
+            return lons[index];
+        }
+
+        public double getAltitude(int index)
+        {
+            return alts[index];
+        }
+
+        /**
+         * Gets the heading of an icon.
+         * @param index
+         * @return heading in degrees.
+         */
+        public double getHeading(int index)
+        {
+            return headings[index];
+        }
+
+        public int getFlags(int index)
+        {
+            return flags[index];
+        }
+
+        /**
+         * Gets the stamp of the last change of an icon.
+         * @param index
+         * @return
+         */
+        public long getStamp(int index)
+        {
+            return stamps[index];
+        }
+
+        private void copy(IconStore store)
+        {
+            if (lats.length < store.size)
+            {
+                int capacity = store.lats.length;
+                lats = new double[capacity];
+                lons = new double[capacity];
+                alts = new double[capacity];
+                headings = new double[capacity];
+                flags = new int[capacity];
+                stamps = new long[capacity];
+            }
+
+            int n = store.size;
+            System.arraycopy(store.lats, 0, lats, 0, n);
+            System.arraycopy(store.lons, 0, lons, 0, n);
+            System.arraycopy(store.alts, 0, alts, 0, n);
+            System.arraycopy(store.headings, 0, headings, 0, n);
+            System.arraycopy(store.flags, 0, flags, 0, n);
+            System.arraycopy(store.stamps, 0, stamps, 0, n);
+            size = n;
+            lastStamp = store.lastStamp;
+        }
+    }
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicReference<Snapshot> current = new AtomicReference<Snapshot>(new Snapshot());
+    private final ArrayList<Snapshot> snapshots = new ArrayList<Snapshot>();
+    // Writers' copy of the icons.
+    private int size = 0;
+    private long lastStamp = 0;
+    private long version = 0;
+    private double[] lats = new double[16];
+    private double[] lons = new double[16];
+    private double[] alts = new double[16];
+    private double[] headings = new double[16];
+    private int[] flags = new int[16];
+    private long[] stamps = new long[16];
+
+    /**
+     * Creates a new empty store.
+     */
+    public IconStore()
+    {
+        this.snapshots.add(this.current.get());
+    }
+
+    /**
+     * Adds an icon. It isn't visible to readers until the next 'publish'.
+     * @param lat latitude in degrees.
+     * @param lon longitude in degrees.
+     * @param alt altitude in meters.
+     * @param heading heading in degrees.
+     * @param flags combination of VISIBLE and HIGHLIGHTED.
+     * @return the index of the icon.
+     */
+    public int add(double lat, double lon, double alt, double heading, int flags)
+    {
+        writeLock.lock();
+        try
+        {
+            if (size == lats.length)
+            {
+                int capacity = size * 2;
+                lats = Arrays.copyOf(lats, capacity);
+                lons = Arrays.copyOf(lons, capacity);
+                alts = Arrays.copyOf(alts, capacity);
+                headings = Arrays.copyOf(headings, capacity);
+                this.flags = Arrays.copyOf(this.flags, capacity);
+                stamps = Arrays.copyOf(stamps, capacity);
+            }
+
+            int index = size++;
+            this.setUnlocked(index, lat, lon, alt, heading, flags);
+            return index;
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of icons, including those not published yet.
+     * @return
+     */
+    public int size()
+    {
+        writeLock.lock();
+        try
+        {
+            return size;
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets all the state of an icon.
+     * @param index
+     * @param lat latitude in degrees.
+     * @param lon longitude in degrees.
+     * @param alt altitude in meters.
+     * @param heading heading in degrees.
+     * @param flags combination of VISIBLE and HIGHLIGHTED.
+     */
+    public void set(int index, double lat, double lon, double alt, double heading, int flags)
+    {
+        writeLock.lock();
+        try
+        {
+            this.checkIndex(index);
+            this.setUnlocked(index, lat, lon, alt, heading, flags);
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the position of an icon.
+     * @param index
+     * @param lat latitude in degrees.
+     * @param lon longitude in degrees.
+     * @param alt altitude in meters.
+     */
+    public void setPosition(int index, double lat, double lon, double alt)
+    {
+        writeLock.lock();
+        try
+        {
+            this.checkIndex(index);
+            this.setUnlocked(index, lat, lon, alt, headings[index], flags[index]);
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the heading of an icon.
+     * @param index
+     * @param heading heading in degrees.
+     */
+    public void setHeading(int index, double heading)
+    {
+        writeLock.lock();
+        try
+        {
+            this.checkIndex(index);
+            this.setUnlocked(index, lats[index], lons[index], alts[index], heading, flags[index]);
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the flags of an icon.
+     * @param index
+     * @param flags combination of VISIBLE and HIGHLIGHTED.
+     */
+    public void setFlags(int index, int flags)
+    {
+        writeLock.lock();
+        try
+        {
+            this.checkIndex(index);
+            this.setUnlocked(index, lats[index], lons[index], alts[index], headings[index], flags);
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Updates the position and heading of many icons at once. The arrays
+     * must hold at least 'count' values.
+     * @param indices icon indices.
+     * @param lats latitudes in degrees.
+     * @param lons longitudes in degrees.
+     * @param alts altitudes in meters.
+     * @param headings headings in degrees, or null to keep them.
+     * @param count number of icons to update.
+     */
+    public void update(int[] indices, double[] lats, double[] lons, double[] alts, double[] headings, int count)
+    {
+        if (indices == null || lats == null || lons == null || alts == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (count < 0 || indices.length < count || lats.length < count || lons.length < count
+                || alts.length < count || (headings != null && headings.length < count))
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength", count);
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        writeLock.lock();
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                int index = indices[i];
+                this.checkIndex(index);
+                this.setUnlocked(index, lats[i], lons[i], alts[i],
+                        headings != null ? headings[i] : this.headings[index], this.flags[index]);
+            }
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Makes all the changes done until now visible to readers.
+     */
+    public void publish()
+    {
+        writeLock.lock();
+        try
+        {
+            Snapshot published = current.get();
+            if (published.lastStamp == lastStamp && published.size == size)
+            {
+                return;
+            }
+
+            // Reuse a snapshot no reader is using, or create a new one.
+            Snapshot snapshot = null;
+            for (int i = 0; i < snapshots.size(); i++)
+            {
+                Snapshot s = snapshots.get(i);
+                if (s != published && s.readers.get() == 0)
+                {
+                    snapshot = s;
+                    break;
+                }
+            }
+            if (snapshot == null)
+            {
+                snapshot = new Snapshot();
+                snapshots.add(snapshot);
+            }
+
+            snapshot.copy(this);
+            snapshot.version = ++version;
+            current.set(snapshot);
+        } finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the last published snapshot. It won't change until released.
+     * @return
+     */
+    public Snapshot acquire()
+    {
+        while (true)
+        {
+            Snapshot snapshot = current.get();
+            snapshot.readers.incrementAndGet();
+            // If it's still the current one, writers won't reuse it until released.
+            if (current.get() == snapshot)
+            {
+                return snapshot;
+            }
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases a snapshot returned by 'acquire'.
+     * @param snapshot
+     */
+    public void release(Snapshot snapshot)
+    {
+        if (snapshot == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        snapshot.readers.decrementAndGet();
+    }
+
+    private void setUnlocked(int index, double lat, double lon, double alt, double heading, int flags)
+    {
+        lats[index] = lat;
+        lons[index] = lon;
+        alts[index] = alt;
+        headings[index] = heading;
+        this.flags[index] = flags;
+        stamps[index] = ++lastStamp;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.IconRenderer;
+import gov.nasa.worldwind.render.Pedestal;
+import gov.nasa.worldwind.render.RotableUserFacingIcon;
+import gov.nasa.worldwind.render.WWIcon;
+import gov.nasa.worldwind.util.IconStore;
+import gov.nasa.worldwind.util.Logging;
+import java.util.ArrayList;
+
+/**
+ * IconStoreLayer renders the icons of an IconStore as rotable icons.
+ * <br/>
+ * Every frame the layer acquires the last snapshot published by the store
+ * and, if it's a new one, copies the icons changed since the previous
+ * snapshot into its own RotableUserFacingIcons. Those icons are only used
+ * from the rendering thread, so the threads updating the store never touch
+ * objects the renderer is reading.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class IconStoreLayer extends AbstractLayer
+{
+
+    private final IconStore store;
+    private final IconRenderer iconRenderer = new IconRenderer();
+    private final ArrayList<RotableUserFacingIcon> icons = new ArrayList<RotableUserFacingIcon>();
+    private final ArrayList<WWIcon> visibleIcons = new ArrayList<WWIcon>();
+    private String imageSource;
+    private double highlightScale = 1.5;
+    private long lastVersion = -1;
+    private long lastStamp = 0;
+
+    /**
+     * Creates a new instance.
+     * @param store the icons to be rendered.
+     * @param imageSource path of the image of the icons.
+     */
+    public IconStoreLayer(IconStore store, String imageSource)
+    {
+        if (store == null || imageSource == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.store = store;
+        this.imageSource = imageSource;
+        this.setName("Icon Store");
+    }
+
+    public IconStore getIconStore()
+    {
+        return store;
+    }
+
+    public String getImageSource()
+    {
+        return imageSource;
+    }
+
+    /**
+     * Sets the image of the icons. Icons already created keep their image.
+     * @param imageSource
+     */
+    public void setImageSource(String imageSource)
+    {
+        if (imageSource == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.imageSource = imageSource;
+    }
+
+    public double getHighlightScale()
+    {
+        return highlightScale;
+    }
+
+    /**
+     * Sets the scale of the icons created from now on when they are
+     * highlighted.
+     * @param highlightScale
+     */
+    public void setHighlightScale(double highlightScale)
+    {
+        this.highlightScale = highlightScale;
+    }
+
+    public Pedestal getPedestal()
+    {
+        return this.iconRenderer.getPedestal();
+    }
+
+    public void setPedestal(Pedestal pedestal)
+    {
+        this.iconRenderer.setPedestal(pedestal);
+    }
+
+    public boolean isBatchRendering()
+    {
+        return this.iconRenderer.isBatchRendering();
+    }
+
+    /**
+     * Sets if the icons are drawn in batches, grouped by texture, instead of
+     * one by one.
+     * @param batchRendering
+     * @see IconRenderer#setBatchRendering(boolean)
+     */
+    public void setBatchRendering(boolean batchRendering)
+    {
+        this.iconRenderer.setBatchRendering(batchRendering);
+    }
+
+    public boolean isGridPicking()
+    {
+        return this.iconRenderer.isGridPicking();
+    }
+
+    /**
+     * Sets if the icons are picked from their screen quads in the last
+     * frame instead of drawing them again.
+     * @param gridPicking
+     * @see IconRenderer#setGridPicking(boolean)
+     */
+    public void setGridPicking(boolean gridPicking)
+    {
+        this.iconRenderer.setGridPicking(gridPicking);
+    }
+
+    public double getPointDistance()
+    {
+        return this.iconRenderer.getPointDistance();
+    }
+
+    /**
+     * Sets the eye distance beyond which the icons are drawn as points.
+     * @param pointDistance distance in meters.
+     * @see IconRenderer#setPointDistance(double)
+     */
+    public void setPointDistance(double pointDistance)
+    {
+        this.iconRenderer.setPointDistance(pointDistance);
+    }
+
+    public double getPointPixelSize()
+    {
+        return this.iconRenderer.getPointPixelSize();
+    }
+
+    /**
+     * Sets the pixel size, at the icon distance, beyond which the icons are
+     * drawn as points.
+     * @param pointPixelSize pixel size in meters.
+     * @see IconRenderer#setPointPixelSize(double)
+     */
+    public void setPointPixelSize(double pointPixelSize)
+    {
+        this.iconRenderer.setPointPixelSize(pointPixelSize);
+    }
+
+    /**
+     * Gets the icon used to render an entry of the store.
+     * @param index
+     * @return the icon, or null if it hasn't been rendered yet.
+     */
+    public synchronized WWIcon getIcon(int index)
+    {
+        return index >= 0 && index < this.icons.size() ? this.icons.get(index) : null;
+    }
+
+    @Override
+    protected synchronized void doPick(DrawContext dc, java.awt.Point pickPoint)
+    {
+        this.update();
+        this.iconRenderer.pick(dc, this.visibleIcons, pickPoint, this);
+    }
+
+    @Override
+    protected synchronized void doRender(DrawContext dc)
+    {
+        this.update();
+        this.iconRenderer.render(dc, this.visibleIcons);
+    }
+
+    private void update()
+    {
+        IconStore.Snapshot snapshot = this.store.acquire();
+        try
+        {
+            if (snapshot.getVersion() == this.lastVersion)
+            {
+                return;
+            }
+
+            int size = snapshot.getSize();
+            while (this.icons.size() < size)
+            {
+                this.icons.add(null);
+            }
+
+            this.visibleIcons.clear();
+            for (int i = 0; i < size; i++)
+            {
+                RotableUserFacingIcon icon = this.icons.get(i);
+                if (icon == null || snapshot.getStamp(i) > this.lastStamp)
+                {
+                    if (icon == null)
+                    {
+                        Position position = new Position(Angle.fromDegrees(snapshot.getLatitude(i)),
+                                Angle.fromDegrees(snapshot.getLongitude(i)), snapshot.getAltitude(i));
+                        icon = new RotableUserFacingIcon(this.imageSource, position);
+                        icon.setHighlightScale(this.highlightScale);
+                        this.icons.set(i, icon);
+                    } else
+                    {
+                        // Changed icons are updated without creating objects.
+                        icon.setLocation(snapshot.getLatitude(i), snapshot.getLongitude(i), snapshot.getAltitude(i));
+                    }
+                    icon.setHeadingDegrees(snapshot.getHeading(i));
+                    icon.setHighlighted((snapshot.getFlags(i) & IconStore.HIGHLIGHTED) != 0);
+                    icon.setVisible((snapshot.getFlags(i) & IconStore.VISIBLE) != 0);
+                }
+
+                if (icon.isVisible())
+                {
+                    this.visibleIcons.add(icon);
+                }
+            }
+
+            this.lastVersion = snapshot.getVersion();
+            this.lastStamp = snapshot.getLastStamp();
+        } finally
+        {
+            this.store.release(snapshot);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getName();
+    }
+}
@@ -0,0 +1,299 @@
+package gov.nasa.worldwind.render;
+
+import com.sun.opengl.util.texture.Texture;
+import com.sun.opengl.util.texture.TextureData;
+import com.sun.opengl.util.texture.TextureIO;
+import gov.nasa.worldwind.util.FrameScheduler;
+import gov.nasa.worldwind.util.Logging;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import javax.media.opengl.GL;
+
+/**
+ * IconTextureLoader decodes icon images in background threads, so the
+ * rendering thread never waits for a file to be read and decoded.
+ * <br/>
+ * The first time an image is requested its decoding is scheduled and null
+ * is returned; meanwhile the icons can be drawn with the shared placeholder
+ * texture. Once decoded, the next request uploads the image to a texture
+ * and stores it in the DrawContext texture cache. Images that can't be read
+ * are remembered and never requested again until 'clearFailures' is called.
+ * <br/>
+ * Listeners are notified, from the loader threads, every time an image is
+ * decoded or fails, so the application can request a repaint. If a
+ * FrameScheduler is set it is marked as dirty at the same time.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class IconTextureLoader
+{
+
+    public static final int DEFAULT_NUM_THREADS = 2;
+    private static final int PLACEHOLDER_SIZE = 16;
+    private static IconTextureLoader defaultLoader = null;
+    // Marks the images being decoded.
+    private static final Object PENDING = new Object();
+    // Marks the images that couldn't be decoded.
+    private static final Object FAILED = new Object();
+    private final Object placeholderKey = new Object();
+    private final ExecutorService executor;
+    // Image source to PENDING, FAILED or the decoded TextureData.
+    private final ConcurrentHashMap<Object, Object> states = new ConcurrentHashMap<Object, Object>();
+    private final CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<Runnable>();
+    private volatile FrameScheduler frameScheduler = null;
+
+    /**
+     * Returns the loader shared by default by all the IconRenderers.
+     * @return
+     */
+    public static synchronized IconTextureLoader getDefault()
+    {
+        if (defaultLoader == null)
+        {
+            defaultLoader = new IconTextureLoader(DEFAULT_NUM_THREADS);
+        }
+        return defaultLoader;
+    }
+
+    /**
+     * Creates a new loader.
+     * @param numThreads number of decoding threads.
+     */
+    public IconTextureLoader(int numThreads)
+    {
+        if (numThreads < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+        {
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "IconTextureLoader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Adds a listener notified every time an image is decoded or fails.
+     * @param listener
+     */
+    public void addListener(Runnable listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    /**
+     * Sets the scheduler marked as dirty every time an image is decoded or
+     * fails, so the icons are redrawn with their texture.
+     * @param frameScheduler the scheduler, or null to not notify the loads.
+     */
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
+    /**
+     * Returns the texture of an image, scheduling its decoding if needed.
+     * Must be called from the rendering thread.
+     * @param dc
+     * @param imageSource a path or a BufferedImage.
+     * @return the texture, or null if the image isn't decoded yet or failed.
+     */
+    public Texture getTexture(DrawContext dc, Object imageSource)
+    {
+        Texture texture = dc.getTextureCache().get(imageSource);
+        if (texture != null)
+        {
+            return texture;
+        }
+
+        Object state = this.states.get(imageSource);
+        if (state == null)
+        {
+            if (this.states.putIfAbsent(imageSource, PENDING) == null)
+            {
+                this.schedule(imageSource);
+            }
+            return null;
+        }
+
+        if (!(state instanceof TextureData))
+        {
+            return null;
+        }
+
+        // Decoded, upload it.
+        this.states.remove(imageSource);
+        texture = TextureIO.newTexture((TextureData) state);
+        this.setTextureParameters(dc, texture);
+        dc.getTextureCache().put(imageSource, texture);
+        return texture;
+    }
+
+    /**
+     * Checks if an image couldn't be decoded.
+     * @param imageSource
+     * @return
+     */
+    public boolean isFailed(Object imageSource)
+    {
+        return this.states.get(imageSource) == FAILED;
+    }
+
+    /**
+     * Forgets the images that couldn't be decoded, so they are tried again.
+     */
+    public void clearFailures()
+    {
+        Iterator<Map.Entry<Object, Object>> iterator = this.states.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().getValue() == FAILED)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the texture to be drawn while an image is decoded. Must be
+     * called from the rendering thread.
+     * @param dc
+     * @return
+     */
+    public Texture getPlaceholder(DrawContext dc)
+    {
+        Texture texture = dc.getTextureCache().get(this.placeholderKey);
+        if (texture == null)
+        {
+            BufferedImage image = new BufferedImage(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            try
+            {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g.setColor(new Color(255, 255, 255, 128));
+                g.fillOval(2, 2, PLACEHOLDER_SIZE - 4, PLACEHOLDER_SIZE - 4);
+            } finally
+            {
+                g.dispose();
+            }
+
+            texture = TextureIO.newTexture(image, true);
+            this.setTextureParameters(dc, texture);
+            dc.getTextureCache().put(this.placeholderKey, texture);
+        }
+        return texture;
+    }
+
+    private void schedule(final Object imageSource)
+    {
+        this.executor.execute(new Runnable()
+        {
+
+            public void run()
+            {
+                TextureData data = null;
+                try
+                {
+                    data = decode(imageSource);
+                } catch (Exception e)
+                {
+                    String msg = Logging.getMessage("generic.IOExceptionDuringTextureInitialization");
+                    Logging.logger().log(Level.SEVERE, msg, e);
+                }
+
+                if (data != null)
+                {
+                    states.put(imageSource, data);
+                } else
+                {
+                    states.put(imageSource, FAILED);
+                }
+
+                FrameScheduler.markDirty(frameScheduler);
+                for (Runnable listener : listeners)
+                {
+                    listener.run();
+                }
+            }
+        });
+    }
+
+    private TextureData decode(Object imageSource) throws java.io.IOException
+    {
+        if (imageSource instanceof String)
+        {
+            String path = (String) imageSource;
+            java.io.InputStream iconStream = this.getClass().getResourceAsStream("/" + path);
+            if (iconStream == null)
+            {
+                java.io.File iconFile = new java.io.File(path);
+                if (!iconFile.exists())
+                {
+                    throw new java.io.FileNotFoundException(path);
+                }
+                iconStream = new java.io.FileInputStream(iconFile);
+            }
+
+            try
+            {
+                return TextureIO.newTextureData(iconStream, true, null);
+            } finally
+            {
+                iconStream.close();
+            }
+        } else if (imageSource instanceof BufferedImage)
+        {
+            return TextureIO.newTextureData((BufferedImage) imageSource, true);
+        }
+
+        return null;
+    }
+
+    private void setTextureParameters(DrawContext dc, Texture texture)
+    {
+        texture.bind();
+
+        GL gl = dc.getGL();
+        gl.glTexEnvf(GL.GL_TEXTURE_ENV, GL.GL_TEXTURE_ENV_MODE, GL.GL_MODULATE);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR_MIPMAP_LINEAR);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_S, GL.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_WRAP_T, GL.GL_CLAMP_TO_EDGE);
+    }
+}
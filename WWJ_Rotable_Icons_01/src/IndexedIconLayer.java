@@ -0,0 +1,206 @@
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.IconRenderer;
+import gov.nasa.worldwind.render.Pedestal;
+import gov.nasa.worldwind.render.WWIcon;
+import gov.nasa.worldwind.util.ClusterIndex;
+import gov.nasa.worldwind.util.Logging;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+
+/**
+ * IndexedIconLayer keeps its icons in a grid of cells so every frame only
+ * the icons inside the visible sector are passed to the IconRenderer. With
+ * many icons spread over the globe, the icons out of view cost nothing.
+ * <br/>
+ * Icons higher than the 'maxSurfaceElevation' can be seen from outside the
+ * visible sector, so they are always passed to the renderer, which discards
+ * those beyond the horizon.
+ * <br/>
+ * Icons must be moved with 'moveIcon' (or 'updateIcon' after changing their
+ * position) so the index is updated.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class IndexedIconLayer extends AbstractLayer
+{
+
+    public static final double DEFAULT_CELL_SIZE = 1;
+    public static final double DEFAULT_MAX_SURFACE_ELEVATION = 10000;
+    private final ClusterIndex<WWIcon> index;
+    private final IdentityHashMap<WWIcon, WWIcon> elevatedIcons = new IdentityHashMap<WWIcon, WWIcon>();
+    private final IconRenderer iconRenderer = new IconRenderer();
+    private final ArrayList<ClusterIndex<WWIcon>.Cluster> visibleCells = new ArrayList<ClusterIndex<WWIcon>.Cluster>();
+    private final ArrayList<WWIcon> visibleIcons = new ArrayList<WWIcon>();
+    private final double maxSurfaceElevation;
+
+    /**
+     * Creates a new layer with the default cell size.
+     */
+    public IndexedIconLayer()
+    {
+        this(DEFAULT_CELL_SIZE, DEFAULT_MAX_SURFACE_ELEVATION);
+    }
+
+    /**
+     * Creates a new layer.
+     * @param cellSize size of the index cells in degrees.
+     * @param maxSurfaceElevation icons above this elevation, in meters, are
+     * always rendered.
+     */
+    public IndexedIconLayer(double cellSize, double maxSurfaceElevation)
+    {
+        this.index = new ClusterIndex<WWIcon>(cellSize, 1);
+        this.maxSurfaceElevation = maxSurfaceElevation;
+        this.setName("Indexed Icons");
+    }
+
+    /**
+     * Adds an icon to the layer.
+     * @param icon
+     */
+    public synchronized void addIcon(WWIcon icon)
+    {
+        if (icon == null || icon.getPosition() == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Position position = icon.getPosition();
+        if (position.getElevation() > this.maxSurfaceElevation)
+        {
+            this.index.remove(icon);
+            this.elevatedIcons.put(icon, icon);
+        } else
+        {
+            this.elevatedIcons.remove(icon);
+            this.index.add(icon, position.getLatitude().degrees, position.getLongitude().degrees);
+        }
+    }
+
+    /**
+     * Removes an icon from the layer.
+     * @param icon
+     */
+    public synchronized void removeIcon(WWIcon icon)
+    {
+        if (icon == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.index.remove(icon);
+        this.elevatedIcons.remove(icon);
+    }
+
+    /**
+     * Removes all the icons.
+     */
+    public synchronized void removeAllIcons()
+    {
+        this.index.clear();
+        this.elevatedIcons.clear();
+    }
+
+    /**
+     * Sets the position of an icon of the layer and updates the index.
+     * @param icon
+     * @param position
+     */
+    public synchronized void moveIcon(WWIcon icon, Position position)
+    {
+        if (icon == null || position == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        icon.setPosition(position);
+        this.updateIcon(icon);
+    }
+
+    /**
+     * Updates the index for an icon whose position has changed.
+     * @param icon
+     */
+    public synchronized void updateIcon(WWIcon icon)
+    {
+        if (icon == null)
+        {
+            String msg = Logging.getMessage("nullValue.Icon");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.index.contains(icon) || this.elevatedIcons.containsKey(icon))
+        {
+            this.addIcon(icon);
+        }
+    }
+
+    /**
+     * Returns a collection with the icons of the layer.
+     * @return
+     */
+    public synchronized Collection<WWIcon> getIcons()
+    {
+        Collection<WWIcon> icons = this.index.getAll(new ArrayList<WWIcon>());
+        icons.addAll(this.elevatedIcons.keySet());
+        return icons;
+    }
+
+    public Pedestal getPedestal()
+    {
+        return this.iconRenderer.getPedestal();
+    }
+
+    public void setPedestal(Pedestal pedestal)
+    {
+        this.iconRenderer.setPedestal(pedestal);
+    }
+
+    @Override
+    protected synchronized void doPick(DrawContext dc, java.awt.Point pickPoint)
+    {
+        this.update(dc);
+        this.iconRenderer.pick(dc, this.visibleIcons, pickPoint, this);
+    }
+
+    @Override
+    protected synchronized void doRender(DrawContext dc)
+    {
+        this.update(dc);
+        this.iconRenderer.render(dc, this.visibleIcons);
+    }
+
+    private void update(DrawContext dc)
+    {
+        this.visibleIcons.clear();
+        this.visibleCells.clear();
+        if (dc.getVisibleSector() == null)
+        {
+            return;
+        }
+
+        this.index.getClusters(0, dc.getVisibleSector(), this.visibleCells);
+        for (int i = 0; i < this.visibleCells.size(); i++)
+        {
+            this.visibleCells.get(i).getMembers(this.visibleIcons);
+        }
+        this.visibleIcons.addAll(this.elevatedIcons.keySet());
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.getName();
+    }
+}
@@ -0,0 +1,29 @@
+package gov.nasa.worldwind.render;
+
+/**
+ * PrimitiveIcon interface defines the common functionallities for those
+ * icons that expose their location and heading as primitives, so the
+ * IconRenderer can place and rotate them every frame without creating
+ * Position or Angle objects.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public interface PrimitiveIcon
+{
+
+    public double getLatitudeDegrees();
+
+    public double getLongitudeDegrees();
+
+    /**
+     * Gets the elevation of the icon in meters.
+     * @return
+     */
+    public double getElevation();
+
+    /**
+     * Gets the heading rotation angle, counter-clockwise on screen.
+     * @return
+     */
+    public double getHeadingDegrees();
+}
@@ -2,17 +2,14 @@ package gov.nasa.worldwind.examples;
 
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.layers.*;
 import gov.nasa.worldwind.layers.Earth.*;
 
-import gov.nasa.worldwind.render.RotableUserFacingIcon;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import gov.nasa.worldwind.render.IconTextureLoader;
+import gov.nasa.worldwind.util.FrameScheduler;
+import gov.nasa.worldwind.util.IconStore;
 import javax.swing.*;
 import java.awt.*;
-import java.util.Iterator;
 
 public class RotableIconsExample
 {
@@ -37,34 +34,58 @@ public class RotableIconsExample
             LayerList layerList = new LayerList();
             layerList.add(new BMNGOneImage());
 
-            final IconLayer iconLayer = buildIconLayer();
+            final IconStore store = buildIconStore();
+            IconStoreLayer iconLayer = new IconStoreLayer(store, "images/32x32-icon-nasa.png");
+            // Pick the icons from the quads drawn in the last frame.
+            iconLayer.setGridPicking(true);
+            // Draw the icons sharing an image with a single call.
+            iconLayer.setBatchRendering(true);
+            // Draw the icons as points when zoomed out.
+            iconLayer.setPointPixelSize(5000);
             layerList.add(iconLayer);
 
-            Thread t = new Thread(new Runnable()
+            // Rotate the icons every 50 ms. The scheduler thread only writes
+            // into the store and publishes the changes, the layer reads them
+            // from the rendering thread. The scheduler merges the redraw
+            // requests so the globe is redrawn at most once per frame.
+            FrameScheduler scheduler = new FrameScheduler(wwd);
+            scheduler.addAnimation(new FrameScheduler.Animation()
             {
 
-                public void run()
+                private double[] headings = null;
+
+                public boolean step(long time)
                 {
-                    while (true)
+                    IconStore.Snapshot snapshot = store.acquire();
+                    try
                     {
-                        try
+                        int size = snapshot.getSize();
+                        if (headings == null || headings.length != size)
                         {
-                            Thread.sleep(50);
-                            for (Iterator it = iconLayer.getIcons().iterator(); it.hasNext();)
+                            headings = new double[size];
+                            for (int i = 0; i < size; i++)
                             {
-                                RotableUserFacingIcon icon = (RotableUserFacingIcon) it.next();
-                                icon.setHeading(icon.getHeading().addDegrees(10));
+                                headings[i] = snapshot.getHeading(i);
                             }
-                            wwd.redrawNow();
-                        }
-                        catch (InterruptedException ex)
-                        {
-                            Logger.getLogger(RotableIconsExample.class.getName()).log(Level.SEVERE, null, ex);
                         }
+                    } finally
+                    {
+                        store.release(snapshot);
                     }
+
+                    for (int i = 0; i < headings.length; i++)
+                    {
+                        headings[i] = (headings[i] + 10) % 360;
+                        store.setHeading(i, headings[i]);
+                    }
+                    store.publish();
+                    return true;
                 }
-            });
-            t.start();
+            }, 50);
+            scheduler.start();
+
+            // Redraw when the icon images have been decoded.
+            IconTextureLoader.getDefault().setFrameScheduler(scheduler);
 
             Model m = new BasicModel();
             m.setLayers(layerList);
@@ -75,32 +96,29 @@ public class RotableIconsExample
             this.pack();
         }
 
-        private IconLayer buildIconLayer()
+        private IconStore buildIconStore()
         {
-            IconLayer layer = new IconLayer();
+            IconStore store = new IconStore();
 
-            // Distribute little NASA icons around the equator. Put a few at non-zero altitude.
-            for (double lat = 0; lat < 10; lat += 10)
+            // Distribute 20000 little NASA icons, 100 rows of 200, around the
+            // equator. Put a few at non-zero altitude.
+            for (int row = 0; row < 100; row++)
             {
-                for (double lon = -180; lon < 180; lon += 20)
+                double lat = -50 + row;
+                for (int column = 0; column < 200; column++)
                 {
+                    double lon = -180 + column * 1.8;
                     double alt = 0;
-                    if (lon % 90 == 0)
+                    if (row % 10 == 0 && column % 50 == 0)
                     {
                         alt = 2000000;
                     }
-                    RotableUserFacingIcon icon = new RotableUserFacingIcon("images/32x32-icon-nasa.png",
-                            new Position(Angle.fromDegrees(lat), Angle.fromDegrees(lon), alt));
-                    icon.setHighlightScale(1.5);
-                    icon.setToolTipText(icon.getImageSource().toString());
-                    icon.setToolTipTextColor(java.awt.Color.YELLOW);
-                    icon.setHeading(Angle.fromDegrees(lon));
-
-                    layer.addIcon(icon);
+                    store.add(lat, lon, alt, lon, IconStore.VISIBLE);
                 }
             }
+            store.publish();
 
-            return layer;
+            return store;
         }
     }
 
@@ -2,34 +2,172 @@ package gov.nasa.worldwind.render;
 
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.util.Logging;
 
 /**
  * RotableUserFacingIcon is a normal UserFacingIcon that can be headed
  * rotated.
- * 
+ * <br/>
+ * The icon can also be moved by dead reckoning: 'setFix' sets a known
+ * position and heading with their rates of change, and the IconRenderer
+ * calls 'extrapolate' every frame to place the icon where it should be at
+ * the frame time. When a new fix arrives the icon moves smoothly from where
+ * it was displayed, following its old rates, to the new estimated path
+ * during the smoothing time, so fixes arriving once per second produce a
+ * continuous movement.
+ * <br/>
+ * The position and heading are kept as primitives, which the IconRenderer
+ * reads through PrimitiveIcon; the Position and Angle returned by
+ * 'getPosition' and 'getHeading' are only created when requested after they
+ * change. 'setLocation' and 'setHeadingDegrees' change them without
+ * creating objects either.
+ * <br/>
+ * The heading is the rotation of the icon on screen, counter-clockwise as
+ * the IconRenderer applies it. A compass heading (clockwise from north)
+ * must be negated.
+ *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
-public class RotableUserFacingIcon extends UserFacingIcon implements Rotable
+public class RotableUserFacingIcon extends UserFacingIcon implements Rotable, Extrapolable, PrimitiveIcon
 {
 
-    private Angle heading = Angle.fromDegrees(0);
+    public static final long DEFAULT_SMOOTHING_TIME = 1000;
+    public static final long DEFAULT_MAX_EXTRAPOLATION_TIME = 10000;
+    private static final double EARTH_RADIUS = 6378137;
+
+    private static class Fix
+    {
+
+        double lat;
+        double lon;
+        double alt;
+        double heading;
+        double northSpeed;
+        double eastSpeed;
+        double headingRate;
+        long time;
+    }
+    // Displayed state, and the objects built from it when requested.
+    private double lat;
+    private double lon;
+    private double alt;
+    private double headingDegrees;
+    private long displayedTime;
+    private boolean displayed = false;
+    // False when a fix has been set after the last extrapolation.
+    private boolean upToDate = false;
+    private Position position;
+    private Angle heading;
+    private Fix fix = null;
+    // State the icon blends from after a new fix: the displayed state when
+    // the fix arrived, moved with the rates of the previous fix.
+    private final Fix blendFix = new Fix();
+    private boolean blending = false;
+    private long fixArrival;
+    private long smoothingTime = DEFAULT_SMOOTHING_TIME;
+    private long maxExtrapolationTime = DEFAULT_MAX_EXTRAPOLATION_TIME;
+    private final double[] state = new double[4];
+    private final double[] blendState = new double[4];
 
     public RotableUserFacingIcon(Object imageSource, Position iconPosition)
     {
         super(imageSource, iconPosition);
+        this.setPosition(iconPosition);
     }
 
     public RotableUserFacingIcon(String iconPath, Position iconPosition)
     {
         super(iconPath, iconPosition);
+        this.setPosition(iconPosition);
+    }
+
+    @Override
+    public synchronized Position getPosition()
+    {
+        if (this.position == null)
+        {
+            this.position = new Position(Angle.fromDegrees(this.lat), Angle.fromDegrees(this.lon), this.alt);
+        }
+        return this.position;
+    }
+
+    @Override
+    public synchronized void setPosition(Position iconPosition)
+    {
+        if (iconPosition == null)
+        {
+            String message = Logging.getMessage("nullValue.PositionIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        super.setPosition(iconPosition);
+        this.lat = iconPosition.getLatitude().degrees;
+        this.lon = iconPosition.getLongitude().degrees;
+        this.alt = iconPosition.getElevation();
+        this.position = iconPosition;
+    }
+
+    public synchronized double getLatitudeDegrees()
+    {
+        return this.lat;
+    }
+
+    public synchronized double getLongitudeDegrees()
+    {
+        return this.lon;
+    }
+
+    public synchronized double getElevation()
+    {
+        return this.alt;
+    }
+
+    /**
+     * Sets the position of the icon without creating a Position.
+     * @param lat latitude in degrees.
+     * @param lon longitude in degrees.
+     * @param alt elevation in meters.
+     */
+    public synchronized void setLocation(double lat, double lon, double alt)
+    {
+        if (lat != this.lat || lon != this.lon || alt != this.alt)
+        {
+            this.lat = lat;
+            this.lon = lon;
+            this.alt = alt;
+            this.position = null;
+        }
+    }
+
+    public synchronized double getHeadingDegrees()
+    {
+        return this.headingDegrees;
+    }
+
+    /**
+     * Sets the heading rotation angle without creating an Angle.
+     * @param headingDegrees heading in degrees, counter-clockwise on screen.
+     */
+    public synchronized void setHeadingDegrees(double headingDegrees)
+    {
+        if (headingDegrees != this.headingDegrees)
+        {
+            this.headingDegrees = headingDegrees;
+            this.heading = null;
+        }
     }
 
     /**
      * Get the heading rotation angle.
      * @return
      */
-    public Angle getHeading()
+    public synchronized Angle getHeading()
     {
+        if (this.heading == null)
+        {
+            this.heading = Angle.fromDegrees(this.headingDegrees);
+        }
         return this.heading;
     }
 
@@ -37,8 +175,229 @@ public class RotableUserFacingIcon extends UserFacingIcon implements Rotable
      * Set the heading rotation angle.
      * @param heading
      */
-    public void setHeading(Angle heading)
+    public synchronized void setHeading(Angle heading)
     {
+        if (heading == null)
+        {
+            String message = Logging.getMessage("nullValue.AngleIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.headingDegrees = heading.degrees;
         this.heading = heading;
     }
+
+    /**
+     * Sets the last known state of the icon, taken now.
+     * @param position known position.
+     * @param heading known heading, counter-clockwise on screen.
+     * @param speed ground speed in meters per second.
+     * @param course direction of the movement, clockwise from north.
+     * @param headingRate heading change in degrees per second, counter-clockwise.
+     */
+    public void setFix(Position position, Angle heading, double speed, Angle course, double headingRate)
+    {
+        this.setFix(position, heading, speed, course, headingRate, System.currentTimeMillis());
+    }
+
+    /**
+     * Sets the last known state of the icon. From now on the icon is
+     * extrapolated from this state until 'clearFix' is called.
+     * @param position known position.
+     * @param heading known heading, counter-clockwise on screen.
+     * @param speed ground speed in meters per second.
+     * @param course direction of the movement, clockwise from north.
+     * @param headingRate heading change in degrees per second, counter-clockwise.
+     * @param time time the state was known, in milliseconds.
+     */
+    public synchronized void setFix(Position position, Angle heading, double speed, Angle course, double headingRate,
+            long time)
+    {
+        if (position == null || heading == null || course == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Blend from the displayed state, moving with the old rates.
+        this.blending = this.fix != null && this.displayed;
+        if (this.blending)
+        {
+            this.blendFix.lat = this.lat;
+            this.blendFix.lon = this.lon;
+            this.blendFix.alt = this.alt;
+            this.blendFix.heading = this.headingDegrees;
+            this.blendFix.northSpeed = this.fix.northSpeed;
+            this.blendFix.eastSpeed = this.fix.eastSpeed;
+            this.blendFix.headingRate = this.fix.headingRate;
+            this.blendFix.time = this.displayedTime;
+        }
+
+        Fix newFix = this.fix != null ? this.fix : new Fix();
+        this.fix = newFix;
+        this.fixArrival = System.currentTimeMillis();
+        this.upToDate = false;
+
+        newFix.lat = position.getLatitude().degrees;
+        newFix.lon = position.getLongitude().degrees;
+        newFix.alt = position.getElevation();
+        newFix.heading = heading.degrees;
+        newFix.northSpeed = speed * Math.cos(course.radians);
+        newFix.eastSpeed = speed * Math.sin(course.radians);
+        newFix.headingRate = headingRate;
+        newFix.time = time;
+    }
+
+    /**
+     * Stops extrapolating the icon, which keeps its current position and
+     * heading.
+     */
+    public synchronized void clearFix()
+    {
+        this.fix = null;
+        this.blending = false;
+    }
+
+    /**
+     * Gets the time a new fix takes to replace the previous estimated path.
+     * @return time in milliseconds.
+     */
+    public long getSmoothingTime()
+    {
+        return smoothingTime;
+    }
+
+    /**
+     * Sets the time a new fix takes to replace the previous estimated path.
+     * @param smoothingTime time in milliseconds, 0 to jump to the new path.
+     */
+    public void setSmoothingTime(long smoothingTime)
+    {
+        if (smoothingTime < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.smoothingTime = smoothingTime;
+    }
+
+    /**
+     * Gets the time after a fix the icon stops moving if no new fix arrives.
+     * @return time in milliseconds.
+     */
+    public long getMaxExtrapolationTime()
+    {
+        return maxExtrapolationTime;
+    }
+
+    /**
+     * Sets the time after a fix the icon stops moving if no new fix arrives.
+     * @param maxExtrapolationTime time in milliseconds.
+     */
+    public void setMaxExtrapolationTime(long maxExtrapolationTime)
+    {
+        if (maxExtrapolationTime < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.maxExtrapolationTime = maxExtrapolationTime;
+    }
+
+    /**
+     * Places the icon at its estimated position and heading at the given
+     * time. Does nothing if no fix has been set. Calling it again with the
+     * same time leaves the icon unchanged.
+     * @param time time in milliseconds.
+     */
+    public synchronized void extrapolate(long time)
+    {
+        if (this.fix == null || (this.upToDate && time == this.displayedTime))
+        {
+            return;
+        }
+
+        this.computeState(this.fix, time, this.state);
+
+        long elapsed = time - this.fixArrival;
+        if (this.blending && elapsed < this.smoothingTime)
+        {
+            this.computeState(this.blendFix, time, this.blendState);
+            double alpha = Math.max(0, (double) elapsed / this.smoothingTime);
+            this.state[0] = this.blendState[0] + alpha * (this.state[0] - this.blendState[0]);
+            this.state[1] = this.blendState[1] + alpha * angleDelta(this.blendState[1], this.state[1]);
+            this.state[2] = this.blendState[2] + alpha * (this.state[2] - this.blendState[2]);
+            this.state[3] = this.blendState[3] + alpha * angleDelta(this.blendState[3], this.state[3]);
+        } else
+        {
+            this.blending = false;
+        }
+
+        double newLat = this.state[0];
+        double newLon = normalize(this.state[1]);
+        double newAlt = this.state[2];
+        if (newLat != this.lat || newLon != this.lon || newAlt != this.alt)
+        {
+            this.lat = newLat;
+            this.lon = newLon;
+            this.alt = newAlt;
+            this.position = null;
+        }
+        double newHeading = normalize(this.state[3]);
+        if (newHeading != this.headingDegrees)
+        {
+            this.headingDegrees = newHeading;
+            this.heading = null;
+        }
+        this.displayedTime = time;
+        this.displayed = true;
+        this.upToDate = true;
+    }
+
+    // Latitude, longitude, altitude and heading of a fix at the given time.
+    private void computeState(Fix f, long time, double[] result)
+    {
+        double dt = Math.max(0, Math.min(time - f.time, this.maxExtrapolationTime)) / 1000d;
+        double lat = f.lat + Math.toDegrees(f.northSpeed * dt / EARTH_RADIUS);
+        double cos = Math.cos(Math.toRadians(f.lat));
+        double lon = f.lon + (cos > 1e-6 ? Math.toDegrees(f.eastSpeed * dt / (EARTH_RADIUS * cos)) : 0);
+
+        result[0] = Math.max(-90, Math.min(90, lat));
+        result[1] = lon;
+        result[2] = f.alt;
+        result[3] = f.heading + f.headingRate * dt;
+    }
+
+    // Shortest signed difference from 'a' to 'b' in degrees.
+    private static double angleDelta(double a, double b)
+    {
+        double d = (b - a) % 360;
+        if (d > 180)
+        {
+            d -= 360;
+        } else if (d < -180)
+        {
+            d += 360;
+        }
+        return d;
+    }
+
+    private static double normalize(double degrees)
+    {
+        double d = degrees % 360;
+        if (d > 180)
+        {
+            d -= 360;
+        } else if (d < -180)
+        {
+            d += 360;
+        }
+        return d;
+    }
 }
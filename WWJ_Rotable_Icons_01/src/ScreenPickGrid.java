@@ -0,0 +1,353 @@
+package gov.nasa.worldwind.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * ScreenPickGrid keeps the screen quads of the objects drawn in a frame in a
+ * uniform grid of cells, so the object under a point, or the objects inside
+ * a rectangle, are found by looking only at the quads of a few cells.
+ * <br/>
+ * Quads are convex, given by their four corners in order, in window
+ * coordinates (origin at the bottom left). Objects added later are
+ * considered on top of the previous ones, so objects must be added in
+ * drawing order. An object can be added with several quads.
+ * <br/>
+ * The grid is not thread safe.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class ScreenPickGrid<T>
+{
+
+    public static final int DEFAULT_CELL_SIZE = 32;
+    private final int cellSize;
+    private int width = 0;
+    private int height = 0;
+    private int numCols = 0;
+    private int numRows = 0;
+    // Added quads: object and the x, y of the four corners.
+    private final ArrayList<T> objects = new ArrayList<T>();
+    private double[] corners = new double[64];
+    // Per cell linked lists of entries, newest first.
+    private int[] cellHeads = new int[0];
+    private int[] entryQuads = new int[64];
+    private int[] entryNext = new int[64];
+    private int numEntries = 0;
+    // Marks the quads already visited by the current selection.
+    private int[] quadMarks = new int[8];
+    private int mark = 0;
+
+    /**
+     * Creates a grid with cells of DEFAULT_CELL_SIZE pixels.
+     */
+    public ScreenPickGrid()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates a grid.
+     * @param cellSize size of the cells in pixels.
+     */
+    public ScreenPickGrid(int cellSize)
+    {
+        if (cellSize < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cellSize = cellSize;
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Gets the number of quads in the grid.
+     * @return
+     */
+    public int size()
+    {
+        return this.objects.size();
+    }
+
+    /**
+     * Removes all the quads and sets the size of the screen.
+     * @param width screen width in pixels.
+     * @param height screen height in pixels.
+     */
+    public void clear(int width, int height)
+    {
+        if (width < 0 || height < 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.numCols = (width + this.cellSize - 1) / this.cellSize;
+        this.numRows = (height + this.cellSize - 1) / this.cellSize;
+        int numCells = this.numCols * this.numRows;
+        if (this.cellHeads.length < numCells)
+        {
+            this.cellHeads = new int[numCells];
+        }
+        java.util.Arrays.fill(this.cellHeads, 0, numCells, -1);
+        this.objects.clear();
+        this.numEntries = 0;
+    }
+
+    /**
+     * Adds a convex quad on top of the previous ones.
+     * @param object the object drawn with the quad.
+     * @param xs x of the four corners, in order.
+     * @param ys y of the four corners, in order.
+     */
+    public void add(T object, double[] xs, double[] ys)
+    {
+        if (xs == null || ys == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (xs.length < 4 || ys.length < 4)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        double minX = Math.min(Math.min(xs[0], xs[1]), Math.min(xs[2], xs[3]));
+        double maxX = Math.max(Math.max(xs[0], xs[1]), Math.max(xs[2], xs[3]));
+        double minY = Math.min(Math.min(ys[0], ys[1]), Math.min(ys[2], ys[3]));
+        double maxY = Math.max(Math.max(ys[0], ys[1]), Math.max(ys[2], ys[3]));
+        if (maxX < 0 || maxY < 0 || minX >= this.width || minY >= this.height)
+        {
+            return;
+        }
+
+        int quad = this.objects.size();
+        this.objects.add(object);
+        if (this.corners.length < (quad + 1) * 8)
+        {
+            double[] newCorners = new double[this.corners.length * 2];
+            System.arraycopy(this.corners, 0, newCorners, 0, quad * 8);
+            this.corners = newCorners;
+        }
+        for (int i = 0; i < 4; i++)
+        {
+            this.corners[quad * 8 + i * 2] = xs[i];
+            this.corners[quad * 8 + i * 2 + 1] = ys[i];
+        }
+
+        int minCol = this.col(minX);
+        int maxCol = this.col(maxX);
+        int minRow = this.row(minY);
+        int maxRow = this.row(maxY);
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                int cell = row * this.numCols + col;
+                if (this.numEntries == this.entryQuads.length)
+                {
+                    int[] newQuads = new int[this.numEntries * 2];
+                    int[] newNext = new int[this.numEntries * 2];
+                    System.arraycopy(this.entryQuads, 0, newQuads, 0, this.numEntries);
+                    System.arraycopy(this.entryNext, 0, newNext, 0, this.numEntries);
+                    this.entryQuads = newQuads;
+                    this.entryNext = newNext;
+                }
+                this.entryQuads[this.numEntries] = quad;
+                this.entryNext[this.numEntries] = this.cellHeads[cell];
+                this.cellHeads[cell] = this.numEntries++;
+            }
+        }
+    }
+
+    /**
+     * Gets the top object at a point.
+     * @param x
+     * @param y
+     * @return the object of the last quad added containing the point, or null.
+     */
+    public T pick(double x, double y)
+    {
+        if (x < 0 || y < 0 || x >= this.width || y >= this.height)
+        {
+            return null;
+        }
+
+        // Entries are linked newest first, so the first hit is the top one.
+        int cell = this.row(y) * this.numCols + this.col(x);
+        for (int e = this.cellHeads[cell]; e >= 0; e = this.entryNext[e])
+        {
+            int quad = this.entryQuads[e];
+            if (this.contains(quad, x, y))
+            {
+                return this.objects.get(quad);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the objects whose quads intersect a rectangle, each one once.
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param result collection where the objects are added, top first.
+     */
+    public void select(double minX, double minY, double maxX, double maxY, Collection<? super T> result)
+    {
+        if (result == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (maxX < 0 || maxY < 0 || minX >= this.width || minY >= this.height || minX > maxX || minY > maxY)
+        {
+            return;
+        }
+
+        int numQuads = this.objects.size();
+        if (this.quadMarks.length < numQuads)
+        {
+            this.quadMarks = new int[Math.max(numQuads, this.quadMarks.length * 2)];
+            this.mark = 0;
+        }
+        if (++this.mark == 0)
+        {
+            java.util.Arrays.fill(this.quadMarks, 0);
+            this.mark = 1;
+        }
+
+        // Visit the quads from the top one so the result keeps that order.
+        int minCol = this.col(minX);
+        int maxCol = this.col(maxX);
+        int minRow = this.row(minY);
+        int maxRow = this.row(maxY);
+        ArrayList<Integer> hits = new ArrayList<Integer>();
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int col = minCol; col <= maxCol; col++)
+            {
+                for (int e = this.cellHeads[row * this.numCols + col]; e >= 0; e = this.entryNext[e])
+                {
+                    int quad = this.entryQuads[e];
+                    if (this.quadMarks[quad] != this.mark)
+                    {
+                        this.quadMarks[quad] = this.mark;
+                        if (this.intersects(quad, minX, minY, maxX, maxY))
+                        {
+                            hits.add(quad);
+                        }
+                    }
+                }
+            }
+        }
+
+        java.util.Collections.sort(hits, java.util.Collections.reverseOrder());
+        java.util.IdentityHashMap<T, Boolean> added = new java.util.IdentityHashMap<T, Boolean>();
+        for (int quad : hits)
+        {
+            T object = this.objects.get(quad);
+            if (added.put(object, Boolean.TRUE) == null)
+            {
+                result.add(object);
+            }
+        }
+    }
+
+    private int col(double x)
+    {
+        return Math.max(0, Math.min(this.numCols - 1, (int) (x / this.cellSize)));
+    }
+
+    private int row(double y)
+    {
+        return Math.max(0, Math.min(this.numRows - 1, (int) (y / this.cellSize)));
+    }
+
+    // Orientation of a quad: 1 if its corners go counterclockwise, -1 otherwise.
+    private double orientation(int quad)
+    {
+        int o = quad * 8;
+        double[] c = this.corners;
+        double area = (c[o + 2] - c[o]) * (c[o + 5] - c[o + 1]) - (c[o + 4] - c[o]) * (c[o + 3] - c[o + 1]);
+        return area >= 0 ? 1 : -1;
+    }
+
+    private boolean contains(int quad, double x, double y)
+    {
+        int o = quad * 8;
+        double[] c = this.corners;
+        double sign = this.orientation(quad);
+        for (int i = 0; i < 4; i++)
+        {
+            int j = (i + 1) % 4;
+            double ex = c[o + j * 2] - c[o + i * 2];
+            double ey = c[o + j * 2 + 1] - c[o + i * 2 + 1];
+            if (sign * (ex * (y - c[o + i * 2 + 1]) - ey * (x - c[o + i * 2])) < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Separating axis test of a quad against a rectangle.
+    private boolean intersects(int quad, double minX, double minY, double maxX, double maxY)
+    {
+        int o = quad * 8;
+        double[] c = this.corners;
+        double qMinX = Math.min(Math.min(c[o], c[o + 2]), Math.min(c[o + 4], c[o + 6]));
+        double qMaxX = Math.max(Math.max(c[o], c[o + 2]), Math.max(c[o + 4], c[o + 6]));
+        double qMinY = Math.min(Math.min(c[o + 1], c[o + 3]), Math.min(c[o + 5], c[o + 7]));
+        double qMaxY = Math.max(Math.max(c[o + 1], c[o + 3]), Math.max(c[o + 5], c[o + 7]));
+        if (qMaxX < minX || qMinX > maxX || qMaxY < minY || qMinY > maxY)
+        {
+            return false;
+        }
+
+        // The rectangle is outside if all its corners are outside an edge.
+        double sign = this.orientation(quad);
+        for (int i = 0; i < 4; i++)
+        {
+            int j = (i + 1) % 4;
+            double ax = c[o + i * 2];
+            double ay = c[o + i * 2 + 1];
+            double ex = c[o + j * 2] - ax;
+            double ey = c[o + j * 2 + 1] - ay;
+            if (sign * (ex * (minY - ay) - ey * (minX - ax)) < 0
+                    && sign * (ex * (minY - ay) - ey * (maxX - ax)) < 0
+                    && sign * (ex * (maxY - ay) - ey * (minX - ax)) < 0
+                    && sign * (ex * (maxY - ay) - ey * (maxX - ax)) < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
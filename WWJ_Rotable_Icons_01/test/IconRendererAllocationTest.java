@@ -0,0 +1,182 @@
+package gov.nasa.worldwind.render;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.globes.SectorGeometryList;
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the IconRenderer places rotating and moving icons without
+ * allocating per icon once it reaches a steady state (still eye, terrain
+ * points cached).
+ * <br/>
+ * The DrawContext, View and Globe are proxies answering only what 'render'
+ * needs; the surface geometry allocates a Vec4 per lookup, like the real one.
+ * The horizon is so close that every icon is discarded after being placed,
+ * so the measure covers the per icon work of 'drawMany' (extrapolation,
+ * location and model point) and not the ordered icons, which are only
+ * recycled when they are drawn.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class IconRendererAllocationTest
+{
+
+    private static final int NUM_ICONS = 1000;
+    private static final int WARM_UP_FRAMES = 20;
+    private static final int MEASURED_FRAMES = 20;
+    // A Vec4 alone takes more than this, so any per icon allocation fails.
+    private static final double MAX_BYTES_PER_ICON_AND_FRAME = 16;
+    private static final double EQUATORIAL_RADIUS = 6378137;
+    private static final double ECCENTRICITY_SQUARED = 0.00669437999013;
+
+    /**
+     * Surface geometry that computes the points from the ellipsoid,
+     * allocating a Vec4 per lookup.
+     */
+    private static class StubGeometry extends SectorGeometryList
+    {
+
+        @Override
+        public Vec4 getSurfacePoint(Angle latitude, Angle longitude, double metersOffset)
+        {
+            double cosLat = Math.cos(latitude.radians);
+            double sinLat = Math.sin(latitude.radians);
+            double rpm = EQUATORIAL_RADIUS / Math.sqrt(1.0 - ECCENTRICITY_SQUARED * sinLat * sinLat);
+            return new Vec4((rpm + metersOffset) * cosLat * Math.sin(longitude.radians),
+                    (rpm * (1.0 - ECCENTRICITY_SQUARED) + metersOffset) * sinLat,
+                    (rpm + metersOffset) * cosLat * Math.cos(longitude.radians));
+        }
+    }
+
+    /**
+     * Answers the calls by method name with preallocated values, so the
+     * proxies don't allocate either.
+     */
+    private static class StubHandler implements InvocationHandler
+    {
+
+        private final HashMap<String, Object> values = new HashMap<String, Object>();
+
+        StubHandler put(String method, Object value)
+        {
+            this.values.put(method, value);
+            return this;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            Object value = this.values.get(method.getName());
+            if (value == null && method.getReturnType() == Double.TYPE)
+            {
+                return Double.valueOf(0);
+            }
+            if (value == null && method.getReturnType() == Boolean.TYPE)
+            {
+                return Boolean.FALSE;
+            }
+            return value;
+        }
+    }
+
+    @Test
+    public void testSteadyStateAllocation()
+    {
+        Globe globe = (Globe) Proxy.newProxyInstance(Globe.class.getClassLoader(), new Class[]
+                {
+                    Globe.class
+                }, new StubHandler().put("getMaxElevation", Double.valueOf(9000)).put("getRadius",
+                Double.valueOf(EQUATORIAL_RADIUS)).put("getEquatorialRadius", Double.valueOf(EQUATORIAL_RADIUS)).put(
+                "getEccentricitySquared", Double.valueOf(ECCENTRICITY_SQUARED)));
+
+        View view = (View) Proxy.newProxyInstance(View.class.getClassLoader(), new Class[]
+                {
+                    View.class
+                }, new StubHandler().put("getModelViewMatrix", identity()).put("getProjectionMatrix", identity()).put(
+                "getViewport", new Rectangle(0, 0, 800, 600)).put("getEyePoint", new Vec4(0, 0, 1e9)).put(
+                "computeHorizonDistance", Double.valueOf(1)));
+
+        // The renderer identifies the frames by their geometry.
+        SectorGeometryList[] geometries = new SectorGeometryList[]
+        {
+            new StubGeometry(), new StubGeometry()
+        };
+        StubHandler dcHandler = new StubHandler().put("getVisibleSector", Sector.fromDegrees(-90, 90, -180, 180)).put(
+                "getGlobe", globe).put("getView", view).put("getVerticalExaggeration", Double.valueOf(1));
+        DrawContext dc = (DrawContext) Proxy.newProxyInstance(DrawContext.class.getClassLoader(), new Class[]
+                {
+                    DrawContext.class
+                }, dcHandler);
+
+        // Rotating icons on the terrain and dead reckoned icons in the air.
+        ArrayList<WWIcon> icons = new ArrayList<WWIcon>();
+        ArrayList<RotableUserFacingIcon> rotating = new ArrayList<RotableUserFacingIcon>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < NUM_ICONS; i++)
+        {
+            double lat = -45 + (i % 90);
+            double lon = -180 + (i / 90) * 10;
+            RotableUserFacingIcon icon = new RotableUserFacingIcon("images/32x32-icon-nasa.png",
+                    Position.fromDegrees(lat, lon, 0));
+            rotating.add(icon);
+            icons.add(icon);
+
+            RotableUserFacingIcon plane = new RotableUserFacingIcon("images/32x32-icon-nasa.png",
+                    Position.fromDegrees(lat, lon, 10000));
+            plane.setFix(Position.fromDegrees(lat, lon, 10000), Angle.fromDegrees(-i), 250, Angle.fromDegrees(i),
+                    0, now);
+            icons.add(plane);
+        }
+
+        IconRenderer renderer = new IconRenderer();
+        for (int frame = 0; frame < WARM_UP_FRAMES; frame++)
+        {
+            renderFrame(renderer, dc, dcHandler, geometries[frame % 2], rotating, icons, frame);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int frame = WARM_UP_FRAMES; frame < WARM_UP_FRAMES + MEASURED_FRAMES; frame++)
+        {
+            renderFrame(renderer, dc, dcHandler, geometries[frame % 2], rotating, icons, frame);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        double perIconAndFrame = (double) allocated / (MEASURED_FRAMES * icons.size());
+        assertTrue("Allocated " + perIconAndFrame + " bytes per icon and frame",
+                perIconAndFrame < MAX_BYTES_PER_ICON_AND_FRAME);
+    }
+
+    private static void renderFrame(IconRenderer renderer, DrawContext dc, StubHandler dcHandler,
+            SectorGeometryList geometry, ArrayList<RotableUserFacingIcon> rotating, ArrayList<WWIcon> icons,
+            int frame)
+    {
+        dcHandler.put("getSurfaceGeometry", geometry);
+        for (int i = 0; i < rotating.size(); i++)
+        {
+            rotating.get(i).setHeadingDegrees((frame * 10) % 360);
+        }
+        renderer.render(dc, icons);
+    }
+
+    private static Matrix identity()
+    {
+        return new Matrix(1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1);
+    }
+}
@@ -79,6 +79,15 @@ public class SwingAnnotationExample
             swingannot.setPanel(new SwingAnnotationPanel());
             sal.addAnnotation(swingannot);
 
+            // Offscreen annotations are drawn as textures by the GL canvas.
+            for (int i = 0; i < 10; i++)
+            {
+                swingannot = new SwingAnnotation(Position.fromDegrees(-30, -60 + i * 15, 0));
+                swingannot.setPanel(new SwingAnnotationPanel());
+                swingannot.setOffscreen(true);
+                sal.addAnnotation(swingannot);
+            }
+
             mainlayers.add(sal);
 
             model.setLayers(mainlayers);
@@ -6,12 +6,22 @@ import gov.nasa.worldwind.render.SwingAnnotationRenderer;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Logging;
 import java.awt.Container;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * SwingAnnotationLayer is a layer container for SwingAnnotation objects.
  * All SwingAnnotation contained in the SwingAnnotationLayer are rendered
  * through the SwingAnnotationRenderer.
+ * <br/>
+ * The mouse events over the offscreen annotations are forwarded to their
+ * components and aren't used to move the view.
  * 
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  * @see SwingAnnotation
@@ -21,7 +31,7 @@ public class SwingAnnotationLayer extends AbstractLayer
 {
 
     private final java.util.Collection<SwingAnnotation> annotations = new ConcurrentLinkedQueue<SwingAnnotation>();
-    private SwingAnnotationRenderer annotationRenderer = new SwingAnnotationRenderer();
+    private SwingAnnotationRenderer annotationRenderer = null;
     private WorldWindowGLCanvas wwd = null;
 
     /**
@@ -31,6 +41,32 @@ public class SwingAnnotationLayer extends AbstractLayer
     public SwingAnnotationLayer(WorldWindowGLCanvas wwd)
     {
         this.wwd = wwd;
+        this.annotationRenderer = new SwingAnnotationRenderer(wwd);
+
+        // The panels are placed relative to the canvas, so place them again
+        // when the canvas moves inside its parent.
+        wwd.addComponentListener(new ComponentAdapter()
+        {
+
+            @Override
+            public void componentMoved(ComponentEvent e)
+            {
+                annotationRenderer.getComponentMover().invalidate();
+                SwingAnnotationLayer.this.wwd.redraw();
+            }
+
+            @Override
+            public void componentResized(ComponentEvent e)
+            {
+                annotationRenderer.getComponentMover().invalidate();
+                SwingAnnotationLayer.this.wwd.redraw();
+            }
+        });
+
+        MouseForwarder forwarder = new MouseForwarder();
+        wwd.getInputHandler().addMouseListener(forwarder);
+        wwd.getInputHandler().addMouseMotionListener(forwarder);
+        wwd.getInputHandler().addMouseWheelListener(forwarder);
     }
 
     /**
@@ -49,6 +85,12 @@ public class SwingAnnotationLayer extends AbstractLayer
         this.annotations.add(annotation);
         annotation.setWorldWindowGLCanvas(wwd);
 
+        // Offscreen annotations are drawn as textures, not over the canvas.
+        if (annotation.isOffscreen())
+        {
+            return;
+        }
+
         Container parent = wwd.getParent();
         if (parent == null)
         {
@@ -74,6 +116,7 @@ public class SwingAnnotationLayer extends AbstractLayer
         }
 
         this.annotations.remove(annotation);
+        this.annotationRenderer.getComponentMover().remove(annotation);
     }
 
     /**
@@ -85,6 +128,35 @@ public class SwingAnnotationLayer extends AbstractLayer
         return this.annotations;
     }
 
+    /**
+     * Sets the distance in pixels a panel must move to be moved.
+     * @param threshold
+     */
+    public void setMoveThreshold(int threshold)
+    {
+        this.annotationRenderer.getComponentMover().setThreshold(threshold);
+    }
+
+    public int getMoveThreshold()
+    {
+        return this.annotationRenderer.getComponentMover().getThreshold();
+    }
+
+    /**
+     * Enables or disables the layer. The panels are hidden when the layer is
+     * disabled, because it isn't rendered anymore.
+     * @param enabled
+     */
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        super.setEnabled(enabled);
+        if (!enabled)
+        {
+            this.annotationRenderer.getComponentMover().hideAll();
+        }
+    }
+
     /**
      * Renders the annotations of the layer.
      * 
@@ -95,4 +167,66 @@ public class SwingAnnotationLayer extends AbstractLayer
     {
         this.annotationRenderer.render(dc, this.annotations);
     }
+
+    /**
+     * Sends the mouse events over the offscreen annotations to them.
+     */
+    private class MouseForwarder implements MouseListener, MouseMotionListener, MouseWheelListener
+    {
+
+        private void forward(MouseEvent e)
+        {
+            if (!isEnabled() || e.isConsumed())
+            {
+                return;
+            }
+
+            for (SwingAnnotation annotation : annotations)
+            {
+                if (annotation.isOffscreen() && annotation.isEnable() && annotation.dispatchMouseEvent(e))
+                {
+                    e.consume();
+                    return;
+                }
+            }
+        }
+
+        public void mouseClicked(MouseEvent e)
+        {
+            this.forward(e);
+        }
+
+        public void mousePressed(MouseEvent e)
+        {
+            this.forward(e);
+        }
+
+        public void mouseReleased(MouseEvent e)
+        {
+            this.forward(e);
+        }
+
+        public void mouseEntered(MouseEvent e)
+        {
+        }
+
+        public void mouseExited(MouseEvent e)
+        {
+        }
+
+        public void mouseDragged(MouseEvent e)
+        {
+            this.forward(e);
+        }
+
+        public void mouseMoved(MouseEvent e)
+        {
+            this.forward(e);
+        }
+
+        public void mouseWheelMoved(MouseWheelEvent e)
+        {
+            this.forward(e);
+        }
+    }
 }
@@ -1,21 +1,43 @@
 package gov.nasa.worldwind.render;
 
+import com.sun.opengl.util.texture.Texture;
+import com.sun.opengl.util.texture.TextureCoords;
+import com.sun.opengl.util.texture.TextureIO;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.util.ComponentMover;
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.media.opengl.GL;
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 
 /**
  * <p>SwingAnnotation allows to create rich annotations using Swing components.</p>
  * <p>It is implemented using a JPanel that must be put in the same container as
  * the WorldWindowGLCanvas. <b>The parent container must use a null layout</b>.</p>
+ * <p>In offscreen mode the panel isn't added to any container: it is painted
+ * into an image, in the event dispatch thread, only when the panel is
+ * repainted or its layout changes, and after each mouse event forwarded to
+ * it. The image is drawn as a textured quad and the SwingAnnotationLayer
+ * forwards the mouse events over the quad to the panel components. This
+ * allows to show lots of annotations without mixing heavyweight and
+ * lightweight components. A component that only repaints itself, outside of
+ * a forwarded mouse event, isn't noticed: call 'repaintImage' after changing
+ * it.</p>
  *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
@@ -30,6 +52,17 @@ public class SwingAnnotation extends JPanel
     private Position position = Position.fromDegrees(0, 0, 0);
     private Color color = Color.LIGHT_GRAY;
     private JScrollPane scroll = null;
+    // Offscreen mode state.
+    private boolean offscreen = false;
+    // Size of the panel when it was made offscreen, kept while it has no container.
+    private Dimension offscreenSize = null;
+    private final AtomicBoolean paintPending = new AtomicBoolean(false);
+    private volatile BufferedImage image = null;
+    private volatile long imageVersion = 0;
+    private volatile Rectangle screenBounds = null;
+    private long textureVersion = -1;
+    private Texture texture = null;
+    private Component mouseTarget = null;
 
     /**
      * Creates a new annotation at the given position.
@@ -145,43 +178,320 @@ public class SwingAnnotation extends JPanel
         this.color = color;
     }
 
+    /**
+     * Returns the bottom left corner of the panel, in coordinates of the
+     * WorldWindowGLCanvas, computed in the last frame.
+     * @return
+     */
     public Point getPoint()
     {
         return this.point;
     }
 
     /**
-     * Draws the annotation at the position specified.
+     * Checks if the annotation is painted offscreen and drawn as a texture.
+     * @return
+     */
+    public boolean isOffscreen()
+    {
+        return offscreen;
+    }
+
+    /**
+     * Sets if the annotation is painted offscreen and drawn as a texture,
+     * instead of being a component over the canvas. Must be set before the
+     * annotation is added to a layer, once the panel has its size, in the
+     * event dispatch thread.
+     * @param offscreen
+     */
+    public void setOffscreen(boolean offscreen)
+    {
+        this.offscreenSize = offscreen ? this.getSize() : null;
+        this.offscreen = offscreen;
+        if (offscreen)
+        {
+            // Made displayable without a container, so it can be validated
+            // and its components invalidate it, but it is never showing.
+            if (!this.isDisplayable())
+            {
+                this.addNotify();
+            }
+            this.setVisible(true);
+            this.repaintImage();
+        }
+        else if (this.getParent() == null && this.isDisplayable())
+        {
+            this.removeNotify();
+        }
+    }
+
+    /**
+     * Gets the rectangle, in canvas coordinates, where the annotation was
+     * drawn in offscreen mode.
+     * @return the rectangle, or null if it wasn't drawn.
+     */
+    public Rectangle getScreenBounds()
+    {
+        return this.screenBounds;
+    }
+
+    /**
+     * Asks for the offscreen image to be painted again. Called automatically
+     * when the annotation is repainted or a component of it is invalidated,
+     * and after forwarding a mouse event to it.
+     */
+    public void repaintImage()
+    {
+        // Checks 'offscreen' first, it is called while the panel is constructed.
+        if (!this.offscreen || !this.paintPending.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        EventQueue.invokeLater(new Runnable()
+        {
+
+            public void run()
+            {
+                // Requests made while painting are ignored, they come from the painting itself.
+                try
+                {
+                    paintImage();
+                }
+                finally
+                {
+                    paintPending.set(false);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height)
+    {
+        super.repaint(tm, x, y, width, height);
+        this.repaintImage();
+    }
+
+    @Override
+    public void invalidate()
+    {
+        super.invalidate();
+        this.repaintImage();
+    }
+
+    /**
+     * Restores the size of the offscreen panel and lays it out. As it isn't
+     * showing nobody else does it. Must be called in the event dispatch
+     * thread.
+     */
+    private void layoutOffscreen()
+    {
+        if (this.offscreenSize != null && !this.offscreenSize.equals(this.getSize()))
+        {
+            this.setSize(this.offscreenSize);
+        }
+        this.validate();
+    }
+
+    /**
+     * Paints the annotation into a new image. Must be called in the event
+     * dispatch thread.
+     */
+    private void paintImage()
+    {
+        this.layoutOffscreen();
+        int width = this.getWidth();
+        int height = this.getHeight();
+        if (width <= 0 || height <= 0)
+        {
+            return;
+        }
+
+        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = newImage.createGraphics();
+        try
+        {
+            // The panel isn't showing, so it paints straight into the image.
+            this.paint(g);
+        }
+        finally
+        {
+            g.dispose();
+        }
+
+        this.image = newImage;
+        this.imageVersion++;
+        if (this.wwd != null)
+        {
+            this.wwd.redraw();
+        }
+    }
+
+    /**
+     * Sends a mouse event over the annotation to the component under it. Must
+     * be called in the event dispatch thread.
+     * @param event mouse event of the canvas.
+     * @return true if the event has been sent.
+     */
+    public boolean dispatchMouseEvent(MouseEvent event)
+    {
+        Rectangle bounds = this.screenBounds;
+        boolean inside = bounds != null && bounds.contains(event.getPoint());
+        int x = bounds != null ? event.getX() - bounds.x : 0;
+        int y = bounds != null ? event.getY() - bounds.y : 0;
+
+        // As Swing does, drags and the release go to the pressed component.
+        int id = event.getID();
+        Component target = null;
+        if (id == MouseEvent.MOUSE_DRAGGED || id == MouseEvent.MOUSE_RELEASED)
+        {
+            target = this.mouseTarget;
+        }
+        else if (inside)
+        {
+            this.layoutOffscreen();
+            target = SwingUtilities.getDeepestComponentAt(this, x, y);
+        }
+
+        if (id == MouseEvent.MOUSE_PRESSED)
+        {
+            this.mouseTarget = target;
+        }
+        else if (id == MouseEvent.MOUSE_RELEASED)
+        {
+            this.mouseTarget = null;
+        }
+        if (target == null)
+        {
+            return false;
+        }
+
+        Point p = SwingUtilities.convertPoint(this, x, y, target);
+        MouseEvent forwarded;
+        if (event instanceof MouseWheelEvent)
+        {
+            MouseWheelEvent wheel = (MouseWheelEvent) event;
+            forwarded = new MouseWheelEvent(target, event.getID(), event.getWhen(), event.getModifiers(), p.x, p.y,
+                    event.getClickCount(), event.isPopupTrigger(), wheel.getScrollType(), wheel.getScrollAmount(),
+                    wheel.getWheelRotation());
+        }
+        else
+        {
+            forwarded = new MouseEvent(target, event.getID(), event.getWhen(), event.getModifiers(), p.x, p.y,
+                    event.getClickCount(), event.isPopupTrigger(), event.getButton());
+        }
+        target.dispatchEvent(forwarded);
+
+        // The components repaint themselves through the RepaintManager, which
+        // ignores them as they aren't showing.
+        this.repaintImage();
+        return true;
+    }
+
+    /**
+     * Draws the offscreen image of the annotation over its screen point.
+     */
+    private void renderOffscreen(DrawContext dc, Vec4 scrpoint)
+    {
+        BufferedImage currentImage = this.image;
+        if (currentImage == null)
+        {
+            this.screenBounds = null;
+            this.repaintImage();
+            return;
+        }
+
+        GL gl = dc.getGL();
+        long version = this.imageVersion;
+        if (this.texture == null || this.textureVersion != version)
+        {
+            if (this.texture != null)
+            {
+                this.texture.dispose();
+            }
+            this.texture = TextureIO.newTexture(currentImage, false);
+            this.textureVersion = version;
+        }
+
+        // Same place the panel would have over the canvas.
+        int width = currentImage.getWidth();
+        int height = currentImage.getHeight();
+        double x = scrpoint.x - 20;
+        double y = scrpoint.y + 20;
+        int viewportHeight = dc.getView().getViewport().height;
+        this.screenBounds = new Rectangle((int) x, viewportHeight - (int) y - height, width, height);
+
+        gl.glEnable(GL.GL_TEXTURE_2D);
+        gl.glEnable(GL.GL_BLEND);
+        gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glColor4f(1f, 1f, 1f, 1f);
+        this.texture.bind();
+        TextureCoords tc = this.texture.getImageTexCoords();
+        gl.glBegin(GL.GL_QUADS);
+        gl.glTexCoord2f(tc.left(), tc.bottom());
+        gl.glVertex2d(x, y);
+        gl.glTexCoord2f(tc.right(), tc.bottom());
+        gl.glVertex2d(x + width, y);
+        gl.glTexCoord2f(tc.right(), tc.top());
+        gl.glVertex2d(x + width, y + height);
+        gl.glTexCoord2f(tc.left(), tc.top());
+        gl.glVertex2d(x, y + height);
+        gl.glEnd();
+        gl.glDisable(GL.GL_TEXTURE_2D);
+    }
+
+    /**
+     * Draws the annotation at the position specified. Called from the
+     * rendering thread, so the panel is never touched here: its new location
+     * is handed to the ComponentMover, which moves it in the event dispatch
+     * thread.
      * 
      * @param dc
+     * @param mover
      */
-    public void render(DrawContext dc)
+    public void render(DrawContext dc, ComponentMover mover)
     {
         if (!enable)
         {
+            if (!this.offscreen)
+            {
+                mover.hide(this);
+            }
             return;
         }
 
         // Get position and check if it is inside the frustum
         Vec4 cartpoint = dc.getGlobe().computePointFromPosition(this.position);
-        if (dc.getView().getFrustumInModelCoordinates().contains(cartpoint))
-        {
-            this.setVisible(true);
-        }
-        else
+        if (!dc.getView().getFrustumInModelCoordinates().contains(cartpoint))
         {
-            this.setVisible(false);
+            if (this.offscreen)
+            {
+                this.screenBounds = null;
+            }
+            else
+            {
+                mover.hide(this);
+            }
             return;
         }
 
         // Translate position to screen point
         Vec4 scrpoint = dc.getView().project(cartpoint);
 
-        point.x = (int) scrpoint.x - 20;
-        point.y = wwd.getSize().height - this.getSize().height - (int) scrpoint.y - 20;
+        if (this.offscreen)
+        {
+            this.renderOffscreen(dc, scrpoint);
+        }
+        else
+        {
+            // Bottom left corner of the panel, in canvas coordinates.
+            point.x = (int) scrpoint.x - 20;
+            point.y = dc.getView().getViewport().height - (int) scrpoint.y - 20;
 
-        // Set the panel location.
-        this.setLocation(point);
+            // Set the panel location.
+            mover.setTarget(this, point.x, point.y);
+        }
 
         // Draw triangle
         GL gl = dc.getGL();
@@ -4,8 +4,10 @@ import gov.nasa.worldwind.Locatable;
 import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.util.ComponentMover;
 import gov.nasa.worldwind.util.Logging;
 
+import java.awt.Component;
 import java.awt.Point;
 import java.util.Iterator;
 import javax.media.opengl.GL;
@@ -13,12 +15,53 @@ import java.util.logging.Level;
 
 /**
  * SwingAnnotationRenderer is responsible to render the SwingAnnotations.
+ * The panels are never moved or shown from the rendering thread: each frame
+ * their locations are collected in a ComponentMover and published as one
+ * batch, once all the annotations have been rendered.
  *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
 public class SwingAnnotationRenderer
 {
 
+    private final ComponentMover mover;
+    // Rendered after all the annotations, publishes the locations of the frame.
+    private final OrderedRenderable flusher = new OrderedRenderable()
+    {
+
+        public double getDistanceFromEye()
+        {
+            return 0;
+        }
+
+        public void render(DrawContext dc)
+        {
+            mover.flush();
+        }
+
+        public void pick(DrawContext dc, java.awt.Point pickPoint)
+        {
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     * @param wwd the canvas the annotations are placed on.
+     */
+    public SwingAnnotationRenderer(Component wwd)
+    {
+        this.mover = new ComponentMover(wwd);
+    }
+
+    /**
+     * Returns the ComponentMover that places the panels.
+     * @return
+     */
+    public ComponentMover getComponentMover()
+    {
+        return mover;
+    }
+
     private static boolean isAnnotationValid(SwingAnnotation annotation, boolean checkPosition)
     {
         //noinspection RedundantIfStatement
@@ -59,6 +102,8 @@ public class SwingAnnotationRenderer
         Iterator<SwingAnnotation> iterator = annotations.iterator();
         if (!iterator.hasNext())
         {
+            // Hide the panels shown in the previous frame.
+            this.mover.flush();
             return;
         }
 
@@ -74,6 +119,7 @@ public class SwingAnnotationRenderer
 
             dc.addOrderedRenderable(new OrderedAnnotation(annotation, point, 1));
         }
+        dc.addOrderedRenderable(this.flusher);
     }
 
     private void beginDrawAnnotations(DrawContext dc)
@@ -139,7 +185,7 @@ public class SwingAnnotationRenderer
 
         SwingAnnotation annotation = uAnnotation.getAnnotation();
         javax.media.opengl.GL gl = dc.getGL();
-        annotation.render(dc);
+        annotation.render(dc, this.mover);
 
         final Point screenPoint = annotation.getPoint();
 
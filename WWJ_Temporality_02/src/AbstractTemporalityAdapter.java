@@ -0,0 +1,199 @@
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.render.Renderable;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+
+/**
+ * AbstractTemporalityAdapter keeps the period of time of the temporality
+ * adapters, given either as a Temporality or as a TimeSpan.
+ * <br/>
+ * The period is held in a single volatile field, so it can be replaced from
+ * any thread while the rendering thread reads it. Listeners registered on
+ * the adapter are notified with a PROP_TIME_SPAN event when the period
+ * changes, through 'setTimeSpan', 'setTemporality' or the adapter's own
+ * Temporality. Adapters created with a TimeSpan don't build a Temporality
+ * unless 'getTemporality' is called.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public abstract class AbstractTemporalityAdapter implements Renderable
+{
+
+    /**
+     * Period of time property.
+     */
+    public static final String PROP_TIME_SPAN = "timeSpan";
+    // A Temporality or a TimeSpan.
+    private volatile Object period;
+    // Created with the first listener.
+    private PropertyChangeSupport changeSupport = null;
+    private PropertyChangeListener temporalityListener = null;
+
+    protected AbstractTemporalityAdapter(Temporality temporality)
+    {
+        this.period = temporality;
+    }
+
+    protected AbstractTemporalityAdapter(TimeSpan timeSpan)
+    {
+        this.period = timeSpan;
+    }
+
+    /**
+     * Gets the temporality. If the adapter has a TimeSpan a Temporality
+     * facade is created for it, and kept until the period is set again.
+     * @return
+     */
+    public synchronized Temporality getTemporality()
+    {
+        Object p = this.period;
+        if (p instanceof Temporality)
+        {
+            return (Temporality) p;
+        }
+
+        Temporality temporality = new Temporality((TimeSpan) p);
+        this.period = temporality;
+        if (this.temporalityListener != null)
+        {
+            temporality.addPropertyChangeListener(this.temporalityListener);
+        }
+        return temporality;
+    }
+
+    /**
+     * Sets the temporality of the adapter.
+     * @param temporality
+     */
+    public void setTemporality(Temporality temporality)
+    {
+        if (temporality == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.setPeriod(temporality);
+    }
+
+    /**
+     * Gets the period of time of the adapter.
+     * @return
+     */
+    public TimeSpan getTimeSpan()
+    {
+        Object p = this.period;
+        return p instanceof Temporality ? ((Temporality) p).getTimeSpan() : (TimeSpan) p;
+    }
+
+    /**
+     * Sets the period of time of the adapter. It replaces the adapter's
+     * Temporality, if any, which isn't modified.
+     * @param timeSpan
+     */
+    public void setTimeSpan(TimeSpan timeSpan)
+    {
+        if (timeSpan == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.setPeriod(timeSpan);
+    }
+
+    /**
+     * Adds a listener notified when the period of time of the adapter
+     * changes, from the thread that changed it.
+     * @param listener
+     */
+    public synchronized void addPropertyChangeListener(PropertyChangeListener listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (this.changeSupport == null)
+        {
+            this.changeSupport = new PropertyChangeSupport(this);
+            this.temporalityListener = new PropertyChangeListener()
+            {
+
+                public void propertyChange(PropertyChangeEvent evt)
+                {
+                    AbstractTemporalityAdapter.this.firePeriodChanged();
+                }
+            };
+            if (this.period instanceof Temporality)
+            {
+                ((Temporality) this.period).addPropertyChangeListener(this.temporalityListener);
+            }
+        }
+        this.changeSupport.addPropertyChangeListener(listener);
+    }
+
+    /**
+     * Removes the specified listener.
+     * @param listener
+     */
+    public synchronized void removePropertyChangeListener(PropertyChangeListener listener)
+    {
+        if (this.changeSupport == null)
+        {
+            return;
+        }
+
+        this.changeSupport.removePropertyChangeListener(listener);
+        if (this.changeSupport.getPropertyChangeListeners().length == 0)
+        {
+            // Stop observing the Temporality so it doesn't keep the adapter.
+            if (this.period instanceof Temporality)
+            {
+                ((Temporality) this.period).removePropertyChangeListener(this.temporalityListener);
+            }
+            this.changeSupport = null;
+            this.temporalityListener = null;
+        }
+    }
+
+    private void setPeriod(Object newPeriod)
+    {
+        synchronized (this)
+        {
+            Object old = this.period;
+            if (this.temporalityListener != null && old instanceof Temporality)
+            {
+                ((Temporality) old).removePropertyChangeListener(this.temporalityListener);
+            }
+            this.period = newPeriod;
+            if (this.temporalityListener != null && newPeriod instanceof Temporality)
+            {
+                ((Temporality) newPeriod).addPropertyChangeListener(this.temporalityListener);
+            }
+        }
+
+        this.firePeriodChanged();
+    }
+
+    private void firePeriodChanged()
+    {
+        PropertyChangeSupport support;
+        synchronized (this)
+        {
+            support = this.changeSupport;
+        }
+
+        // Fired outside the lock, listeners may take their own locks.
+        if (support != null)
+        {
+            support.firePropertyChange(PROP_TIME_SPAN, null, this.getTimeSpan());
+        }
+    }
+}
@@ -6,6 +6,7 @@ All Rights Reserved.
 package gov.nasa.worldwind.view;
 
 import gov.nasa.worldwind.util.Temporality;
+import gov.nasa.worldwind.util.TimeSpan;
 import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.geom.*;
@@ -25,9 +26,15 @@ public abstract class AbstractView extends WWObjectImpl implements View
 
     // ============== Start timeline added code ======================= //
     private Temporality temporality = null;
+    // The cursor is an immutable span, so it can be read from the rendering
+    // thread while other thread moves it.
+    private volatile TimeSpan cursorSpan = null;
+    // Temporality facade for the cursor, only created when the cursor moves.
     private Temporality cursor = null;
     private int cursorSize = 1;
     private int cursorField = Calendar.DAY_OF_MONTH;
+    // Calendar used to compute the cursor steps without creating new objects.
+    private final Calendar stepCalendar = Calendar.getInstance();
 
     public void setTemporality(Temporality temporality)
     {
@@ -40,15 +47,9 @@ public abstract class AbstractView extends WWObjectImpl implements View
 
         this.temporality = temporality;
 
-        // Calculate initial and final cursos calendars.
-        Calendar start = Calendar.getInstance();
-        start.setTime(temporality.getInitialTimeStamp().getTime());
-
-        Calendar end = Calendar.getInstance();
-        end.setTime(start.getTime());
-        end.add(cursorField, cursorSize);
-
-        cursor = new Temporality(start, end);
+        // Calculate initial and final cursor times.
+        long start = temporality.getTimeSpan().getStart();
+        setCursorSpan(start, addCursorSize(start, 1));
     }
 
     public Temporality getTemporality()
@@ -56,67 +57,93 @@ public abstract class AbstractView extends WWObjectImpl implements View
         return temporality;
     }
 
-    public Temporality getTemporalityCursor()
+    public TimeSpan getTemporalitySpan()
+    {
+        return temporality != null ? temporality.getTimeSpan() : null;
+    }
+
+    public synchronized Temporality getTemporalityCursor()
     {
+        TimeSpan span = cursorSpan;
+        if (span == null)
+        {
+            return null;
+        }
+
+        if (cursor == null || cursor.getTimeSpan() != span)
+        {
+            cursor = new Temporality(span);
+        }
         return cursor;
     }
 
-    public void setTemporalityCursorSize(int field, int value)
+    public TimeSpan getTemporalityCursorSpan()
+    {
+        return cursorSpan;
+    }
+
+    public synchronized void setTemporalityCursorSize(int field, int value)
     {
         this.cursorField = field;
         this.cursorSize = value;
     }
 
-    public void temporalityCursorStepUp()
+    public synchronized void temporalityCursorStepUp()
     {
-        if (cursor == null)
+        if (cursorSpan == null)
         {
             return;
         }
 
+        TimeSpan view = temporality.getTimeSpan();
+
         // Increase cursor positions
-        cursor.getInitialTimeStamp().add(cursorField, cursorSize);
-        cursor.getFinalTimeStamp().add(cursorField, cursorSize);
+        long start = addCursorSize(cursorSpan.getStart(), 1);
+        long end = addCursorSize(cursorSpan.getEnd(), 1);
 
         // Check if cursor start if beyond the final temporality time of the view.
-        if (cursor.getInitialTimeStamp().after(temporality.getFinalTimeStamp()) || cursor.getInitialTimeStamp().equals(temporality.getFinalTimeStamp()))
+        if (start >= view.getEnd())
         {
-            cursor.getInitialTimeStamp().setTime(temporality.getInitialTimeStamp().getTime());
-            cursor.getFinalTimeStamp().setTime(temporality.getInitialTimeStamp().getTime());
-            cursor.getFinalTimeStamp().add(cursorField, cursorSize);
+            start = view.getStart();
+            end = addCursorSize(view.getStart(), 1);
         }
 
         // Check if cursor end if beyond the final temporality time of the view.
-        if (cursor.getFinalTimeStamp().after(temporality.getFinalTimeStamp()))
+        if (end > view.getEnd())
         {
-            cursor.getFinalTimeStamp().setTime(temporality.getFinalTimeStamp().getTime());
+            end = view.getEnd();
         }
+
+        setCursorSpan(start, end);
     }
 
-    public void temporalityCursorStepDown()
+    public synchronized void temporalityCursorStepDown()
     {
-        if (cursor == null)
+        if (cursorSpan == null)
         {
             return;
         }
 
+        TimeSpan view = temporality.getTimeSpan();
+
         // Decrease cursor positions
-        cursor.getInitialTimeStamp().add(cursorField, -cursorSize);
-        cursor.getFinalTimeStamp().add(cursorField, -cursorSize);
+        long start = addCursorSize(cursorSpan.getStart(), -1);
+        long end = addCursorSize(cursorSpan.getEnd(), -1);
 
         // Check if cursor start if beyond the initial temporality time of the view.
-        if (cursor.getInitialTimeStamp().before(temporality.getInitialTimeStamp()))
+        if (start < view.getStart())
         {
-            cursor.getInitialTimeStamp().setTime(temporality.getInitialTimeStamp().getTime());
+            start = view.getStart();
         }
 
         // Check if cursor end if beyond the initial temporality time of the view.
-        if (cursor.getFinalTimeStamp().before(temporality.getInitialTimeStamp()) || cursor.getFinalTimeStamp().equals(temporality.getInitialTimeStamp()))
+        if (end <= view.getStart())
         {
-            cursor.getInitialTimeStamp().setTime(temporality.getFinalTimeStamp().getTime());
-            cursor.getInitialTimeStamp().add(cursorField, -cursorSize);
-            cursor.getFinalTimeStamp().setTime(temporality.getFinalTimeStamp().getTime());
+            start = addCursorSize(view.getEnd(), -1);
+            end = view.getEnd();
         }
+
+        setCursorSpan(start, end);
     }
 
     public void temporalityCursorGoTo(Calendar calendar)
@@ -128,20 +155,46 @@ public abstract class AbstractView extends WWObjectImpl implements View
             throw new IllegalArgumentException(message);
         }
 
+        temporalityCursorGoTo(calendar.getTimeInMillis());
+    }
+
+    public synchronized void temporalityCursorGoTo(long time)
+    {
+        if (cursorSpan == null)
+        {
+            return;
+        }
+
+        TimeSpan view = temporality.getTimeSpan();
+
         // Check if new position is before temporality start.
-        if (calendar.before(temporality.getInitialTimeStamp()))
+        if (time < view.getStart())
+        {
+            setCursorSpan(view.getStart(), addCursorSize(view.getStart(), 1));
+        } // Check if new position is after temporality end.
+        else if (time > view.getEnd())
         {
-            cursor.getInitialTimeStamp().setTime(temporality.getInitialTimeStamp().getTime());
-            cursor.getFinalTimeStamp().setTime(temporality.getInitialTimeStamp().getTime());
-            cursor.getFinalTimeStamp().add(cursorField, cursorSize);
+            setCursorSpan(addCursorSize(view.getEnd(), -1), view.getEnd());
+        } // Place the cursor start at the new position.
+        else
+        {
+            setCursorSpan(time, Math.min(addCursorSize(time, 1), view.getEnd()));
         }
+    }
 
-        // Check if new position is after temporality end.
-        if (calendar.after(temporality.getFinalTimeStamp()))
+    private long addCursorSize(long time, int times)
+    {
+        stepCalendar.setTimeInMillis(time);
+        stepCalendar.add(cursorField, times * cursorSize);
+        return stepCalendar.getTimeInMillis();
+    }
+
+    private void setCursorSpan(long start, long end)
+    {
+        TimeSpan span = cursorSpan;
+        if (span == null || span.getStart() != start || span.getEnd() != end)
         {
-            cursor.getInitialTimeStamp().setTime(temporality.getFinalTimeStamp().getTime());
-            cursor.getInitialTimeStamp().add(cursorField, -cursorSize);
-            cursor.getFinalTimeStamp().setTime(temporality.getFinalTimeStamp().getTime());
+            cursorSpan = new TimeSpan(start, end);
         }
     }
     // ============== Finish timeline added code ======================= //
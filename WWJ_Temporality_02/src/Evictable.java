@@ -0,0 +1,21 @@
+package gov.nasa.worldwind.render;
+
+/**
+ * Evictable defines the objects that can release their cached resources
+ * (images, textures, ...) while they are not being rendered. Unlike
+ * disposing them, the objects remain usable and load their resources again
+ * the next time they are rendered or prefetched.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ * @see Prefetchable
+ */
+public interface Evictable
+{
+
+    /**
+     * Releases the cached resources of the object. It is called from the
+     * rendering thread so textures can be deleted.
+     * @param dc
+     */
+    public void evict(DrawContext dc);
+}
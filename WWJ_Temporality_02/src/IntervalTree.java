@@ -0,0 +1,355 @@
+package gov.nasa.worldwind.util;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * IntervalTree stores objects associated with a closed time interval
+ * [start, end], expressed in milliseconds, and allows to find all the objects
+ * that overlap a given interval in O(log n + k) time.
+ * <br/>
+ * It is implemented as a randomized balanced search tree (treap) ordered by
+ * the interval start and augmented with the maximum interval end of every
+ * subtree. Each object can be stored only once, adding it again replaces its
+ * interval.
+ * <br/>
+ * The tree is thread safe: objects can be added or removed from any thread
+ * while others are querying it.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class IntervalTree<T>
+{
+
+    private static class Node<T>
+    {
+
+        T value;
+        long start;
+        long end;
+        long seq;
+        int priority;
+        long maxEnd;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T value, long start, long end, long seq, int priority)
+        {
+            this.value = value;
+            this.start = start;
+            this.end = end;
+            this.seq = seq;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        int compareTo(long start, long seq)
+        {
+            if (this.start != start)
+            {
+                return this.start < start ? -1 : 1;
+            }
+            return this.seq < seq ? -1 : (this.seq == seq ? 0 : 1);
+        }
+    }
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IdentityHashMap<T, Node<T>> nodes = new IdentityHashMap<T, Node<T>>();
+    private final Random random = new Random();
+    private Node<T> root = null;
+    private long nextSeq = 0;
+
+    /**
+     * Creates a new empty tree.
+     */
+    public IntervalTree()
+    {
+    }
+
+    /**
+     * Adds an object with the given interval. If the object was already
+     * contained its interval is replaced.
+     * @param value the object.
+     * @param start interval start in milliseconds.
+     * @param end interval end in milliseconds.
+     */
+    public void add(T value, long start, long end)
+    {
+        if (value == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Swap values if necessary, in the same way Temporality does.
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            Node<T> old = nodes.remove(value);
+            if (old != null)
+            {
+                root = remove(root, old.start, old.seq);
+            }
+
+            Node<T> node = new Node<T>(value, start, end, nextSeq++, random.nextInt());
+            nodes.put(value, node);
+            root = insert(root, node);
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an object from the tree.
+     * @param value the object.
+     * @return true if the object was contained in the tree.
+     */
+    public boolean remove(T value)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Node<T> node = nodes.remove(value);
+            if (node == null)
+            {
+                return false;
+            }
+
+            root = remove(root, node.start, node.seq);
+            return true;
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the objects.
+     */
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            nodes.clear();
+            root = null;
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the object is contained in the tree.
+     * @param value
+     * @return
+     */
+    public boolean contains(T value)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return nodes.containsKey(value);
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of objects contained in the tree.
+     * @return
+     */
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return nodes.size();
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds to the 'result' collection all the objects whose interval
+     * intersects with [start, end]. Both intervals are closed.
+     * @param start interval start in milliseconds.
+     * @param end interval end in milliseconds.
+     * @param result collection where objects are added.
+     * @return the 'result' collection.
+     */
+    public Collection<T> query(long start, long end, Collection<T> result)
+    {
+        if (result == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            query(root, start, end, result);
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds to the 'result' collection all the objects stored in the tree,
+     * sorted by its interval start.
+     * @param result collection where objects are added.
+     * @return the 'result' collection.
+     */
+    public Collection<T> getAll(Collection<T> result)
+    {
+        return query(Long.MIN_VALUE, Long.MAX_VALUE, result);
+    }
+
+    private void query(Node<T> node, long start, long end, Collection<T> result)
+    {
+        while (node != null)
+        {
+            // No interval in this subtree reaches the query start.
+            if (node.maxEnd < start)
+            {
+                return;
+            }
+
+            query(node.left, start, end, result);
+
+            // Nodes at the right start after this one, so if this node starts
+            // after the query end there is nothing more to find.
+            if (node.start > end)
+            {
+                return;
+            }
+
+            if (node.end >= start)
+            {
+                result.add(node.value);
+            }
+
+            node = node.right;
+        }
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> newNode)
+    {
+        if (node == null)
+        {
+            return newNode;
+        }
+
+        if (node.compareTo(newNode.start, newNode.seq) > 0)
+        {
+            node.left = insert(node.left, newNode);
+            if (node.left.priority > node.priority)
+            {
+                node = rotateRight(node);
+            }
+        } else
+        {
+            node.right = insert(node.right, newNode);
+            if (node.right.priority > node.priority)
+            {
+                node = rotateLeft(node);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private Node<T> remove(Node<T> node, long start, long seq)
+    {
+        if (node == null)
+        {
+            return null;
+        }
+
+        int cmp = node.compareTo(start, seq);
+        if (cmp > 0)
+        {
+            node.left = remove(node.left, start, seq);
+        } else if (cmp < 0)
+        {
+            node.right = remove(node.right, start, seq);
+        } else
+        {
+            if (node.left == null)
+            {
+                return node.right;
+            }
+            if (node.right == null)
+            {
+                return node.left;
+            }
+
+            // Rotate the node down until it has only one child.
+            if (node.left.priority > node.right.priority)
+            {
+                node = rotateRight(node);
+                node.right = remove(node.right, start, seq);
+            } else
+            {
+                node = rotateLeft(node);
+                node.left = remove(node.left, start, seq);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node)
+    {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private Node<T> rotateLeft(Node<T> node)
+    {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private void update(Node<T> node)
+    {
+        long max = node.end;
+        if (node.left != null && node.left.maxEnd > max)
+        {
+            max = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd > max)
+        {
+            max = node.right.maxEnd;
+        }
+        node.maxEnd = max;
+    }
+}
@@ -0,0 +1,303 @@
+package gov.nasa.worldwind.render;
+
+import com.sun.opengl.util.texture.Texture;
+import com.sun.opengl.util.texture.TextureCoords;
+import com.sun.opengl.util.texture.TextureIO;
+import gov.nasa.worldwind.util.Logging;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.media.opengl.GL;
+
+/**
+ * LabelCache keeps screen labels rasterized in textures, so a label that
+ * doesn't change is drawn as a single textured quad instead of laying out
+ * and rasterizing its glyphs every frame.
+ * <br/>
+ * Labels are identified by their text, font, color and shadow color. The
+ * least recently used labels are released when the cache is full; their
+ * textures are deleted on the next draw, when the GL context is current.
+ * <br/>
+ * The cache must only be used from the rendering thread.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class LabelCache
+{
+
+    /**
+     * A rasterized label.
+     */
+    public static class Label
+    {
+
+        private BufferedImage image;
+        private final int width;
+        private final int height;
+        private final int descent;
+        private Texture texture = null;
+
+        private Label(BufferedImage image, int descent)
+        {
+            this.image = image;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.descent = descent;
+        }
+
+        /**
+         * Gets the label width in pixels.
+         * @return
+         */
+        public int getWidth()
+        {
+            return width;
+        }
+
+        /**
+         * Gets the label height in pixels.
+         * @return
+         */
+        public int getHeight()
+        {
+            return height;
+        }
+
+        private void draw(DrawContext dc, double x, double y, double opacity)
+        {
+            GL gl = dc.getGL();
+            if (texture == null)
+            {
+                texture = TextureIO.newTexture(image, false);
+                texture.setTexParameteri(GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+                texture.setTexParameteri(GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+                // The image is no longer needed once uploaded.
+                image = null;
+            }
+
+            gl.glEnable(GL.GL_TEXTURE_2D);
+            gl.glEnable(GL.GL_BLEND);
+            gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+            gl.glTexEnvi(GL.GL_TEXTURE_ENV, GL.GL_TEXTURE_ENV_MODE, GL.GL_MODULATE);
+            texture.bind();
+            gl.glColor4d(1, 1, 1, opacity);
+
+            TextureCoords coords = texture.getImageTexCoords();
+            double x0 = Math.round(x);
+            double y0 = Math.round(y) - descent;
+            gl.glBegin(GL.GL_QUADS);
+            gl.glTexCoord2f(coords.left(), coords.bottom());
+            gl.glVertex2d(x0, y0);
+            gl.glTexCoord2f(coords.right(), coords.bottom());
+            gl.glVertex2d(x0 + width, y0);
+            gl.glTexCoord2f(coords.right(), coords.top());
+            gl.glVertex2d(x0 + width, y0 + height);
+            gl.glTexCoord2f(coords.left(), coords.top());
+            gl.glVertex2d(x0, y0 + height);
+            gl.glEnd();
+        }
+
+        private void dispose()
+        {
+            if (texture != null)
+            {
+                texture.dispose();
+                texture = null;
+            }
+        }
+    }
+
+    private static class Key
+    {
+
+        String text;
+        Font font;
+        Color color;
+        Color shadowColor;
+
+        Key(String text, Font font, Color color, Color shadowColor)
+        {
+            this.set(text, font, color, shadowColor);
+        }
+
+        void set(String text, Font font, Color color, Color shadowColor)
+        {
+            this.text = text;
+            this.font = font;
+            this.color = color;
+            this.shadowColor = shadowColor;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return text.equals(key.text) && font.equals(key.font) && color.equals(key.color)
+                    && (shadowColor == null ? key.shadowColor == null : shadowColor.equals(key.shadowColor));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = text.hashCode();
+            hash = hash * 31 + font.hashCode();
+            hash = hash * 31 + color.hashCode();
+            return hash * 31 + (shadowColor != null ? shadowColor.hashCode() : 0);
+        }
+    }
+    public static final int DEFAULT_CAPACITY = 32;
+    private final int capacity;
+    private final ArrayList<Label> evicted = new ArrayList<Label>();
+    private final LinkedHashMap<Key, Label> labels;
+    // Reused to look up the labels without allocating a key.
+    private final Key probe = new Key(null, null, null, null);
+    // Scratch graphics used to measure text.
+    private final Graphics2D measureGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    /**
+     * Creates a new cache with the default capacity.
+     */
+    public LabelCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache.
+     * @param capacity maximum number of labels kept.
+     */
+    public LabelCache(int capacity)
+    {
+        if (capacity < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.capacity = capacity;
+        this.labels = new LinkedHashMap<Key, Label>(16, 0.75f, true)
+        {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Label> eldest)
+            {
+                if (size() > LabelCache.this.capacity)
+                {
+                    LabelCache.this.evicted.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the label for the given text, rasterizing it if it isn't
+     * cached.
+     * @param text
+     * @param font
+     * @param color text color.
+     * @param shadowColor color of a shadow drawn one pixel to the right and
+     * below the text, or null to draw no shadow.
+     * @return
+     */
+    public Label getLabel(String text, Font font, Color color, Color shadowColor)
+    {
+        if (text == null || font == null || color == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.probe.set(text, font, color, shadowColor);
+        Label label = this.labels.get(this.probe);
+        if (label == null)
+        {
+            label = this.rasterize(text, font, color, shadowColor);
+            this.labels.put(new Key(text, font, color, shadowColor), label);
+        }
+        return label;
+    }
+
+    /**
+     * Draws a label with its baseline at the given point. The current
+     * projection must map units to pixels.
+     * @param dc
+     * @param label
+     * @param x left of the label.
+     * @param y baseline of the label.
+     * @param opacity
+     */
+    public void draw(DrawContext dc, Label label, double x, double y, double opacity)
+    {
+        if (!this.evicted.isEmpty())
+        {
+            this.disposeEvicted();
+        }
+
+        label.draw(dc, x, y, opacity);
+    }
+
+    /**
+     * Deletes all the labels. Must be called with the GL context current.
+     */
+    public void dispose()
+    {
+        for (Label label : this.labels.values())
+        {
+            label.dispose();
+        }
+        this.labels.clear();
+        this.disposeEvicted();
+    }
+
+    private void disposeEvicted()
+    {
+        for (int i = 0; i < this.evicted.size(); i++)
+        {
+            this.evicted.get(i).dispose();
+        }
+        this.evicted.clear();
+    }
+
+    private Label rasterize(String text, Font font, Color color, Color shadowColor)
+    {
+        FontMetrics metrics = this.measureGraphics.getFontMetrics(font);
+        int shadow = shadowColor != null ? 1 : 0;
+        int width = Math.max(1, metrics.stringWidth(text) + shadow);
+        int height = Math.max(1, metrics.getAscent() + metrics.getDescent() + shadow);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try
+        {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            if (shadowColor != null)
+            {
+                g.setColor(shadowColor);
+                g.drawString(text, 1, metrics.getAscent() + 1);
+            }
+            g.setColor(color);
+            g.drawString(text, 0, metrics.getAscent());
+        } finally
+        {
+            g.dispose();
+        }
+
+        return new Label(image, metrics.getDescent() + shadow);
+    }
+}
@@ -0,0 +1,19 @@
+package gov.nasa.worldwind.render;
+
+/**
+ * Prefetchable defines the objects that can load their resources (images,
+ * textures, ...) before they have to be rendered, so they are ready when
+ * they become visible.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public interface Prefetchable
+{
+
+    /**
+     * Loads the resources needed to render the object. It is called from the
+     * rendering thread so textures can be uploaded, but nothing must be drawn.
+     * @param dc
+     */
+    public void prefetch(DrawContext dc);
+}
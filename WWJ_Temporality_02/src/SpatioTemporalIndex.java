@@ -0,0 +1,422 @@
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.geom.Sector;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SpatioTemporalIndex stores objects associated with a Sector and a closed
+ * time interval, and allows to find the objects that intersect both a
+ * Sector and a period of time.
+ * <br/>
+ * The globe is divided in a grid of cells of the same size in degrees, and
+ * every cell has an IntervalTree with the objects whose sector overlaps it.
+ * A query only visits the cells covered by the query sector, so its cost
+ * depends on the size of the query and the number of results, not on the
+ * number of objects. Objects without sector, or covering more than
+ * 'maxCellsPerObject' cells, are stored in a separate tree checked on every
+ * spatial query.
+ * <br/>
+ * An additional IntervalTree with all the objects answers the queries made
+ * only by time.
+ * <br/>
+ * The index is thread safe.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class SpatioTemporalIndex<T>
+{
+
+    private static class Entry
+    {
+
+        final Sector sector;
+        final long start;
+        final long end;
+        // Cells the object is stored in, null if stored as unbounded.
+        final int[] cells;
+
+        Entry(Sector sector, long start, long end, int[] cells)
+        {
+            this.sector = sector;
+            this.start = start;
+            this.end = end;
+            this.cells = cells;
+        }
+    }
+    public static final double DEFAULT_CELL_SIZE = 10;
+    public static final int DEFAULT_MAX_CELLS_PER_OBJECT = 16;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final double cellSize;
+    private final int numRows;
+    private final int numCols;
+    private final int maxCellsPerObject;
+    private final IdentityHashMap<T, Entry> entries = new IdentityHashMap<T, Entry>();
+    private final HashMap<Integer, IntervalTree<T>> cells = new HashMap<Integer, IntervalTree<T>>();
+    private final IntervalTree<T> unbounded = new IntervalTree<T>();
+    private final IntervalTree<T> all = new IntervalTree<T>();
+
+    /**
+     * Creates a new index with the default cell size.
+     */
+    public SpatioTemporalIndex()
+    {
+        this(DEFAULT_CELL_SIZE, DEFAULT_MAX_CELLS_PER_OBJECT);
+    }
+
+    /**
+     * Creates a new index.
+     * @param cellSize size of the grid cells in degrees.
+     * @param maxCellsPerObject objects covering more cells are stored as
+     * unbounded.
+     */
+    public SpatioTemporalIndex(double cellSize, int maxCellsPerObject)
+    {
+        if (cellSize <= 0 || cellSize > 180 || maxCellsPerObject < 1)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.cellSize = cellSize;
+        this.numRows = (int) Math.ceil(180 / cellSize);
+        this.numCols = (int) Math.ceil(360 / cellSize);
+        this.maxCellsPerObject = maxCellsPerObject;
+    }
+
+    public double getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Adds an object. If the object was already contained its sector and
+     * interval are replaced.
+     * @param value the object.
+     * @param sector the object sector, null if it has no location.
+     * @param start interval start in milliseconds.
+     * @param end interval end in milliseconds.
+     */
+    public void add(T value, Sector sector, long start, long end)
+    {
+        if (value == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            removeEntry(value);
+
+            int[] covered = null;
+            if (sector != null)
+            {
+                int minRow = row(sector.getMinLatitude().degrees);
+                int maxRow = row(sector.getMaxLatitude().degrees);
+                int minCol = col(sector.getMinLongitude().degrees);
+                int maxCol = col(sector.getMaxLongitude().degrees);
+                int count = (maxRow - minRow + 1) * (maxCol - minCol + 1);
+                if (count <= maxCellsPerObject)
+                {
+                    covered = new int[count];
+                    int i = 0;
+                    for (int r = minRow; r <= maxRow; r++)
+                    {
+                        for (int c = minCol; c <= maxCol; c++)
+                        {
+                            covered[i++] = r * numCols + c;
+                        }
+                    }
+                }
+            }
+
+            if (covered == null)
+            {
+                unbounded.add(value, start, end);
+            } else
+            {
+                for (int cell : covered)
+                {
+                    IntervalTree<T> tree = cells.get(cell);
+                    if (tree == null)
+                    {
+                        tree = new IntervalTree<T>();
+                        cells.put(cell, tree);
+                    }
+                    tree.add(value, start, end);
+                }
+            }
+
+            all.add(value, start, end);
+            entries.put(value, new Entry(sector, start, end, covered));
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an object.
+     * @param value the object.
+     * @return true if the object was contained.
+     */
+    public boolean remove(T value)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            return removeEntry(value);
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the objects.
+     */
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            entries.clear();
+            cells.clear();
+            unbounded.clear();
+            all.clear();
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the object is contained in the index.
+     * @param value
+     * @return
+     */
+    public boolean contains(T value)
+    {
+        return all.contains(value);
+    }
+
+    /**
+     * Returns the number of objects.
+     * @return
+     */
+    public int size()
+    {
+        return all.size();
+    }
+
+    /**
+     * Returns the sector of an object.
+     * @param value
+     * @return the sector or null if the object hasn't sector or isn't
+     * contained.
+     */
+    public Sector getSector(T value)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Entry entry = entries.get(value);
+            return entry != null ? entry.sector : null;
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the period of time of an object.
+     * @param value
+     * @return the period or null if the object isn't contained.
+     */
+    public TimeSpan getTimeSpan(T value)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Entry entry = entries.get(value);
+            return entry != null ? new TimeSpan(entry.start, entry.end) : null;
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds to 'result' all the objects sorted by their initial time.
+     * @param result
+     * @return the 'result' collection.
+     */
+    public Collection<T> getAll(Collection<T> result)
+    {
+        return all.getAll(result);
+    }
+
+    /**
+     * Adds to 'result' the objects whose interval intersects with [start,
+     * end], wherever they are.
+     * @param start interval start in milliseconds.
+     * @param end interval end in milliseconds.
+     * @param result collection where objects are added.
+     * @return the 'result' collection.
+     */
+    public Collection<T> query(long start, long end, Collection<T> result)
+    {
+        return all.query(start, end, result);
+    }
+
+    /**
+     * Adds to 'result' the objects whose interval intersects with [start,
+     * end] and whose sector intersects with the given one. Objects without
+     * sector are always included.
+     * @param sector the query sector, null to query only by time.
+     * @param start interval start in milliseconds.
+     * @param end interval end in milliseconds.
+     * @param result collection where objects are added.
+     * @return the 'result' collection.
+     */
+    public Collection<T> query(Sector sector, long start, long end, Collection<T> result)
+    {
+        if (result == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (sector == null)
+        {
+            return all.query(start, end, result);
+        }
+
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        ArrayList<T> candidates = new ArrayList<T>();
+        IdentityHashMap<T, T> seen = null;
+
+        lock.readLock().lock();
+        try
+        {
+            unbounded.query(start, end, candidates);
+            for (int i = 0; i < candidates.size(); i++)
+            {
+                T value = candidates.get(i);
+                Sector s = entries.get(value).sector;
+                if (s == null || s.intersects(sector))
+                {
+                    result.add(value);
+                }
+            }
+
+            int minRow = row(sector.getMinLatitude().degrees);
+            int maxRow = row(sector.getMaxLatitude().degrees);
+            int minCol = col(sector.getMinLongitude().degrees);
+            int maxCol = col(sector.getMaxLongitude().degrees);
+            for (int r = minRow; r <= maxRow; r++)
+            {
+                for (int c = minCol; c <= maxCol; c++)
+                {
+                    IntervalTree<T> tree = cells.get(r * numCols + c);
+                    if (tree == null)
+                    {
+                        continue;
+                    }
+
+                    candidates.clear();
+                    tree.query(start, end, candidates);
+                    for (int i = 0; i < candidates.size(); i++)
+                    {
+                        T value = candidates.get(i);
+                        Entry entry = entries.get(value);
+                        if (!entry.sector.intersects(sector))
+                        {
+                            continue;
+                        }
+
+                        // Objects in more than one cell must be added once.
+                        if (entry.cells.length > 1)
+                        {
+                            if (seen == null)
+                            {
+                                seen = new IdentityHashMap<T, T>();
+                            }
+                            if (seen.put(value, value) != null)
+                            {
+                                continue;
+                            }
+                        }
+                        result.add(value);
+                    }
+                }
+            }
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    private boolean removeEntry(T value)
+    {
+        Entry entry = entries.remove(value);
+        if (entry == null)
+        {
+            return false;
+        }
+
+        if (entry.cells == null)
+        {
+            unbounded.remove(value);
+        } else
+        {
+            for (int cell : entry.cells)
+            {
+                IntervalTree<T> tree = cells.get(cell);
+                tree.remove(value);
+                if (tree.size() == 0)
+                {
+                    cells.remove(cell);
+                }
+            }
+        }
+        all.remove(value);
+        return true;
+    }
+
+    private int row(double lat)
+    {
+        int r = (int) Math.floor((lat + 90) / cellSize);
+        return r < 0 ? 0 : (r >= numRows ? numRows - 1 : r);
+    }
+
+    private int col(double lon)
+    {
+        int c = (int) Math.floor((lon + 180) / cellSize);
+        return c < 0 ? 0 : (c >= numCols ? numCols - 1 : c);
+    }
+}
@@ -0,0 +1,665 @@
+package gov.nasa.worldwind.layers;
+
+import com.sun.opengl.util.BufferUtil;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.Evictable;
+import gov.nasa.worldwind.render.Prefetchable;
+import gov.nasa.worldwind.util.FrameScheduler;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.TimeSpan;
+import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+/**
+ * TemporalFeatureLayer renders large amounts of simple features (points,
+ * lines and quads) each one with an associated period of time.
+ * <br/>
+ * All the features are uploaded once into vertex buffer objects. Every
+ * vertex carries, besides its position and color, the initial and final
+ * time of its feature as a vertex attribute, and a vertex shader moves the
+ * vertices of the features that don't intersect the View's temporality
+ * cursor out of the clip volume. So moving the cursor only changes a
+ * uniform and costs the same whatever the number of features is.
+ * <br/>
+ * Times are sent to the GPU split in two floats: the milliseconds rounded
+ * down to a multiple of 2^22 (about 70 minutes), and the remaining
+ * milliseconds. The high part is exact in a float because it is a multiple
+ * of 2^22 below 2^46 in magnitude (only 24 significant bits), not because it
+ * is small; the low part is a whole number below 2^22. So the shader
+ * compares times to the millisecond, for dates within about two thousand
+ * years of 1970. Changing the split step breaks this.
+ * <br/>
+ * When shaders or vertex buffer objects aren't available the features are
+ * drawn from client side vertex arrays, checking their time on the CPU.
+ * <br/>
+ * When the View hasn't a temporality cursor all the features are rendered.
+ * Positions are rendered at their elevation, ignoring the terrain.
+ * <br/>
+ * The layer can be wrapped in a TemporalityLayerAdapter: it is prefetched
+ * by building and uploading its buffers, and evicted by releasing them
+ * (the features are kept and built again when needed).
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TemporalFeatureLayer extends AbstractLayer implements Evictable, Prefetchable
+{
+
+    // Times are (high, low) pairs, the cursor and the time span hold the
+    // initial time in 'xy' and the final time in 'zw'.
+    private static final String VERTEX_SHADER =
+            "uniform vec4 cursor;\n"
+            + "attribute vec4 timeSpan;\n"
+            + "bool lessEqual(vec2 a, vec2 b)\n"
+            + "{\n"
+            + "    return a.x < b.x || (a.x == b.x && a.y <= b.y);\n"
+            + "}\n"
+            + "void main()\n"
+            + "{\n"
+            + "    gl_FrontColor = gl_Color;\n"
+            + "    if (lessEqual(timeSpan.xy, cursor.zw) && lessEqual(cursor.xy, timeSpan.zw))\n"
+            + "        gl_Position = ftransform();\n"
+            + "    else\n"
+            + "        gl_Position = vec4(0.0, 0.0, 2.0, 1.0);\n"
+            + "}\n";
+    // Floats per vertex: position (3), color (4) and time span (4).
+    private static final int VERTEX_SIZE = 11;
+    // Milliseconds of the high part of the times, a power of two.
+    private static final long TIME_HIGH_STEP = 1L << 22;
+    private static final int STRIDE = VERTEX_SIZE * BufferUtil.SIZEOF_FLOAT;
+
+    private static class Feature
+    {
+
+        final Position[] positions;
+        final long start;
+        final long end;
+        final float[] color;
+
+        Feature(Position[] positions, TimeSpan timeSpan, Color color)
+        {
+            this.positions = positions;
+            this.start = timeSpan.getStart();
+            this.end = timeSpan.getEnd();
+            this.color = color.getRGBComponents(null);
+        }
+    }
+
+    private static class Batch
+    {
+
+        final int mode;
+        final ArrayList<Feature> features = new ArrayList<Feature>();
+        FloatBuffer vertices;
+        int vertexCount;
+        int vbo = 0;
+        boolean uploaded = false;
+        // Used when rendering without shaders.
+        int[] firsts;
+        int[] counts;
+        long[] starts;
+        long[] ends;
+
+        Batch(int mode)
+        {
+            this.mode = mode;
+        }
+    }
+    private final Batch points = new Batch(GL.GL_POINTS);
+    private final Batch lines = new Batch(GL.GL_LINES);
+    private final Batch quads = new Batch(GL.GL_QUADS);
+    private final Batch[] batches = new Batch[]
+    {
+        points, lines, quads
+    };
+    private boolean dirty = false;
+    private Globe globe = null;
+    private Vec4 referenceCenter = null;
+    private double pointSize = 4;
+    private double lineWidth = 1;
+    // Shader state: 0 not checked, 1 available, -1 not available.
+    private int shaderState = 0;
+    private int program = 0;
+    private int cursorLocation = -1;
+    private int timeSpanLocation = -1;
+    private volatile FrameScheduler frameScheduler = null;
+
+    /**
+     * Creates a new instance.
+     */
+    public TemporalFeatureLayer()
+    {
+        this.setName(Logging.getMessage("layers.TemporalFeatureLayer.Name"));
+    }
+
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    /**
+     * Sets the scheduler notified when features are added or removed.
+     * @param frameScheduler the scheduler, or null.
+     */
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
+    public double getPointSize()
+    {
+        return pointSize;
+    }
+
+    public void setPointSize(double pointSize)
+    {
+        this.pointSize = pointSize;
+    }
+
+    public double getLineWidth()
+    {
+        return lineWidth;
+    }
+
+    public void setLineWidth(double lineWidth)
+    {
+        this.lineWidth = lineWidth;
+    }
+
+    /**
+     * Adds a point feature.
+     * @param position
+     * @param timeSpan period of time the point is rendered.
+     * @param color
+     */
+    public synchronized void addPoint(Position position, TimeSpan timeSpan, Color color)
+    {
+        if (position == null)
+        {
+            String message = Logging.getMessage("nullValue.PositionIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.add(this.points, new Position[]
+                {
+                    position
+                }, timeSpan, color);
+    }
+
+    /**
+     * Adds a line feature joining the given positions.
+     * @param positions at least two positions.
+     * @param timeSpan period of time the line is rendered.
+     * @param color
+     */
+    public synchronized void addLine(List<Position> positions, TimeSpan timeSpan, Color color)
+    {
+        if (positions == null)
+        {
+            String message = Logging.getMessage("nullValue.PositionsListIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (positions.size() < 2)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        // Stored as independent segments so all the lines go in one batch.
+        Position[] segments = new Position[(positions.size() - 1) * 2];
+        for (int i = 0; i < positions.size() - 1; i++)
+        {
+            segments[i * 2] = positions.get(i);
+            segments[i * 2 + 1] = positions.get(i + 1);
+        }
+        this.add(this.lines, segments, timeSpan, color);
+    }
+
+    /**
+     * Adds a quad feature.
+     * @param p1
+     * @param p2
+     * @param p3
+     * @param p4
+     * @param timeSpan period of time the quad is rendered.
+     * @param color
+     */
+    public synchronized void addQuad(Position p1, Position p2, Position p3, Position p4, TimeSpan timeSpan,
+            Color color)
+    {
+        if (p1 == null || p2 == null || p3 == null || p4 == null)
+        {
+            String message = Logging.getMessage("nullValue.PositionIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.add(this.quads, new Position[]
+                {
+                    p1, p2, p3, p4
+                }, timeSpan, color);
+    }
+
+    /**
+     * Removes all the features.
+     */
+    public synchronized void removeAllFeatures()
+    {
+        for (Batch batch : this.batches)
+        {
+            batch.features.clear();
+        }
+        this.dirty = true;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Returns the number of features.
+     * @return
+     */
+    public synchronized int getNumFeatures()
+    {
+        return this.points.features.size() + this.lines.features.size() + this.quads.features.size();
+    }
+
+    private void add(Batch batch, Position[] positions, TimeSpan timeSpan, Color color)
+    {
+        if (timeSpan == null || color == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        batch.features.add(new Feature(positions, timeSpan, color));
+        this.dirty = true;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    @Override
+    protected synchronized void doRender(DrawContext dc)
+    {
+        if (this.dirty || this.globe != dc.getGlobe())
+        {
+            this.build(dc);
+        }
+        if (this.referenceCenter == null)
+        {
+            return;
+        }
+
+        GL gl = dc.getGL();
+        boolean useShader = this.initShader(gl);
+
+        gl.glPushAttrib(GL.GL_ENABLE_BIT | GL.GL_CURRENT_BIT | GL.GL_POINT_BIT | GL.GL_LINE_BIT
+                | GL.GL_COLOR_BUFFER_BIT);
+        gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+        dc.getView().pushReferenceCenter(dc, this.referenceCenter);
+        try
+        {
+            gl.glDisable(GL.GL_TEXTURE_2D);
+            gl.glDisable(GL.GL_LIGHTING);
+            gl.glEnable(GL.GL_BLEND);
+            gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+            gl.glPointSize((float) this.pointSize);
+            gl.glLineWidth((float) this.lineWidth);
+            gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+            gl.glEnableClientState(GL.GL_COLOR_ARRAY);
+
+            TimeSpan cursor = dc.getView().getTemporalityCursorSpan();
+            if (useShader)
+            {
+                this.drawWithShader(gl, cursor);
+            } else
+            {
+                this.drawWithoutShader(gl, cursor);
+            }
+        } finally
+        {
+            dc.getView().popReferenceCenter(dc);
+            gl.glPopClientAttrib();
+            gl.glPopAttrib();
+        }
+    }
+
+    private void drawWithShader(GL gl, TimeSpan cursor)
+    {
+        // Only the cursor changes between frames.
+        gl.glUseProgram(this.program);
+        if (cursor != null)
+        {
+            gl.glUniform4f(this.cursorLocation, timeHigh(cursor.getStart()), timeLow(cursor.getStart()),
+                    timeHigh(cursor.getEnd()), timeLow(cursor.getEnd()));
+        } else
+        {
+            gl.glUniform4f(this.cursorLocation, -Float.MAX_VALUE, 0, Float.MAX_VALUE, 0);
+        }
+        gl.glEnableVertexAttribArray(this.timeSpanLocation);
+
+        for (Batch batch : this.batches)
+        {
+            if (batch.vertexCount == 0)
+            {
+                continue;
+            }
+
+            this.upload(gl, batch);
+            gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, 0);
+            gl.glColorPointer(4, GL.GL_FLOAT, STRIDE, 3 * BufferUtil.SIZEOF_FLOAT);
+            gl.glVertexAttribPointer(this.timeSpanLocation, 4, GL.GL_FLOAT, false, STRIDE,
+                    7 * BufferUtil.SIZEOF_FLOAT);
+            gl.glDrawArrays(batch.mode, 0, batch.vertexCount);
+        }
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+        gl.glDisableVertexAttribArray(this.timeSpanLocation);
+        gl.glUseProgram(0);
+    }
+
+    // Leaves the batch buffer bound.
+    private void upload(GL gl, Batch batch)
+    {
+        if (batch.vbo == 0)
+        {
+            int[] ids = new int[1];
+            gl.glGenBuffers(1, ids, 0);
+            batch.vbo = ids[0];
+        }
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, batch.vbo);
+        if (!batch.uploaded)
+        {
+            batch.vertices.rewind();
+            gl.glBufferData(GL.GL_ARRAY_BUFFER, batch.vertexCount * STRIDE, batch.vertices, GL.GL_STATIC_DRAW);
+            batch.uploaded = true;
+        }
+    }
+
+    private void drawWithoutShader(GL gl, TimeSpan cursor)
+    {
+        for (Batch batch : this.batches)
+        {
+            if (batch.vertexCount == 0)
+            {
+                continue;
+            }
+
+            gl.glVertexPointer(3, GL.GL_FLOAT, STRIDE, batch.vertices.position(0));
+            gl.glColorPointer(4, GL.GL_FLOAT, STRIDE, batch.vertices.position(3));
+
+            if (cursor == null)
+            {
+                gl.glDrawArrays(batch.mode, 0, batch.vertexCount);
+                continue;
+            }
+
+            // Join consecutive active features in a single draw call.
+            int first = -1;
+            int count = 0;
+            for (int i = 0; i < batch.firsts.length; i++)
+            {
+                if (cursor.intersects(batch.starts[i], batch.ends[i]))
+                {
+                    if (first < 0)
+                    {
+                        first = batch.firsts[i];
+                    }
+                    count += batch.counts[i];
+                } else if (first >= 0)
+                {
+                    gl.glDrawArrays(batch.mode, first, count);
+                    first = -1;
+                    count = 0;
+                }
+            }
+            if (first >= 0)
+            {
+                gl.glDrawArrays(batch.mode, first, count);
+            }
+        }
+    }
+
+    private boolean initShader(GL gl)
+    {
+        if (this.shaderState != 0)
+        {
+            return this.shaderState > 0;
+        }
+
+        this.shaderState = -1;
+        if (!gl.isFunctionAvailable("glCreateShader") || !gl.isFunctionAvailable("glBindBuffer"))
+        {
+            Logging.logger().info(Logging.getMessage("layers.TemporalFeatureLayer.ShadersNotAvailable"));
+            return false;
+        }
+
+        int shader = gl.glCreateShader(GL.GL_VERTEX_SHADER);
+        gl.glShaderSource(shader, 1, new String[]
+                {
+                    VERTEX_SHADER
+                }, (int[]) null, 0);
+        gl.glCompileShader(shader);
+
+        int[] status = new int[1];
+        gl.glGetShaderiv(shader, GL.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0)
+        {
+            Logging.logger().warning(Logging.getMessage("layers.TemporalFeatureLayer.ShaderError"));
+            gl.glDeleteShader(shader);
+            return false;
+        }
+
+        int prog = gl.glCreateProgram();
+        gl.glAttachShader(prog, shader);
+        gl.glLinkProgram(prog);
+        gl.glDeleteShader(shader);
+        gl.glGetProgramiv(prog, GL.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0)
+        {
+            Logging.logger().warning(Logging.getMessage("layers.TemporalFeatureLayer.ShaderError"));
+            gl.glDeleteProgram(prog);
+            return false;
+        }
+
+        this.program = prog;
+        this.cursorLocation = gl.glGetUniformLocation(prog, "cursor");
+        this.timeSpanLocation = gl.glGetAttribLocation(prog, "timeSpan");
+        this.shaderState = 1;
+        return true;
+    }
+
+    private void build(DrawContext dc)
+    {
+        this.globe = dc.getGlobe();
+        this.dirty = false;
+        this.referenceCenter = null;
+
+        // Use the first position as reference so float coordinates are precise.
+        for (Batch batch : this.batches)
+        {
+            if (!batch.features.isEmpty())
+            {
+                this.referenceCenter = this.computePoint(batch.features.get(0).positions[0]);
+                break;
+            }
+        }
+
+        for (Batch batch : this.batches)
+        {
+            this.build(batch);
+        }
+    }
+
+    private void build(Batch batch)
+    {
+        int numFeatures = batch.features.size();
+        int numVertices = 0;
+        for (int i = 0; i < numFeatures; i++)
+        {
+            numVertices += batch.features.get(i).positions.length;
+        }
+
+        if (batch.vertices == null || batch.vertices.capacity() < numVertices * VERTEX_SIZE)
+        {
+            batch.vertices = BufferUtil.newFloatBuffer(Math.max(numVertices, 1) * VERTEX_SIZE);
+        }
+        batch.firsts = new int[numFeatures];
+        batch.counts = new int[numFeatures];
+        batch.starts = new long[numFeatures];
+        batch.ends = new long[numFeatures];
+
+        FloatBuffer buffer = batch.vertices;
+        buffer.clear();
+        int first = 0;
+        for (int i = 0; i < numFeatures; i++)
+        {
+            Feature feature = batch.features.get(i);
+            float startHigh = timeHigh(feature.start);
+            float startLow = timeLow(feature.start);
+            float endHigh = timeHigh(feature.end);
+            float endLow = timeLow(feature.end);
+            for (Position position : feature.positions)
+            {
+                Vec4 point = this.computePoint(position).subtract3(this.referenceCenter);
+                buffer.put((float) point.x).put((float) point.y).put((float) point.z);
+                buffer.put(feature.color, 0, 4);
+                buffer.put(startHigh).put(startLow).put(endHigh).put(endLow);
+            }
+
+            batch.firsts[i] = first;
+            batch.counts[i] = feature.positions.length;
+            batch.starts[i] = feature.start;
+            batch.ends[i] = feature.end;
+            first += feature.positions.length;
+        }
+        buffer.flip();
+
+        batch.vertexCount = numVertices;
+        batch.uploaded = false;
+    }
+
+    private Vec4 computePoint(Position position)
+    {
+        return this.globe.computePointFromPosition(position.getLatitude(), position.getLongitude(),
+                position.getElevation());
+    }
+
+    // The mask rounds down negative times too.
+    private static float timeHigh(long time)
+    {
+        return (float) (time & ~(TIME_HIGH_STEP - 1));
+    }
+
+    private static float timeLow(long time)
+    {
+        return (float) (time & (TIME_HIGH_STEP - 1));
+    }
+
+    /**
+     * Builds the features and uploads them to the vertex buffer objects,
+     * without drawing them, so the layer is ready when it becomes active.
+     * Without shaders only the vertex arrays are built.
+     * @param dc
+     */
+    public synchronized void prefetch(DrawContext dc)
+    {
+        if (this.dirty || this.globe != dc.getGlobe())
+        {
+            this.build(dc);
+        }
+        if (this.referenceCenter == null)
+        {
+            return;
+        }
+
+        GL gl = dc.getGL();
+        if (!this.initShader(gl))
+        {
+            return;
+        }
+        for (Batch batch : this.batches)
+        {
+            if (batch.vertexCount > 0)
+            {
+                this.upload(gl, batch);
+            }
+        }
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Releases the vertex buffer objects and the vertex arrays, which take
+     * most of the layer memory. The features are kept, and built and
+     * uploaded again the next time the layer is rendered or prefetched. The
+     * shader program is kept too.
+     * @param dc
+     */
+    public synchronized void evict(DrawContext dc)
+    {
+        this.deleteBuffers(dc.getGL());
+        for (Batch batch : this.batches)
+        {
+            batch.vertices = null;
+            batch.vertexCount = 0;
+            batch.firsts = null;
+            batch.counts = null;
+            batch.starts = null;
+            batch.ends = null;
+        }
+        this.referenceCenter = null;
+        this.dirty = true;
+    }
+
+    /**
+     * Deletes the vertex buffer objects and the shader program. The layer
+     * creates them again if it is rendered later. Must be called with the GL
+     * context current.
+     */
+    public synchronized void dispose()
+    {
+        GLContext context = GLContext.getCurrent();
+        if (context != null)
+        {
+            GL gl = context.getGL();
+            this.deleteBuffers(gl);
+            if (this.program != 0)
+            {
+                gl.glDeleteProgram(this.program);
+            }
+        }
+
+        for (Batch batch : this.batches)
+        {
+            batch.vbo = 0;
+            batch.uploaded = false;
+        }
+        this.program = 0;
+        this.cursorLocation = -1;
+        this.timeSpanLocation = -1;
+        this.shaderState = 0;
+    }
+
+    private void deleteBuffers(GL gl)
+    {
+        for (Batch batch : this.batches)
+        {
+            if (batch.vbo != 0)
+            {
+                gl.glDeleteBuffers(1, new int[]
+                        {
+                            batch.vbo
+                        }, 0);
+                batch.vbo = 0;
+            }
+            batch.uploaded = false;
+        }
+    }
+}
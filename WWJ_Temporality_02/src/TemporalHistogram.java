@@ -0,0 +1,332 @@
+package gov.nasa.worldwind.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TemporalHistogram counts how many periods of time are active in each
+ * bucket of a period divided in equal parts.
+ * <br/>
+ * The periods are kept in a hash map with the number of times each one was
+ * added, so adding or removing a period doesn't move the others. Computed
+ * histograms are cached by resolution (period and number of buckets) as
+ * difference arrays: adding or removing a period changes only the entries
+ * of its first bucket and of the bucket after its last one, and the counts
+ * are summed again only when they are requested after a change. Computing a
+ * new resolution visits every distinct period once.
+ * <br/>
+ * The arrays returned by 'getCounts' are snapshots never modified by the
+ * histogram, so they can be used while other threads add or remove periods.
+ * <br/>
+ * The histogram is thread safe.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TemporalHistogram
+{
+
+    private static class Key
+    {
+
+        long start;
+        long end;
+        int buckets;
+
+        Key(long start, long end, int buckets)
+        {
+            this.set(start, end, buckets);
+        }
+
+        void set(long start, long end, int buckets)
+        {
+            this.start = start;
+            this.end = end;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return start == key.start && end == key.end && buckets == key.buckets;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ((int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32))) * 31 + buckets;
+        }
+    }
+
+    private static class Period
+    {
+
+        long start;
+        long end;
+        // Number of times the period has been added.
+        int count;
+
+        Period(long start, long end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Period))
+            {
+                return false;
+            }
+
+            Period period = (Period) o;
+            return start == period.start && end == period.end;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32));
+        }
+    }
+
+    private static class Resolution
+    {
+
+        final Key key;
+        // diff[i] is the count of bucket i minus the count of bucket i - 1.
+        final int[] diff;
+        // Counts given by the last 'getCounts', null if outdated.
+        int[] counts = null;
+
+        Resolution(Key key)
+        {
+            this.key = key;
+            this.diff = new int[key.buckets + 1];
+        }
+    }
+    private static final int MAX_CACHED = 8;
+    private final HashMap<Period, Period> periods = new HashMap<Period, Period>();
+    private int size = 0;
+    // Reused to look up periods and resolutions without allocating.
+    private final Period periodProbe = new Period(0, 0);
+    private final Key keyProbe = new Key(0, 0, 0);
+    private final LinkedHashMap<Key, Resolution> cache = new LinkedHashMap<Key, Resolution>(16, 0.75f, true)
+    {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Resolution> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * Creates a new empty histogram.
+     */
+    public TemporalHistogram()
+    {
+    }
+
+    /**
+     * Adds a period of time.
+     * @param start initial time in milliseconds.
+     * @param end final time in milliseconds.
+     */
+    public synchronized void add(long start, long end)
+    {
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        periodProbe.start = start;
+        periodProbe.end = end;
+        Period period = periods.get(periodProbe);
+        if (period == null)
+        {
+            period = new Period(start, end);
+            periods.put(period, period);
+        }
+        period.count++;
+        size++;
+
+        updateCache(start, end, 1);
+    }
+
+    /**
+     * Removes a period of time previously added.
+     * @param start initial time in milliseconds.
+     * @param end final time in milliseconds.
+     * @return false if the period wasn't contained.
+     */
+    public synchronized boolean remove(long start, long end)
+    {
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        periodProbe.start = start;
+        periodProbe.end = end;
+        Period period = periods.get(periodProbe);
+        if (period == null)
+        {
+            return false;
+        }
+
+        if (--period.count == 0)
+        {
+            periods.remove(period);
+        }
+        size--;
+
+        updateCache(start, end, -1);
+        return true;
+    }
+
+    /**
+     * Removes all the periods.
+     */
+    public synchronized void clear()
+    {
+        periods.clear();
+        size = 0;
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of periods.
+     * @return
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of periods active in each bucket of [start, end]
+     * divided in the given number of buckets. The returned array is a
+     * snapshot, shared by the callers asking for the same resolution until
+     * the histogram changes, and must not be modified.
+     * @param start initial time in milliseconds.
+     * @param end final time in milliseconds.
+     * @param buckets number of buckets.
+     * @return
+     */
+    public synchronized int[] getCounts(long start, long end, int buckets)
+    {
+        if (buckets <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        keyProbe.set(start, end, buckets);
+        Resolution resolution = cache.get(keyProbe);
+        if (resolution == null)
+        {
+            resolution = new Resolution(new Key(start, end, buckets));
+            for (Period period : periods.values())
+            {
+                addToResolution(resolution, period.start, period.end, period.count);
+            }
+            cache.put(resolution.key, resolution);
+        }
+
+        if (resolution.counts == null)
+        {
+            // A new array, so the snapshots already returned don't change.
+            int[] counts = new int[buckets];
+            int count = 0;
+            for (int i = 0; i < buckets; i++)
+            {
+                count += resolution.diff[i];
+                counts[i] = count;
+            }
+            resolution.counts = counts;
+        }
+        return resolution.counts;
+    }
+
+    /**
+     * Returns the initial time of a bucket.
+     * @param start initial time of the histogram.
+     * @param end final time of the histogram.
+     * @param buckets number of buckets.
+     * @param bucket bucket index, 'buckets' returns the time after 'end'.
+     * @return
+     */
+    public static long getBucketStart(long start, long end, int buckets, int bucket)
+    {
+        return bucketStart(new Key(Math.min(start, end), Math.max(start, end), buckets), bucket);
+    }
+
+    private static long bucketStart(Key key, int bucket)
+    {
+        if (bucket >= key.buckets)
+        {
+            return key.end + 1;
+        }
+        return key.start + (long) ((double) (key.end - key.start + 1) * bucket / key.buckets);
+    }
+
+    // Index of the last bucket starting at or before 'time', which must be
+    // within the histogram period.
+    private static int bucketOf(Key key, long time)
+    {
+        int bucket = (int) ((double) (time - key.start) * key.buckets / (key.end - key.start + 1));
+        bucket = Math.max(0, Math.min(key.buckets - 1, bucket));
+        // Fix the rounding of the estimate.
+        while (bucket + 1 < key.buckets && bucketStart(key, bucket + 1) <= time)
+        {
+            bucket++;
+        }
+        while (bucket > 0 && bucketStart(key, bucket) > time)
+        {
+            bucket--;
+        }
+        return bucket;
+    }
+
+    private static void addToResolution(Resolution resolution, long start, long end, int delta)
+    {
+        Key key = resolution.key;
+        if (end < key.start || start > key.end)
+        {
+            return;
+        }
+
+        // Periods starting before the histogram also cover its empty buckets.
+        resolution.diff[start < key.start ? 0 : bucketOf(key, start)] += delta;
+        resolution.diff[bucketOf(key, Math.min(end, key.end)) + 1] -= delta;
+        resolution.counts = null;
+    }
+
+    private void updateCache(long start, long end, int delta)
+    {
+        for (Resolution resolution : cache.values())
+        {
+            addToResolution(resolution, start, end, delta);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.layers.TemporalRenderableLayer;
+import gov.nasa.worldwind.view.View;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * TemporalPlayback animates the View's temporality cursor. On every tick the
+ * cursor is stepped up (or down when the speed is negative) using the View's
+ * temporality API. Ticks are scheduled at a fixed rate by a FrameScheduler,
+ * so the globe is only redrawn when the cursor moves.
+ * <br/>
+ * The speed is a multiplier of the tick rate: with a tick interval of 500 ms
+ * a speed of 2 steps the cursor every 250 ms. If looping is disabled the
+ * playback pauses when the cursor reaches the end of the View's temporality.
+ * <br/>
+ * While playing, the registered TemporalRenderableLayers prefetch the objects
+ * that begin within the look-ahead window after the cursor, so imagery is
+ * loaded before it becomes visible.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TemporalPlayback
+{
+
+    private final View view;
+    private final FrameScheduler scheduler;
+    private final CopyOnWriteArrayList<TemporalRenderableLayer> layers = new CopyOnWriteArrayList<TemporalRenderableLayer>();
+    private long tickInterval = 500;
+    private double speed = 1;
+    private boolean looping = true;
+    private long lookAhead = 0;
+    private boolean playing = false;
+    private final FrameScheduler.Animation animation = new FrameScheduler.Animation()
+    {
+
+        public boolean step(long time)
+        {
+            return TemporalPlayback.this.tick();
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     * @param view the View whose cursor is animated.
+     * @param scheduler scheduler used to tick and redraw.
+     */
+    public TemporalPlayback(View view, FrameScheduler scheduler)
+    {
+        if (view == null || scheduler == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.view = view;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Gets the time between two ticks at speed 1.
+     * @return tick interval in milliseconds.
+     */
+    public long getTickInterval()
+    {
+        return tickInterval;
+    }
+
+    /**
+     * Sets the time between two ticks at speed 1.
+     * @param tickInterval tick interval in milliseconds.
+     */
+    public synchronized void setTickInterval(long tickInterval)
+    {
+        if (tickInterval <= 0)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.tickInterval = tickInterval;
+        this.reschedule();
+    }
+
+    /**
+     * Gets the playback speed.
+     * @return
+     */
+    public double getSpeed()
+    {
+        return speed;
+    }
+
+    /**
+     * Sets the playback speed. Negative values play backwards.
+     * @param speed tick rate multiplier, can't be zero.
+     */
+    public synchronized void setSpeed(double speed)
+    {
+        if (speed == 0 || Double.isNaN(speed) || Double.isInfinite(speed))
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.speed = speed;
+        this.reschedule();
+    }
+
+    public boolean isLooping()
+    {
+        return looping;
+    }
+
+    /**
+     * Sets if the playback starts again when the cursor reaches the end of
+     * the View's temporality.
+     * @param looping
+     */
+    public void setLooping(boolean looping)
+    {
+        this.looping = looping;
+    }
+
+    /**
+     * Gets the look-ahead window.
+     * @return look-ahead in milliseconds.
+     */
+    public long getLookAhead()
+    {
+        return lookAhead;
+    }
+
+    /**
+     * Sets the amount of time after the cursor whose objects are prefetched
+     * while playing.
+     * @param lookAhead look-ahead in milliseconds.
+     */
+    public synchronized void setLookAhead(long lookAhead)
+    {
+        this.lookAhead = Math.max(lookAhead, 0);
+        this.updatePrefetch();
+    }
+
+    /**
+     * Adds a layer whose objects are prefetched while playing.
+     * @param layer
+     */
+    public synchronized void addPrefetchLayer(TemporalRenderableLayer layer)
+    {
+        if (layer == null)
+        {
+            String message = Logging.getMessage("nullValue.LayerIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.layers.addIfAbsent(layer);
+        layer.setPrefetchWindow(this.playing ? this.lookAhead : 0);
+    }
+
+    /**
+     * Removes a layer from the prefetch list.
+     * @param layer
+     */
+    public synchronized void removePrefetchLayer(TemporalRenderableLayer layer)
+    {
+        if (this.layers.remove(layer))
+        {
+            layer.setPrefetchWindow(0);
+        }
+    }
+
+    public synchronized boolean isPlaying()
+    {
+        return playing;
+    }
+
+    /**
+     * Starts or resumes the playback.
+     */
+    public synchronized void play()
+    {
+        if (this.playing)
+        {
+            return;
+        }
+
+        this.playing = true;
+        this.scheduler.addAnimation(this.animation, this.computePeriod());
+        this.updatePrefetch();
+    }
+
+    /**
+     * Pauses the playback keeping the cursor position.
+     */
+    public synchronized void pause()
+    {
+        if (!this.playing)
+        {
+            return;
+        }
+
+        this.playing = false;
+        this.scheduler.removeAnimation(this.animation);
+        this.updatePrefetch();
+    }
+
+    /**
+     * Stops the playback and moves the cursor to the beginning.
+     */
+    public synchronized void stop()
+    {
+        this.pause();
+
+        TimeSpan span = this.view.getTemporalitySpan();
+        if (span != null)
+        {
+            this.view.temporalityCursorGoTo(this.speed > 0 ? span.getStart() : span.getEnd());
+            this.scheduler.markDirty();
+        }
+    }
+
+    private synchronized boolean tick()
+    {
+        if (!this.playing)
+        {
+            return false;
+        }
+
+        TimeSpan span = this.view.getTemporalitySpan();
+        TimeSpan cursor = this.view.getTemporalityCursorSpan();
+        if (span == null || cursor == null)
+        {
+            return true;
+        }
+
+        // When not looping, pause instead of wrapping around.
+        boolean forward = this.speed > 0;
+        boolean atEnd = forward ? cursor.getEnd() >= span.getEnd() : cursor.getStart() <= span.getStart();
+        if (atEnd && !this.looping)
+        {
+            this.playing = false;
+            this.updatePrefetch();
+            return false;
+        }
+
+        if (forward)
+        {
+            this.view.temporalityCursorStepUp();
+        } else
+        {
+            this.view.temporalityCursorStepDown();
+        }
+        return true;
+    }
+
+    private long computePeriod()
+    {
+        return Math.max(1, Math.round(this.tickInterval / Math.abs(this.speed)));
+    }
+
+    private void reschedule()
+    {
+        if (this.playing)
+        {
+            this.scheduler.removeAnimation(this.animation);
+            this.scheduler.addAnimation(this.animation, this.computePeriod());
+        }
+    }
+
+    private void updatePrefetch()
+    {
+        for (TemporalRenderableLayer layer : this.layers)
+        {
+            layer.setPrefetchWindow(this.playing ? this.lookAhead : 0);
+        }
+    }
+}
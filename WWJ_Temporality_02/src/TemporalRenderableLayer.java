@@ -0,0 +1,755 @@
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.Evictable;
+import gov.nasa.worldwind.render.Prefetchable;
+import gov.nasa.worldwind.render.Renderable;
+import gov.nasa.worldwind.render.SurfaceImage;
+import gov.nasa.worldwind.render.SurfaceTile;
+import gov.nasa.worldwind.util.FrameScheduler;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.SpatioTemporalIndex;
+import gov.nasa.worldwind.util.TemporalHistogram;
+import gov.nasa.worldwind.util.TemporalSweep;
+import gov.nasa.worldwind.util.Temporality;
+import gov.nasa.worldwind.util.TemporalityLayerAdapter;
+import gov.nasa.worldwind.util.TemporalityRenderableAdapter;
+import gov.nasa.worldwind.util.TimeSpan;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.media.opengl.GL;
+
+/**
+ * TemporalRenderableLayer is a layer for Renderable objects with an
+ * associated Temporality and, optionally, a Sector. Objects are stored in a
+ * SpatioTemporalIndex, which allows to query the objects active in any
+ * period of time and inside any Sector.
+ * <br/>
+ * The objects to be rendered are kept in an active set maintained by a
+ * TemporalSweep: when the View's cursor moves only the objects that become
+ * active or inactive are visited, instead of checking all of them like
+ * TemporalityRenderableAdapter does. Listeners can be registered to be
+ * notified when objects enter or exit the cursor.
+ * <br/>
+ * When some object has a Sector, the objects rendered on each frame are
+ * queried from the index for the visible sector and the cursor, so the
+ * objects out of the view are not visited. Objects without Sector are always
+ * rendered while active.
+ * <br/>
+ * The layer also keeps a TemporalHistogram with the periods of time of all
+ * its objects, which can be shown by the TimelineLayer.
+ * <br/>
+ * When the View hasn't a temporality cursor all the objects are rendered.
+ * <br/>
+ * A prefetch window can be set so the objects that will become active
+ * within that amount of time after the cursor are loaded in advance: objects
+ * implementing Prefetchable are prefetched and SurfaceTiles (like
+ * SurfaceImage) are bound so their textures are loaded and uploaded.
+ * <br/>
+ * TemporalityLayerAdapters that become inactive, or have been prefetched,
+ * are checked on every frame so their layers are evicted according to the
+ * adapter's eviction delay and distance. The layer itself is Evictable, so
+ * it can be wrapped in a TemporalityLayerAdapter to release the resources
+ * of all its objects at once.
+ * <br/>
+ * Objects can be added or removed from any thread. Changes made on the
+ * temporality of an object already added are observed by the layer.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TemporalRenderableLayer extends AbstractLayer implements Evictable
+{
+
+    private final SpatioTemporalIndex<Renderable> index = new SpatioTemporalIndex<Renderable>();
+    private final TemporalHistogram histogram = new TemporalHistogram();
+    private final ConcurrentHashMap<Renderable, Temporality> temporalities = new ConcurrentHashMap<Renderable, Temporality>();
+    // Adapters whose Renderable objects were added, observed instead of their temporality.
+    private final ConcurrentHashMap<Renderable, TemporalityRenderableAdapter> adapters =
+            new ConcurrentHashMap<Renderable, TemporalityRenderableAdapter>();
+    private final TemporalSweep<Renderable> sweep = new TemporalSweep<Renderable>();
+    // Active objects and its index in the list, to remove them in constant time.
+    private final ArrayList<Renderable> active = new ArrayList<Renderable>();
+    private final IdentityHashMap<Renderable, Integer> activeIndex = new IdentityHashMap<Renderable, Integer>();
+    // Objects already prefetched and their period of time. They are forgotten
+    // when they exit the cursor, when the prefetch window moves past them or
+    // when they are removed from the layer.
+    private final IdentityHashMap<Renderable, TimeSpan> prefetched = new IdentityHashMap<Renderable, TimeSpan>();
+    private final ArrayList<Renderable> prefetchList = new ArrayList<Renderable>();
+    private long prefetchWindow = 0;
+    private TimeSpan lastPrefetchCursor = null;
+    // Inactive layer adapters whose resources may still be resident.
+    private final IdentityHashMap<TemporalityLayerAdapter, Boolean> inactiveAdapters = new IdentityHashMap<TemporalityLayerAdapter, Boolean>();
+    // Objects rendered when some of them has a Sector, queried from the index.
+    private final ArrayList<Renderable> visible = new ArrayList<Renderable>();
+    private volatile int numLocated = 0;
+    private volatile boolean visibleDirty = true;
+    private Sector lastVisibleSector = null;
+    private TimeSpan lastVisibleCursor = null;
+    private volatile FrameScheduler frameScheduler = null;
+    private final TemporalSweep.Listener<Renderable> sweepListener = new TemporalSweep.Listener<Renderable>()
+    {
+
+        public void entered(Renderable renderable)
+        {
+            TemporalRenderableLayer.this.activeIndex.put(renderable, TemporalRenderableLayer.this.active.size());
+            TemporalRenderableLayer.this.active.add(renderable);
+        }
+
+        public void exited(Renderable renderable)
+        {
+            Integer index = TemporalRenderableLayer.this.activeIndex.remove(renderable);
+            if (index == null)
+            {
+                return;
+            }
+
+            // Move the last object to the removed position.
+            Renderable last = TemporalRenderableLayer.this.active.remove(TemporalRenderableLayer.this.active.size() - 1);
+            if (last != renderable)
+            {
+                TemporalRenderableLayer.this.active.set(index, last);
+                TemporalRenderableLayer.this.activeIndex.put(last, index);
+            }
+
+            // Let it be prefetched again, for example when playback loops.
+            TemporalRenderableLayer.this.forgetPrefetched(renderable);
+
+            if (renderable instanceof TemporalityLayerAdapter)
+            {
+                TemporalRenderableLayer.this.inactiveAdapters.put((TemporalityLayerAdapter) renderable, Boolean.TRUE);
+            }
+        }
+    };
+    private final PropertyChangeListener temporalityListener = new PropertyChangeListener()
+    {
+
+        public void propertyChange(PropertyChangeEvent evt)
+        {
+            TemporalRenderableLayer.this.temporalityChanged((Temporality) evt.getSource());
+        }
+    };
+    private final PropertyChangeListener adapterListener = new PropertyChangeListener()
+    {
+
+        public void propertyChange(PropertyChangeEvent evt)
+        {
+            TemporalRenderableLayer.this.adapterChanged((TemporalityRenderableAdapter) evt.getSource());
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     */
+    public TemporalRenderableLayer()
+    {
+        this.setName(Logging.getMessage("layers.TemporalRenderableLayer.Name"));
+        this.sweep.addListener(this.sweepListener);
+    }
+
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    /**
+     * Sets the scheduler notified when renderables are added, removed or
+     * change their temporality.
+     * @param frameScheduler the scheduler, or null.
+     */
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
+    /**
+     * Gets the prefetch window.
+     * @return the prefetch window in milliseconds.
+     */
+    public long getPrefetchWindow()
+    {
+        return prefetchWindow;
+    }
+
+    /**
+     * Sets the amount of time, after the cursor end, within which objects
+     * that are about to become active are prefetched. Zero disables
+     * prefetching.
+     * @param prefetchWindow window in milliseconds.
+     */
+    public void setPrefetchWindow(long prefetchWindow)
+    {
+        this.prefetchWindow = Math.max(prefetchWindow, 0);
+        this.lastPrefetchCursor = null;
+    }
+
+    /**
+     * Adds a listener notified, from the rendering thread, when objects
+     * become active or inactive as the View's cursor moves.
+     * @param listener
+     */
+    public void addTemporalListener(TemporalSweep.Listener<Renderable> listener)
+    {
+        this.sweep.addListener(listener);
+    }
+
+    /**
+     * Removes the specified listener.
+     * @param listener
+     */
+    public void removeTemporalListener(TemporalSweep.Listener<Renderable> listener)
+    {
+        this.sweep.removeListener(listener);
+    }
+
+    /**
+     * Adds a Renderable object associated with the given period of time. If
+     * the object was already contained its period is replaced.
+     * @param renderable
+     * @param timeSpan
+     */
+    public void addRenderable(Renderable renderable, TimeSpan timeSpan)
+    {
+        this.addRenderable(renderable, timeSpan, null);
+    }
+
+    /**
+     * Adds a Renderable object associated with the given period of time and
+     * Sector. If the object was already contained its period and sector are
+     * replaced.
+     * @param renderable
+     * @param timeSpan
+     * @param sector sector covered by the object, or null if unknown.
+     */
+    public void addRenderable(Renderable renderable, TimeSpan timeSpan, Sector sector)
+    {
+        if (renderable == null || timeSpan == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.forgetTemporality(renderable);
+        this.forgetAdapter(renderable);
+        this.addToIndex(renderable, timeSpan, sector);
+    }
+
+    /**
+     * Adds a Renderable object associated with the given Temporality. If the
+     * object was already contained its temporality is replaced. Later changes
+     * on the temporality are observed by the layer.
+     * @param renderable
+     * @param temporality
+     */
+    public void addRenderable(Renderable renderable, Temporality temporality)
+    {
+        this.addRenderable(renderable, temporality, null);
+    }
+
+    /**
+     * Adds a Renderable object associated with the given Temporality and
+     * Sector. If the object was already contained its temporality and sector
+     * are replaced. Later changes on the temporality are observed by the
+     * layer.
+     * @param renderable
+     * @param temporality
+     * @param sector sector covered by the object, or null if unknown.
+     */
+    public void addRenderable(Renderable renderable, Temporality temporality, Sector sector)
+    {
+        if (renderable == null || temporality == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Temporality old = this.temporalities.put(renderable, temporality);
+        if (old != null && old != temporality && !this.temporalities.containsValue(old))
+        {
+            old.removePropertyChangeListener(this.temporalityListener);
+        }
+        if (old != temporality)
+        {
+            temporality.addPropertyChangeListener(this.temporalityListener);
+        }
+        this.forgetAdapter(renderable);
+
+        this.addToIndex(renderable, temporality.getTimeSpan(), sector);
+    }
+
+    private void addToIndex(Renderable renderable, TimeSpan timeSpan, Sector sector)
+    {
+        synchronized (this.index)
+        {
+            Sector old = this.index.getSector(renderable);
+            this.numLocated += (sector != null ? 1 : 0) - (old != null ? 1 : 0);
+            TimeSpan oldSpan = this.index.getTimeSpan(renderable);
+            if (oldSpan != null)
+            {
+                this.histogram.remove(oldSpan.getStart(), oldSpan.getEnd());
+            }
+            this.index.add(renderable, sector, timeSpan.getStart(), timeSpan.getEnd());
+            this.histogram.add(timeSpan.getStart(), timeSpan.getEnd());
+        }
+        this.sweep.add(renderable, timeSpan.getStart(), timeSpan.getEnd());
+        // Its period may have changed, so it may need to be prefetched again.
+        this.forgetPrefetched(renderable);
+        this.visibleDirty = true;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Adds the Renderable object wrapped by the adapter, associated with the
+     * adapter's period of time. Later changes on the period, through the
+     * adapter or its Temporality, are observed by the layer. The adapter's
+     * Renderable is read once, when it is added.
+     * @param adapter
+     */
+    public void addRenderable(TemporalityRenderableAdapter adapter)
+    {
+        if (adapter == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        Renderable renderable = adapter.getRenderable();
+        this.forgetTemporality(renderable);
+        // Listen before reading the period, so no change is missed.
+        TemporalityRenderableAdapter old = this.adapters.put(renderable, adapter);
+        if (old != adapter)
+        {
+            adapter.addPropertyChangeListener(this.adapterListener);
+            if (old != null && !this.adapters.containsValue(old))
+            {
+                old.removePropertyChangeListener(this.adapterListener);
+            }
+        }
+
+        this.addToIndex(renderable, adapter.getTimeSpan(), null);
+    }
+
+    private void forgetTemporality(Renderable renderable)
+    {
+        Temporality old = this.temporalities.remove(renderable);
+        if (old != null && !this.temporalities.containsValue(old))
+        {
+            old.removePropertyChangeListener(this.temporalityListener);
+        }
+    }
+
+    private void forgetAdapter(Renderable renderable)
+    {
+        TemporalityRenderableAdapter old = this.adapters.remove(renderable);
+        if (old != null && !this.adapters.containsValue(old))
+        {
+            old.removePropertyChangeListener(this.adapterListener);
+        }
+    }
+
+    /**
+     * Removes the specified object from the layer.
+     * @param renderable
+     */
+    public void removeRenderable(Renderable renderable)
+    {
+        if (renderable == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.forgetTemporality(renderable);
+        this.forgetAdapter(renderable);
+
+        synchronized (this.index)
+        {
+            if (this.index.getSector(renderable) != null)
+            {
+                this.numLocated--;
+            }
+            TimeSpan oldSpan = this.index.getTimeSpan(renderable);
+            if (oldSpan != null)
+            {
+                this.histogram.remove(oldSpan.getStart(), oldSpan.getEnd());
+            }
+            this.index.remove(renderable);
+        }
+        this.sweep.remove(renderable);
+        this.forgetPrefetched(renderable);
+        this.visibleDirty = true;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Removes all the objects from the layer.
+     */
+    public void removeAllRenderables()
+    {
+        for (Temporality temporality : this.temporalities.values())
+        {
+            temporality.removePropertyChangeListener(this.temporalityListener);
+        }
+
+        this.temporalities.clear();
+        for (TemporalityRenderableAdapter adapter : this.adapters.values())
+        {
+            adapter.removePropertyChangeListener(this.adapterListener);
+        }
+        this.adapters.clear();
+        synchronized (this.index)
+        {
+            this.index.clear();
+            this.histogram.clear();
+            this.numLocated = 0;
+        }
+        this.sweep.clear();
+        synchronized (this.prefetched)
+        {
+            this.prefetched.clear();
+        }
+        this.visibleDirty = true;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Returns the temporality associated with the object.
+     * @param renderable
+     * @return the temporality or null if the object isn't contained in the
+     * layer or it was added with a TimeSpan. For objects added through an
+     * adapter, the adapter's Temporality.
+     */
+    public Temporality getTemporality(Renderable renderable)
+    {
+        Temporality temporality = this.temporalities.get(renderable);
+        if (temporality == null)
+        {
+            TemporalityRenderableAdapter adapter = this.adapters.get(renderable);
+            if (adapter != null)
+            {
+                temporality = adapter.getTemporality();
+            }
+        }
+        return temporality;
+    }
+
+    /**
+     * Returns the number of objects contained in the layer.
+     * @return
+     */
+    public int getNumRenderables()
+    {
+        return this.index.size();
+    }
+
+    /**
+     * Returns all the objects contained in the layer sorted by its initial
+     * timestamp.
+     * @return
+     */
+    public Collection<Renderable> getRenderables()
+    {
+        return this.index.getAll(new ArrayList<Renderable>());
+    }
+
+    /**
+     * Returns the objects whose period of time intersects with the given one.
+     * @param timeSpan
+     * @return
+     */
+    public Collection<Renderable> getRenderables(TimeSpan timeSpan)
+    {
+        if (timeSpan == null)
+        {
+            return this.getRenderables();
+        }
+
+        return this.index.query(timeSpan.getStart(), timeSpan.getEnd(), new ArrayList<Renderable>());
+    }
+
+    /**
+     * Returns the objects whose period of time intersects with the given one
+     * and whose Sector intersects with the given one. Objects without Sector
+     * are always included.
+     * @param sector the sector, null to query only by time.
+     * @param timeSpan the period of time, null to query only by sector.
+     * @return
+     */
+    public Collection<Renderable> getRenderables(Sector sector, TimeSpan timeSpan)
+    {
+        long start = timeSpan != null ? timeSpan.getStart() : Long.MIN_VALUE;
+        long end = timeSpan != null ? timeSpan.getEnd() : Long.MAX_VALUE;
+        return this.index.query(sector, start, end, new ArrayList<Renderable>());
+    }
+
+    /**
+     * Returns the histogram of the objects periods of time. It is updated as
+     * objects are added or removed.
+     * @return
+     */
+    public TemporalHistogram getHistogram()
+    {
+        return this.histogram;
+    }
+
+    /**
+     * Returns the Sector associated with the object.
+     * @param renderable
+     * @return the sector or null if the object hasn't one.
+     */
+    public Sector getSector(Renderable renderable)
+    {
+        return this.index.getSector(renderable);
+    }
+
+    private void temporalityChanged(Temporality temporality)
+    {
+        TimeSpan timeSpan = temporality.getTimeSpan();
+
+        // The same temporality can be shared by more than one object.
+        for (java.util.Map.Entry<Renderable, Temporality> entry : this.temporalities.entrySet())
+        {
+            if (entry.getValue() == temporality)
+            {
+                this.addToIndex(entry.getKey(), timeSpan, this.index.getSector(entry.getKey()));
+            }
+        }
+    }
+
+    private void adapterChanged(TemporalityRenderableAdapter adapter)
+    {
+        TimeSpan timeSpan = adapter.getTimeSpan();
+
+        for (java.util.Map.Entry<Renderable, TemporalityRenderableAdapter> entry : this.adapters.entrySet())
+        {
+            if (entry.getValue() == adapter)
+            {
+                this.addToIndex(entry.getKey(), timeSpan, this.index.getSector(entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Returns the objects currently active. The returned list must only be
+     * used from the rendering thread.
+     * @return
+     */
+    public java.util.List<Renderable> getActiveRenderables()
+    {
+        return java.util.Collections.unmodifiableList(this.active);
+    }
+
+    @Override
+    protected void doRender(DrawContext dc)
+    {
+        // Without cursor all the objects are active.
+        TimeSpan cursor = dc.getView().getTemporalityCursorSpan();
+        if (cursor == null)
+        {
+            this.sweep.moveTo(Long.MIN_VALUE, Long.MAX_VALUE);
+        } else
+        {
+            this.sweep.moveTo(cursor.getStart(), cursor.getEnd());
+        }
+
+        if (this.numLocated > 0 && dc.getVisibleSector() != null)
+        {
+            this.updateVisible(dc.getVisibleSector(), cursor);
+            for (int i = 0; i < this.visible.size(); i++)
+            {
+                this.visible.get(i).render(dc);
+            }
+        } else
+        {
+            for (int i = 0; i < this.active.size(); i++)
+            {
+                this.active.get(i).render(dc);
+            }
+        }
+
+        if (cursor != null && this.prefetchWindow > 0 && cursor != this.lastPrefetchCursor)
+        {
+            this.lastPrefetchCursor = cursor;
+            this.prefetch(dc, cursor);
+        }
+
+        if (!this.inactiveAdapters.isEmpty())
+        {
+            this.evictInactiveAdapters(dc);
+        }
+    }
+
+    /**
+     * Releases the resources of all the objects: Evictable objects are
+     * evicted and the textures of the SurfaceImages are removed from the
+     * texture cache. They are loaded again when rendered or prefetched. Must
+     * be called from the rendering thread.
+     * @param dc
+     */
+    public void evict(DrawContext dc)
+    {
+        for (Renderable renderable : this.index.getAll(new ArrayList<Renderable>()))
+        {
+            // A failing object doesn't prevent the others from being evicted.
+            try
+            {
+                if (renderable instanceof Evictable)
+                {
+                    ((Evictable) renderable).evict(dc);
+                } else if (renderable instanceof SurfaceImage)
+                {
+                    dc.getTextureCache().remove(((SurfaceImage) renderable).getImageSource());
+                }
+            } catch (Exception e)
+            {
+                Logging.logger().log(java.util.logging.Level.SEVERE, e.getMessage(), e);
+            }
+        }
+
+        // Everything must be prefetched again.
+        synchronized (this.prefetched)
+        {
+            this.prefetched.clear();
+        }
+        this.lastPrefetchCursor = null;
+        this.inactiveAdapters.clear();
+    }
+
+    private void updateVisible(Sector visibleSector, TimeSpan cursor)
+    {
+        if (!this.visibleDirty && cursor == this.lastVisibleCursor && visibleSector.equals(this.lastVisibleSector))
+        {
+            return;
+        }
+
+        this.visibleDirty = false;
+        this.lastVisibleCursor = cursor;
+        this.lastVisibleSector = visibleSector;
+        this.visible.clear();
+        if (cursor == null)
+        {
+            this.index.query(visibleSector, Long.MIN_VALUE, Long.MAX_VALUE, this.visible);
+        } else
+        {
+            this.index.query(visibleSector, cursor.getStart(), cursor.getEnd(), this.visible);
+        }
+    }
+
+    private void evictInactiveAdapters(DrawContext dc)
+    {
+        Iterator<TemporalityLayerAdapter> iterator = this.inactiveAdapters.keySet().iterator();
+        while (iterator.hasNext())
+        {
+            TemporalityLayerAdapter adapter = iterator.next();
+            if (this.activeIndex.containsKey(adapter) || !this.index.contains(adapter) || !adapter.evictIfUnused(dc))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void prefetch(DrawContext dc, TimeSpan cursor)
+    {
+        // Objects that begin after the cursor end but within the window.
+        this.prefetchList.clear();
+        long end = cursor.getEnd() + this.prefetchWindow;
+        if (end < cursor.getEnd())
+        {
+            end = Long.MAX_VALUE;
+        }
+        this.index.query(cursor.getEnd(), end, this.prefetchList);
+
+        this.prunePrefetched(cursor.getStart(), end);
+
+        GL gl = dc.getGL();
+        gl.glPushAttrib(GL.GL_TEXTURE_BIT | GL.GL_ENABLE_BIT);
+        try
+        {
+            for (int i = 0; i < this.prefetchList.size(); i++)
+            {
+                Renderable renderable = this.prefetchList.get(i);
+                if (this.activeIndex.containsKey(renderable) || this.isPrefetched(renderable))
+                {
+                    continue;
+                }
+
+                // A failing object doesn't prevent the others from being prefetched,
+                // and isn't tried again until the window passes it.
+                try
+                {
+                    if (renderable instanceof Prefetchable)
+                    {
+                        ((Prefetchable) renderable).prefetch(dc);
+                        if (renderable instanceof TemporalityLayerAdapter)
+                        {
+                            this.inactiveAdapters.put((TemporalityLayerAdapter) renderable, Boolean.TRUE);
+                        }
+                    } else if (renderable instanceof SurfaceTile)
+                    {
+                        // Binding a surface tile loads and uploads its texture.
+                        ((SurfaceTile) renderable).bind(dc);
+                    }
+                } catch (Exception e)
+                {
+                    Logging.logger().log(java.util.logging.Level.SEVERE, e.getMessage(), e);
+                }
+
+                TimeSpan timeSpan = this.index.getTimeSpan(renderable);
+                if (timeSpan != null)
+                {
+                    synchronized (this.prefetched)
+                    {
+                        this.prefetched.put(renderable, timeSpan);
+                    }
+                }
+            }
+        } finally
+        {
+            gl.glPopAttrib();
+            this.prefetchList.clear();
+        }
+    }
+
+    private boolean isPrefetched(Renderable renderable)
+    {
+        synchronized (this.prefetched)
+        {
+            return this.prefetched.containsKey(renderable);
+        }
+    }
+
+    private void forgetPrefetched(Renderable renderable)
+    {
+        synchronized (this.prefetched)
+        {
+            this.prefetched.remove(renderable);
+        }
+    }
+
+    // Forgets the prefetched objects outside [start, end], the window has
+    // passed them or the cursor has gone back.
+    private void prunePrefetched(long start, long end)
+    {
+        synchronized (this.prefetched)
+        {
+            Iterator<TimeSpan> iterator = this.prefetched.values().iterator();
+            while (iterator.hasNext())
+            {
+                TimeSpan timeSpan = iterator.next();
+                if (timeSpan.getEnd() < start || timeSpan.getStart() > end)
+                {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package gov.nasa.worldwind.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * TemporalSweep keeps track of which objects are active as a cursor moves
+ * along the time. An object is active when its period of time intersects
+ * with the cursor.
+ * <br/>
+ * Objects are kept sorted by their initial and by their final time, so each
+ * time the cursor moves only the objects whose initial time crosses the
+ * cursor end, or whose final time crosses the cursor start, are visited.
+ * For every object that becomes active or inactive the listeners are
+ * notified, so the cost of a step depends on the number of changes and not
+ * on the number of objects.
+ * <br/>
+ * Objects can be added or removed from any thread, but changes are applied
+ * (and listeners notified) on the next call to 'moveTo' or 'update', usually
+ * made from the rendering thread. Pending objects are merged into the sorted
+ * arrays, and checked against the current cursor, without sorting again the
+ * objects already contained.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TemporalSweep<T>
+{
+
+    /**
+     * Listener notified when objects become active or inactive.
+     */
+    public interface Listener<T>
+    {
+
+        /**
+         * The object has become active.
+         * @param object
+         */
+        public void entered(T object);
+
+        /**
+         * The object has become inactive.
+         * @param object
+         */
+        public void exited(T object);
+    }
+
+    private static class Entry<T>
+    {
+
+        T value;
+        long start;
+        long end;
+        boolean active;
+        boolean removed;
+
+        Entry(T value, long start, long end)
+        {
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+    }
+    private static final Comparator<Entry> START_COMPARATOR = new Comparator<Entry>()
+    {
+
+        public int compare(Entry e1, Entry e2)
+        {
+            return e1.start < e2.start ? -1 : (e1.start == e2.start ? 0 : 1);
+        }
+    };
+    private static final Comparator<Entry> END_COMPARATOR = new Comparator<Entry>()
+    {
+
+        public int compare(Entry e1, Entry e2)
+        {
+            return e1.end < e2.end ? -1 : (e1.end == e2.end ? 0 : 1);
+        }
+    };
+    private final ArrayList<Listener<T>> listeners = new ArrayList<Listener<T>>();
+    private final IdentityHashMap<T, Entry<T>> entries = new IdentityHashMap<T, Entry<T>>();
+    // Pending changes, applied on the next update.
+    private final ArrayList<Entry<T>> added = new ArrayList<Entry<T>>();
+    private final ArrayList<Entry<T>> removed = new ArrayList<Entry<T>>();
+    // Applied entries sorted by initial and by final time, the first 'count'
+    // elements are used.
+    private Entry[] byStart = new Entry[16];
+    private Entry[] byEnd = new Entry[16];
+    private int count = 0;
+    private boolean hasCursor = false;
+    private long cursorStart;
+    private long cursorEnd;
+
+    /**
+     * Creates a new instance without cursor, all objects are inactive.
+     */
+    public TemporalSweep()
+    {
+    }
+
+    public synchronized void addListener(Listener<T> listener)
+    {
+        if (listener == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.listeners.add(listener);
+    }
+
+    public synchronized void removeListener(Listener<T> listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Adds an object with the given period of time. If the object was
+     * already contained its period is replaced.
+     * @param value the object.
+     * @param start initial time in milliseconds.
+     * @param end final time in milliseconds.
+     */
+    public synchronized void add(T value, long start, long end)
+    {
+        if (value == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.remove(value);
+
+        Entry<T> entry = new Entry<T>(value, Math.min(start, end), Math.max(start, end));
+        this.entries.put(value, entry);
+        this.added.add(entry);
+    }
+
+    /**
+     * Removes an object.
+     * @param value
+     * @return true if the object was contained.
+     */
+    public synchronized boolean remove(T value)
+    {
+        Entry<T> entry = this.entries.remove(value);
+        if (entry == null)
+        {
+            return false;
+        }
+
+        // If it hasn't been applied yet simply forget it.
+        if (!this.added.remove(entry))
+        {
+            this.removed.add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all the objects. Active ones are notified as exited on the next
+     * update.
+     */
+    public synchronized void clear()
+    {
+        for (T value : new ArrayList<T>(this.entries.keySet()))
+        {
+            this.remove(value);
+        }
+    }
+
+    /**
+     * Returns the number of objects.
+     * @return
+     */
+    public synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Checks if the object is active for the current cursor.
+     * @param value
+     * @return
+     */
+    public synchronized boolean isActive(T value)
+    {
+        Entry<T> entry = this.entries.get(value);
+        return entry != null && entry.active;
+    }
+
+    /**
+     * Applies the pending additions and removals for the current cursor.
+     */
+    public synchronized void update()
+    {
+        if (this.added.isEmpty() && this.removed.isEmpty())
+        {
+            return;
+        }
+
+        // Removed objects.
+        if (!this.removed.isEmpty())
+        {
+            for (int i = 0; i < this.removed.size(); i++)
+            {
+                Entry<T> entry = this.removed.get(i);
+                entry.removed = true;
+                if (entry.active)
+                {
+                    entry.active = false;
+                    this.fireExited(entry.value);
+                }
+            }
+            if (this.removed.size() == 1)
+            {
+                Entry<T> entry = this.removed.get(0);
+                removeAt(this.byStart, this.count, indexOf(this.byStart, this.count, entry, START_COMPARATOR));
+                removeAt(this.byEnd, this.count, indexOf(this.byEnd, this.count, entry, END_COMPARATOR));
+                this.count--;
+            } else
+            {
+                this.compact();
+            }
+            this.removed.clear();
+        }
+
+        // Added objects, checked against the cursor as they are inserted.
+        if (!this.added.isEmpty())
+        {
+            Entry[] batch = this.added.toArray(new Entry[this.added.size()]);
+            this.added.clear();
+            this.ensureCapacity(this.count + batch.length);
+            Arrays.sort(batch, START_COMPARATOR);
+            merge(this.byStart, this.count, batch, START_COMPARATOR);
+            Arrays.sort(batch, END_COMPARATOR);
+            merge(this.byEnd, this.count, batch, END_COMPARATOR);
+            this.count += batch.length;
+
+            if (this.hasCursor)
+            {
+                for (int i = 0; i < batch.length; i++)
+                {
+                    this.check((Entry<T>) batch[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the cursor and notifies the objects that become active or
+     * inactive.
+     * @param start cursor initial time in milliseconds.
+     * @param end cursor final time in milliseconds.
+     */
+    public synchronized void moveTo(long start, long end)
+    {
+        if (end < start)
+        {
+            long tmp = start;
+            start = end;
+            end = tmp;
+        }
+
+        this.update();
+
+        if (this.hasCursor && start == this.cursorStart && end == this.cursorEnd)
+        {
+            return;
+        }
+
+        if (!this.hasCursor)
+        {
+            // First position, visit the objects that start before the cursor end.
+            this.hasCursor = true;
+            this.cursorStart = start;
+            this.cursorEnd = end;
+            for (int i = 0; i < this.count && this.byStart[i].start <= end; i++)
+            {
+                this.check((Entry<T>) this.byStart[i]);
+            }
+            return;
+        }
+
+        // An object can only change its state if its initial time is between
+        // the old and new cursor ends, or its final time is between the old
+        // and new cursor starts.
+        long lowEnd = Math.min(this.cursorEnd, end);
+        long highEnd = Math.max(this.cursorEnd, end);
+        long lowStart = Math.min(this.cursorStart, start);
+        long highStart = Math.max(this.cursorStart, start);
+
+        this.cursorStart = start;
+        this.cursorEnd = end;
+
+        if (lowEnd != highEnd)
+        {
+            for (int i = firstStartAfter(lowEnd); i < this.count && this.byStart[i].start <= highEnd; i++)
+            {
+                this.check((Entry<T>) this.byStart[i]);
+            }
+        }
+
+        if (lowStart != highStart)
+        {
+            for (int i = firstEndFrom(lowStart); i < this.count && this.byEnd[i].end < highStart; i++)
+            {
+                Entry<T> entry = (Entry<T>) this.byEnd[i];
+                // Skip the objects already checked by its initial time.
+                if (entry.start > lowEnd && entry.start <= highEnd)
+                {
+                    continue;
+                }
+                this.check(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes the cursor, all the active objects are notified as exited.
+     */
+    public synchronized void clearCursor()
+    {
+        this.update();
+
+        if (!this.hasCursor)
+        {
+            return;
+        }
+
+        this.hasCursor = false;
+        for (Entry<T> entry : this.entries.values())
+        {
+            if (entry.active)
+            {
+                entry.active = false;
+                this.fireExited(entry.value);
+            }
+        }
+    }
+
+    private boolean isInside(Entry<T> entry, long start, long end)
+    {
+        return entry.start <= end && entry.end >= start;
+    }
+
+    private void check(Entry<T> entry)
+    {
+        boolean active = this.isInside(entry, this.cursorStart, this.cursorEnd);
+        if (active != entry.active)
+        {
+            entry.active = active;
+            if (active)
+            {
+                this.fireEntered(entry.value);
+            } else
+            {
+                this.fireExited(entry.value);
+            }
+        }
+    }
+
+    // Drops the removed entries from both arrays, keeping their order.
+    private void compact()
+    {
+        int n = 0;
+        for (int i = 0; i < this.count; i++)
+        {
+            if (!this.byStart[i].removed)
+            {
+                this.byStart[n++] = this.byStart[i];
+            }
+        }
+        n = 0;
+        for (int i = 0; i < this.count; i++)
+        {
+            if (!this.byEnd[i].removed)
+            {
+                this.byEnd[n++] = this.byEnd[i];
+            }
+        }
+        Arrays.fill(this.byStart, n, this.count, null);
+        Arrays.fill(this.byEnd, n, this.count, null);
+        this.count = n;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > this.byStart.length)
+        {
+            int size = Math.max(capacity, this.byStart.length * 2);
+            Entry[] start = new Entry[size];
+            Entry[] end = new Entry[size];
+            System.arraycopy(this.byStart, 0, start, 0, this.count);
+            System.arraycopy(this.byEnd, 0, end, 0, this.count);
+            this.byStart = start;
+            this.byEnd = end;
+        }
+    }
+
+    // Merges a sorted batch into the first 'count' sorted entries of an
+    // array with enough room. Working from the back, the position of each
+    // batch entry is binary searched and the entries after it are moved in a
+    // single copy, so nothing is moved twice.
+    private static void merge(Entry[] array, int count, Entry[] batch, Comparator<Entry> comparator)
+    {
+        int high = count;
+        for (int j = batch.length - 1; j >= 0; j--)
+        {
+            int index = upperBound(array, high, batch[j], comparator);
+            System.arraycopy(array, index, array, index + j + 1, high - index);
+            array[index + j] = batch[j];
+            high = index;
+        }
+    }
+
+    // Index of the first of the 'count' entries greater than 'entry'.
+    private static int upperBound(Entry[] array, int count, Entry entry, Comparator<Entry> comparator)
+    {
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(array[mid], entry) <= 0)
+            {
+                low = mid + 1;
+            } else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of an entry, searched among the entries with the same time.
+    private static int indexOf(Entry[] array, int count, Entry entry, Comparator<Entry> comparator)
+    {
+        int index = upperBound(array, count, entry, comparator) - 1;
+        while (array[index] != entry)
+        {
+            index--;
+        }
+        return index;
+    }
+
+    private static void removeAt(Entry[] array, int count, int index)
+    {
+        System.arraycopy(array, index + 1, array, index, count - index - 1);
+        array[count - 1] = null;
+    }
+
+    // Index of the first entry whose initial time is greater than 'time'.
+    private int firstStartAfter(long time)
+    {
+        int low = 0;
+        int high = this.count;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (this.byStart[mid].start <= time)
+            {
+                low = mid + 1;
+            } else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first entry whose final time is greater or equal than 'time'.
+    private int firstEndFrom(long time)
+    {
+        int low = 0;
+        int high = this.count;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (this.byEnd[mid].end < time)
+            {
+                low = mid + 1;
+            } else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void fireEntered(T value)
+    {
+        for (int i = 0; i < this.listeners.size(); i++)
+        {
+            this.listeners.get(i).entered(value);
+        }
+    }
+
+    private void fireExited(T value)
+    {
+        for (int i = 0; i < this.listeners.size(); i++)
+        {
+            this.listeners.get(i).exited(value);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package gov.nasa.worldwind.layers;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.IconRenderer;
+import gov.nasa.worldwind.render.UserFacingIcon;
+import gov.nasa.worldwind.render.WWIcon;
+import gov.nasa.worldwind.util.FrameScheduler;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.TimeSpan;
+import gov.nasa.worldwind.util.TrackStore;
+import java.util.ArrayList;
+
+/**
+ * TemporalTrackLayer renders the moving objects of a TrackStore as icons
+ * placed at their interpolated position for the initial time of the View's
+ * temporality cursor.
+ * <br/>
+ * Positions are only recomputed when the cursor moves or the store changes,
+ * so while the cursor is still the layer simply renders the icons. They are
+ * interpolated into primitive arrays, and only the icons of the tracks that
+ * moved get a new Position. While scrubbing that is still one Position per
+ * moved track and frame, as the IconRenderer needs it to place the icon.
+ * Tracks whose fixes don't contain the cursor time are not rendered,
+ * neither are the tracks when the View hasn't a temporality cursor.
+ * <br/>
+ * Every track is rendered with its own icon, set with 'setTrackIcon', or
+ * with a UserFacingIcon created with the layer's image source.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TemporalTrackLayer extends AbstractLayer
+{
+
+    private final TrackStore store;
+    private final IconRenderer iconRenderer = new IconRenderer();
+    private final ArrayList<WWIcon> trackIcons = new ArrayList<WWIcon>();
+    private final ArrayList<WWIcon> visibleIcons = new ArrayList<WWIcon>();
+    private String imageSource;
+    private double[] lats = new double[0];
+    private double[] lons = new double[0];
+    private double[] alts = new double[0];
+    private boolean[] valid = new boolean[0];
+    // Location last given to each track icon, NaN if it has none.
+    private double[] iconLats = new double[0];
+    private double[] iconLons = new double[0];
+    private double[] iconAlts = new double[0];
+    private boolean hasTime = false;
+    private long lastTime;
+    private long lastVersion = -1;
+    private volatile FrameScheduler frameScheduler = null;
+
+    /**
+     * Creates a new instance.
+     * @param store the tracks to be rendered.
+     * @param imageSource path of the image used for the tracks without a specific icon.
+     */
+    public TemporalTrackLayer(TrackStore store, String imageSource)
+    {
+        if (store == null || imageSource == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.store = store;
+        this.imageSource = imageSource;
+        this.setName(Logging.getMessage("layers.TemporalTrackLayer.Name"));
+    }
+
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    /**
+     * Sets the scheduler notified when a track icon changes.
+     * @param frameScheduler the scheduler, or null.
+     */
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
+    public TrackStore getTrackStore()
+    {
+        return store;
+    }
+
+    public String getImageSource()
+    {
+        return imageSource;
+    }
+
+    /**
+     * Sets the image used for the tracks without a specific icon. Icons
+     * already created keep their image.
+     * @param imageSource
+     */
+    public void setImageSource(String imageSource)
+    {
+        if (imageSource == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.imageSource = imageSource;
+    }
+
+    /**
+     * Sets the icon used to render a track. Its position is updated by the
+     * layer.
+     * @param track track index.
+     * @param icon the icon, or null to use the default one.
+     */
+    public synchronized void setTrackIcon(int track, WWIcon icon)
+    {
+        if (track < 0 || track >= this.store.getNumTracks())
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        while (this.trackIcons.size() <= track)
+        {
+            this.trackIcons.add(null);
+        }
+        this.trackIcons.set(track, icon);
+        if (track < this.iconLats.length)
+        {
+            this.iconLats[track] = Double.NaN;
+        }
+        this.lastVersion = -1;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Gets the icon used to render a track.
+     * @param track track index.
+     * @return the icon or null if it hasn't been set or created yet.
+     */
+    public synchronized WWIcon getTrackIcon(int track)
+    {
+        return track >= 0 && track < this.trackIcons.size() ? this.trackIcons.get(track) : null;
+    }
+
+    @Override
+    protected synchronized void doPick(DrawContext dc, java.awt.Point pickPoint)
+    {
+        this.update(dc);
+        this.iconRenderer.pick(dc, this.visibleIcons, pickPoint, this);
+    }
+
+    @Override
+    protected synchronized void doRender(DrawContext dc)
+    {
+        this.update(dc);
+        this.iconRenderer.render(dc, this.visibleIcons);
+    }
+
+    private void update(DrawContext dc)
+    {
+        TimeSpan cursor = dc.getView().getTemporalityCursorSpan();
+        if (cursor == null)
+        {
+            this.hasTime = false;
+            this.visibleIcons.clear();
+            return;
+        }
+
+        long time = cursor.getStart();
+        long version = this.store.getVersion();
+        if (this.hasTime && time == this.lastTime && version == this.lastVersion)
+        {
+            return;
+        }
+
+        this.hasTime = true;
+        this.lastTime = time;
+        this.lastVersion = version;
+
+        // Hold the store so no track is added while interpolating.
+        int numTracks;
+        synchronized (this.store)
+        {
+            numTracks = this.store.getNumTracks();
+            this.ensureCapacity(numTracks);
+            this.store.interpolateAll(time, this.lats, this.lons, this.alts, this.valid);
+        }
+
+        while (this.trackIcons.size() < numTracks)
+        {
+            this.trackIcons.add(null);
+        }
+
+        this.visibleIcons.clear();
+        for (int i = 0; i < numTracks; i++)
+        {
+            if (!this.valid[i])
+            {
+                continue;
+            }
+
+            WWIcon icon = this.trackIcons.get(i);
+            if (icon == null)
+            {
+                icon = new UserFacingIcon(this.imageSource, Position.ZERO);
+                this.trackIcons.set(i, icon);
+                this.iconLats[i] = Double.NaN;
+            }
+
+            double lat = this.lats[i];
+            double lon = this.lons[i];
+            double alt = this.alts[i];
+            // NaN never compares equal, so icons without location are set.
+            if (lat != this.iconLats[i] || lon != this.iconLons[i] || alt != this.iconAlts[i])
+            {
+                this.iconLats[i] = lat;
+                this.iconLons[i] = lon;
+                this.iconAlts[i] = alt;
+                icon.setPosition(new Position(Angle.fromDegrees(lat), Angle.fromDegrees(lon), alt));
+            }
+            this.visibleIcons.add(icon);
+        }
+    }
+
+    private void ensureCapacity(int size)
+    {
+        if (this.valid.length >= size)
+        {
+            return;
+        }
+
+        int capacity = Math.max(size, this.valid.length * 2);
+        this.lats = new double[capacity];
+        this.lons = new double[capacity];
+        this.alts = new double[capacity];
+        this.valid = new boolean[capacity];
+        this.iconLats = grow(this.iconLats, capacity);
+        this.iconLons = grow(this.iconLons, capacity);
+        this.iconAlts = grow(this.iconAlts, capacity);
+    }
+
+    private static double[] grow(double[] array, int capacity)
+    {
+        double[] result = new double[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        java.util.Arrays.fill(result, array.length, capacity, Double.NaN);
+        return result;
+    }
+}
@@ -6,6 +6,11 @@ import java.util.Calendar;
 /**
  * Temporality represents a time of validity from an initial to a final
  * time stamp.
+ * <br/>
+ * The period is stored as an immutable TimeSpan. Temporality is kept as a
+ * facade for code working with Calendars: the Calendars returned by the
+ * getters are copies, so modifying them doesn't change the temporality,
+ * use the setters instead.
  *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
@@ -21,15 +26,9 @@ public class Temporality extends AVListImpl
      */
     public static final String PROP_FINAL_TIME_STAMP = "finalTimeStamp";
     /**
-     * The initial timestamp associated with this object (may be null if the
-     * object hasn't one).
+     * The period of time associated with this object.
      */
-    private Calendar initTimeStamp = null;
-    /**
-     * The final timestamp associated with this object (may be null if the
-     * object hasn't one).
-     */
-    private Calendar finalTimeStamp = null;
+    private TimeSpan timeSpan = null;
 
     /**
      * Creates a new instance.
@@ -43,16 +42,23 @@ public class Temporality extends AVListImpl
             throw new IllegalArgumentException(message);
         }
 
-        // Check if the initial time is before the final time.
-        if (initTimeStamp.before(finalTimeStamp))
-        {
-            this.initTimeStamp = initTimeStamp;
-            this.finalTimeStamp = finalTimeStamp;
-        } else
+        // TimeSpan swaps the times if the initial one is after the final one.
+        this.timeSpan = TimeSpan.fromCalendars(initTimeStamp, finalTimeStamp);
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    public Temporality(TimeSpan timeSpan)
+    {
+        if (timeSpan == null)
         {
-            this.initTimeStamp = finalTimeStamp;
-            this.finalTimeStamp = initTimeStamp;
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
         }
+
+        this.timeSpan = timeSpan;
     }
 
     /**
@@ -67,8 +73,7 @@ public class Temporality extends AVListImpl
             throw new IllegalArgumentException(message);
         }
 
-        this.initTimeStamp = temporality.initTimeStamp;
-        this.finalTimeStamp = temporality.finalTimeStamp;
+        this.timeSpan = temporality.timeSpan;
     }
 
     /**
@@ -84,17 +89,50 @@ public class Temporality extends AVListImpl
             throw new IllegalArgumentException(message);
         }
 
-        setInitialTimeStamp(temporality.initTimeStamp);
-        setFinalTimeStamp(temporality.finalTimeStamp);
+        setTimeSpan(temporality.timeSpan);
+    }
+
+    /**
+     * Gets the period of time.
+     * @return
+     */
+    public TimeSpan getTimeSpan()
+    {
+        return timeSpan;
+    }
+
+    /**
+     * Sets the period of time.
+     * @param timeSpan
+     */
+    public void setTimeSpan(TimeSpan timeSpan)
+    {
+        if (timeSpan == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        TimeSpan old = this.timeSpan;
+        this.timeSpan = timeSpan;
+        if (old.getStart() != timeSpan.getStart())
+        {
+            firePropertyChange(PROP_INITIAL_TIME_STAMP, null, timeSpan.getStartCalendar());
+        }
+        if (old.getEnd() != timeSpan.getEnd())
+        {
+            firePropertyChange(PROP_FINAL_TIME_STAMP, null, timeSpan.getEndCalendar());
+        }
     }
 
     /**
-     * Gets the initial timestamp.
+     * Gets a copy of the initial timestamp.
      * @return start time
      */
     public Calendar getInitialTimeStamp()
     {
-        return initTimeStamp;
+        return timeSpan.getStartCalendar();
     }
 
     /**
@@ -110,17 +148,17 @@ public class Temporality extends AVListImpl
             throw new IllegalArgumentException(message);
         }
 
-        initTimeStamp = calendar;
+        timeSpan = new TimeSpan(calendar.getTimeInMillis(), timeSpan.getEnd());
         firePropertyChange(PROP_INITIAL_TIME_STAMP, null, calendar);
     }
 
     /**
-     * Gets the final timestamp.
+     * Gets a copy of the final timestamp.
      * @return final time
      */
     public Calendar getFinalTimeStamp()
     {
-        return finalTimeStamp;
+        return timeSpan.getEndCalendar();
     }
 
     /**
@@ -136,7 +174,7 @@ public class Temporality extends AVListImpl
             throw new IllegalArgumentException(message);
         }
 
-        finalTimeStamp = calendar;
+        timeSpan = new TimeSpan(timeSpan.getStart(), calendar.getTimeInMillis());
         firePropertyChange(PROP_FINAL_TIME_STAMP, null, calendar);
     }
 
@@ -152,7 +190,7 @@ public class Temporality extends AVListImpl
             return true;
         }
 
-        return !before(temporality) && !after(temporality);
+        return timeSpan.intersects(temporality.timeSpan);
     }
 
     /**
@@ -167,7 +205,7 @@ public class Temporality extends AVListImpl
             return true;
         }
 
-        return finalTimeStamp.before(temporality.getInitialTimeStamp());
+        return timeSpan.before(temporality.timeSpan);
     }
 
     /**
@@ -182,7 +220,7 @@ public class Temporality extends AVListImpl
             return true;
         }
 
-        return initTimeStamp.after(temporality.getFinalTimeStamp());
+        return timeSpan.after(temporality.timeSpan);
     }
 
     /**
@@ -197,6 +235,6 @@ public class Temporality extends AVListImpl
             return false;
         }
 
-        return initTimeStamp.equals(temporality.getInitialTimeStamp()) && finalTimeStamp.equals(temporality.getFinalTimeStamp());
+        return timeSpan.equals(temporality.timeSpan);
     }
-}
\ No newline at end of file
+}
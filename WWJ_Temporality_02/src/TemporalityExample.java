@@ -1,13 +1,18 @@
 package gov.nasa.worldwind.examples;
 
 import gov.nasa.worldwind.layers.Earth.TimelineLayer;
+import gov.nasa.worldwind.util.FrameScheduler;
+import gov.nasa.worldwind.util.TemporalPlayback;
+import gov.nasa.worldwind.util.TemporalityLayerAdapter;
 import gov.nasa.worldwind.util.TemporalityRenderableAdapter;
 import gov.nasa.worldwind.util.Temporality;
+import gov.nasa.worldwind.util.TimeSpan;
 import gov.nasa.worldwind.layers.LayerSet;
 import gov.nasa.worldwind.BasicModel;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.CompassLayer;
@@ -19,13 +24,15 @@ import gov.nasa.worldwind.layers.Earth.ScalebarLayer;
 import gov.nasa.worldwind.layers.Earth.SkyGradientLayer;
 import gov.nasa.worldwind.layers.Earth.StarsLayer;
 import gov.nasa.worldwind.layers.Earth.WorldMapLayer;
-import gov.nasa.worldwind.layers.RenderableLayer;
+import gov.nasa.worldwind.layers.TemporalFeatureLayer;
+import gov.nasa.worldwind.layers.TemporalRenderableLayer;
 import gov.nasa.worldwind.render.SurfaceCircle;
 import gov.nasa.worldwind.render.SurfaceImage;
+import java.awt.Color;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.swing.JFrame;
 
 /**
@@ -46,6 +53,9 @@ public class TemporalityExample
         private Calendar cal_ini;
         private Calendar cal_fin;
         private Temporality tempor;
+        private FrameScheduler scheduler;
+        private TemporalPlayback playback;
+        private TimelineLayer timeline;
 
         public AppFrame()
         {
@@ -68,7 +78,8 @@ public class TemporalityExample
             mainlayers.add(new EarthNASAPlaceNameLayer());
             mainlayers.add(new ScalebarLayer());
             mainlayers.add(new CompassLayer());
-            mainlayers.add(new TimelineLayer());
+            timeline = new TimelineLayer();
+            mainlayers.add(timeline);
 
             // Create a second set of layers with temporary objects.
             LayerSet templayers = new LayerSet();
@@ -96,13 +107,40 @@ public class TemporalityExample
             tempor = new Temporality(cal_ini, cal_fin);
             TemporalityRenderableAdapter tadapter3 = new TemporalityRenderableAdapter(img, tempor);
 
-            // Add object to a renderable layer.
-            RenderableLayer rend = new RenderableLayer();
+            // Temporary points, a row for each day.
+            TemporalFeatureLayer features = new TemporalFeatureLayer();
+            for (int day = 0; day < 3; day++)
+            {
+                TimeSpan span = TimeSpan.fromCalendars(new GregorianCalendar(2007, 12, 22 + day),
+                        new GregorianCalendar(2007, 12, 23 + day));
+                for (int i = 0; i < 100; i++)
+                {
+                    features.addPoint(new Position(Angle.fromDegrees(-20 - day * 5), Angle.fromDegrees(-60 + i),
+                            0), span, Color.YELLOW);
+                }
+            }
+            cal_ini = new GregorianCalendar(2007, 12, 22);
+            cal_fin = new GregorianCalendar(2007, 12, 25);
+            tempor = new Temporality(cal_ini, cal_fin);
+            // The points buffers are uploaded when the playback look ahead
+            // (two days) reaches them, and released when the cursor is three
+            // days away or they haven't been shown for a minute.
+            TemporalityLayerAdapter tadapter4 = new TemporalityLayerAdapter(features, tempor);
+            tadapter4.setWarmUpWindow(2L * 24 * 60 * 60 * 1000);
+            tadapter4.setEvictionDistance(3L * 24 * 60 * 60 * 1000);
+            tadapter4.setEvictionDelay(60 * 1000);
+
+            // Add object to a temporal renderable layer.
+            TemporalRenderableLayer rend = new TemporalRenderableLayer();
             rend.addRenderable(tadapter1);
             rend.addRenderable(tadapter2);
             rend.addRenderable(tadapter3);
+            rend.addRenderable(tadapter4, tempor);
             templayers.add(rend);
 
+            // Show the activity of the temporal objects along the timeline.
+            timeline.setActivityHistogram(rend.getHistogram());
+
             // Set the temporality for the View.
             cal_ini = new GregorianCalendar(2007, 12, 17);
             cal_fin = new GregorianCalendar(2007, 12, 24, 10, 30);
@@ -119,31 +157,31 @@ public class TemporalityExample
 
             model.setLayers(layers);
 
-            // Create a thread to step up the cursor every 500 ms.
-            Thread th = new Thread(new stepUp());
-            th.start();
-        }
-
-        public class stepUp implements Runnable
-        {
-
-            public void run()
+            // Step up the cursor every 500 ms. The scheduler only redraws the
+            // globe when the cursor moves, and images that begin within the
+            // next two days are loaded in advance.
+            // The layers also mark it as dirty when their contents change.
+            scheduler = new FrameScheduler(wwd);
+            rend.setFrameScheduler(scheduler);
+            features.setFrameScheduler(scheduler);
+            timeline.setFrameScheduler(scheduler);
+            playback = new TemporalPlayback(wwd.getView(), scheduler);
+            playback.setTickInterval(500);
+            playback.setLookAhead(2L * 24 * 60 * 60 * 1000);
+            playback.addPrefetchLayer(rend);
+            playback.play();
+            scheduler.start();
+
+            // Clicking on the timeline moves the cursor there.
+            wwd.addMouseListener(new MouseAdapter()
             {
-                while (true)
+
+                @Override
+                public void mouseClicked(MouseEvent e)
                 {
-                    try
-                    {
-                        Thread.sleep(500);
-
-                        wwd.getView().temporalityCursorStepUp();
-//                        wwd.getView().temporalityCursorStepDown();
-                        wwd.redrawNow();
-                    } catch (InterruptedException ex)
-                    {
-                        Logger.getLogger(TemporalityExample.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+                    timeline.selectTime(wwd.getView(), e.getPoint());
                 }
-            }
+            });
         }
     }
 
@@ -2,23 +2,42 @@ package gov.nasa.worldwind.util;
 
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.render.DrawContext;
-import gov.nasa.worldwind.render.Renderable;
+import gov.nasa.worldwind.render.Evictable;
+import gov.nasa.worldwind.render.Prefetchable;
 
 /**
  * TemporalityLayerAdapter joins a Layer object with a Temporality. Then
  * the Layer object will only be rendered when the View intersects with
  * the specified Temporality.
+ * <br/>
+ * To avoid keeping the resources of every layer ever shown, the layer
+ * releases its caches when it has been inactive longer than the eviction
+ * delay (wall clock time), or when its temporality is farther than the
+ * eviction distance from the View's cursor. Both are disabled by default.
+ * Only Evictable layers release anything (TemporalFeatureLayer releases
+ * its buffers, TemporalRenderableLayer the resources of its objects), the
+ * layer is never disposed so it can be rendered again.
+ * <br/>
+ * When the cursor gets closer than the warm up window Prefetchable layers
+ * (like TemporalFeatureLayer) are prefetched. Other layers aren't warmed up, since rendering them can't
+ * be hidden (their ordered renderables would be drawn later, unmasked).
+ * The eviction distance should be greater than the warm up window.
  * 
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
-public class TemporalityLayerAdapter implements Renderable
+public class TemporalityLayerAdapter extends AbstractTemporalityAdapter implements Prefetchable, Evictable
 {
 
-    private Temporality temporality = null;
     private Layer layer = null;
+    private long evictionDelay = 0;
+    private long evictionDistance = 0;
+    private long warmUpWindow = 0;
+    private boolean resident = true;
+    private long lastUsedTime = System.currentTimeMillis();
 
     public TemporalityLayerAdapter(Layer layer, Temporality temporality)
     {
+        super(temporality);
         if (temporality == null || layer == null)
         {
             String message = Logging.getMessage("nullValue.LayerIsNull");
@@ -27,31 +46,165 @@ public class TemporalityLayerAdapter implements Renderable
         }
 
         this.layer = layer;
-        this.temporality = temporality;
+    }
+
+    public TemporalityLayerAdapter(Layer layer, TimeSpan timeSpan)
+    {
+        super(timeSpan);
+        if (timeSpan == null || layer == null)
+        {
+            String message = Logging.getMessage("nullValue.LayerIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.layer = layer;
     }
 
     public void render(DrawContext dc)
     {
-        if (temporality.intersects(dc.getView().getTemporalityCursor()))
+        TimeSpan cursor = dc.getView().getTemporalityCursorSpan();
+        TimeSpan span = getTimeSpan();
+        if (span.intersects(cursor))
         {
             layer.render(dc);
+            resident = true;
+            lastUsedTime = System.currentTimeMillis();
+        } else if (warmUpWindow > 0 && computeDistance(span, cursor) <= warmUpWindow)
+        {
+            prefetch(dc);
+        } else
+        {
+            evictIfUnused(dc);
         }
     }
 
-    public Temporality getTemporality()
+    /**
+     * Warms up the layer so its data is loaded before it becomes active. Does
+     * nothing if the layer isn't Prefetchable.
+     * @param dc
+     */
+    public void prefetch(DrawContext dc)
     {
-        return temporality;
+        if (!(layer instanceof Prefetchable))
+        {
+            return;
+        }
+
+        ((Prefetchable) layer).prefetch(dc);
+        resident = true;
+        lastUsedTime = System.currentTimeMillis();
     }
 
-    public void setTemporality(Temporality temporality)
+    /**
+     * Evicts the layer if it is inactive and it has exceeded the eviction
+     * delay or distance. Must be called from the rendering thread.
+     * @param dc
+     * @return true if the layer resources are still resident.
+     */
+    public boolean evictIfUnused(DrawContext dc)
     {
-        if (temporality == null)
+        if (!resident)
         {
-            String message = Logging.getMessage("nullValue.ObjectIsNull");
-            Logging.logger().severe(message);
-            throw new IllegalArgumentException(message);
+            return false;
+        }
+
+        TimeSpan cursor = dc.getView().getTemporalityCursorSpan();
+        TimeSpan span = getTimeSpan();
+        if (span.intersects(cursor))
+        {
+            return true;
+        }
+
+        long distance = computeDistance(span, cursor);
+        if (warmUpWindow > 0 && distance <= warmUpWindow)
+        {
+            return true;
         }
-        this.temporality = temporality;
+
+        boolean expired = evictionDelay > 0 && System.currentTimeMillis() - lastUsedTime > evictionDelay;
+        boolean far = evictionDistance > 0 && distance > evictionDistance;
+        if (expired || far)
+        {
+            evict(dc);
+        }
+        return resident;
+    }
+
+    /**
+     * Checks if the layer resources are loaded, that is, it has been
+     * rendered or warmed up since it was created or evicted.
+     * @return
+     */
+    public boolean isResident()
+    {
+        return resident;
+    }
+
+    /**
+     * Releases the layer resources now. By default an Evictable layer
+     * releases its caches, other layers keep them. Subclasses may release
+     * more resources, but the layer must remain renderable. Must be called
+     * from the rendering thread.
+     * @param dc
+     */
+    public void evict(DrawContext dc)
+    {
+        if (layer instanceof Evictable)
+        {
+            ((Evictable) layer).evict(dc);
+        }
+        resident = false;
+    }
+
+    // Time between the span and the cursor, which don't intersect.
+    private static long computeDistance(TimeSpan span, TimeSpan cursor)
+    {
+        return span.after(cursor) ? span.getStart() - cursor.getEnd() : cursor.getStart() - span.getEnd();
+    }
+
+    public long getEvictionDelay()
+    {
+        return evictionDelay;
+    }
+
+    /**
+     * Sets the time the layer can be inactive before being evicted.
+     * @param evictionDelay delay in milliseconds, zero disables it.
+     */
+    public void setEvictionDelay(long evictionDelay)
+    {
+        this.evictionDelay = Math.max(evictionDelay, 0);
+    }
+
+    public long getEvictionDistance()
+    {
+        return evictionDistance;
+    }
+
+    /**
+     * Sets the distance from the View's cursor beyond which the layer is
+     * evicted.
+     * @param evictionDistance distance in milliseconds, zero disables it.
+     */
+    public void setEvictionDistance(long evictionDistance)
+    {
+        this.evictionDistance = Math.max(evictionDistance, 0);
+    }
+
+    public long getWarmUpWindow()
+    {
+        return warmUpWindow;
+    }
+
+    /**
+     * Sets the distance from the View's cursor within which a Prefetchable
+     * layer is warmed up.
+     * @param warmUpWindow window in milliseconds, zero disables it.
+     */
+    public void setWarmUpWindow(long warmUpWindow)
+    {
+        this.warmUpWindow = Math.max(warmUpWindow, 0);
     }
 
     public Layer getRenderable()
@@ -68,5 +221,7 @@ public class TemporalityLayerAdapter implements Renderable
             throw new IllegalArgumentException(message);
         }
         this.layer = layer;
+        this.resident = true;
+        this.lastUsedTime = System.currentTimeMillis();
     }
 }
\ No newline at end of file
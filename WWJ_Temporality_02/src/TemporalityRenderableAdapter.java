@@ -10,14 +10,14 @@ import gov.nasa.worldwind.render.Renderable;
  * 
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
-public class TemporalityRenderableAdapter implements Renderable
+public class TemporalityRenderableAdapter extends AbstractTemporalityAdapter
 {
 
-    private Temporality temporality = null;
     private Renderable renderable = null;
 
     public TemporalityRenderableAdapter(Renderable renderable, Temporality temporality)
     {
+        super(temporality);
         if (temporality == null || renderable == null)
         {
             String message = Logging.getMessage("nullValue.ObjectIsNull");
@@ -26,31 +26,27 @@ public class TemporalityRenderableAdapter implements Renderable
         }
 
         this.renderable = renderable;
-        this.temporality = temporality;
     }
 
-    public void render(DrawContext dc)
+    public TemporalityRenderableAdapter(Renderable renderable, TimeSpan timeSpan)
     {
-        if (temporality.intersects(dc.getView().getTemporalityCursor()))
+        super(timeSpan);
+        if (timeSpan == null || renderable == null)
         {
-            renderable.render(dc);
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
         }
-    }
 
-    public Temporality getTemporality()
-    {
-        return temporality;
+        this.renderable = renderable;
     }
 
-    public void setTemporality(Temporality temporality)
+    public void render(DrawContext dc)
     {
-        if (temporality == null)
+        if (getTimeSpan().intersects(dc.getView().getTemporalityCursorSpan()))
         {
-            String message = Logging.getMessage("nullValue.ObjectIsNull");
-            Logging.logger().severe(message);
-            throw new IllegalArgumentException(message);
+            renderable.render(dc);
         }
-        this.temporality = temporality;
     }
 
     public Renderable getRenderable()
@@ -0,0 +1,210 @@
+package gov.nasa.worldwind.util;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * TimeSpan is an immutable period of time from an initial to a final time
+ * stamp, both expressed as milliseconds since the epoch and both included
+ * in the period.
+ * <br/>
+ * It is the compact counterpart of Temporality: it holds only two primitive
+ * fields and all the comparisons are made without creating any object, so
+ * it can be safely used on every frame.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public final class TimeSpan
+{
+
+    private final long start;
+    private final long end;
+
+    /**
+     * Creates a new instance. If 'start' is after 'end' both values are
+     * swapped.
+     * @param start initial time in milliseconds.
+     * @param end final time in milliseconds.
+     */
+    public TimeSpan(long start, long end)
+    {
+        if (start <= end)
+        {
+            this.start = start;
+            this.end = end;
+        } else
+        {
+            this.start = end;
+            this.end = start;
+        }
+    }
+
+    /**
+     * Creates a new instance from two calendars.
+     * @param start
+     * @param end
+     * @return
+     */
+    public static TimeSpan fromCalendars(Calendar start, Calendar end)
+    {
+        if (start == null || end == null)
+        {
+            String message = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return new TimeSpan(start.getTimeInMillis(), end.getTimeInMillis());
+    }
+
+    /**
+     * Gets the initial time in milliseconds.
+     * @return
+     */
+    public long getStart()
+    {
+        return start;
+    }
+
+    /**
+     * Gets the final time in milliseconds.
+     * @return
+     */
+    public long getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * Gets the span duration in milliseconds.
+     * @return
+     */
+    public long getDuration()
+    {
+        return end - start;
+    }
+
+    /**
+     * Returns a new Calendar set to the initial time.
+     * @return
+     */
+    public Calendar getStartCalendar()
+    {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(start);
+        return calendar;
+    }
+
+    /**
+     * Returns a new Calendar set to the final time.
+     * @return
+     */
+    public Calendar getEndCalendar()
+    {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(end);
+        return calendar;
+    }
+
+    /**
+     * Checks if the given time is inside this span.
+     * @param time time in milliseconds.
+     */
+    public boolean contains(long time)
+    {
+        return time >= start && time <= end;
+    }
+
+    /**
+     * Checks if this span intersects with the [start, end] period.
+     * @param start initial time in milliseconds.
+     * @param end final time in milliseconds.
+     */
+    public boolean intersects(long start, long end)
+    {
+        return this.end >= start && this.start <= end;
+    }
+
+    /**
+     * Checks if this span intersects with the specified one.
+     * @param span
+     */
+    public boolean intersects(TimeSpan span)
+    {
+        // By default intersecting with a null span is TRUE.
+        if (span == null)
+        {
+            return true;
+        }
+
+        return end >= span.start && start <= span.end;
+    }
+
+    /**
+     * Checks if this span is before the specified one.
+     * @param span
+     */
+    public boolean before(TimeSpan span)
+    {
+        // By default a span is before a null one.
+        if (span == null)
+        {
+            return true;
+        }
+
+        return end < span.start;
+    }
+
+    /**
+     * Checks if this span is after the specified one.
+     * @param span
+     */
+    public boolean after(TimeSpan span)
+    {
+        // By default a span is after a null one.
+        if (span == null)
+        {
+            return true;
+        }
+
+        return start > span.end;
+    }
+
+    /**
+     * Returns a new span moved the specified amount of time.
+     * @param millis
+     * @return
+     */
+    public TimeSpan shift(long millis)
+    {
+        return new TimeSpan(start + millis, end + millis);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (!(o instanceof TimeSpan))
+        {
+            return false;
+        }
+
+        TimeSpan span = (TimeSpan) o;
+        return start == span.start && end == span.end;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32));
+    }
+
+    @Override
+    public String toString()
+    {
+        return new Date(start) + " - " + new Date(end);
+    }
+}
@@ -1,17 +1,25 @@
 package gov.nasa.worldwind.layers.Earth;
 
-import com.sun.opengl.util.j2d.TextRenderer;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.layers.RenderableLayer;
 import gov.nasa.worldwind.render.*;
+import gov.nasa.worldwind.util.FrameScheduler;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.TemporalHistogram;
+import gov.nasa.worldwind.util.TimeSpan;
+import gov.nasa.worldwind.view.View;
 import javax.media.opengl.GL;
 import java.awt.*;
-import java.awt.geom.*;
+import java.util.Date;
 
 /**
  * Renders a timeline bar graphic in the screen.
  * Derived from ScalebarLayer (thanks to Patrick).
+ * <br/>
+ * If an activity histogram is set, the number of objects active along the
+ * View's temporality is drawn as bars inside the timeline, so empty periods
+ * can be skipped. Clicks can be passed to 'selectTime' to move the cursor to
+ * the clicked bar.
  *
  * @author Antonio Santiago [asantiagop(at)gmail.com]
  */
@@ -28,7 +36,22 @@ public class TimelineLayer extends RenderableLayer
     private int borderWidth = 20;
     private String position = NORTH;
     private Font defaultFont = Font.decode("Arial-12-PLAIN");
-    private TextRenderer textRenderer = null;
+    // Labels are rasterized once and their text only formatted when it changes.
+    private final LabelCache labelCache = new LabelCache();
+    private boolean labelsValid = false;
+    private long labelViewStart;
+    private long labelViewEnd;
+    private long labelCursorStart;
+    private long labelCursorEnd;
+    private String startLabel;
+    private String endLabel;
+    private String cursorLabel;
+    private TemporalHistogram activityHistogram = null;
+    private Color activityColor = Color.orange;
+    private int activityBarWidth = 3;
+    // Screen bounds (AWT coordinates) of the last drawn timeline.
+    private volatile java.awt.Rectangle lastBounds = null;
+    private volatile FrameScheduler frameScheduler = null;
     // Draw it as ordered with an eye distance of 0 so that it shows up in front of most other things.
     private OrderedIcon orderedImage = new OrderedIcon();
 
@@ -168,6 +191,113 @@ public class TimelineLayer extends RenderableLayer
         this.defaultFont = font;
     }
 
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    /**
+     * Sets the scheduler notified when the histogram or the selected time
+     * change.
+     * @param frameScheduler the scheduler, or null.
+     */
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
+    public TemporalHistogram getActivityHistogram()
+    {
+        return this.activityHistogram;
+    }
+
+    /**
+     * Sets the histogram whose counts are drawn along the timeline.
+     * @param activityHistogram the histogram, or null to not draw it.
+     */
+    public void setActivityHistogram(TemporalHistogram activityHistogram)
+    {
+        this.activityHistogram = activityHistogram;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    public Color getActivityColor()
+    {
+        return this.activityColor;
+    }
+
+    public void setActivityColor(Color activityColor)
+    {
+        if (activityColor == null)
+        {
+            String msg = Logging.getMessage("nullValue.ColorIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        this.activityColor = activityColor;
+    }
+
+    public int getActivityBarWidth()
+    {
+        return this.activityBarWidth;
+    }
+
+    /**
+     * Sets the width in pixels of every bar of the activity histogram.
+     * @param activityBarWidth
+     */
+    public void setActivityBarWidth(int activityBarWidth)
+    {
+        if (activityBarWidth < 1)
+        {
+            String msg = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        this.activityBarWidth = activityBarWidth;
+    }
+
+    /**
+     * Moves the View's cursor to the time under the given screen point, if
+     * it is over the timeline. When an activity histogram is shown the cursor
+     * goes to the beginning of the clicked bar.
+     * @param view
+     * @param point point in AWT screen coordinates, as given by mouse events.
+     * @return true if the point is over the timeline.
+     */
+    public boolean selectTime(View view, Point point)
+    {
+        if (view == null || point == null)
+        {
+            String msg = Logging.getMessage("nullValue.ObjectIsNull");
+            Logging.logger().severe(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        java.awt.Rectangle bounds = this.lastBounds;
+        TimeSpan viewSpan = view.getTemporalitySpan();
+        if (bounds == null || viewSpan == null || !bounds.contains(point))
+        {
+            return false;
+        }
+
+        double fraction = Math.min(1d, Math.max(0d, (point.x - bounds.x) / (double) bounds.width));
+        long time;
+        if (this.activityHistogram != null)
+        {
+            int buckets = this.computeBuckets();
+            int bucket = Math.min(buckets - 1, (int) (fraction * buckets));
+            time = TemporalHistogram.getBucketStart(viewSpan.getStart(), viewSpan.getEnd(), buckets, bucket);
+        } else
+        {
+            time = viewSpan.getStart() + (long) (fraction * viewSpan.getDuration());
+        }
+
+        view.temporalityCursorGoTo(time);
+        FrameScheduler.markDirty(this.frameScheduler);
+        return true;
+    }
+
     // Rendering
     @Override
     public void doRender(DrawContext dc)
@@ -220,13 +350,27 @@ public class TimelineLayer extends RenderableLayer
 
             // Scale to a width x height space
             // located at the proper position on screen
+            float[] colorRGB;
             double scale = this.computeScale(viewport);
             Vec4 locationSW = this.computeLocation(viewport);
             gl.glTranslated(locationSW.x(), locationSW.y(), locationSW.z());
             gl.glScaled(scale, scale, 1);
 
+            // Remember where the timeline is, with some margin to click on it.
+            int boundsHeight = (int) (height * scale);
+            this.lastBounds = new java.awt.Rectangle((int) locationSW.x(), viewport.height - (int) locationSW.y() - boundsHeight - 4,
+                    (int) (width * scale), boundsHeight + 8);
+
+            // Draw activity
+            if (this.activityHistogram != null)
+            {
+                colorRGB = this.activityColor.getRGBColorComponents(null);
+                gl.glColor4d(colorRGB[0], colorRGB[1], colorRGB[2], this.getOpacity() * 0.75);
+                drawActivity(dc);
+            }
+
             // Draw cursor
-            float[] colorRGB = this.cursorColor.getRGBColorComponents(null);
+            colorRGB = this.cursorColor.getRGBColorComponents(null);
             gl.glColor4d(colorRGB[0], colorRGB[1], colorRGB[2], this.getOpacity() * 0.75);
             drawCursor(dc);
             // Draw time line
@@ -246,19 +390,12 @@ public class TimelineLayer extends RenderableLayer
             gl.glDisable(GL.GL_CULL_FACE);
 
             // Draw view temporality
-            String start = dc.getView().getTemporality().getInitialTimeStamp().getTime().toString();
-            String end = dc.getView().getTemporality().getFinalTimeStamp().getTime().toString();
-            Vec4 startpos = new Vec4(locationSW.x(), locationSW.y() + height, locationSW.z());
-            drawLabel(start, startpos);
-            Vec4 endpos = new Vec4(locationSW.x() + width, locationSW.y() + height, locationSW.z());
-            drawLabel(end, endpos);
+            this.updateLabels(dc.getView().getTemporalitySpan(), dc.getView().getTemporalityCursorSpan());
+            drawLabel(dc, this.startLabel, locationSW.x(), locationSW.y() + height);
+            drawLabel(dc, this.endLabel, locationSW.x() + width, locationSW.y() + height);
 
             // Draw cursor label
-            String cstart = dc.getView().getTemporalityCursor().getInitialTimeStamp().getTime().toString();
-            String cend = dc.getView().getTemporalityCursor().getFinalTimeStamp().getTime().toString();
-            String cursorstring = cstart + " - " + cend;
-            Vec4 cpos = new Vec4(locationSW.x() + width / 2, locationSW.y(), locationSW.z());
-            drawCursorLabel(cursorstring, cpos);
+            drawCursorLabel(dc, this.cursorLabel, locationSW.x() + width / 2, locationSW.y());
         } finally
         {
             if (projectionPushed)
@@ -293,16 +430,62 @@ public class TimelineLayer extends RenderableLayer
         gl.glEnd();
     }
 
+    private int computeBuckets()
+    {
+        return Math.max(1, this.size.width / this.activityBarWidth);
+    }
+
+    private void drawActivity(DrawContext dc)
+    {
+        TimeSpan viewSpan = dc.getView().getTemporalitySpan();
+        int buckets = this.computeBuckets();
+        int[] counts = this.activityHistogram.getCounts(viewSpan.getStart(), viewSpan.getEnd(), buckets);
+
+        int max = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            max = Math.max(max, counts[i]);
+        }
+        if (max == 0)
+        {
+            return;
+        }
+
+        double barWidth = (double) this.size.width / buckets;
+        double height = this.size.height;
+
+        GL gl = dc.getGL();
+        gl.glBegin(GL.GL_QUADS);
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] == 0)
+            {
+                continue;
+            }
+
+            double x0 = i * barWidth;
+            double x1 = x0 + barWidth;
+            double y = height * counts[i] / max;
+            gl.glVertex2d(x0, 0);
+            gl.glVertex2d(x1, 0);
+            gl.glVertex2d(x1, y);
+            gl.glVertex2d(x0, y);
+        }
+        gl.glEnd();
+    }
+
     private void drawCursor(DrawContext dc)
     {
         double width = this.size.width;
         double height = this.size.height * 0.75;
 
         // Compute cursor position
-        long ini = dc.getView().getTemporality().getInitialTimeStamp().getTimeInMillis();
-        long fin = dc.getView().getTemporality().getFinalTimeStamp().getTimeInMillis();
-        long ss = dc.getView().getTemporalityCursor().getInitialTimeStamp().getTimeInMillis();
-        long se = dc.getView().getTemporalityCursor().getFinalTimeStamp().getTimeInMillis();
+        TimeSpan viewSpan = dc.getView().getTemporalitySpan();
+        TimeSpan cursorSpan = dc.getView().getTemporalityCursorSpan();
+        long ini = viewSpan.getStart();
+        long fin = viewSpan.getEnd();
+        long ss = cursorSpan.getStart();
+        long se = cursorSpan.getEnd();
 
         int pss = (int) ((width)*(ss-ini) / (fin-ini));
         int pse = (int) ((width)*(se-ini) / (fin-ini));
@@ -317,48 +500,44 @@ public class TimelineLayer extends RenderableLayer
         gl.glEnd();
     }
 
-    private void drawLabel(String text, Vec4 screenPoint)
+    private void updateLabels(TimeSpan viewSpan, TimeSpan cursorSpan)
     {
-        if (this.textRenderer == null)
+        if (this.labelsValid && viewSpan.getStart() == this.labelViewStart && viewSpan.getEnd() == this.labelViewEnd
+                && cursorSpan.getStart() == this.labelCursorStart && cursorSpan.getEnd() == this.labelCursorEnd)
         {
-            this.textRenderer = new TextRenderer(this.defaultFont, true, true);
+            return;
         }
 
-        Rectangle2D nameBound = this.textRenderer.getBounds(text);
-        int x = (int) (screenPoint.x() - nameBound.getWidth() / 2d);
-        int y = (int) screenPoint.y();
-
-        this.textRenderer.begin3DRendering();
-
-        this.textRenderer.setColor(this.getBackgroundColor(this.color));
-        this.textRenderer.draw(text, x + 1, y - 1);
-        this.textRenderer.setColor(this.color);
-        this.textRenderer.draw(text, x, y);
-
-        this.textRenderer.end3DRendering();
-    }
-
-    private void drawCursorLabel(String text, Vec4 screenPoint)
-    {
-        if (this.textRenderer == null)
+        if (!this.labelsValid || viewSpan.getStart() != this.labelViewStart || viewSpan.getEnd() != this.labelViewEnd)
         {
-            this.textRenderer = new TextRenderer(this.defaultFont, true, true);
+            this.startLabel = new Date(viewSpan.getStart()).toString();
+            this.endLabel = new Date(viewSpan.getEnd()).toString();
         }
+        this.cursorLabel = new Date(cursorSpan.getStart()) + " - " + new Date(cursorSpan.getEnd());
 
-        Rectangle2D nameBound = this.textRenderer.getBounds(text);
-        int x = (int) (screenPoint.x() - nameBound.getWidth() / 2d);
-        int y = (int) (screenPoint.y() - nameBound.getHeight());
-
-        this.textRenderer.begin3DRendering();
+        this.labelsValid = true;
+        this.labelViewStart = viewSpan.getStart();
+        this.labelViewEnd = viewSpan.getEnd();
+        this.labelCursorStart = cursorSpan.getStart();
+        this.labelCursorEnd = cursorSpan.getEnd();
+    }
 
-        this.textRenderer.setColor(this.getBackgroundColor(this.color));
-        this.textRenderer.draw(text, x + 1, y - 1);
-        this.textRenderer.setColor(this.color);
-        this.textRenderer.draw(text, x, y);
+    private void drawLabel(DrawContext dc, String text, double x, double y)
+    {
+        LabelCache.Label label = this.labelCache.getLabel(text, this.defaultFont, this.color,
+                this.getBackgroundColor(this.color));
+        this.labelCache.draw(dc, label, x - label.getWidth() / 2d, y, this.getOpacity());
+    }
 
-        this.textRenderer.end3DRendering();
+    private void drawCursorLabel(DrawContext dc, String text, double x, double y)
+    {
+        LabelCache.Label label = this.labelCache.getLabel(text, this.defaultFont, this.color,
+                this.getBackgroundColor(this.color));
+        this.labelCache.draw(dc, label, x - label.getWidth() / 2d, y - label.getHeight(), this.getOpacity());
     }
     private final float[] compArray = new float[4];
+    private static final Color DARK_BACKGROUND = new Color(0, 0, 0, 0.7f);
+    private static final Color LIGHT_BACKGROUND = new Color(1, 1, 1, 0.7f);
 
     // Compute background color for best contrast
     private Color getBackgroundColor(Color color)
@@ -366,10 +545,10 @@ public class TimelineLayer extends RenderableLayer
         Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), compArray);
         if (compArray[2] > 0.5)
         {
-            return new Color(0, 0, 0, 0.7f);
+            return DARK_BACKGROUND;
         } else
         {
-            return new Color(1, 1, 1, 0.7f);
+            return LIGHT_BACKGROUND;
         }
     }
 
@@ -394,11 +573,7 @@ public class TimelineLayer extends RenderableLayer
 
     public void dispose()
     {
-        if (this.textRenderer != null)
-        {
-            this.textRenderer.dispose();
-            this.textRenderer = null;
-        }
+        this.labelCache.dispose();
     }
 
     @Override
@@ -406,4 +581,4 @@ public class TimelineLayer extends RenderableLayer
     {
         return this.getName();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,383 @@
+package gov.nasa.worldwind.util;
+
+import java.util.Arrays;
+
+/**
+ * TrackStore holds the time-stamped fixes of many moving objects (tracks)
+ * and computes their interpolated position at any time.
+ * <br/>
+ * Fixes are stored as a structure of arrays: for every track a 'long' array
+ * with the times (milliseconds) and three 'double' arrays with latitude,
+ * longitude (degrees) and altitude (meters), all sorted by time. The
+ * position at a given time is located with a binary search and linearly
+ * interpolated. 'interpolateAll' first gathers the surrounding fixes of all
+ * the tracks and then interpolates them in a single loop over primitive
+ * arrays, which the JIT can vectorize.
+ * <br/>
+ * Fixes can be added from any thread. Every modification increments the
+ * store version, so clients can know when positions must be recomputed.
+ *
+ * @author Antonio Santiago [asantiagop(at)gmail.com]
+ */
+public class TrackStore
+{
+
+    private static final int INITIAL_FIXES = 8;
+    private long[][] times = new long[16][];
+    private double[][] lats = new double[16][];
+    private double[][] lons = new double[16][];
+    private double[][] alts = new double[16][];
+    private int[] counts = new int[16];
+    private int numTracks = 0;
+    private volatile long version = 0;
+    private volatile FrameScheduler frameScheduler = null;
+    // Scratch arrays used by interpolateAll.
+    private double[] lat0 = new double[0];
+    private double[] lat1 = new double[0];
+    private double[] lon0 = new double[0];
+    private double[] lon1 = new double[0];
+    private double[] alt0 = new double[0];
+    private double[] alt1 = new double[0];
+    private double[] factor = new double[0];
+
+    /**
+     * Creates a new empty store.
+     */
+    public TrackStore()
+    {
+    }
+
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
+
+    /**
+     * Sets the scheduler notified when tracks or fixes are added or cleared.
+     * @param frameScheduler the scheduler, or null.
+     */
+    public void setFrameScheduler(FrameScheduler frameScheduler)
+    {
+        this.frameScheduler = frameScheduler;
+    }
+
+    /**
+     * Adds a new track without fixes.
+     * @return the track index.
+     */
+    public synchronized int addTrack()
+    {
+        if (numTracks == counts.length)
+        {
+            int size = numTracks * 2;
+            times = Arrays.copyOf(times, size);
+            lats = Arrays.copyOf(lats, size);
+            lons = Arrays.copyOf(lons, size);
+            alts = Arrays.copyOf(alts, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+
+        times[numTracks] = new long[INITIAL_FIXES];
+        lats[numTracks] = new double[INITIAL_FIXES];
+        lons[numTracks] = new double[INITIAL_FIXES];
+        alts[numTracks] = new double[INITIAL_FIXES];
+        counts[numTracks] = 0;
+        version++;
+        FrameScheduler.markDirty(this.frameScheduler);
+
+        return numTracks++;
+    }
+
+    /**
+     * Returns the number of tracks.
+     * @return
+     */
+    public synchronized int getNumTracks()
+    {
+        return numTracks;
+    }
+
+    /**
+     * Returns the number of fixes of a track.
+     * @param track track index.
+     * @return
+     */
+    public synchronized int getNumFixes(int track)
+    {
+        checkTrack(track);
+        return counts[track];
+    }
+
+    /**
+     * Returns the store version, incremented on every modification.
+     * @return
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Adds a fix to a track. Fixes are usually added in time order, but
+     * out of order fixes are inserted at their place. A fix with the same
+     * time as an existing one replaces it.
+     * @param track track index.
+     * @param time time in milliseconds.
+     * @param lat latitude in degrees.
+     * @param lon longitude in degrees.
+     * @param alt altitude in meters.
+     */
+    public synchronized void addFix(int track, long time, double lat, double lon, double alt)
+    {
+        checkTrack(track);
+
+        int count = counts[track];
+        long[] t = times[track];
+
+        // Find the insertion index, fast path for fixes in time order.
+        int index;
+        if (count == 0 || t[count - 1] < time)
+        {
+            index = count;
+        } else
+        {
+            index = Arrays.binarySearch(t, 0, count, time);
+            if (index >= 0)
+            {
+                lats[track][index] = lat;
+                lons[track][index] = lon;
+                alts[track][index] = alt;
+                version++;
+                FrameScheduler.markDirty(this.frameScheduler);
+                return;
+            }
+            index = -index - 1;
+        }
+
+        if (count == t.length)
+        {
+            int size = count * 2;
+            times[track] = Arrays.copyOf(times[track], size);
+            lats[track] = Arrays.copyOf(lats[track], size);
+            lons[track] = Arrays.copyOf(lons[track], size);
+            alts[track] = Arrays.copyOf(alts[track], size);
+        }
+
+        if (index < count)
+        {
+            System.arraycopy(times[track], index, times[track], index + 1, count - index);
+            System.arraycopy(lats[track], index, lats[track], index + 1, count - index);
+            System.arraycopy(lons[track], index, lons[track], index + 1, count - index);
+            System.arraycopy(alts[track], index, alts[track], index + 1, count - index);
+        }
+
+        times[track][index] = time;
+        lats[track][index] = lat;
+        lons[track][index] = lon;
+        alts[track][index] = alt;
+        counts[track] = count + 1;
+        version++;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Removes all the fixes of a track.
+     * @param track track index.
+     */
+    public synchronized void clearTrack(int track)
+    {
+        checkTrack(track);
+        counts[track] = 0;
+        version++;
+        FrameScheduler.markDirty(this.frameScheduler);
+    }
+
+    /**
+     * Computes the interpolated position of a track.
+     * @param track track index.
+     * @param time time in milliseconds.
+     * @param result array where latitude, longitude and altitude are stored.
+     * @return false if the time is outside the track fixes, in that case the
+     * result isn't modified.
+     */
+    public synchronized boolean interpolate(int track, long time, double[] result)
+    {
+        checkTrack(track);
+        if (result == null || result.length < 3)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        int i = findSegment(track, time);
+        if (i < 0)
+        {
+            return false;
+        }
+
+        double f = segmentFactor(track, i, time);
+        int j = f > 0 ? i + 1 : i;
+        double dlon = normalizeLongitudeDelta(lons[track][j] - lons[track][i]);
+        result[0] = lats[track][i] + (lats[track][j] - lats[track][i]) * f;
+        result[1] = normalizeLongitude(lons[track][i] + dlon * f);
+        result[2] = alts[track][i] + (alts[track][j] - alts[track][i]) * f;
+        return true;
+    }
+
+    /**
+     * Computes the interpolated position of all the tracks.
+     * @param time time in milliseconds.
+     * @param resultLats array where latitudes are stored.
+     * @param resultLons array where longitudes are stored.
+     * @param resultAlts array where altitudes are stored.
+     * @param valid array where, for every track, is stored if the time is
+     * inside the track fixes.
+     * @return the number of tracks with a valid position.
+     */
+    public synchronized int interpolateAll(long time, double[] resultLats, double[] resultLons, double[] resultAlts,
+            boolean[] valid)
+    {
+        if (resultLats == null || resultLons == null || resultAlts == null || valid == null)
+        {
+            String message = Logging.getMessage("nullValue.ArrayIsNull");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (resultLats.length < numTracks || resultLons.length < numTracks || resultAlts.length < numTracks
+                || valid.length < numTracks)
+        {
+            String message = Logging.getMessage("generic.ArrayInvalidLength");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        ensureScratch(numTracks);
+
+        // Gather the fixes surrounding the time for every track.
+        int numValid = 0;
+        for (int track = 0; track < numTracks; track++)
+        {
+            int i = findSegment(track, time);
+            if (i < 0)
+            {
+                valid[track] = false;
+                lat0[track] = lat1[track] = lon0[track] = lon1[track] = alt0[track] = alt1[track] = 0;
+                factor[track] = 0;
+                continue;
+            }
+
+            double f = segmentFactor(track, i, time);
+            int j = f > 0 ? i + 1 : i;
+            valid[track] = true;
+            lat0[track] = lats[track][i];
+            lat1[track] = lats[track][j];
+            lon0[track] = lons[track][i];
+            lon1[track] = lons[track][i] + normalizeLongitudeDelta(lons[track][j] - lons[track][i]);
+            alt0[track] = alts[track][i];
+            alt1[track] = alts[track][j];
+            factor[track] = f;
+            numValid++;
+        }
+
+        // Interpolate all the tracks at once.
+        for (int k = 0; k < numTracks; k++)
+        {
+            double f = factor[k];
+            resultLats[k] = lat0[k] + (lat1[k] - lat0[k]) * f;
+            resultLons[k] = lon0[k] + (lon1[k] - lon0[k]) * f;
+            resultAlts[k] = alt0[k] + (alt1[k] - alt0[k]) * f;
+        }
+
+        for (int k = 0; k < numTracks; k++)
+        {
+            resultLons[k] = normalizeLongitude(resultLons[k]);
+        }
+
+        return numValid;
+    }
+
+    // Index of the fix at or before the time, or -1 if the time is outside the track.
+    private int findSegment(int track, long time)
+    {
+        int count = counts[track];
+        if (count == 0)
+        {
+            return -1;
+        }
+
+        long[] t = times[track];
+        if (time < t[0] || time > t[count - 1])
+        {
+            return -1;
+        }
+
+        int index = Arrays.binarySearch(t, 0, count, time);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private double segmentFactor(int track, int i, long time)
+    {
+        if (i + 1 >= counts[track])
+        {
+            return 0;
+        }
+
+        long t0 = times[track][i];
+        long t1 = times[track][i + 1];
+        return (double) (time - t0) / (double) (t1 - t0);
+    }
+
+    private static double normalizeLongitudeDelta(double delta)
+    {
+        // Follow the shortest way, crossing the antimeridian if needed.
+        if (delta > 180)
+        {
+            return delta - 360;
+        }
+        if (delta < -180)
+        {
+            return delta + 360;
+        }
+        return delta;
+    }
+
+    private static double normalizeLongitude(double lon)
+    {
+        if (lon > 180)
+        {
+            return lon - 360;
+        }
+        if (lon < -180)
+        {
+            return lon + 360;
+        }
+        return lon;
+    }
+
+    private void ensureScratch(int size)
+    {
+        if (factor.length >= size)
+        {
+            return;
+        }
+
+        lat0 = new double[size];
+        lat1 = new double[size];
+        lon0 = new double[size];
+        lon1 = new double[size];
+        alt0 = new double[size];
+        alt1 = new double[size];
+        factor = new double[size];
+    }
+
+    private void checkTrack(int track)
+    {
+        if (track < 0 || track >= numTracks)
+        {
+            String message = Logging.getMessage("generic.ArgumentOutOfRange");
+            Logging.logger().severe(message);
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -6,6 +6,7 @@ All Rights Reserved.
 package gov.nasa.worldwind.view;
 
 import gov.nasa.worldwind.util.Temporality;
+import gov.nasa.worldwind.util.TimeSpan;
 import gov.nasa.worldwind.WWObject;
 import gov.nasa.worldwind.geom.*;
 import gov.nasa.worldwind.render.DrawContext;
@@ -34,8 +35,12 @@ public interface View extends WWObject
 
     public Temporality getTemporality();
 
+    public TimeSpan getTemporalitySpan();
+
     public Temporality getTemporalityCursor();
 
+    public TimeSpan getTemporalityCursorSpan();
+
     public void setTemporalityCursorSize(int type, int value);
 
     public void temporalityCursorStepUp();
@@ -43,6 +48,8 @@ public interface View extends WWObject
     public void temporalityCursorStepDown();
 
     public void temporalityCursorGoTo(Calendar calendar);
+
+    public void temporalityCursorGoTo(long time);
     // ============== Finish timeline added code ======================= //
 
     /**